@@ -0,0 +1,56 @@
+package com.patrick.timetableappbackend.config;
+
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.impl.solver.DefaultSolverFactory;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.ConstraintNetworkReport;
+import com.patrick.timetableappbackend.solver.TimetableConstraintProvider;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the node count of the constraint network at startup and on /actuator/constraintnetwork,
+ * with timetable.constraint-network.enabled. A diagnostic, see ConstraintNetworkReport.
+ */
+@Component
+@Endpoint(id = "constraintnetwork")
+@ConditionalOnProperty(name = "timetable.constraint-network.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ConstraintNetworkEndpoint {
+
+  private final SolverFactory<Timetable> solverFactory;
+
+  private ConstraintNetworkReport report;
+
+  @ReadOperation
+  public synchronized ConstraintNetworkReport constraintNetwork() {
+    if (report == null) {
+      report =
+          ConstraintNetworkReport.of(
+              ((DefaultSolverFactory<Timetable>) solverFactory).getSolutionDescriptor(),
+              new TimetableConstraintProvider());
+    }
+    return report;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void logConstraintNetwork() {
+    // the report relies on Timefold internals, it must not keep the application from starting
+    try {
+      ConstraintNetworkReport networkReport = constraintNetwork();
+      log.info(
+          "Constraint network: {} constraints, {} nodes",
+          networkReport.constraintCount(),
+          networkReport.nodeCount());
+    } catch (RuntimeException | LinkageError e) {
+      log.warn("Failed reporting the constraint network.", e);
+    }
+  }
+}
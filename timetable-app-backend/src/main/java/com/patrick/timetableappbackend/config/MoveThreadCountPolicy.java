@@ -0,0 +1,132 @@
+package com.patrick.timetableappbackend.config;
+
+import ai.timefold.solver.core.enterprise.TimefoldSolverEnterpriseService;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides how many move threads a job gets, from its size and the load of this node.
+ *
+ * <p>A job gets a move thread per timetable.move-threads.lessons-per-thread lessons, up to
+ * timetable.move-threads.max-per-job, as far as there are free cores: cores that are neither busy
+ * according to the system load average nor reserved by the move threads of the running jobs. Less
+ * than two move threads do not beat evaluating the moves on the solver thread, so such a job gets
+ * none. Move threads need Timefold Solver Enterprise (the {@code enterprise} Maven profile),
+ * without it every job solves on its solver thread only.
+ */
+@Component
+@Slf4j
+public class MoveThreadCountPolicy {
+
+  /** Evaluates the moves on the solver thread, like timefold.solver.move-thread-count=NONE. */
+  public static final int NONE = 0;
+
+  private final int lessonsPerThread;
+  private final int maxPerJob;
+  private final int availableProcessors = Runtime.getRuntime().availableProcessors();
+  private final OperatingSystemMXBean operatingSystem =
+      ManagementFactory.getOperatingSystemMXBean();
+  private final boolean available = isEnterpriseAvailable();
+
+  private int reservedThreads;
+
+  public MoveThreadCountPolicy(
+      @Value("${timetable.move-threads.lessons-per-thread:1000}") int lessonsPerThread,
+      @Value("${timetable.move-threads.max-per-job:8}") int maxPerJob) {
+    this.lessonsPerThread = lessonsPerThread;
+    this.maxPerJob = maxPerJob;
+    if (!available) {
+      log.info("Timefold Solver Enterprise not found, every job solves without move threads.");
+    }
+  }
+
+  public boolean isAvailable() {
+    return available;
+  }
+
+  /**
+   * Reserves the move threads of a new job, {@link #release} them when it ends.
+   *
+   * @return the move thread count for a job of {@code lessonCount} lessons, or {@link #NONE}
+   */
+  public synchronized int reserve(int lessonCount) {
+    if (!available) {
+      return NONE;
+    }
+    int moveThreadCount =
+        Math.min(Math.min(lessonCount / lessonsPerThread, maxPerJob), freeCores());
+    if (moveThreadCount < 2) {
+      return NONE;
+    }
+    reservedThreads += moveThreadCount;
+    return moveThreadCount;
+  }
+
+  /**
+   * Reserves the move threads a job asked for, whatever the load, but no more than {@link
+   * #getMaxRequested}: a job resumed from a checkpoint or claimed from the worker pool may have
+   * asked on a node with more cores.
+   */
+  public synchronized int reserveRequested(int moveThreadCount) {
+    int reserved = Math.min(moveThreadCount, getMaxRequested());
+    checkRequested(reserved);
+    reservedThreads += reserved;
+    return reserved;
+  }
+
+  /** The most move threads a job can ask for: timetable.move-threads.max-per-job or the cores. */
+  public int getMaxRequested() {
+    return Math.min(maxPerJob, availableProcessors);
+  }
+
+  /**
+   * @throws IllegalArgumentException if a job can not get the move threads it asked for
+   */
+  public void checkRequested(int moveThreadCount) {
+    if (moveThreadCount < 0) {
+      throw new IllegalArgumentException("The moveThreadCount can not be negative.");
+    }
+    if (moveThreadCount > NONE && !available) {
+      throw new IllegalArgumentException("Move threads need Timefold Solver Enterprise.");
+    }
+    if (moveThreadCount > getMaxRequested()) {
+      throw new IllegalArgumentException(
+          "The moveThreadCount can not be more than " + getMaxRequested() + ".");
+    }
+  }
+
+  /**
+   * Reserves up to {@code max} free cores for the solvers a portfolio race runs beside a job, see
+   * PortfolioSolveService; these need no Enterprise. {@link #release} them like move threads.
+   */
+  public synchronized int reserveCores(int max) {
+    int cores = Math.max(Math.min(max, freeCores()), 0);
+    reservedThreads += cores;
+    return cores;
+  }
+
+  public synchronized void release(int moveThreadCount) {
+    reservedThreads -= moveThreadCount;
+  }
+
+  private int freeCores() {
+    // the load average trails a minute behind, the reservations of the jobs started since do not;
+    // it is negative where the platform has none
+    double loadAverage = operatingSystem.getSystemLoadAverage();
+    int busyCores = Math.max((int) Math.ceil(loadAverage), reservedThreads);
+    // minus the solver thread of the job itself
+    return availableProcessors - busyCores - 1;
+  }
+
+  private static boolean isEnterpriseAvailable() {
+    try {
+      TimefoldSolverEnterpriseService.load();
+      return true;
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return false;
+    }
+  }
+}
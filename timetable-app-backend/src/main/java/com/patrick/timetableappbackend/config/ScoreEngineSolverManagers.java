@@ -0,0 +1,167 @@
+package com.patrick.timetableappbackend.config;
+
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.api.solver.SolverManager;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.SolverManagerConfig;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * One {@link SolverManager} per {@link ScoreEngine}, all built from the solver config of
+ * application.properties. The constraint streams use the auto-configured one, unless the engines
+ * are cross-checked. Jobs with move threads or another {@link LocalSearch} get one per engine,
+ * local search and move thread count, built when first needed, each with its own
+ * timefold.solver-manager.parallel-solver-count. Of those that run no job, the
+ * timetable.solver-managers.max-idle most recently used are kept, the others closed.
+ */
+@Component
+@Slf4j
+public class ScoreEngineSolverManagers implements DisposableBean {
+
+  private final Map<ScoreEngine, SolverManager<Timetable, String>> solverManagers =
+      new EnumMap<>(ScoreEngine.class);
+  // in access order, the least recently used first
+  private final Map<Key, OtherSolverManager> otherSolverManagers =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private final List<SolverManager<Timetable, String>> createdSolverManagers = new ArrayList<>();
+  private final SolverConfig solverConfig;
+  private final boolean crossCheck;
+  private final SolverManagerConfig solverManagerConfig;
+  private final int maxIdle;
+
+  private record Key(ScoreEngine scoreEngine, LocalSearch localSearch, int moveThreadCount) {}
+
+  private static final class OtherSolverManager {
+
+    private final SolverManager<Timetable, String> solverManager;
+    private int jobCount;
+
+    private OtherSolverManager(SolverManager<Timetable, String> solverManager) {
+      this.solverManager = solverManager;
+    }
+  }
+
+  public ScoreEngineSolverManagers(
+      SolverConfig solverConfig,
+      SolverManager<Timetable, String> solverManager,
+      @Value("${timetable.score-engine.cross-check:false}") boolean crossCheck,
+      @Value("${timefold.solver-manager.parallel-solver-count:AUTO}") String parallelSolverCount,
+      @Value("${timetable.solver-managers.max-idle:4}") int maxIdle) {
+    this.solverConfig = solverConfig;
+    this.crossCheck = crossCheck;
+    this.maxIdle = maxIdle;
+    this.solverManagerConfig =
+        new SolverManagerConfig().withParallelSolverCount(parallelSolverCount);
+    for (ScoreEngine scoreEngine : ScoreEngine.values()) {
+      if (scoreEngine == ScoreEngine.CONSTRAINT_STREAMS && !crossCheck) {
+        solverManagers.put(scoreEngine, solverManager);
+        continue;
+      }
+      SolverManager<Timetable, String> engineSolverManager =
+          SolverManager.create(
+              SolverFactory.create(scoreEngine.configure(solverConfig, crossCheck)),
+              solverManagerConfig);
+      solverManagers.put(scoreEngine, engineSolverManager);
+      createdSolverManagers.add(engineSolverManager);
+    }
+    if (crossCheck) {
+      log.warn("Cross-checking the score engines, every move is scored by both in FULL_ASSERT.");
+    }
+  }
+
+  /**
+   * The SolverManager to run a job with, {@link #release} it when the job ends.
+   *
+   * @param moveThreadCount see {@link MoveThreadCountPolicy}
+   */
+  public synchronized SolverManager<Timetable, String> acquire(
+      ScoreEngine scoreEngine, LocalSearch localSearch, int moveThreadCount) {
+    if (isDefault(localSearch, moveThreadCount)) {
+      return solverManagers.get(scoreEngine);
+    }
+    OtherSolverManager otherSolverManager =
+        otherSolverManagers.computeIfAbsent(
+            new Key(scoreEngine, localSearch, moveThreadCount),
+            key -> {
+              SolverConfig otherSolverConfig =
+                  scoreEngine.configure(localSearch.configure(solverConfig), crossCheck);
+              if (moveThreadCount != MoveThreadCountPolicy.NONE) {
+                otherSolverConfig.setMoveThreadCount(String.valueOf(moveThreadCount));
+              }
+              return new OtherSolverManager(
+                  SolverManager.create(
+                      SolverFactory.create(otherSolverConfig), solverManagerConfig));
+            });
+    otherSolverManager.jobCount++;
+    closeIdle();
+    return otherSolverManager.solverManager;
+  }
+
+  public synchronized void release(
+      ScoreEngine scoreEngine, LocalSearch localSearch, int moveThreadCount) {
+    OtherSolverManager otherSolverManager =
+        isDefault(localSearch, moveThreadCount)
+            ? null
+            : otherSolverManagers.get(new Key(scoreEngine, localSearch, moveThreadCount));
+    // none if building it failed
+    if (otherSolverManager != null && otherSolverManager.jobCount > 0) {
+      otherSolverManager.jobCount--;
+    }
+  }
+
+  /**
+   * The SolverManager a job runs on. That of a job which ended may have been closed since, the one
+   * of the engine is returned instead, which does not know the job either.
+   */
+  public synchronized SolverManager<Timetable, String> get(
+      ScoreEngine scoreEngine, LocalSearch localSearch, int moveThreadCount) {
+    OtherSolverManager otherSolverManager =
+        isDefault(localSearch, moveThreadCount)
+            ? null
+            : otherSolverManagers.get(new Key(scoreEngine, localSearch, moveThreadCount));
+    return otherSolverManager != null
+        ? otherSolverManager.solverManager
+        : solverManagers.get(scoreEngine);
+  }
+
+  private static boolean isDefault(LocalSearch localSearch, int moveThreadCount) {
+    return localSearch == LocalSearch.CONFIGURED && moveThreadCount == MoveThreadCountPolicy.NONE;
+  }
+
+  private void closeIdle() {
+    long idle =
+        otherSolverManagers.values().stream()
+            .filter(otherSolverManager -> otherSolverManager.jobCount == 0)
+            .count();
+    Iterator<OtherSolverManager> iterator = otherSolverManagers.values().iterator();
+    while (idle > maxIdle && iterator.hasNext()) {
+      OtherSolverManager otherSolverManager = iterator.next();
+      if (otherSolverManager.jobCount == 0) {
+        iterator.remove();
+        otherSolverManager.solverManager.close();
+        idle--;
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // the auto-configured one is closed by Spring
+    createdSolverManagers.forEach(SolverManager::close);
+    synchronized (this) {
+      otherSolverManagers.values().forEach(other -> other.solverManager.close());
+    }
+  }
+}
@@ -3,17 +3,32 @@ package com.patrick.timetableappbackend.controller;
 import ai.timefold.solver.core.api.score.analysis.ScoreAnalysis;
 import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
 import ai.timefold.solver.core.api.solver.*;
+import com.patrick.timetableappbackend.dto.ConstraintTraceSettings;
+import com.patrick.timetableappbackend.dto.JobTermination;
+import com.patrick.timetableappbackend.dto.SolveRequest;
+import com.patrick.timetableappbackend.model.Lesson;
 import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.service.JobPriority;
+import com.patrick.timetableappbackend.service.SerializedTimetable;
+import com.patrick.timetableappbackend.service.TimetableConstraintTraceService;
+import com.patrick.timetableappbackend.service.TimetableProblemChangeService;
 import com.patrick.timetableappbackend.service.TimetableService;
-import jakarta.websocket.server.PathParam;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.security.Principal;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/v1/timetables")
@@ -21,6 +36,8 @@ import org.springframework.web.bind.annotation.*;
 public class TimetableController {
 
   private final TimetableService timetableService;
+  private final TimetableProblemChangeService problemChangeService;
+  private final TimetableConstraintTraceService constraintTraceService;
 
   @GetMapping("/list")
   public Collection<String> list() {
@@ -36,9 +53,32 @@ public class TimetableController {
   @PostMapping(
       consumes = MediaType.APPLICATION_JSON_VALUE,
       produces = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Map<String, String>> solve(@RequestBody Timetable problem) {
+  public ResponseEntity<Map<String, String>> solve(
+      @RequestBody Timetable problem,
+      @RequestParam(name = "scoreEngine", required = false) ScoreEngine scoreEngine,
+      @RequestParam(name = "localSearch", required = false) LocalSearch localSearch,
+      @RequestParam(name = "portfolio", defaultValue = "false") boolean portfolio,
+      @RequestParam(name = "moveThreadCount", required = false) Integer moveThreadCount,
+      @RequestParam(name = "partitionBy", required = false) PartitionKey partitionBy,
+      @RequestParam(name = "warmStart", defaultValue = "false") boolean warmStart,
+      // spentLimit, unimprovedSpentLimit, bestScoreLimit and scoreCalculationCountLimit
+      @ModelAttribute JobTermination termination,
+      @RequestParam(name = "priority", required = false) JobPriority priority,
+      Principal principal) {
 
-    String jobId = timetableService.solve(problem);
+    SolveRequest request =
+        SolveRequest.builder()
+            .scoreEngine(scoreEngine)
+            .localSearch(localSearch)
+            .portfolio(portfolio)
+            .moveThreadCount(moveThreadCount)
+            .partitionKey(partitionBy)
+            .warmStart(warmStart)
+            .termination(termination)
+            .priority(priority)
+            .user(principal == null ? "anonymous" : principal.getName())
+            .build();
+    String jobId = timetableService.solve(problem, request);
     Map<String, String> response = new HashMap<>();
     response.put("jobId", jobId);
     return new ResponseEntity<>(response, HttpStatus.OK);
@@ -55,8 +95,20 @@ public class TimetableController {
   }
 
   @GetMapping(value = "/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
-  public Timetable getTimeTable(@PathVariable("jobId") String jobId) {
-    return timetableService.getTimetable(jobId);
+  public ResponseEntity<byte[]> getTimeTable(
+      @PathVariable("jobId") String jobId,
+      @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    SerializedTimetable timetable = timetableService.getSerializedTimetable(jobId);
+    // a 304 when the If-None-Match of the request has the ETag, see HttpEntityMethodProcessor
+    ResponseEntity.BodyBuilder response =
+        ResponseEntity.ok()
+            .eTag(timetable.eTag())
+            .cacheControl(CacheControl.noCache())
+            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+    if (SerializedTimetable.acceptsGzip(acceptEncoding)) {
+      return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(timetable.gzipped());
+    }
+    return response.body(timetable.json());
   }
 
   @GetMapping(value = "/{jobId}/status", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -64,8 +116,62 @@ public class TimetableController {
     return timetableService.getStatus(jobId);
   }
 
+  @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter getEvents(@PathVariable("jobId") String jobId) {
+    return timetableService.subscribe(jobId);
+  }
+
+  @PostMapping(
+      value = "/{jobId}/lessons",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Lesson> addLesson(
+      @PathVariable("jobId") String jobId, @RequestBody Lesson lesson) {
+    // accepted, the lesson is in the job with the next best solution
+    return new ResponseEntity<>(problemChangeService.addLesson(jobId, lesson), HttpStatus.ACCEPTED);
+  }
+
+  @DeleteMapping("/{jobId}/teachers/{teacherId}/timeslots/{timeslotId}")
+  public ResponseEntity<Void> removeTeacherTimeslot(
+      @PathVariable("jobId") String jobId,
+      @PathVariable("teacherId") long teacherId,
+      @PathVariable("timeslotId") long timeslotId) {
+    problemChangeService.removeTeacherTimeslot(jobId, teacherId, timeslotId);
+    return ResponseEntity.accepted().build();
+  }
+
+  @DeleteMapping("/{jobId}/rooms/{roomId}")
+  public ResponseEntity<Void> closeRoom(
+      @PathVariable("jobId") String jobId, @PathVariable("roomId") long roomId) {
+    problemChangeService.closeRoom(jobId, roomId);
+    return ResponseEntity.accepted().build();
+  }
+
+  @GetMapping(value = "/{jobId}/trace/settings", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ConstraintTraceSettings getConstraintTraceSettings(@PathVariable("jobId") String jobId) {
+    return constraintTraceService.getSettings(jobId);
+  }
+
+  @PutMapping(value = "/{jobId}/trace", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ConstraintTraceSettings configureConstraintTrace(
+      @PathVariable("jobId") String jobId,
+      @RequestParam(name = "enabled") boolean enabled,
+      @RequestParam(name = "sampleRate", required = false) Integer sampleRate) {
+    return constraintTraceService.configure(jobId, enabled, sampleRate);
+  }
+
+  @GetMapping(value = "/{jobId}/trace", produces = MediaType.TEXT_PLAIN_VALUE)
+  public ResponseEntity<String> downloadConstraintTrace(@PathVariable("jobId") String jobId) {
+    List<String> entries = constraintTraceService.getEntries(jobId);
+    return ResponseEntity.ok()
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"constraint-trace-" + jobId + ".log\"")
+        .body(String.join("\n", entries));
+  }
+
   @DeleteMapping(value = "/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
-  public Timetable terminateSolving(@PathParam("jobId") String jobId) {
+  public Timetable terminateSolving(@PathVariable("jobId") String jobId) {
     return timetableService.terminateSolving(jobId);
   }
 }
@@ -0,0 +1,18 @@
+package com.patrick.timetableappbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ConstraintTraceSettings {
+  private String jobId;
+  private boolean enabled;
+  private int sampleRate;
+  private int capacity;
+  private long entryCount;
+}
@@ -0,0 +1,25 @@
+package com.patrick.timetableappbackend.dto;
+
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The termination of one job, on top of the one of timefold.solver.termination, a warm start or
+ * the repair solve of a partitioned job, whose spent limit covers its partitions too. A job ends at
+ * whichever limit it reaches first.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class JobTermination {
+  private Duration spentLimit;
+  // without a better best solution
+  private Duration unimprovedSpentLimit;
+  // e.g. 0hard/0medium/*soft
+  private String bestScoreLimit;
+  private Long scoreCalculationCountLimit;
+}
@@ -0,0 +1,17 @@
+package com.patrick.timetableappbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class LessonAssignment {
+  private Long lessonId;
+  // null when unassigned
+  private Long timeslotId;
+  private Long roomId;
+}
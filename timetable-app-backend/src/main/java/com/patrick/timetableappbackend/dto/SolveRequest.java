@@ -0,0 +1,39 @@
+package com.patrick.timetableappbackend.dto;
+
+import com.patrick.timetableappbackend.service.JobPriority;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How a job is asked to solve, see TimetableService#solve. The fields left null get the defaults of
+ * the node.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SolveRequest {
+  // timetable.score-engine by default
+  private ScoreEngine scoreEngine;
+  // the default of PortfolioSolveService by default
+  private LocalSearch localSearch;
+  // whether to race the other local searches beside it, see PortfolioSolveService
+  private boolean portfolio;
+  // null to leave it to the MoveThreadCountPolicy, 0 for none
+  private Integer moveThreadCount;
+  // timetable.partitioned.partition-by by default
+  private PartitionKey partitionKey;
+  // whether to start from the persisted solution, see LessonPinning
+  private boolean warmStart;
+  // null to end like any other job, see TimetableTerminationService
+  private JobTermination termination;
+  // JobPriority.NORMAL by default
+  private JobPriority priority;
+  // whose jobs are scheduled fairly against those of other users
+  private String user;
+}
@@ -0,0 +1,24 @@
+package com.patrick.timetableappbackend.dto;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The lessons whose assignment changed since the previous delta of a job's event stream, or all of
+ * them when {@code full}, as of best solution {@code version}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TimetableDelta {
+  private String jobId;
+  private long version;
+  private boolean full;
+  private HardMediumSoftScore score;
+  private List<LessonAssignment> changes;
+}
@@ -1,13 +1,17 @@
 package com.patrick.timetableappbackend.model;
 
 import ai.timefold.solver.core.api.domain.entity.PlanningEntity;
+import ai.timefold.solver.core.api.domain.entity.PlanningPin;
 import ai.timefold.solver.core.api.domain.lookup.PlanningId;
+import ai.timefold.solver.core.api.domain.valuerange.ValueRangeProvider;
 import ai.timefold.solver.core.api.domain.variable.PlanningVariable;
 import com.fasterxml.jackson.annotation.JsonIdentityReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.patrick.timetableappbackend.utils.LessonStrengthComparator;
 import com.patrick.timetableappbackend.utils.RoomStrengthComparator;
 import com.patrick.timetableappbackend.utils.TimeslotStrengthComparator;
 import jakarta.persistence.*;
+import java.util.List;
 import java.util.Objects;
 import lombok.*;
 import org.hibernate.Hibernate;
@@ -17,11 +21,14 @@ import org.hibernate.Hibernate;
 @Setter
 @ToString
 @Entity
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class Lesson {
 
+  public static final String TIMESLOT_RANGE = "lessonTimeslotRange";
+  public static final String ROOM_RANGE = "lessonRoomRange";
+
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   @Column(name = "id", nullable = false, unique = true, updatable = false)
@@ -46,18 +53,37 @@ public class Lesson {
 
   private int duration;
 
+  // opts out of the value ranges filtered by duration and capacity, see LessonValueRanges
+  @Column(columnDefinition = "boolean default false not null")
+  private boolean unrestrictedValueRange;
+
+  // keeps its timeslot and room when solving, if it has both
+  @Column(columnDefinition = "boolean default false not null")
+  private boolean pinned;
+
   @JsonIdentityReference
   @ManyToOne() // cascade = CascadeType.MERGE
   @JoinColumn(name = "timeslot_id")
-  @PlanningVariable(strengthComparatorClass = TimeslotStrengthComparator.class)
+  @PlanningVariable(
+      valueRangeProviderRefs = TIMESLOT_RANGE,
+      strengthComparatorClass = TimeslotStrengthComparator.class)
   private Timeslot timeslot;
 
   @JsonIdentityReference
   @ManyToOne() // cascade = CascadeType.MERGE
   @JoinColumn(name = "room_id")
-  @PlanningVariable(strengthComparatorClass = RoomStrengthComparator.class)
+  @PlanningVariable(
+      valueRangeProviderRefs = ROOM_RANGE,
+      strengthComparatorClass = RoomStrengthComparator.class)
   private Room room;
 
+  // Set by LessonValueRanges (through PlanningIndexer) when a Timetable problem is assembled.
+  @Transient @JsonIgnore @ToString.Exclude private List<Timeslot> timeslotRange;
+  @Transient @JsonIgnore @ToString.Exclude private List<Room> roomRange;
+
+  // Set by PlanningIndexer from pinned and by a warm start, see LessonPinning.
+  @PlanningPin @Transient @JsonIgnore private boolean pinnedForSolving;
+
   public Lesson(long id, String subject, StudentGroup studentGroup) {
     this.id = id;
     this.subject = subject;
@@ -180,6 +206,18 @@ public class Lesson {
     this.room = room;
   }
 
+  @ValueRangeProvider(id = TIMESLOT_RANGE)
+  @JsonIgnore
+  public List<Timeslot> getTimeslotRange() {
+    return timeslotRange;
+  }
+
+  @ValueRangeProvider(id = ROOM_RANGE)
+  @JsonIgnore
+  public List<Room> getRoomRange() {
+    return roomRange;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -0,0 +1,35 @@
+package com.patrick.timetableappbackend.model;
+
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * The outcome of a portfolio race, see PortfolioSolveService. The winners of the last races are the
+ * default local search of the jobs that do not ask for one.
+ */
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(name = "portfolio_race")
+@NoArgsConstructor
+public class PortfolioRace {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  private String jobId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private LocalSearch winner;
+
+  // the local searches that raced, comma separated
+  private String contestants;
+  private String score;
+  private int lessonCount;
+  private Instant finishedAt;
+}
@@ -2,6 +2,7 @@ package com.patrick.timetableappbackend.model;
 
 import ai.timefold.solver.core.api.domain.lookup.PlanningId;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
 import java.util.Objects;
@@ -16,8 +17,6 @@ import org.hibernate.Hibernate;
 @Setter
 @ToString
 @Entity
-@Builder
-@AllArgsConstructor
 @NoArgsConstructor
 public class Room {
 
@@ -31,6 +30,17 @@ public class Room {
   private Long capacity;
   private String building;
 
+  // dense index assigned by PlanningIndexer, see TimetableIncrementalScoreCalculator
+  @Transient @JsonIgnore @ToString.Exclude private Integer planningIndex;
+
+  @Builder
+  public Room(Long id, String name, Long capacity, String building) {
+    this.id = id;
+    this.name = name;
+    this.capacity = capacity;
+    this.building = building;
+  }
+
   public Room(long id, String name) {
     this.id = id;
     this.name = name;
@@ -0,0 +1,50 @@
+package com.patrick.timetableappbackend.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * A job of the worker pool, see TimetableWorkerPool. The table is created like the others by
+ * spring.jpa.hibernate.ddl-auto, the pool reads and writes it with JDBC.
+ */
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(
+    name = "solve_job",
+    indexes = @Index(name = "solve_job_claim_idx", columnList = "status, priority, created_at"))
+@NoArgsConstructor
+public class SolveJob {
+
+  @Id
+  @Column(name = "job_id", nullable = false, updatable = false)
+  private String jobId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false)
+  private SolveJobStatus status;
+
+  // the ordinal of the JobPriority, the lowest is claimed first
+  private int priority;
+  private String userName;
+  private Instant createdAt;
+
+  // of the worker solving the job, which renews its heartbeat until the job ends
+  private String workerId;
+  private Instant heartbeatAt;
+  private Instant finishedAt;
+  private boolean terminateRequested;
+
+  // the TimetableCheckpoint of the job: its problem until the worker writes a best solution
+  @ToString.Exclude private byte[] checkpoint;
+  // the problem as posted, JSON, of a job queued in the worker pool
+  @ToString.Exclude private byte[] problem;
+  private String score;
+  // counts the best solutions written
+  private long version;
+
+  @Column(length = 2000)
+  private String error;
+}
@@ -0,0 +1,8 @@
+package com.patrick.timetableappbackend.model;
+
+public enum SolveJobStatus {
+  QUEUED,
+  RUNNING,
+  FINISHED,
+  FAILED
+}
@@ -0,0 +1,24 @@
+package com.patrick.timetableappbackend.model;
+
+import java.time.DayOfWeek;
+
+public record StudentDayOfWeek(StudentGroup studentGroup, DayOfWeek dayOfWeek) {
+
+  // pooled on the student group, like TeacherDayOfWeek
+  public static StudentDayOfWeek ofSD(StudentGroup studentGroup, DayOfWeek dayOfWeek) {
+    StudentDayOfWeek key = studentGroup.dayOfWeekKeys[dayOfWeek.ordinal()];
+    if (key == null) {
+      key = new StudentDayOfWeek(studentGroup, dayOfWeek);
+      studentGroup.dayOfWeekKeys[dayOfWeek.ordinal()] = key;
+    }
+    return key;
+  }
+
+  // on the planning index, like TimeslotRoom
+  @Override
+  public int hashCode() {
+    Integer studentGroupIndex = studentGroup.getPlanningIndex();
+    return 31 * (studentGroupIndex != null ? studentGroupIndex : studentGroup.hashCode())
+        + dayOfWeek.ordinal();
+  }
+}
@@ -1,6 +1,8 @@
 package com.patrick.timetableappbackend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import java.time.DayOfWeek;
 import java.util.Objects;
 import lombok.*;
 import org.hibernate.Hibernate;
@@ -9,8 +11,6 @@ import org.hibernate.Hibernate;
 @Setter
 @ToString
 @Entity
-@Builder
-@AllArgsConstructor
 @NoArgsConstructor
 public class StudentGroup {
 
@@ -30,6 +30,38 @@ public class StudentGroup {
 
   private Long numberOfStudents;
 
+  // dense index assigned by PlanningIndexer, see TimetableIncrementalScoreCalculator
+  @Transient @JsonIgnore @ToString.Exclude private Integer planningIndex;
+
+  // Interned by PlanningIndexer, so the university constraints mostly compare series and groups
+  // by identity instead of String.equals
+  @Transient @JsonIgnore @ToString.Exclude private StudentGroupKey seriesKey;
+  @Transient @JsonIgnore @ToString.Exclude private StudentGroupKey groupKey;
+
+  // StudentDayOfWeek keys of this group, by DayOfWeek ordinal
+  @Transient
+  @JsonIgnore
+  @ToString.Exclude
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  final StudentDayOfWeek[] dayOfWeekKeys = new StudentDayOfWeek[DayOfWeek.values().length];
+
+  @Builder
+  public StudentGroup(
+      Long id,
+      Year year,
+      String name,
+      String studentGroup,
+      SemiGroup semiGroup,
+      Long numberOfStudents) {
+    this.id = id;
+    this.year = year;
+    this.name = name;
+    this.studentGroup = studentGroup;
+    this.semiGroup = semiGroup;
+    this.numberOfStudents = numberOfStudents;
+  }
+
   public StudentGroup(Long id, String name, Long numberOfStudents) {
     this.id = id;
     this.name = name;
@@ -44,6 +76,30 @@ public class StudentGroup {
     this.numberOfStudents = numberOfStudents;
   }
 
+  public void setName(String name) {
+    this.name = name;
+    this.seriesKey = null;
+  }
+
+  public void setStudentGroup(String studentGroup) {
+    this.studentGroup = studentGroup;
+    this.groupKey = null;
+  }
+
+  public StudentGroupKey getSeriesKey() {
+    if (seriesKey == null) {
+      seriesKey = new StudentGroupKey(name);
+    }
+    return seriesKey;
+  }
+
+  public StudentGroupKey getGroupKey() {
+    if (groupKey == null) {
+      groupKey = new StudentGroupKey(studentGroup);
+    }
+    return groupKey;
+  }
+
   // should I add a @OneToMany/@ManyToMany relationship with Lessons and make it optional?
 
   @Override
@@ -0,0 +1,43 @@
+package com.patrick.timetableappbackend.model;
+
+import java.util.Objects;
+
+/**
+ * The series or the group of a {@link StudentGroup}, its {@code name} or {@code studentGroup}.
+ *
+ * <p>Equal by value. PlanningIndexer interns one key per distinct value when a problem is
+ * assembled, so the keys the constraints compare are usually the same instance and {@code equals}
+ * returns on the identity check, without comparing the strings.
+ */
+public final class StudentGroupKey {
+
+  private final String value;
+  private final int hash;
+
+  public StudentGroupKey(String value) {
+    this.value = value;
+    this.hash = Objects.hashCode(value);
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    return o instanceof StudentGroupKey that
+        && hash == that.hash
+        && Objects.equals(value, that.value);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return value;
+  }
+}
@@ -1,7 +1,10 @@
 package com.patrick.timetableappbackend.model;
 
+import ai.timefold.solver.core.api.domain.lookup.PlanningId;
 import com.fasterxml.jackson.annotation.JsonIdentityReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import java.time.DayOfWeek;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -12,10 +15,9 @@ import org.hibernate.Hibernate;
 @Setter
 @ToString
 @Entity
-@Builder
-@AllArgsConstructor
 @NoArgsConstructor
 public class Teacher {
+  @PlanningId
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   @Column(name = "id", nullable = false, updatable = false)
@@ -32,7 +34,36 @@ public class Teacher {
   @ToString.Exclude
   private Set<Timeslot> timeslots = new HashSet<>(); // teacher preffered Timeslots
 
-  // todo: replace timeslots with periods (9AM to 4PM)
+  // dense index assigned by PlanningIndexer, see TeacherAvailability
+  @Transient @JsonIgnore @ToString.Exclude private Integer planningIndex;
+
+  // shared by all the teachers of a problem, set by PlanningIndexer
+  @Transient @JsonIgnore @ToString.Exclude private TeacherAvailability availability;
+
+  // TeacherDayOfWeek keys of this teacher, by DayOfWeek ordinal
+  @Transient
+  @JsonIgnore
+  @ToString.Exclude
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  final TeacherDayOfWeek[] dayOfWeekKeys = new TeacherDayOfWeek[DayOfWeek.values().length];
+
+  @Builder
+  public Teacher(Long id, String name, Set<Timeslot> timeslots) {
+    this.id = id;
+    this.name = name;
+    this.timeslots = timeslots;
+  }
+
+  // todo: replace timeslots with periods (9AM to 4PM), see TeacherAvailability.Mode.PERIODS
+
+  /** Whether a lesson of this teacher may be scheduled in the timeslot. */
+  public boolean isAvailable(Timeslot timeslot) {
+    if (availability != null && planningIndex != null && timeslot.getPlanningIndex() != null) {
+      return availability.isAvailable(planningIndex, timeslot.getPlanningIndex());
+    }
+    return timeslots == null || timeslots.isEmpty() || timeslots.contains(timeslot);
+  }
 
   // should I add a @OneToMany/@ManyToMany relationship with Lessons and make it optional?
 
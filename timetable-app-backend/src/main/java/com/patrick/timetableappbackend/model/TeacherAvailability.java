@@ -0,0 +1,93 @@
+package com.patrick.timetableappbackend.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dense teacher × timeslot bitset, indexed by the planning indexes of both, telling in which
+ * timeslots a teacher may be scheduled. It is built once per problem, so checking a lesson is a
+ * shift and a mask instead of a lookup in the teacher's preferred timeslots.
+ */
+public final class TeacherAvailability {
+
+  public enum Mode {
+    /** A teacher is available only in the preferred timeslots themselves. */
+    TIMESLOTS,
+    /**
+     * Every preferred timeslot is a period (e.g. 9AM to 4PM) and the teacher is available in each
+     * timeslot that lies within one of them.
+     */
+    PERIODS
+  }
+
+  private final int wordsPerTeacher;
+  private final long[] words;
+
+  private TeacherAvailability(int teacherCount, int timeslotCount) {
+    this.wordsPerTeacher = (timeslotCount + Long.SIZE - 1) / Long.SIZE;
+    this.words = new long[teacherCount * wordsPerTeacher];
+  }
+
+  /**
+   * @param teachers every teacher and timeslot must have a planning index, see PlanningIndexer
+   * @param timeslots the timeslots lessons can be assigned to
+   */
+  public static TeacherAvailability of(
+      Collection<Teacher> teachers, List<Timeslot> timeslots, Mode mode) {
+    int teacherCount = 1 + teachers.stream().mapToInt(Teacher::getPlanningIndex).max().orElse(-1);
+    int timeslotCount =
+        1 + timeslots.stream().mapToInt(Timeslot::getPlanningIndex).max().orElse(-1);
+    TeacherAvailability availability = new TeacherAvailability(teacherCount, timeslotCount);
+    for (Teacher teacher : teachers) {
+      availability.fill(teacher, timeslots, mode);
+    }
+    return availability;
+  }
+
+  /**
+   * Refills the row of a teacher whose preferred timeslots changed while solving. Only to be called
+   * from a ProblemChange, when no move is reading it.
+   */
+  public void update(Teacher teacher, List<Timeslot> timeslots, Mode mode) {
+    int from = teacher.getPlanningIndex() * wordsPerTeacher;
+    Arrays.fill(words, from, from + wordsPerTeacher, 0L);
+    fill(teacher, timeslots, mode);
+  }
+
+  public boolean isAvailable(int teacherIndex, int timeslotIndex) {
+    int wordIndex = teacherIndex * wordsPerTeacher + (timeslotIndex >>> 6);
+    return (words[wordIndex] & (1L << timeslotIndex)) != 0;
+  }
+
+  private void fill(Teacher teacher, List<Timeslot> timeslots, Mode mode) {
+    Set<Timeslot> preferredTimeslots = teacher.getTimeslots();
+    for (Timeslot timeslot : timeslots) {
+      boolean available =
+          preferredTimeslots == null
+              || preferredTimeslots.isEmpty()
+              || switch (mode) {
+                case TIMESLOTS -> preferredTimeslots.contains(timeslot);
+                case PERIODS -> isWithinAny(timeslot, preferredTimeslots);
+              };
+      if (available) {
+        set(teacher.getPlanningIndex(), timeslot.getPlanningIndex());
+      }
+    }
+  }
+
+  private void set(int teacherIndex, int timeslotIndex) {
+    words[teacherIndex * wordsPerTeacher + (timeslotIndex >>> 6)] |= 1L << timeslotIndex;
+  }
+
+  private static boolean isWithinAny(Timeslot timeslot, Set<Timeslot> periods) {
+    for (Timeslot period : periods) {
+      if (timeslot.getStartMinuteOfWeek() >= period.getStartMinuteOfWeek()
+          && timeslot.getEndMinuteOfWeek() <= period.getEndMinuteOfWeek()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,24 @@
+package com.patrick.timetableappbackend.model;
+
+import java.time.DayOfWeek;
+
+public record TeacherDayOfWeek(Teacher teacher, DayOfWeek dayOfWeek) {
+
+  // pooled on the teacher, the constraints ask for the same key on every groupBy update
+  public static TeacherDayOfWeek ofTD(Teacher teacher, DayOfWeek dayOfWeek) {
+    TeacherDayOfWeek key = teacher.dayOfWeekKeys[dayOfWeek.ordinal()];
+    if (key == null) {
+      // racing move threads may both create it, the keys are equal anyway
+      key = new TeacherDayOfWeek(teacher, dayOfWeek);
+      teacher.dayOfWeekKeys[dayOfWeek.ordinal()] = key;
+    }
+    return key;
+  }
+
+  // on the planning index, like TimeslotRoom
+  @Override
+  public int hashCode() {
+    Integer teacherIndex = teacher.getPlanningIndex();
+    return 31 * (teacherIndex != null ? teacherIndex : teacher.hashCode()) + dayOfWeek.ordinal();
+  }
+}
@@ -2,6 +2,7 @@ package com.patrick.timetableappbackend.model;
 
 import ai.timefold.solver.core.api.domain.lookup.PlanningId;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
 import java.time.DayOfWeek;
@@ -18,11 +19,11 @@ import org.hibernate.Hibernate;
 @Setter
 @ToString
 @Entity
-@Builder
-@AllArgsConstructor
 @NoArgsConstructor
 public class Timeslot {
 
+  private static final int MINUTES_PER_DAY = 24 * 60;
+
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   @Column(name = "id", nullable = false, updatable = false)
@@ -33,10 +34,80 @@ public class Timeslot {
   private LocalTime startTime;
   private LocalTime endTime;
 
+  // Precomputed time axis, so the constraints compare ints instead of allocating Durations.
+  // Derived from dayOfWeek/startTime/endTime and kept in sync by the setters and @PostLoad.
+  @Transient
+  @JsonIgnore
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private int dayIndex;
+
+  @Transient
+  @JsonIgnore
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private int startMinuteOfWeek;
+
+  @Transient
+  @JsonIgnore
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private int endMinuteOfWeek;
+
+  @Transient
+  @JsonIgnore
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private int durationMinutes;
+
+  // dense index assigned by PlanningIndexer, see TeacherAvailability
+  @Transient @JsonIgnore @ToString.Exclude private Integer planningIndex;
+
+  // TimeslotRoom keys of this timeslot, by room planning index
+  @Transient
+  @JsonIgnore
+  @ToString.Exclude
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  TimeslotRoom[] roomKeys = new TimeslotRoom[0];
+
+  @Builder
+  public Timeslot(Long id, DayOfWeek dayOfWeek, LocalTime startTime, LocalTime endTime) {
+    this.id = id;
+    this.dayOfWeek = dayOfWeek;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    computeTimeAxis();
+  }
+
   public Timeslot(long id, DayOfWeek dayOfWeek, LocalTime startTime) {
     this(id, dayOfWeek, startTime, startTime.plusMinutes(120));
   }
 
+  public void setDayOfWeek(DayOfWeek dayOfWeek) {
+    this.dayOfWeek = dayOfWeek;
+    computeTimeAxis();
+  }
+
+  public void setStartTime(LocalTime startTime) {
+    this.startTime = startTime;
+    computeTimeAxis();
+  }
+
+  public void setEndTime(LocalTime endTime) {
+    this.endTime = endTime;
+    computeTimeAxis();
+  }
+
+  @PostLoad
+  void computeTimeAxis() {
+    dayIndex = dayOfWeek == null ? 0 : dayOfWeek.ordinal();
+    int dayOffset = dayIndex * MINUTES_PER_DAY;
+    startMinuteOfWeek = startTime == null ? dayOffset : dayOffset + startTime.toSecondOfDay() / 60;
+    endMinuteOfWeek = endTime == null ? dayOffset : dayOffset + endTime.toSecondOfDay() / 60;
+    durationMinutes = endMinuteOfWeek - startMinuteOfWeek;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -0,0 +1,35 @@
+package com.patrick.timetableappbackend.model;
+
+import java.util.Arrays;
+
+public record TimeslotRoom(Timeslot timeslot, Room room) {
+
+  // pooled on the timeslot by the planning index of the room; rooms without one aren't pooled
+  public static TimeslotRoom ofTR(Timeslot timeslot, Room room) {
+    Integer roomIndex = room.getPlanningIndex();
+    if (roomIndex == null) {
+      return new TimeslotRoom(timeslot, room);
+    }
+    TimeslotRoom[] keys = timeslot.roomKeys;
+    if (roomIndex >= keys.length) {
+      keys = Arrays.copyOf(keys, Math.max(roomIndex + 1, keys.length * 2));
+      timeslot.roomKeys = keys;
+    }
+    TimeslotRoom key = keys[roomIndex];
+    // the index may belong to a room of another problem
+    if (key == null || key.room() != room) {
+      key = new TimeslotRoom(timeslot, room);
+      keys[roomIndex] = key;
+    }
+    return key;
+  }
+
+  // the entities hash by class, see Timeslot.hashCode(), so the key hashes on the planning indexes
+  @Override
+  public int hashCode() {
+    Integer timeslotIndex = timeslot.getPlanningIndex();
+    Integer roomIndex = room.getPlanningIndex();
+    return 31 * (timeslotIndex != null ? timeslotIndex : timeslot.hashCode())
+        + (roomIndex != null ? roomIndex : room.hashCode());
+  }
+}
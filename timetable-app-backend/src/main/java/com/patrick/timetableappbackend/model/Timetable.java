@@ -5,11 +5,13 @@ import ai.timefold.solver.core.api.domain.solution.PlanningEntityCollectionPrope
 import ai.timefold.solver.core.api.domain.solution.PlanningScore;
 import ai.timefold.solver.core.api.domain.solution.PlanningSolution;
 import ai.timefold.solver.core.api.domain.solution.ProblemFactCollectionProperty;
-import ai.timefold.solver.core.api.domain.valuerange.ValueRangeProvider;
 import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
 import ai.timefold.solver.core.api.solver.SolverStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.patrick.timetableappbackend.solver.TimetableConstraintConfiguration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -22,8 +24,9 @@ public class Timetable {
 
   //    private String name;
 
-  @ProblemFactCollectionProperty @ValueRangeProvider private List<Timeslot> timeslots;
-  @ProblemFactCollectionProperty @ValueRangeProvider private List<Room> rooms;
+  // the value ranges are per lesson, see Lesson.getTimeslotRange() and getRoomRange()
+  @ProblemFactCollectionProperty private List<Timeslot> timeslots;
+  @ProblemFactCollectionProperty private List<Room> rooms;
   @PlanningEntityCollectionProperty private List<Lesson> lessons;
 
   @ConstraintConfigurationProvider
@@ -34,6 +37,12 @@ public class Timetable {
   // Ignored by Timefold, used by the UI to display solve or stop solving button
   private SolverStatus solverStatus;
 
+  // Ignored by Timefold as well, the move threads the job solves with (0 for none)
+  private Integer moveThreadCount;
+
+  // Ignored by Timefold as well, 1 for the queued job that starts next, null once it started
+  private Integer queuePosition;
+
   private Long duration;
 
   public Timetable(HardMediumSoftScore score) {
@@ -75,4 +84,23 @@ public class Timetable {
     this.timetableConstraintConfiguration = timetableConstraintConfiguration;
     this.duration = duration;
   }
+
+  /**
+   * The teachers of the lessons, the first one per id, for a problem change to look up and change a
+   * teacher through the solver, see RemoveTeacherTimeslotChange. No constraint reads them as facts.
+   */
+  @JsonIgnore
+  @ProblemFactCollectionProperty
+  public List<Teacher> getTeachers() {
+    Map<Long, Teacher> teachers = new HashMap<>();
+    if (lessons != null) {
+      for (Lesson lesson : lessons) {
+        Teacher teacher = lesson.getTeacher();
+        if (teacher != null && teacher.getId() != null) {
+          teachers.putIfAbsent(teacher.getId(), teacher);
+        }
+      }
+    }
+    return List.copyOf(teachers.values());
+  }
 }
@@ -0,0 +1,12 @@
+package com.patrick.timetableappbackend.repository;
+
+import com.patrick.timetableappbackend.model.PortfolioRace;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PortfolioRaceRepo extends JpaRepository<PortfolioRace, Long> {
+
+  List<PortfolioRace> findAllByLessonCountBetweenOrderByFinishedAtDesc(
+      int minLessonCount, int maxLessonCount, Pageable pageable);
+}
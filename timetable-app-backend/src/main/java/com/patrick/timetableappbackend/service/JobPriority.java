@@ -0,0 +1,10 @@
+package com.patrick.timetableappbackend.service;
+
+/** In which order the queued jobs start, see TimetableJobScheduler. */
+public enum JobPriority {
+  /** E.g. an interactive re-plan someone is waiting for. */
+  HIGH,
+  NORMAL,
+  /** E.g. a full overnight solve. */
+  LOW
+}
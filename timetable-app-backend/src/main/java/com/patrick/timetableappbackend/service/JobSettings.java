@@ -0,0 +1,27 @@
+package com.patrick.timetableappbackend.service;
+
+import com.patrick.timetableappbackend.dto.JobTermination;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+
+/**
+ * How a job was asked to solve, resolved against the defaults, see TimetableService#solve. Kept
+ * with the checkpoints of the job to resume it the same way.
+ *
+ * @param portfolio whether to race the other local searches against the one of the job, see
+ *     PortfolioSolveService
+ * @param moveThreadCount null if left to the MoveThreadCountPolicy
+ * @param duration of the problem, in minutes
+ */
+record JobSettings(
+    ScoreEngine scoreEngine,
+    LocalSearch localSearch,
+    boolean portfolio,
+    Integer moveThreadCount,
+    PartitionKey partitionKey,
+    boolean warmStart,
+    Long duration,
+    JobTermination termination,
+    JobPriority priority,
+    String user) {}
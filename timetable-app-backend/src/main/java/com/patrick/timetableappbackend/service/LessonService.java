@@ -60,6 +60,8 @@ public class LessonService {
               .lessonType(updatedLesson.getLessonType())
               .year(updatedLesson.getYear())
               .duration(updatedLesson.getDuration())
+              .unrestrictedValueRange(updatedLesson.isUnrestrictedValueRange())
+              .pinned(updatedLesson.isPinned())
               .build();
       return lessonRepo.save(updatedLesson);
     } else {
@@ -0,0 +1,239 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.api.solver.Solver;
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import com.patrick.timetableappbackend.config.MoveThreadCountPolicy;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import com.patrick.timetableappbackend.utils.TimetablePartitioner;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * The first part of a partitioned solve: solves the partitions of a timetable in parallel and
+ * merges them. TimetableService then repairs the merged timetable for
+ * timetable.partitioned.repair-spent-limit, as the partitions clash on the teachers they share.
+ *
+ * <p>A job solves up to timetable.partitioned.thread-count partitions at once: one on the core of
+ * the job itself, the others on cores the {@link MoveThreadCountPolicy} finds free, reserved until
+ * its partitions are merged. timetable.partitioned.partition-spent-limit is the time of all the
+ * partitions together, had they a thread to themselves: a partition gets a share of it in
+ * proportion to its lessons, times the threads of the job, up to the whole of it. The spent limit
+ * of a job caps the partitions as well as its repair solve.
+ */
+@Service
+@Slf4j
+public class PartitionedSolveService implements DisposableBean {
+
+  private final Map<ScoreEngine, SolverFactory<Timetable>> solverFactories =
+      new EnumMap<>(ScoreEngine.class);
+  private final MoveThreadCountPolicy moveThreadCountPolicy;
+  private final int threadCount;
+  private final ExecutorService executorService = Executors.newCachedThreadPool();
+  private final Duration partitionSpentLimit;
+  private final Duration repairSpentLimit;
+
+  private final ConcurrentMap<String, PartitionedJob> jobIdToPartitionedJob =
+      new ConcurrentHashMap<>();
+
+  public PartitionedSolveService(
+      SolverConfig solverConfig,
+      MoveThreadCountPolicy moveThreadCountPolicy,
+      @Value("${timetable.partitioned.thread-count:0}") int threadCount,
+      @Value("${timetable.partitioned.partition-spent-limit:30m}") Duration partitionSpentLimit,
+      @Value("${timetable.partitioned.repair-spent-limit:10m}") Duration repairSpentLimit) {
+    for (ScoreEngine scoreEngine : ScoreEngine.values()) {
+      solverFactories.put(
+          scoreEngine, SolverFactory.create(scoreEngine.configure(solverConfig, false)));
+    }
+    this.moveThreadCountPolicy = moveThreadCountPolicy;
+    // 0 for a thread per core, the partitions are solved single-threaded
+    this.threadCount = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+    this.partitionSpentLimit = partitionSpentLimit;
+    this.repairSpentLimit = repairSpentLimit;
+  }
+
+  /**
+   * Solves the partitions of a problem in the background, until all are solved or {@link
+   * #terminateEarly}. The job counts as solving its partitions until it is {@link #remove
+   * removed}, once its repair solve was submitted.
+   *
+   * @param problem indexed, its lessons get the timeslots and rooms of the partition solutions
+   * @param maxSpentLimit what is left of the spent limit of the job, null for none: the partitions
+   *     end by then, and those that have not started stay unassigned for the repair solve
+   * @return the problem, once merged
+   */
+  public CompletableFuture<Timetable> solvePartitions(
+      String jobId,
+      Timetable problem,
+      PartitionKey partitionKey,
+      ScoreEngine scoreEngine,
+      Duration maxSpentLimit) {
+    List<Timetable> partitions = new ArrayList<>(TimetablePartitioner.split(problem, partitionKey));
+    // the largest first, so that the small ones fill up the threads at the end
+    partitions.sort(
+        Comparator.comparingInt((Timetable partition) -> partition.getLessons().size()).reversed());
+    int reservedCores =
+        moveThreadCountPolicy.reserveCores(Math.min(threadCount, partitions.size()) - 1);
+    int threads = reservedCores + 1;
+    log.info(
+        "Solving jobId ({}) in {} partitions by {} on {} threads.",
+        jobId,
+        partitions.size(),
+        partitionKey,
+        threads);
+    PartitionedJob partitionedJob = new PartitionedJob();
+    long deadlineMillis =
+        maxSpentLimit == null
+            ? Long.MAX_VALUE
+            : System.currentTimeMillis() + maxSpentLimit.toMillis();
+    jobIdToPartitionedJob.put(jobId, partitionedJob);
+    Queue<Timetable> unsolved = new ConcurrentLinkedQueue<>(partitions);
+    List<Timetable> partitionSolutions = Collections.synchronizedList(new ArrayList<>());
+    List<CompletableFuture<Void>> workers = new ArrayList<>(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        workers.add(
+            CompletableFuture.runAsync(
+                () -> {
+                  for (Timetable partition = unsolved.poll();
+                      partition != null;
+                      partition = unsolved.poll()) {
+                    partitionSolutions.add(
+                        solve(
+                            partitionedJob,
+                            partition,
+                            problem,
+                            scoreEngine,
+                            threads,
+                            deadlineMillis));
+                  }
+                },
+                executorService));
+      }
+    } catch (RejectedExecutionException e) {
+      // shutting down, the workers that did start end by the terminated executor
+      partitionedJob.terminateEarly();
+    }
+    return CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new))
+        .handle(
+            (done, exception) -> {
+              moveThreadCountPolicy.release(reservedCores);
+              if (exception != null) {
+                jobIdToPartitionedJob.remove(jobId);
+                throw new IllegalStateException("Failed solving a partition.", exception);
+              }
+              TimetablePartitioner.merge(problem, partitionSolutions);
+              return problem;
+            });
+  }
+
+  private Timetable solve(
+      PartitionedJob partitionedJob,
+      Timetable partition,
+      Timetable problem,
+      ScoreEngine scoreEngine,
+      int threads,
+      long deadlineMillis) {
+    long leftMillis = deadlineMillis - System.currentTimeMillis();
+    if (leftMillis <= 0) {
+      // past the spent limit of the job, the repair solve places its lessons
+      return partition;
+    }
+    Duration spentLimit =
+        Duration.ofMillis(
+            Math.min(
+                spentLimit(partition.getLessons().size(), problem.getLessons().size(), threads)
+                    .toMillis(),
+                leftMillis));
+    Solver<Timetable> solver =
+        solverFactories
+            .get(scoreEngine)
+            .buildSolver(
+                new SolverConfigOverride<Timetable>()
+                    .withTerminationConfig(new TerminationConfig().withSpentLimit(spentLimit)));
+    // a partition that has not started when the job is terminated stays unassigned
+    return partitionedJob.add(solver) ? solver.solve(partition) : partition;
+  }
+
+  /** Forgets a job once its repair solve was submitted, or failed to. */
+  public void remove(String jobId) {
+    jobIdToPartitionedJob.remove(jobId);
+  }
+
+  public boolean isSolvingPartitions(String jobId) {
+    return jobIdToPartitionedJob.containsKey(jobId);
+  }
+
+  private Duration spentLimit(int partitionLessonCount, int lessonCount, int threads) {
+    long millis = partitionSpentLimit.toMillis() * threads * partitionLessonCount / lessonCount;
+    return Duration.ofMillis(Math.min(millis, partitionSpentLimit.toMillis()));
+  }
+
+  /** The termination of the repair solve of the merged partitions. */
+  public TerminationConfig getRepairTerminationConfig() {
+    return new TerminationConfig().withSpentLimit(repairSpentLimit);
+  }
+
+  /**
+   * Terminates the partitions of a job.
+   *
+   * @return whether the job was still solving its partitions
+   */
+  public boolean terminateEarly(String jobId) {
+    PartitionedJob partitionedJob = jobIdToPartitionedJob.get(jobId);
+    if (partitionedJob == null) {
+      return false;
+    }
+    partitionedJob.terminateEarly();
+    return true;
+  }
+
+  @Override
+  public void destroy() {
+    executorService.shutdownNow();
+  }
+
+  private static final class PartitionedJob {
+
+    private final List<Solver<Timetable>> solvers = new ArrayList<>();
+    private boolean terminated;
+
+    /**
+     * @return false if the job was terminated
+     */
+    synchronized boolean add(Solver<Timetable> solver) {
+      if (terminated) {
+        return false;
+      }
+      solvers.add(solver);
+      return true;
+    }
+
+    synchronized void terminateEarly() {
+      terminated = true;
+      solvers.forEach(Solver::terminateEarly);
+    }
+  }
+}
@@ -0,0 +1,416 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import ai.timefold.solver.core.api.solver.Solver;
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import com.patrick.timetableappbackend.config.MoveThreadCountPolicy;
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import com.patrick.timetableappbackend.model.PortfolioRace;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.repository.PortfolioRaceRepo;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+/**
+ * Races the local searches of timetable.portfolio.local-searches against a job solving with POST
+ * /api/v1/timetables?portfolio=true, on the cores the {@link MoveThreadCountPolicy} finds free.
+ * Each other than the local search of the job gets a solver of its own, started from the first
+ * initialized solution of the job, while the job races with its live best score.
+ *
+ * <p>Every timetable.portfolio.round-interval the job adopts the best solution of the racers if it
+ * beats its own, see AdoptAssignmentChange, and the worse half of the contestants is out. The last
+ * one left wins, or the leader when the job ends first, and is recorded in the portfolio_race
+ * table, unless the race ended before its first round or by a problem change. With
+ * timetable.portfolio.default-to-winner the jobs that do not ask for a local search get the one
+ * that won most of the last timetable.portfolio.history races of a similar size. A winning racer
+ * keeps racing until the job ends.
+ */
+@Service
+@Slf4j
+public class PortfolioSolveService implements DisposableBean {
+
+  private final SolverConfig solverConfig;
+  private final PortfolioRaceRepo raceRepo;
+  private final MoveThreadCountPolicy moveThreadCountPolicy;
+  private final LocalSearch defaultLocalSearch;
+  private final List<LocalSearch> localSearches;
+  private final Duration roundInterval;
+  private final boolean defaultToWinner;
+  private final int history;
+
+  private final Map<ScoreEngine, Map<LocalSearch, SolverFactory<Timetable>>> solverFactories =
+      new ConcurrentHashMap<>();
+  private final ExecutorService racerExecutor = Executors.newCachedThreadPool();
+  private final ScheduledExecutorService roundExecutor =
+      Executors.newSingleThreadScheduledExecutor();
+  private final ConcurrentMap<String, Race> jobIdToRace = new ConcurrentHashMap<>();
+
+  public PortfolioSolveService(
+      SolverConfig solverConfig,
+      PortfolioRaceRepo raceRepo,
+      MoveThreadCountPolicy moveThreadCountPolicy,
+      @Value("${timetable.local-search:CONFIGURED}") LocalSearch defaultLocalSearch,
+      @Value(
+              "${timetable.portfolio.local-searches:LATE_ACCEPTANCE,TABU_SEARCH,SIMULATED_ANNEALING}")
+          List<LocalSearch> localSearches,
+      @Value("${timetable.portfolio.round-interval:2m}") Duration roundInterval,
+      @Value("${timetable.portfolio.default-to-winner:false}") boolean defaultToWinner,
+      @Value("${timetable.portfolio.history:10}") int history) {
+    this.solverConfig = solverConfig;
+    this.raceRepo = raceRepo;
+    this.moveThreadCountPolicy = moveThreadCountPolicy;
+    this.defaultLocalSearch = defaultLocalSearch;
+    this.localSearches = localSearches;
+    this.roundInterval = roundInterval;
+    this.defaultToWinner = defaultToWinner;
+    this.history = history;
+  }
+
+  /**
+   * The local search of a job that does not ask for one: the one that won most of the last races
+   * of half to twice its lessons, the latest winner among those that won as many, or else the one
+   * of timetable.local-search.
+   */
+  public LocalSearch getDefaultLocalSearch(int lessonCount) {
+    if (!defaultToWinner) {
+      return defaultLocalSearch;
+    }
+    List<PortfolioRace> races =
+        raceRepo.findAllByLessonCountBetweenOrderByFinishedAtDesc(
+            lessonCount / 2, lessonCount * 2, PageRequest.ofSize(history));
+    Map<LocalSearch, Long> winCounts =
+        races.stream()
+            .collect(
+                Collectors.groupingBy(
+                    PortfolioRace::getWinner,
+                    () -> new EnumMap<>(LocalSearch.class),
+                    Collectors.counting()));
+    long mostWins = winCounts.values().stream().mapToLong(Long::longValue).max().orElse(0);
+    return races.stream()
+        .map(PortfolioRace::getWinner)
+        .filter(winner -> winCounts.get(winner) == mostWins)
+        .findFirst()
+        .orElse(defaultLocalSearch);
+  }
+
+  /**
+   * Starts racing the other local searches against a job, unless no core is free.
+   *
+   * @param initialized the first initialized solution of the job, it is not changed
+   * @param localSearch of the job itself
+   * @param configOverride of the job, the racers end by it at the latest
+   * @param bestScore of the job, as it changes
+   * @param adopt makes the job adopt an assignment, see AdoptAssignmentChange
+   */
+  public void startRace(
+      String jobId,
+      Timetable initialized,
+      ScoreEngine scoreEngine,
+      LocalSearch localSearch,
+      SolverConfigOverride<Timetable> configOverride,
+      Supplier<HardMediumSoftScore> bestScore,
+      Consumer<List<LessonAssignment>> adopt) {
+    List<LocalSearch> contestants =
+        localSearches.stream().distinct().filter(contestant -> contestant != localSearch).toList();
+    int cores = contestants.isEmpty() ? 0 : moveThreadCountPolicy.reserveCores(contestants.size());
+    if (cores < 1) {
+      moveThreadCountPolicy.release(cores);
+      log.info("Not racing the local searches of jobId ({}), no cores are free.", jobId);
+      return;
+    }
+    Race race = new Race(jobId, localSearch, initialized.getLessons().size(), bestScore, adopt);
+    TimetableSnapshot snapshot = TimetableSnapshot.of(initialized);
+    boolean started = false;
+    try {
+      for (LocalSearch contestant : contestants.subList(0, cores)) {
+        Solver<Timetable> solver =
+            solverFactories
+                .computeIfAbsent(scoreEngine, scoreEngine_ -> new ConcurrentHashMap<>())
+                .computeIfAbsent(
+                    contestant,
+                    contestant_ ->
+                        SolverFactory.create(
+                            scoreEngine.configure(contestant_.configure(solverConfig), false)))
+                .buildSolver(configOverride);
+        // copies of the lessons, the racers solve the same problem side by side
+        Timetable problem =
+            snapshot.rehydrate(
+                initialized.getLessons(),
+                initialized.getTimeslots(),
+                initialized.getRooms(),
+                initialized.getTimetableConstraintConfiguration());
+        race.add(new Racer(contestant, solver, problem));
+      }
+      jobIdToRace.put(jobId, race);
+      race.start();
+      started = true;
+    } finally {
+      if (!started) {
+        // the racers hold the cores once they start
+        moveThreadCountPolicy.release(cores);
+      }
+    }
+    log.info("Racing {} for jobId ({}).", race.getContestantNames(), jobId);
+  }
+
+  /**
+   * Stops the race of a job as it ended, and records its leader if it had no winner yet and ran at
+   * least one round.
+   */
+  public void endRace(String jobId) {
+    Race race = jobIdToRace.remove(jobId);
+    if (race != null) {
+      race.end(false);
+    }
+  }
+
+  /** Stops the race of a job without recording it, as the job failed or its problem changed. */
+  public void abortRace(String jobId) {
+    Race race = jobIdToRace.remove(jobId);
+    if (race != null) {
+      race.end(true);
+    }
+  }
+
+  private void record(Race race, Standing winner) {
+    PortfolioRace portfolioRace = new PortfolioRace();
+    portfolioRace.setJobId(race.jobId);
+    portfolioRace.setWinner(winner.localSearch());
+    portfolioRace.setContestants(race.getContestantNames());
+    portfolioRace.setScore(winner.score() == null ? null : winner.score().toString());
+    portfolioRace.setLessonCount(race.lessonCount);
+    portfolioRace.setFinishedAt(Instant.now());
+    try {
+      raceRepo.save(portfolioRace);
+    } catch (RuntimeException e) {
+      log.error("Failed recording the portfolio race of jobId ({}).", race.jobId, e);
+    }
+    log.info(
+        "{} won the race of jobId ({}) with {}.", winner.localSearch(), race.jobId, winner.score());
+  }
+
+  @Override
+  public void destroy() {
+    roundExecutor.shutdownNow();
+    racerExecutor.shutdownNow();
+  }
+
+  private final class Race {
+
+    private final String jobId;
+    private final LocalSearch jobLocalSearch;
+    private final int lessonCount;
+    private final Supplier<HardMediumSoftScore> bestScore;
+    private final Consumer<List<LessonAssignment>> adopt;
+    // guarded by this
+    private final List<Racer> racers = new ArrayList<>();
+    private HardMediumSoftScore adoptedScore;
+    private Standing winner;
+    // the job is out of the race, it cannot be stopped
+    private boolean jobOut;
+    private int roundCount;
+    private boolean ended;
+    private ScheduledFuture<?> rounds;
+
+    private Race(
+        String jobId,
+        LocalSearch jobLocalSearch,
+        int lessonCount,
+        Supplier<HardMediumSoftScore> bestScore,
+        Consumer<List<LessonAssignment>> adopt) {
+      this.jobId = jobId;
+      this.jobLocalSearch = jobLocalSearch;
+      this.lessonCount = lessonCount;
+      this.bestScore = bestScore;
+      this.adopt = adopt;
+    }
+
+    synchronized void add(Racer racer) {
+      racers.add(racer);
+    }
+
+    synchronized String getContestantNames() {
+      return Stream.concat(
+              Stream.of(jobLocalSearch), racers.stream().map(racer -> racer.localSearch))
+          .map(LocalSearch::name)
+          .collect(Collectors.joining(","));
+    }
+
+    synchronized void start() {
+      if (ended) {
+        return;
+      }
+      for (Racer racer : racers) {
+        racerExecutor.execute(() -> racer.solve(jobId));
+      }
+      rounds =
+          roundExecutor.scheduleWithFixedDelay(
+              this::round,
+              roundInterval.toMillis(),
+              roundInterval.toMillis(),
+              TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void round() {
+      // an exception would cancel the next rounds
+      try {
+        if (ended) {
+          return;
+        }
+        roundCount++;
+        HardMediumSoftScore jobScore = bestScore.get();
+        adoptBest(jobScore);
+        if (winner != null) {
+          return;
+        }
+        List<Standing> ranked = ranked(jobScore);
+        // the worse half is out, the leaders keep racing
+        for (Standing standing :
+            ranked.subList(ranked.size() - Math.max(ranked.size() / 2, 1), ranked.size())) {
+          if (standing.racer() == null) {
+            jobOut = true;
+          } else {
+            stop(standing.racer());
+          }
+        }
+        List<Standing> left = ranked(jobScore);
+        if (left.size() == 1) {
+          winner = left.get(0);
+          record(this, winner);
+          if (winner.racer() == null) {
+            // the job itself goes on alone
+            endRace(jobId);
+          }
+        }
+      } catch (RuntimeException e) {
+        log.error("Failed a round of the portfolio race of jobId ({}).", jobId, e);
+      }
+    }
+
+    private void adoptBest(HardMediumSoftScore jobScore) {
+      Racer best =
+          ranked(jobScore).stream()
+              .map(Standing::racer)
+              .filter(racer -> racer != null && racer.bestSolution != null)
+              .findFirst()
+              .orElse(null);
+      if (best == null) {
+        return;
+      }
+      HardMediumSoftScore score = best.bestScore;
+      if ((jobScore == null || score.compareTo(jobScore) > 0)
+          && (adoptedScore == null || score.compareTo(adoptedScore) > 0)) {
+        adoptedScore = score;
+        adopt.accept(TimetableSnapshot.of(best.bestSolution).assignments());
+        log.debug("JobId ({}) adopted the {} solution of {}.", jobId, score, best.localSearch);
+      }
+    }
+
+    // the job unless it is out and the racers that did not stop, the best score first and the job
+    // first among those with the same score
+    private List<Standing> ranked(HardMediumSoftScore jobScore) {
+      Stream<Standing> job =
+          jobOut ? Stream.empty() : Stream.of(new Standing(jobLocalSearch, jobScore, null));
+      return Stream.concat(
+              job,
+              racers.stream()
+                  .filter(racer -> !racer.stopped)
+                  .map(racer -> new Standing(racer.localSearch, racer.bestScore, racer)))
+          .sorted(
+              Comparator.comparing(
+                  Standing::score,
+                  Comparator.nullsLast(Comparator.<HardMediumSoftScore>reverseOrder())))
+          .toList();
+    }
+
+    private void stop(Racer racer) {
+      racer.stopped = true;
+      racer.solver.terminateEarly();
+      moveThreadCountPolicy.release(1);
+    }
+
+    synchronized void end(boolean aborted) {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      if (rounds != null) {
+        rounds.cancel(false);
+      }
+      // a race cut short before its first round or by a problem change tells nothing
+      if (winner == null && roundCount > 0 && !aborted) {
+        // the leader wins
+        winner = ranked(bestScore.get()).get(0);
+        record(this, winner);
+      }
+      racers.stream().filter(racer -> !racer.stopped).forEach(this::stop);
+    }
+  }
+
+  /** A contestant and its best score, the job itself without a racer. */
+  private record Standing(LocalSearch localSearch, HardMediumSoftScore score, Racer racer) {}
+
+  private static final class Racer {
+
+    private final LocalSearch localSearch;
+    private final Solver<Timetable> solver;
+    private final Timetable problem;
+    private volatile Timetable bestSolution;
+    private volatile HardMediumSoftScore bestScore;
+    private volatile boolean stopped;
+
+    private Racer(LocalSearch localSearch, Solver<Timetable> solver, Timetable problem) {
+      this.localSearch = localSearch;
+      this.solver = solver;
+      this.problem = problem;
+      // of the first initialized solution, until the racer improves on it
+      this.bestScore = problem.getScore();
+    }
+
+    private void solve(String jobId) {
+      solver.addEventListener(
+          event -> {
+            if (stopped) {
+              // stopped as it started solving, which forgets an earlier terminateEarly
+              solver.terminateEarly();
+              return;
+            }
+            bestSolution = event.getNewBestSolution();
+            bestScore = bestSolution.getScore();
+          });
+      if (stopped) {
+        return;
+      }
+      try {
+        solver.solve(problem);
+      } catch (RuntimeException e) {
+        log.error("Failed racing {} for jobId ({}).", localSearch, jobId, e);
+      }
+    }
+  }
+}
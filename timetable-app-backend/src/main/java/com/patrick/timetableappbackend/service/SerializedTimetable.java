@@ -0,0 +1,64 @@
+package com.patrick.timetableappbackend.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The JSON of the timetable of a job, plain and gzipped, as of the best solution and solver status
+ * in its weak ETag. Cached on the job until either changes, so neither is encoded per request.
+ */
+public record SerializedTimetable(String eTag, byte[] json, byte[] gzipped) {
+
+  static SerializedTimetable of(String eTag, byte[] json) {
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.length / 4);
+    try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+      out.write(json);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new SerializedTimetable(eTag, json, gzipped.toByteArray());
+  }
+
+  /**
+   * Whether an Accept-Encoding header accepts gzip, by its q-values: {@code gzip;q=0} does not,
+   * {@code *} does unless gzip is listed on its own.
+   */
+  public static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Double gzipQuality = null;
+    Double anyQuality = null;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.split(";");
+      String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+      double quality = 1.0;
+      for (int i = 1; i < parameters.length; i++) {
+        String parameter = parameters[i].trim();
+        if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+          try {
+            quality = Double.parseDouble(parameter.substring(2).trim());
+          } catch (NumberFormatException e) {
+            quality = 0.0;
+          }
+        }
+      }
+      if (name.equals("gzip") || name.equals("x-gzip")) {
+        gzipQuality = quality;
+      } else if (name.equals("*")) {
+        anyQuality = quality;
+      }
+    }
+    if (gzipQuality != null) {
+      return gzipQuality > 0.0;
+    }
+    return anyQuality != null && anyQuality > 0.0;
+  }
+
+  long sizeInBytes() {
+    return 16 + json.length + gzipped.length + 2L * eTag.length() + 64;
+  }
+}
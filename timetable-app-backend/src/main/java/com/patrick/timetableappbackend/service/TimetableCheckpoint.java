@@ -0,0 +1,159 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import com.patrick.timetableappbackend.dto.JobTermination;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+/**
+ * A job as checkpointed to disk or the worker pool: its settings, how long it solved and the
+ * assignment of its best solution.
+ *
+ * <p>Written as a version, the settings and then the snapshot as three ints per lesson, a null as
+ * -1 or an empty string. The same bytes go to the solve_job table of the worker pool. Version 1,
+ * from before the local search was a setting, is read as CONFIGURED without a portfolio.
+ */
+record TimetableCheckpoint(
+    String jobId, JobSettings settings, Duration spent, TimetableSnapshot snapshot) {
+
+  private static final int MAGIC = 0x54544350;
+  private static final int VERSION = 2;
+
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(jobId);
+    out.writeUTF(settings.scoreEngine().name());
+    out.writeInt(settings.moveThreadCount() == null ? -1 : settings.moveThreadCount());
+    out.writeUTF(settings.partitionKey().name());
+    out.writeBoolean(settings.warmStart());
+    out.writeLong(settings.duration() == null ? -1 : settings.duration());
+    JobTermination termination =
+        settings.termination() == null ? new JobTermination() : settings.termination();
+    out.writeLong(toMillis(termination.getSpentLimit()));
+    out.writeLong(toMillis(termination.getUnimprovedSpentLimit()));
+    out.writeUTF(termination.getBestScoreLimit() == null ? "" : termination.getBestScoreLimit());
+    out.writeLong(
+        termination.getScoreCalculationCountLimit() == null
+            ? -1
+            : termination.getScoreCalculationCountLimit());
+    out.writeUTF(settings.priority().name());
+    out.writeUTF(settings.user() == null ? "" : settings.user());
+    out.writeUTF(settings.localSearch().name());
+    out.writeBoolean(settings.portfolio());
+    out.writeLong(spent.toMillis());
+    out.writeUTF(snapshot.score() == null ? "" : snapshot.score().toString());
+    out.writeLong(snapshot.duration() == null ? -1 : snapshot.duration());
+    int[] lessonIds = snapshot.lessonIds();
+    out.writeInt(lessonIds.length);
+    for (int i = 0; i < lessonIds.length; i++) {
+      out.writeInt(lessonIds[i]);
+      out.writeInt(snapshot.timeslotIds()[i]);
+      out.writeInt(snapshot.roomIds()[i]);
+    }
+  }
+
+  static TimetableCheckpoint read(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a checkpoint.");
+    }
+    int version = in.readInt();
+    if (version != 1 && version != VERSION) {
+      throw new IOException("Unsupported checkpoint version " + version + ".");
+    }
+    String jobId = in.readUTF();
+    ScoreEngine scoreEngine = ScoreEngine.valueOf(in.readUTF());
+    int moveThreadCount = in.readInt();
+    PartitionKey partitionKey = PartitionKey.valueOf(in.readUTF());
+    boolean warmStart = in.readBoolean();
+    long duration = in.readLong();
+    Duration spentLimit = toDuration(in.readLong());
+    Duration unimprovedSpentLimit = toDuration(in.readLong());
+    String bestScoreLimit = in.readUTF();
+    long scoreCalculationCountLimit = in.readLong();
+    JobTermination termination =
+        spentLimit == null
+                && unimprovedSpentLimit == null
+                && bestScoreLimit.isEmpty()
+                && scoreCalculationCountLimit < 0
+            ? null
+            : new JobTermination(
+                spentLimit,
+                unimprovedSpentLimit,
+                bestScoreLimit.isEmpty() ? null : bestScoreLimit,
+                scoreCalculationCountLimit < 0 ? null : scoreCalculationCountLimit);
+    JobPriority priority = JobPriority.valueOf(in.readUTF());
+    String user = in.readUTF();
+    LocalSearch localSearch =
+        version == 1 ? LocalSearch.CONFIGURED : LocalSearch.valueOf(in.readUTF());
+    boolean portfolio = version != 1 && in.readBoolean();
+    JobSettings settings =
+        new JobSettings(
+            scoreEngine,
+            localSearch,
+            portfolio,
+            moveThreadCount < 0 ? null : moveThreadCount,
+            partitionKey,
+            warmStart,
+            duration < 0 ? null : duration,
+            termination,
+            priority,
+            user.isEmpty() ? null : user);
+    Duration spent = Duration.ofMillis(in.readLong());
+    String score = in.readUTF();
+    long snapshotDuration = in.readLong();
+    int lessonCount = in.readInt();
+    int[] lessonIds = new int[lessonCount];
+    int[] timeslotIds = new int[lessonCount];
+    int[] roomIds = new int[lessonCount];
+    for (int i = 0; i < lessonCount; i++) {
+      lessonIds[i] = in.readInt();
+      timeslotIds[i] = in.readInt();
+      roomIds[i] = in.readInt();
+    }
+    return new TimetableCheckpoint(
+        jobId,
+        settings,
+        spent,
+        new TimetableSnapshot(
+            lessonIds,
+            timeslotIds,
+            roomIds,
+            score.isEmpty() ? null : HardMediumSoftScore.parseScore(score),
+            snapshotDuration < 0 ? null : snapshotDuration));
+  }
+
+  byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 12 * snapshot.lessonIds().length);
+    try {
+      write(new DataOutputStream(bytes));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static TimetableCheckpoint fromBytes(byte[] bytes) {
+    try {
+      return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unreadable checkpoint.", e);
+    }
+  }
+
+  private static long toMillis(Duration duration) {
+    return duration == null ? -1 : duration.toMillis();
+  }
+
+  private static Duration toDuration(long millis) {
+    return millis < 0 ? null : Duration.ofMillis(millis);
+  }
+}
@@ -0,0 +1,246 @@
+package com.patrick.timetableappbackend.service;
+
+import com.patrick.timetableappbackend.model.Timetable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checkpoints the solving jobs to timetable.checkpoint.directory, one {@link TimetableCheckpoint}
+ * file per job, so a node resumes them after a restart or a crash: a best solution at most every
+ * timetable.checkpoint.interval, and the final one of the jobs terminated on shutdown.
+ *
+ * <p>A job that ends otherwise has its checkpoint deleted. The files are written one at a time on
+ * a thread of their own, to a temporary file that then replaces the previous checkpoint, so a crash
+ * while writing leaves the previous one.
+ */
+@Service
+@Slf4j
+public class TimetableCheckpointService implements DisposableBean {
+
+  private static final String SUFFIX = ".checkpoint";
+
+  private final boolean enabled;
+  private final Path directory;
+  private final Duration interval;
+
+  private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+  private final ConcurrentMap<String, CheckpointedJob> jobIdToCheckpointedJob =
+      new ConcurrentHashMap<>();
+  private volatile boolean shuttingDown;
+
+  public TimetableCheckpointService(
+      @Value("${timetable.checkpoint.enabled:true}") boolean enabled,
+      @Value("${timetable.checkpoint.directory:checkpoints}") Path directory,
+      @Value("${timetable.checkpoint.interval:1m}") Duration interval) {
+    this.enabled = enabled;
+    this.directory = directory;
+    this.interval = interval;
+  }
+
+  /**
+   * Starts checkpointing a job, from its problem while it is queued.
+   *
+   * @param spent solving before, by a node that checkpointed the job
+   */
+  public void register(TimetableJobStore.Job job, JobSettings settings, Duration spent) {
+    if (enabled) {
+      CheckpointedJob checkpointedJob = new CheckpointedJob(job, settings, spent);
+      jobIdToCheckpointedJob.put(job.getJobId(), checkpointedJob);
+      checkpointedJob.offer(true);
+    }
+  }
+
+  /** The job left the queue, its spent time counts from now. */
+  public void started(String jobId) {
+    CheckpointedJob checkpointedJob = jobIdToCheckpointedJob.get(jobId);
+    if (checkpointedJob != null) {
+      checkpointedJob.startedMillis = System.currentTimeMillis();
+    }
+  }
+
+  /** Checkpoints a best solution of a job that is still solving, unless one was recently. */
+  public void checkpoint(String jobId) {
+    CheckpointedJob checkpointedJob = jobIdToCheckpointedJob.get(jobId);
+    if (checkpointedJob != null) {
+      checkpointedJob.offer(false);
+    }
+  }
+
+  /**
+   * The job ended: on shutdown its final best solution is checkpointed to resume from, otherwise
+   * its checkpoint is deleted.
+   */
+  public void finish(String jobId) {
+    CheckpointedJob checkpointedJob = jobIdToCheckpointedJob.remove(jobId);
+    if (checkpointedJob == null) {
+      return;
+    }
+    if (shuttingDown) {
+      checkpointedJob.offer(true);
+    } else {
+      writeExecutor.execute(() -> delete(jobId));
+    }
+  }
+
+  /** Forgets a job that failed or was rejected, and deletes its checkpoint. */
+  public void discard(String jobId) {
+    if (jobIdToCheckpointedJob.remove(jobId) != null) {
+      writeExecutor.execute(() -> delete(jobId));
+    }
+  }
+
+  /** From now on the jobs that end keep their checkpoint, see {@link #finish}. */
+  public void shutdown() {
+    shuttingDown = true;
+  }
+
+  /** The checkpoints left by the previous run of the node, unreadable ones are moved aside. */
+  public List<TimetableCheckpoint> readCheckpoints() {
+    List<TimetableCheckpoint> checkpoints = new ArrayList<>();
+    if (!enabled || !Files.isDirectory(directory)) {
+      return checkpoints;
+    }
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path path : paths) {
+        try (DataInputStream in =
+            new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+          checkpoints.add(TimetableCheckpoint.read(in));
+        } catch (IOException | RuntimeException e) {
+          log.error("Failed reading checkpoint ({}), moving it aside.", path, e);
+          moveAside(path);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed listing the checkpoints in " + directory + ".", e);
+    }
+    return checkpoints;
+  }
+
+  private void delete(String jobId) {
+    try {
+      Files.deleteIfExists(getPath(jobId));
+    } catch (IOException e) {
+      log.error("Failed deleting the checkpoint of jobId ({}).", jobId, e);
+    }
+  }
+
+  private void write(TimetableCheckpoint checkpoint) {
+    long start = System.currentTimeMillis();
+    Path path = getPath(checkpoint.jobId());
+    Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(directory);
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+        checkpoint.write(out);
+      }
+      Files.move(
+          temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      log.debug(
+          "Checkpointed jobId ({}) in {}ms.",
+          checkpoint.jobId(),
+          System.currentTimeMillis() - start);
+    } catch (IOException e) {
+      log.error("Failed checkpointing jobId ({}).", checkpoint.jobId(), e);
+    }
+  }
+
+  private void moveAside(Path path) {
+    try {
+      Files.move(
+          path,
+          path.resolveSibling(path.getFileName() + ".unreadable"),
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      log.error("Failed moving checkpoint ({}) aside.", path, e);
+    }
+  }
+
+  private Path getPath(String jobId) {
+    return directory.resolve(jobId + SUFFIX);
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    // lets the checkpoints of the jobs terminated on shutdown be written
+    writeExecutor.shutdown();
+    if (!writeExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+      log.warn("Shut down before checkpointing all jobs.");
+    }
+  }
+
+  private final class CheckpointedJob {
+
+    private final TimetableJobStore.Job job;
+    private final JobSettings settings;
+    private final Duration spentBefore;
+    // 0 while queued
+    private volatile long startedMillis;
+
+    private boolean writing;
+    private long lastOfferMillis;
+
+    private CheckpointedJob(TimetableJobStore.Job job, JobSettings settings, Duration spent) {
+      this.job = job;
+      this.settings = settings;
+      this.spentBefore = spent;
+    }
+
+    synchronized void offer(boolean force) {
+      long now = System.currentTimeMillis();
+      if (!force && now - lastOfferMillis < interval.toMillis()) {
+        return;
+      }
+      lastOfferMillis = now;
+      if (!writing) {
+        writing = true;
+        writeExecutor.execute(this::write);
+      }
+    }
+
+    private void write() {
+      synchronized (this) {
+        writing = false;
+      }
+      // the latest best solution by the time the write thread gets to it
+      TimetableSnapshot snapshot = job.getSnapshot();
+      if (snapshot == null) {
+        // queued or constructing, the problem is as good as it gets
+        Timetable problem = job.getProblem();
+        if (problem == null) {
+          return;
+        }
+        snapshot = TimetableSnapshot.of(problem);
+      }
+      TimetableCheckpointService.this.write(
+          new TimetableCheckpoint(job.getJobId(), settings, getSpent(), snapshot));
+    }
+
+    private Duration getSpent() {
+      long started = startedMillis;
+      return started == 0
+          ? spentBefore
+          : spentBefore.plusMillis(System.currentTimeMillis() - started);
+    }
+  }
+}
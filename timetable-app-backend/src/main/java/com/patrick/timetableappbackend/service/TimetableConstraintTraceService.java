@@ -0,0 +1,61 @@
+package com.patrick.timetableappbackend.service;
+
+import com.patrick.timetableappbackend.dto.ConstraintTraceSettings;
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import com.patrick.timetableappbackend.solver.ConstraintTrace;
+import com.patrick.timetableappbackend.solver.ConstraintTracer;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+/** The constraint traces of the jobs solved on this node, see ConstraintTracer. */
+@Service
+public class TimetableConstraintTraceService {
+
+  @Value("${timetable.constraint-trace.sample-rate:1000}")
+  private int traceSampleRate;
+
+  @Value("${timetable.constraint-trace.capacity:10000}")
+  private int traceCapacity;
+
+  /** The trace of a job as it is submitted, disabled until switched on through configure. */
+  void register(String jobId) {
+    ConstraintTracer.register(jobId, traceSampleRate, traceCapacity);
+  }
+
+  public ConstraintTraceSettings configure(String jobId, boolean enabled, Integer sampleRate) {
+    ConstraintTrace trace = getTraceOrThrow(jobId);
+    ConstraintTracer.configure(
+        jobId,
+        enabled,
+        sampleRate != null ? sampleRate : trace.getSampleRate(),
+        trace.getCapacity());
+    return toSettings(trace);
+  }
+
+  public ConstraintTraceSettings getSettings(String jobId) {
+    return toSettings(getTraceOrThrow(jobId));
+  }
+
+  public List<String> getEntries(String jobId) {
+    return getTraceOrThrow(jobId).getEntries();
+  }
+
+  private static ConstraintTrace getTraceOrThrow(String jobId) {
+    return ConstraintTracer.getTrace(jobId)
+        .orElseThrow(
+            () ->
+                new TimetableSolverException(
+                    jobId, HttpStatus.NOT_FOUND, "No constraint trace found."));
+  }
+
+  private static ConstraintTraceSettings toSettings(ConstraintTrace trace) {
+    return new ConstraintTraceSettings(
+        trace.getJobId(),
+        trace.isEnabled(),
+        trace.getSampleRate(),
+        trace.getCapacity(),
+        trace.getEntryCount());
+  }
+}
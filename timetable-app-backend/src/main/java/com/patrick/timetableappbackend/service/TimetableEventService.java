@@ -0,0 +1,216 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import ai.timefold.solver.core.api.solver.SolverStatus;
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import com.patrick.timetableappbackend.dto.TimetableDelta;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams the best solutions of a job as server-sent events: a {@code best-solution} event with a
+ * {@link TimetableDelta} of the lessons whose assignment changed, the first one with all of them,
+ * and a {@code solver-status} event once the job finishes, after which the stream completes.
+ *
+ * <p>Every subscriber is sent to on its own virtual thread. A subscriber that is still sending when
+ * the next best solution comes in gets the changes merged into its pending delta, the latest
+ * assignment of a lesson winning, so a slow subscriber skips intermediate best solutions instead of
+ * queueing them up and holds at most one assignment per lesson.
+ */
+@Service
+@Slf4j
+public class TimetableEventService implements DisposableBean {
+
+  public static final String BEST_SOLUTION_EVENT = "best-solution";
+  public static final String SOLVER_STATUS_EVENT = "solver-status";
+
+  private final Supplier<SseEmitter> newEmitter;
+  private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+  private final ConcurrentMap<String, Set<Subscriber>> jobIdToSubscribers =
+      new ConcurrentHashMap<>();
+
+  @Autowired
+  public TimetableEventService(@Value("${timetable.events.timeout:30m}") Duration timeout) {
+    this(() -> new SseEmitter(timeout.toMillis()));
+  }
+
+  TimetableEventService(Supplier<SseEmitter> newEmitter) {
+    this.newEmitter = newEmitter;
+  }
+
+  public SseEmitter subscribe(TimetableJobStore.Job job) {
+    Subscriber subscriber = new Subscriber(job.getJobId(), newEmitter.get());
+    subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+    subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+    subscriber.emitter.onError(exception -> unsubscribe(subscriber));
+    jobIdToSubscribers
+        .computeIfAbsent(job.getJobId(), jobId -> ConcurrentHashMap.newKeySet())
+        .add(subscriber);
+    // subscribed before reading the snapshot, so it misses no best solution since
+    TimetableSnapshot snapshot = job.getSnapshot();
+    if (snapshot != null) {
+      subscriber.enqueue(job.getVersion(), true, snapshot.score(), snapshot.assignments());
+    }
+    if (job.isFinished()) {
+      subscriber.complete(SolverStatus.NOT_SOLVING);
+    }
+    return subscriber.emitter;
+  }
+
+  /** Sends the changes of a new best solution, if the job has subscribers. */
+  public void publish(
+      TimetableJobStore.Job job, TimetableSnapshot previous, TimetableSnapshot snapshot) {
+    Set<Subscriber> subscribers = jobIdToSubscribers.get(job.getJobId());
+    if (subscribers == null || subscribers.isEmpty()) {
+      return;
+    }
+    List<LessonAssignment> changes = previous == null ? null : snapshot.changesSince(previous);
+    boolean full = changes == null;
+    if (full) {
+      changes = snapshot.assignments();
+    }
+    for (Subscriber subscriber : subscribers) {
+      subscriber.enqueue(job.getVersion(), full, snapshot.score(), changes);
+    }
+  }
+
+  /** Sends the solver status of a job that finished and completes its streams. */
+  public void complete(String jobId, SolverStatus solverStatus) {
+    Set<Subscriber> subscribers = jobIdToSubscribers.remove(jobId);
+    if (subscribers != null) {
+      subscribers.forEach(subscriber -> subscriber.complete(solverStatus));
+    }
+  }
+
+  private void unsubscribe(Subscriber subscriber) {
+    jobIdToSubscribers.computeIfPresent(
+        subscriber.jobId,
+        (jobId, subscribers) -> {
+          subscribers.remove(subscriber);
+          return subscribers.isEmpty() ? null : subscribers;
+        });
+  }
+
+  @Override
+  public void destroy() {
+    jobIdToSubscribers.values().forEach(subscribers -> subscribers.forEach(Subscriber::close));
+    sendExecutor.shutdownNow();
+  }
+
+  private final class Subscriber {
+
+    private final String jobId;
+    private final SseEmitter emitter;
+
+    // the delta not sent yet, by lesson id
+    private final Map<Long, LessonAssignment> pendingChanges = new LinkedHashMap<>();
+    private boolean pending;
+    private boolean pendingFull;
+    private long pendingVersion;
+    private HardMediumSoftScore pendingScore;
+    private SolverStatus completedStatus;
+    private boolean sending;
+
+    private Subscriber(String jobId, SseEmitter emitter) {
+      this.jobId = jobId;
+      this.emitter = emitter;
+    }
+
+    synchronized void enqueue(
+        long version, boolean full, HardMediumSoftScore score, List<LessonAssignment> changes) {
+      if (completedStatus != null || version < pendingVersion) {
+        return;
+      }
+      if (full) {
+        pendingChanges.clear();
+        pendingFull = true;
+      }
+      changes.forEach(change -> pendingChanges.put(change.getLessonId(), change));
+      pending = true;
+      pendingVersion = version;
+      pendingScore = score;
+      send();
+    }
+
+    synchronized void complete(SolverStatus solverStatus) {
+      if (completedStatus == null) {
+        completedStatus = solverStatus;
+        send();
+      }
+    }
+
+    void close() {
+      emitter.complete();
+    }
+
+    // under the lock
+    private void send() {
+      if (!sending) {
+        sending = true;
+        sendExecutor.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      while (true) {
+        TimetableDelta delta = null;
+        SolverStatus solverStatus;
+        synchronized (this) {
+          if (pending) {
+            delta =
+                new TimetableDelta(
+                    jobId,
+                    pendingVersion,
+                    pendingFull,
+                    pendingScore,
+                    new ArrayList<>(pendingChanges.values()));
+            pendingChanges.clear();
+            pending = false;
+            pendingFull = false;
+          } else if (completedStatus == null) {
+            sending = false;
+            return;
+          }
+          // the last delta goes before the status
+          solverStatus = delta == null ? completedStatus : null;
+        }
+        try {
+          if (delta != null) {
+            emitter.send(
+                SseEmitter.event()
+                    .name(BEST_SOLUTION_EVENT)
+                    .id(Long.toString(delta.getVersion()))
+                    .data(delta, MediaType.APPLICATION_JSON));
+          } else if (solverStatus != null) {
+            emitter.send(SseEmitter.event().name(SOLVER_STATUS_EVENT).data(solverStatus));
+            emitter.complete();
+            return;
+          }
+        } catch (IOException | IllegalStateException e) {
+          // the client went away, or the emitter timed out; sending stays set so nothing is queued
+          log.debug("Stopped streaming jobId ({}): {}", jobId, e.getMessage());
+          unsubscribe(this);
+          return;
+        }
+      }
+    }
+  }
+}
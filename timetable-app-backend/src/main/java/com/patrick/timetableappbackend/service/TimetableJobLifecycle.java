@@ -0,0 +1,152 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.api.solver.SolverStatus;
+import com.patrick.timetableappbackend.config.MoveThreadCountPolicy;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Takes a job of TimetableService through its life on this node, from submitted to finished,
+ * failed or cancelled: keeps the {@link TimetableJobStore}, {@link TimetableJobScheduler}, {@link
+ * TimetableCheckpointService}, {@link TimetableJobRegistry}, {@link TimetablePersistenceService}
+ * and {@link TimetableEventService} up to date and holds the move threads of the job meanwhile.
+ * Solving itself, the SolverManager and the portfolio race of the job, stay with TimetableService.
+ */
+@Component
+@RequiredArgsConstructor
+public class TimetableJobLifecycle {
+
+  private final TimetableJobStore jobStore;
+  private final TimetableJobScheduler scheduler;
+  private final TimetableEventService eventService;
+  private final TimetablePersistenceService persistenceService;
+  private final TimetableCheckpointService checkpointService;
+  private final TimetableJobRegistry jobRegistry;
+  private final MoveThreadCountPolicy moveThreadCountPolicy;
+
+  // terminated while solving the partitions, their repair solve is terminated once it starts
+  private final Set<String> terminatedPartitionedJobIds = ConcurrentHashMap.newKeySet();
+
+  /**
+   * A new job, or one resumed after {@code spent} solving.
+   *
+   * @param claimed from the worker pool, its best solutions are written back there rather than
+   *     checkpointed to disk
+   */
+  TimetableJobStore.Job submitted(
+      String jobId, Timetable problem, JobSettings settings, Duration spent, boolean claimed) {
+    TimetableJobStore.Job job =
+        jobStore.start(jobId, problem, settings.scoreEngine(), settings.localSearch());
+    if (!claimed) {
+      checkpointService.register(job, settings, spent);
+    }
+    jobRegistry.register(job, settings, spent, claimed);
+    return job;
+  }
+
+  /** A job the scheduler did not take. */
+  void rejected(TimetableJobStore.Job job, RuntimeException e) {
+    jobStore.remove(job);
+    checkpointService.discard(job.getJobId());
+    jobRegistry.fail(job.getJobId(), e);
+  }
+
+  /** A checkpoint or a job claimed from the worker pool that could not be resumed. */
+  void failedResuming(String jobId, boolean claimed, RuntimeException e) {
+    if (claimed) {
+      jobRegistry.fail(jobId, e);
+    } else {
+      checkpointService.discard(jobId);
+    }
+  }
+
+  /**
+   * Reserves the move threads of a job the scheduler starts, by the load of the node as it starts.
+   *
+   * @param moveThreadCount the job asked for, or null
+   * @return the move thread count of the job, released as it ends
+   */
+  int started(TimetableJobStore.Job job, Integer moveThreadCount) {
+    int jobMoveThreadCount =
+        moveThreadCount == null
+            ? moveThreadCountPolicy.reserve(job.getProblem().getLessons().size())
+            : moveThreadCountPolicy.reserveRequested(moveThreadCount);
+    jobStore.run(job, jobMoveThreadCount);
+    checkpointService.started(job.getJobId());
+    jobRegistry.started(job.getJobId());
+    return jobMoveThreadCount;
+  }
+
+  void bestSolutionChanged(TimetableJobStore.Job job, Timetable solution) {
+    String jobId = job.getJobId();
+    updateBestSolution(job, solution);
+    persistenceService.checkpoint(job);
+    checkpointService.checkpoint(jobId);
+    jobRegistry.checkpoint(jobId);
+  }
+
+  void finished(TimetableJobStore.Job job, Timetable solution, int jobMoveThreadCount) {
+    String jobId = job.getJobId();
+    updateBestSolution(job, solution);
+    persistenceService.persist(job);
+    // before the job finishes, see awaitFinished
+    checkpointService.finish(jobId);
+    jobRegistry.finish(jobId);
+    jobStore.finish(job);
+    eventService.complete(jobId, SolverStatus.NOT_SOLVING);
+    release(jobId, jobMoveThreadCount);
+  }
+
+  /** A job that failed starting or solving. */
+  void failed(TimetableJobStore.Job job, Throwable e, int jobMoveThreadCount) {
+    String jobId = job.getJobId();
+    jobStore.fail(job, e);
+    persistenceService.discard(jobId);
+    checkpointService.discard(jobId);
+    jobRegistry.fail(jobId, e);
+    eventService.complete(jobId, SolverStatus.NOT_SOLVING);
+    release(jobId, jobMoveThreadCount);
+  }
+
+  /** A job terminated while queued, its problem is its best solution. */
+  void cancelled(TimetableJobStore.Job job) {
+    String jobId = job.getJobId();
+    updateBestSolution(job, job.getProblem());
+    checkpointService.finish(jobId);
+    jobRegistry.finish(jobId);
+    jobStore.finish(job);
+    eventService.complete(jobId, SolverStatus.NOT_SOLVING);
+  }
+
+  void terminatedWhilePartitioned(String jobId) {
+    terminatedPartitionedJobIds.add(jobId);
+  }
+
+  /** Whether a job was terminated while solving its partitions, once. */
+  boolean takeTerminatedWhilePartitioned(String jobId) {
+    return terminatedPartitionedJobIds.remove(jobId);
+  }
+
+  /** From now on the jobs that end are resumed on the next start, by this node or another. */
+  void shutdown() {
+    checkpointService.shutdown();
+    jobRegistry.shutdown();
+  }
+
+  private void updateBestSolution(TimetableJobStore.Job job, Timetable solution) {
+    TimetableSnapshot previous = job.getSnapshot();
+    jobStore.updateBestSolution(job, solution);
+    eventService.publish(job, previous, job.getSnapshot());
+  }
+
+  private void release(String jobId, int jobMoveThreadCount) {
+    terminatedPartitionedJobIds.remove(jobId);
+    // before the next job starts
+    moveThreadCountPolicy.release(jobMoveThreadCount);
+    scheduler.release(jobId);
+  }
+}
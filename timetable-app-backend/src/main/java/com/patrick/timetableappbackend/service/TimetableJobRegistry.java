@@ -0,0 +1,448 @@
+package com.patrick.timetableappbackend.service;
+
+import com.patrick.timetableappbackend.model.SolveJobStatus;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * The jobs of all nodes in the solve_job table, with timetable.job-registry.enabled or
+ * timetable.worker-pool.enabled: any node serves the timetable and status of any job from it
+ * without sticky routing, and a termination reaches the node solving the job through it.
+ *
+ * <p>The node solving a job registers it, writes its best solution back as a {@link
+ * TimetableCheckpoint} at most every timetable.job-registry.checkpoint-interval and when it ends,
+ * and renews its heartbeat. The other nodes read it through a near-cache: for
+ * timetable.job-registry.near-cache-ttl a job is served from memory, after that it is revalidated
+ * by its status and version, and only read again, checkpoint and all, if either changed.
+ */
+@Service
+@Slf4j
+public class TimetableJobRegistry {
+
+  // a job solved by the node that received it, or resumed by it from its checkpoint on disk
+  private static final String REGISTER_SQL =
+      "insert into solve_job (job_id, status, priority, user_name, created_at, worker_id,"
+          + " heartbeat_at, terminate_requested, checkpoint, version)"
+          + " values (?, 'RUNNING', ?, ?, ?, ?, ?, false, ?, 0)"
+          + " on conflict (job_id) do update set status = 'RUNNING',"
+          + " worker_id = excluded.worker_id, heartbeat_at = excluded.heartbeat_at,"
+          + " terminate_requested = false, checkpoint = excluded.checkpoint,"
+          + " version = solve_job.version + 1";
+  private static final String HEARTBEAT_SQL =
+      "update solve_job set heartbeat_at = ? where job_id = ? and worker_id = ?"
+          + " and status = 'RUNNING'";
+  private static final String WRITE_SQL =
+      "update solve_job set checkpoint = ?, score = ?, version = version + 1, heartbeat_at = ?"
+          + " where job_id = ? and worker_id = ? and status = 'RUNNING'";
+  private static final String FINISH_SQL =
+      "update solve_job set status = 'FINISHED', checkpoint = ?, score = ?,"
+          + " version = version + 1, finished_at = ? where job_id = ? and worker_id = ?"
+          + " and status = 'RUNNING'";
+  // a job asked to terminate is finished rather than solved again by the next worker
+  private static final String REQUEUE_SQL =
+      "update solve_job set checkpoint = ?, score = ?,"
+          + " finished_at = case when terminate_requested then ? end,"
+          + " status = case when terminate_requested then 'FINISHED' else 'QUEUED' end,"
+          + " version = version + 1, worker_id = null"
+          + " where job_id = ? and worker_id = ? and status = 'RUNNING'";
+  private static final String FAIL_SQL =
+      "update solve_job set status = 'FAILED', error = ?, finished_at = ? where job_id = ?"
+          + " and worker_id = ? and status = 'RUNNING'";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final boolean enabled;
+  private final Duration checkpointInterval;
+  private final Duration nearCacheTtl;
+  private final Duration timeToLive;
+  // pid@host may be reused by a restarted node, which would then own the jobs of its predecessor
+  private final String workerId = UUID.randomUUID().toString();
+
+  private final ConcurrentMap<String, OwnedJob> jobIdToOwnedJob = new ConcurrentHashMap<>();
+  private final Map<String, CachedJob> nearCache;
+  private volatile boolean shuttingDown;
+
+  /** A job as read from the table. */
+  record RegisteredJob(
+      String jobId,
+      SolveJobStatus status,
+      TimetableCheckpoint checkpoint,
+      String error,
+      long version) {}
+
+  public TimetableJobRegistry(
+      JdbcTemplate jdbcTemplate,
+      @Value("${timetable.job-registry.enabled:false}") boolean enabled,
+      @Value("${timetable.worker-pool.enabled:false}") boolean workerPoolEnabled,
+      @Value("${timetable.job-registry.checkpoint-interval:10s}") Duration checkpointInterval,
+      @Value("${timetable.job-registry.near-cache-ttl:1s}") Duration nearCacheTtl,
+      @Value("${timetable.job-registry.near-cache-size:1000}") int nearCacheSize,
+      @Value("${timetable.job-store.time-to-live:24h}") Duration timeToLive) {
+    this.jdbcTemplate = jdbcTemplate;
+    // the worker pool queues its jobs in the registry
+    this.enabled = enabled || workerPoolEnabled;
+    this.checkpointInterval = checkpointInterval;
+    this.nearCacheTtl = nearCacheTtl;
+    this.timeToLive = timeToLive;
+    // the least recently read is dropped first
+    this.nearCache =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, CachedJob> eldest) {
+                return size() > nearCacheSize;
+              }
+            });
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Identifies this node in the worker_id column. */
+  String getWorkerId() {
+    return workerId;
+  }
+
+  Optional<RegisteredJob> get(String jobId) {
+    long now = System.currentTimeMillis();
+    CachedJob cachedJob = nearCache.get(jobId);
+    if (cachedJob != null && now - cachedJob.readMillis < nearCacheTtl.toMillis()) {
+      return Optional.of(cachedJob.job);
+    }
+    if (cachedJob != null) {
+      // a few bytes rather than the checkpoint
+      Optional<RegisteredJob> state =
+          jdbcTemplate
+              .query(
+                  "select status, error, version from solve_job where job_id = ?",
+                  (resultSet, rowNum) ->
+                      new RegisteredJob(
+                          jobId,
+                          SolveJobStatus.valueOf(resultSet.getString("status")),
+                          null,
+                          resultSet.getString("error"),
+                          resultSet.getLong("version")),
+                  jobId)
+              .stream()
+              .findFirst();
+      if (state.isPresent()
+          && state.get().status() == cachedJob.job.status()
+          && state.get().version() == cachedJob.job.version()
+          && Objects.equals(state.get().error(), cachedJob.job.error())) {
+        cachedJob.readMillis = now;
+        return Optional.of(cachedJob.job);
+      }
+    }
+    Optional<RegisteredJob> job =
+        jdbcTemplate
+            .query(
+                "select status, checkpoint, error, version from solve_job where job_id = ?",
+                (resultSet, rowNum) ->
+                    new RegisteredJob(
+                        jobId,
+                        SolveJobStatus.valueOf(resultSet.getString("status")),
+                        TimetableCheckpoint.fromBytes(resultSet.getBytes("checkpoint")),
+                        resultSet.getString("error"),
+                        resultSet.getLong("version")),
+                jobId)
+            .stream()
+            .findFirst();
+    if (job.isPresent()) {
+      nearCache.put(jobId, new CachedJob(job.get(), now));
+    } else {
+      nearCache.remove(jobId);
+    }
+    return job;
+  }
+
+  /**
+   * The problem of a job as posted, see TimetableWorkerPool.
+   *
+   * @return null for a job not queued in the worker pool
+   */
+  byte[] getProblem(String jobId) {
+    return jdbcTemplate
+        .query(
+            "select problem from solve_job where job_id = ?",
+            (resultSet, rowNum) -> resultSet.getBytes("problem"),
+            jobId)
+        .stream()
+        .filter(Objects::nonNull)
+        .findFirst()
+        .orElse(null);
+  }
+
+  /**
+   * @return the serialized timetable cached with the job in the near-cache, if any
+   */
+  SerializedTimetable getSerializedTimetable(String jobId) {
+    CachedJob cachedJob = nearCache.get(jobId);
+    return cachedJob == null ? null : cachedJob.serializedTimetable;
+  }
+
+  void cacheSerializedTimetable(String jobId, SerializedTimetable serializedTimetable) {
+    CachedJob cachedJob = nearCache.get(jobId);
+    if (cachedJob != null) {
+      cachedJob.serializedTimetable = serializedTimetable;
+    }
+  }
+
+  public List<String> getJobIds() {
+    return jdbcTemplate.queryForList("select job_id from solve_job", String.class);
+  }
+
+  /**
+   * Finishes a queued job as it is, or asks the node solving a running one to terminate it.
+   *
+   * @return false if the job is running, see {@link #awaitEnded}
+   */
+  public boolean requestTermination(String jobId) {
+    if (jdbcTemplate.update(
+            "update solve_job set status = 'FINISHED', finished_at = ? where job_id = ?"
+                + " and status = 'QUEUED'",
+            Timestamp.from(Instant.now()),
+            jobId)
+        == 1) {
+      nearCache.remove(jobId);
+      return true;
+    }
+    jdbcTemplate.update(
+        "update solve_job set terminate_requested = true where job_id = ? and status = 'RUNNING'",
+        jobId);
+    return false;
+  }
+
+  /**
+   * @return false if the job is still running after the timeout
+   */
+  public boolean awaitEnded(String jobId, Duration timeout) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeout.toMillis();
+    while (true) {
+      String status =
+          jdbcTemplate
+              .queryForList("select status from solve_job where job_id = ?", String.class, jobId)
+              .stream()
+              .findFirst()
+              .orElse(null);
+      if (!SolveJobStatus.RUNNING.name().equals(status)) {
+        nearCache.remove(jobId);
+        return true;
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        return false;
+      }
+      // the node solving it terminates the job at its next heartbeat, then writes it back
+      Thread.sleep(250);
+    }
+  }
+
+  /**
+   * Starts writing the best solutions of a job this node solves back to the table.
+   *
+   * @param spent solving before, by the nodes that had the job earlier
+   * @param claimed from the worker pool, otherwise it is added to the table
+   */
+  public void register(
+      TimetableJobStore.Job job, JobSettings settings, Duration spent, boolean claimed) {
+    if (!enabled) {
+      return;
+    }
+    OwnedJob ownedJob = new OwnedJob(job, settings, spent);
+    if (!claimed) {
+      Timestamp now = Timestamp.from(Instant.now());
+      try {
+        jdbcTemplate.update(
+            REGISTER_SQL,
+            job.getJobId(),
+            settings.priority().ordinal(),
+            settings.user(),
+            now,
+            workerId,
+            now,
+            ownedJob.toCheckpoint().toBytes());
+      } catch (DataAccessException e) {
+        // solved all the same, only this node serves it
+        log.error("Failed registering jobId ({}).", job.getJobId(), e);
+        return;
+      }
+    }
+    jobIdToOwnedJob.put(job.getJobId(), ownedJob);
+  }
+
+  /** The job left the queue of the node, its spent time counts from now. */
+  public void started(String jobId) {
+    OwnedJob ownedJob = jobIdToOwnedJob.get(jobId);
+    if (ownedJob != null) {
+      ownedJob.startedMillis = System.currentTimeMillis();
+    }
+  }
+
+  /** Writes a best solution of a job, unless one was written recently. */
+  public void checkpoint(String jobId) {
+    OwnedJob ownedJob = jobIdToOwnedJob.get(jobId);
+    if (ownedJob != null && ownedJob.isDue()) {
+      write(jobId, WRITE_SQL, ownedJob.toCheckpoint(), Timestamp.from(Instant.now()));
+    }
+  }
+
+  /**
+   * Writes the final best solution of a job: finished, or on shutdown queued again to be resumed,
+   * by another worker or this node from its checkpoint on disk, unless another node asked to
+   * terminate it.
+   */
+  public void finish(String jobId) {
+    OwnedJob ownedJob = jobIdToOwnedJob.remove(jobId);
+    if (ownedJob == null) {
+      return;
+    }
+    if (shuttingDown) {
+      write(jobId, REQUEUE_SQL, ownedJob.toCheckpoint(), Timestamp.from(Instant.now()));
+    } else {
+      write(jobId, FINISH_SQL, ownedJob.toCheckpoint(), Timestamp.from(Instant.now()));
+    }
+  }
+
+  public void fail(String jobId, Throwable exception) {
+    if (jobIdToOwnedJob.remove(jobId) == null) {
+      return;
+    }
+    String error = String.valueOf(exception.getMessage());
+    try {
+      jdbcTemplate.update(
+          FAIL_SQL,
+          error.length() > 2000 ? error.substring(0, 2000) : error,
+          Timestamp.from(Instant.now()),
+          jobId,
+          workerId);
+    } catch (DataAccessException e) {
+      log.error("Failed writing the failure of jobId ({}).", jobId, e);
+    }
+  }
+
+  /** From now on the jobs that end are queued again, see {@link #finish}. */
+  public void shutdown() {
+    shuttingDown = true;
+  }
+
+  /**
+   * Renews the heartbeat of the jobs of this node.
+   *
+   * @return the jobs to terminate: asked to, or no longer this node's as the worker pool queued
+   *     them again when it missed its heartbeats
+   */
+  List<String> heartbeat() {
+    List<String> jobIds = new ArrayList<>(jobIdToOwnedJob.keySet());
+    if (jobIds.isEmpty()) {
+      return jobIds;
+    }
+    Timestamp now = Timestamp.from(Instant.now());
+    int[] updateCounts =
+        jdbcTemplate.batchUpdate(
+            HEARTBEAT_SQL,
+            jobIds.stream().map(jobId -> new Object[] {now, jobId, workerId}).toList());
+    List<String> terminated = new ArrayList<>();
+    for (int i = 0; i < jobIds.size(); i++) {
+      if (updateCounts[i] == 0) {
+        jobIdToOwnedJob.remove(jobIds.get(i));
+        log.warn("Lost jobId ({}) to another worker.", jobIds.get(i));
+        terminated.add(jobIds.get(i));
+      }
+    }
+    terminated.addAll(
+        jdbcTemplate.queryForList(
+            "select job_id from solve_job where worker_id = ? and status = 'RUNNING'"
+                + " and terminate_requested",
+            String.class,
+            workerId));
+    return terminated;
+  }
+
+  /** Deletes the jobs that ended longer than timetable.job-store.time-to-live ago. */
+  void deleteExpired() {
+    jdbcTemplate.update(
+        "delete from solve_job where status in ('FINISHED', 'FAILED') and finished_at < ?",
+        Timestamp.from(Instant.now().minus(timeToLive)));
+  }
+
+  private void write(String jobId, String sql, TimetableCheckpoint checkpoint, Object... more) {
+    List<Object> args = new ArrayList<>();
+    args.add(checkpoint.toBytes());
+    args.add(
+        checkpoint.snapshot().score() == null ? null : checkpoint.snapshot().score().toString());
+    args.addAll(List.of(more));
+    args.add(jobId);
+    args.add(workerId);
+    try {
+      if (jdbcTemplate.update(sql, args.toArray()) == 0) {
+        log.warn("Not writing jobId ({}), it is no longer this node's.", jobId);
+      }
+    } catch (DataAccessException e) {
+      log.error("Failed writing jobId ({}) to the job registry.", jobId, e);
+    }
+  }
+
+  private static final class CachedJob {
+
+    private final RegisteredJob job;
+    private volatile long readMillis;
+    private volatile SerializedTimetable serializedTimetable;
+
+    private CachedJob(RegisteredJob job, long readMillis) {
+      this.job = job;
+      this.readMillis = readMillis;
+    }
+  }
+
+  private final class OwnedJob {
+
+    private final TimetableJobStore.Job job;
+    private final JobSettings settings;
+    private final Duration spentBefore;
+    // 0 while queued on the node
+    private volatile long startedMillis;
+    private long lastWriteMillis;
+
+    private OwnedJob(TimetableJobStore.Job job, JobSettings settings, Duration spent) {
+      this.job = job;
+      this.settings = settings;
+      this.spentBefore = spent;
+    }
+
+    synchronized boolean isDue() {
+      long now = System.currentTimeMillis();
+      if (now - lastWriteMillis < checkpointInterval.toMillis()) {
+        return false;
+      }
+      lastWriteMillis = now;
+      return true;
+    }
+
+    TimetableCheckpoint toCheckpoint() {
+      TimetableSnapshot snapshot = job.getSnapshot();
+      if (snapshot == null) {
+        // queued or constructing, the problem is as good as it gets
+        snapshot = TimetableSnapshot.of(job.getProblem());
+      }
+      long started = startedMillis;
+      Duration spent =
+          started == 0 ? spentBefore : spentBefore.plusMillis(System.currentTimeMillis() - started);
+      return new TimetableCheckpoint(job.getJobId(), settings, spent, snapshot);
+    }
+  }
+}
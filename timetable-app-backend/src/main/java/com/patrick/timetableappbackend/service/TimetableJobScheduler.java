@@ -0,0 +1,149 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.config.solver.SolverManagerConfig;
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides when the jobs of this node start solving. At most timetable.scheduler.max-running jobs
+ * run at once, the others wait in a queue of at most timetable.scheduler.max-queued jobs and
+ * further ones are rejected with a 429.
+ *
+ * <p>When a job ends, the queued job of the highest {@link JobPriority} starts. Among those, the
+ * one of the user with the fewest running jobs, so one user submitting a batch of jobs does not
+ * hold up the others, and then the one queued first.
+ */
+@Component
+@Slf4j
+public class TimetableJobScheduler {
+
+  private final int maxRunning;
+  private final int maxQueued;
+
+  // guarded by this
+  private final List<QueuedJob> queue = new ArrayList<>();
+  private final Map<String, String> runningJobIdToUser = new HashMap<>();
+  private final Map<String, Integer> userToRunningCount = new HashMap<>();
+  private long sequence;
+
+  private record QueuedJob(
+      String jobId, JobPriority priority, String user, long sequence, Runnable start) {}
+
+  @Autowired
+  public TimetableJobScheduler(
+      @Value("${timetable.scheduler.max-running:0}") int maxRunning,
+      @Value("${timetable.scheduler.max-queued:100}") int maxQueued,
+      @Value("${timefold.solver-manager.parallel-solver-count:AUTO}") String parallelSolverCount) {
+    // more would wait in the queue of the SolverManager instead, where they have no priority
+    this(
+        maxRunning > 0
+            ? maxRunning
+            : new SolverManagerConfig()
+                .withParallelSolverCount(parallelSolverCount)
+                .resolveParallelSolverCount(),
+        maxQueued);
+  }
+
+  TimetableJobScheduler(int maxRunning, int maxQueued) {
+    this.maxRunning = maxRunning;
+    this.maxQueued = maxQueued;
+    log.info("Running at most {} jobs at once, queueing at most {}.", maxRunning, maxQueued);
+  }
+
+  /**
+   * Runs {@code start} now if fewer than max-running jobs are running, otherwise once the job is
+   * first in the queue. A job that started is to be {@link #release released} when it ends.
+   *
+   * @throws TimetableSolverException with a 429 if the queue is full
+   */
+  public void submit(String jobId, JobPriority priority, String user, Runnable start) {
+    List<QueuedJob> started;
+    synchronized (this) {
+      if (runningJobIdToUser.size() >= maxRunning && queue.size() >= maxQueued) {
+        throw new TimetableSolverException(
+            jobId,
+            HttpStatus.TOO_MANY_REQUESTS,
+            "Too many jobs, " + queue.size() + " are waiting already.");
+      }
+      queue.add(new QueuedJob(jobId, priority, user, sequence++, start));
+      started = startNext();
+    }
+    run(started);
+  }
+
+  /** Frees the place of a job that ended and starts the next one. */
+  public void release(String jobId) {
+    List<QueuedJob> started;
+    synchronized (this) {
+      String user = runningJobIdToUser.remove(jobId);
+      if (user == null) {
+        return;
+      }
+      userToRunningCount.computeIfPresent(user, (user_, count) -> count == 1 ? null : count - 1);
+      started = startNext();
+    }
+    run(started);
+  }
+
+  /**
+   * @return false if the job is not queued, it is running or ended already
+   */
+  public synchronized boolean cancel(String jobId) {
+    return queue.removeIf(queuedJob -> queuedJob.jobId.equals(jobId));
+  }
+
+  /** Whether a job submitted now would start right away, see TimetableWorker. */
+  public synchronized boolean hasCapacity() {
+    return runningJobIdToUser.size() + queue.size() < maxRunning;
+  }
+
+  /**
+   * @return 1 for the job that starts next, null if the job is not queued
+   */
+  public synchronized Integer getQueuePosition(String jobId) {
+    List<QueuedJob> ordered = queue.stream().sorted(order()).toList();
+    for (int i = 0; i < ordered.size(); i++) {
+      if (ordered.get(i).jobId.equals(jobId)) {
+        return i + 1;
+      }
+    }
+    return null;
+  }
+
+  // under the lock
+  private List<QueuedJob> startNext() {
+    List<QueuedJob> started = new ArrayList<>();
+    while (runningJobIdToUser.size() < maxRunning && !queue.isEmpty()) {
+      QueuedJob next = queue.stream().min(order()).orElseThrow();
+      queue.remove(next);
+      runningJobIdToUser.put(next.jobId, next.user);
+      userToRunningCount.merge(next.user, 1, Integer::sum);
+      started.add(next);
+    }
+    return started;
+  }
+
+  // under the lock, the running counts change as jobs start and end
+  private Comparator<QueuedJob> order() {
+    return Comparator.comparing(QueuedJob::priority)
+        .thenComparingInt(queuedJob -> userToRunningCount.getOrDefault(queuedJob.user, 0))
+        .thenComparingLong(QueuedJob::sequence);
+  }
+
+  private void run(List<QueuedJob> started) {
+    // outside the lock, starting a job can end it right away and release it
+    for (QueuedJob queuedJob : started) {
+      log.debug("Starting jobId ({}) of {}.", queuedJob.jobId, queuedJob.user);
+      queuedJob.start.run();
+    }
+  }
+}
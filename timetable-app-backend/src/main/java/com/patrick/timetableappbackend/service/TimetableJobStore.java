@@ -0,0 +1,228 @@
+package com.patrick.timetableappbackend.service;
+
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.ConstraintTracer;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The solving jobs of this node and the finished ones, by job id.
+ *
+ * <p>A job keeps its best solution as a {@link TimetableSnapshot}, not as a Timetable. While
+ * solving it also holds its problem to rehydrate the snapshot against, the latest best solution
+ * once there is one, and once finished it does not. Finished jobs are evicted when they have not
+ * been read for timetable.job-store.time-to-live, and the least recently read first when there are
+ * more than timetable.job-store.max-jobs jobs or their snapshots and serialized timetables take
+ * more than timetable.job-store.max-size. Solving jobs are never evicted.
+ */
+@Component
+@Slf4j
+public class TimetableJobStore {
+
+  private final Duration timeToLive;
+  private final int maxJobs;
+  private final long maxBytes;
+  private final Clock clock;
+
+  private final ConcurrentMap<String, Job> jobIdToJob = new ConcurrentHashMap<>();
+  private final AtomicLong bytes = new AtomicLong();
+
+  @Autowired
+  public TimetableJobStore(
+      @Value("${timetable.job-store.time-to-live:24h}") Duration timeToLive,
+      @Value("${timetable.job-store.max-jobs:1000}") int maxJobs,
+      @Value("${timetable.job-store.max-size:256MB}") DataSize maxSize) {
+    this(timeToLive, maxJobs, maxSize, Clock.systemUTC());
+  }
+
+  TimetableJobStore(Duration timeToLive, int maxJobs, DataSize maxSize, Clock clock) {
+    this.timeToLive = timeToLive;
+    this.maxJobs = maxJobs;
+    this.maxBytes = maxSize.toBytes();
+    this.clock = clock;
+  }
+
+  /** Adds a queued job, see TimetableJobScheduler. */
+  public Job start(
+      String jobId, Timetable problem, ScoreEngine scoreEngine, LocalSearch localSearch) {
+    Job job = new Job(jobId, problem, scoreEngine, localSearch, clock.millis());
+    jobIdToJob.put(jobId, job);
+    evict();
+    return job;
+  }
+
+  public Optional<Job> get(String jobId) {
+    Job job = jobIdToJob.get(jobId);
+    if (job == null) {
+      return Optional.empty();
+    }
+    long now = clock.millis();
+    if (job.isExpired(now, timeToLive)) {
+      remove(job);
+      return Optional.empty();
+    }
+    job.lastReadMillis = now;
+    return Optional.of(job);
+  }
+
+  public Collection<String> getJobIds() {
+    evict();
+    return jobIdToJob.keySet();
+  }
+
+  /** The job left the queue and solves with that many move threads. */
+  public void run(Job job, int moveThreadCount) {
+    job.moveThreadCount = moveThreadCount;
+    job.queued = false;
+  }
+
+  public void updateBestSolution(Job job, Timetable solution) {
+    TimetableSnapshot snapshot = TimetableSnapshot.of(solution);
+    TimetableSnapshot previous = job.snapshot;
+    if (!job.finished) {
+      // carries the problem changes since the job started, see
+      // TimetableProblemChangeService.addLesson
+      job.problem = solution;
+    }
+    job.snapshot = snapshot;
+    job.version++;
+    bytes.addAndGet(snapshot.sizeInBytes() - (previous == null ? 0 : previous.sizeInBytes()));
+  }
+
+  /** Replaces the serialized timetable of the job, an older one is stale by its ETag. */
+  public void cacheSerializedTimetable(Job job, SerializedTimetable serializedTimetable) {
+    SerializedTimetable previous;
+    synchronized (job) {
+      previous = job.serializedTimetable;
+      job.serializedTimetable = serializedTimetable;
+    }
+    bytes.addAndGet(
+        serializedTimetable.sizeInBytes() - (previous == null ? 0 : previous.sizeInBytes()));
+  }
+
+  /** Drops the problem of the job, its snapshot is rehydrated against other lessons from now on. */
+  public void finish(Job job) {
+    job.problem = null;
+    job.queued = false;
+    job.finished = true;
+    job.lastReadMillis = clock.millis();
+    job.finishedLatch.countDown();
+    evict();
+  }
+
+  public void fail(Job job, Throwable exception) {
+    job.exception = exception;
+    finish(job);
+  }
+
+  synchronized void evict() {
+    long now = clock.millis();
+    jobIdToJob.values().stream()
+        .filter(job -> job.isExpired(now, timeToLive))
+        .toList()
+        .forEach(this::remove);
+    if (jobIdToJob.size() <= maxJobs && bytes.get() <= maxBytes) {
+      return;
+    }
+    List<Job> leastRecentlyRead =
+        jobIdToJob.values().stream()
+            .filter(job -> job.finished)
+            .sorted(Comparator.comparingLong(job -> job.lastReadMillis))
+            .toList();
+    for (Job job : leastRecentlyRead) {
+      if (jobIdToJob.size() <= maxJobs && bytes.get() <= maxBytes) {
+        return;
+      }
+      remove(job);
+    }
+  }
+
+  void remove(Job job) {
+    if (jobIdToJob.remove(job.jobId, job)) {
+      TimetableSnapshot snapshot = job.snapshot;
+      if (snapshot != null) {
+        bytes.addAndGet(-snapshot.sizeInBytes());
+      }
+      SerializedTimetable serializedTimetable;
+      synchronized (job) {
+        serializedTimetable = job.serializedTimetable;
+        job.serializedTimetable = null;
+      }
+      if (serializedTimetable != null) {
+        bytes.addAndGet(-serializedTimetable.sizeInBytes());
+      }
+      ConstraintTracer.remove(job.jobId);
+      log.debug("Evicted jobId ({}).", job.jobId);
+    }
+  }
+
+  @Getter
+  public static final class Job {
+
+    private final String jobId;
+    private final ScoreEngine scoreEngine;
+    private final LocalSearch localSearch;
+    private volatile int moveThreadCount;
+    // until the scheduler starts it
+    private volatile boolean queued = true;
+    private volatile Timetable problem;
+    private volatile TimetableSnapshot snapshot;
+    // of the snapshot, counts the best solutions
+    private volatile long version;
+    private volatile SerializedTimetable serializedTimetable;
+    private volatile Throwable exception;
+    private volatile boolean finished;
+    private volatile long lastReadMillis;
+
+    @Getter(AccessLevel.NONE)
+    private final CountDownLatch finishedLatch = new CountDownLatch(1);
+
+    private Job(
+        String jobId,
+        Timetable problem,
+        ScoreEngine scoreEngine,
+        LocalSearch localSearch,
+        long lastReadMillis) {
+      this.jobId = jobId;
+      this.problem = problem;
+      this.scoreEngine = scoreEngine;
+      this.localSearch = localSearch;
+      this.lastReadMillis = lastReadMillis;
+    }
+
+    /**
+     * Waits for the job to finish, with its final best solution once it was solving.
+     *
+     * @return false if it did not finish within the timeout
+     */
+    public boolean awaitFinished(Duration timeout) throws InterruptedException {
+      return finishedLatch.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    TimetableSnapshot getSnapshot() {
+      return snapshot;
+    }
+
+    private boolean isExpired(long now, Duration timeToLive) {
+      return finished && now - lastReadMillis > timeToLive.toMillis();
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package com.patrick.timetableappbackend.service;
+
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes the best solutions of the jobs back to the timeslot_id and room_id columns of the lesson
+ * table: the final one, and with timetable.persistence.checkpoint-interval a checkpoint at most
+ * that often while solving.
+ *
+ * <p>A write updates only the lessons whose assignment changed since the previous write of the job,
+ * in JDBC batches of timetable.persistence.batch-size in one transaction. The writes are done one
+ * at a time on a thread of their own; a best solution that comes in while the previous one of the
+ * job is still waiting to be written replaces it.
+ */
+@Service
+@Slf4j
+public class TimetablePersistenceService implements DisposableBean {
+
+  private static final String UPDATE_LESSON_SQL =
+      "update lesson set timeslot_id = ?, room_id = ? where id = ?";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean enabled;
+  private final Duration checkpointInterval;
+  private final int batchSize;
+
+  private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+  private final ConcurrentMap<String, PersistedJob> jobIdToPersistedJob = new ConcurrentHashMap<>();
+
+  public TimetablePersistenceService(
+      JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager,
+      @Value("${timetable.persistence.enabled:true}") boolean enabled,
+      @Value("${timetable.persistence.checkpoint-interval:0s}") Duration checkpointInterval,
+      @Value("${timetable.persistence.batch-size:500}") int batchSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.enabled = enabled;
+    this.checkpointInterval = checkpointInterval;
+    this.batchSize = batchSize;
+  }
+
+  /** Writes a best solution of a job that is still solving, unless one was written recently. */
+  public void checkpoint(TimetableJobStore.Job job) {
+    if (enabled && !checkpointInterval.isZero()) {
+      getPersistedJob(job.getJobId()).offer(job.getSnapshot(), false);
+    }
+  }
+
+  /** Writes the final best solution of a job. */
+  public void persist(TimetableJobStore.Job job) {
+    if (enabled) {
+      getPersistedJob(job.getJobId()).offer(job.getSnapshot(), true);
+    }
+  }
+
+  /** Forgets a job that failed, without writing its last checkpoint. */
+  public void discard(String jobId) {
+    PersistedJob persistedJob = jobIdToPersistedJob.remove(jobId);
+    if (persistedJob != null) {
+      persistedJob.discard();
+    }
+  }
+
+  /** Whether a solution of the job is being written or waits to be. */
+  boolean isPersisting(String jobId) {
+    return jobIdToPersistedJob.containsKey(jobId);
+  }
+
+  private PersistedJob getPersistedJob(String jobId) {
+    return jobIdToPersistedJob.computeIfAbsent(jobId, PersistedJob::new);
+  }
+
+  private void write(String jobId, List<LessonAssignment> changes) {
+    long start = System.currentTimeMillis();
+    transactionTemplate.executeWithoutResult(
+        status ->
+            jdbcTemplate.batchUpdate(
+                UPDATE_LESSON_SQL,
+                changes,
+                batchSize,
+                (statement, change) -> {
+                  statement.setObject(1, change.getTimeslotId(), Types.BIGINT);
+                  statement.setObject(2, change.getRoomId(), Types.BIGINT);
+                  statement.setLong(3, change.getLessonId());
+                }));
+    log.debug(
+        "Persisted {} lessons of jobId ({}) in {}ms.",
+        changes.size(),
+        jobId,
+        System.currentTimeMillis() - start);
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    // lets the final solutions of the jobs terminated on shutdown be written
+    writeExecutor.shutdown();
+    if (!writeExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+      log.warn("Shut down before persisting the solutions of all jobs.");
+    }
+  }
+
+  private final class PersistedJob {
+
+    private final String jobId;
+    // written by the write thread only
+    private TimetableSnapshot persisted;
+
+    private TimetableSnapshot pending;
+    private boolean pendingFinal;
+    private boolean writing;
+    private boolean discarded;
+    private long lastOfferMillis;
+
+    private PersistedJob(String jobId) {
+      this.jobId = jobId;
+    }
+
+    synchronized void offer(TimetableSnapshot snapshot, boolean isFinal) {
+      long now = System.currentTimeMillis();
+      if (discarded
+          || snapshot == null
+          || (!isFinal && now - lastOfferMillis < checkpointInterval.toMillis())) {
+        return;
+      }
+      lastOfferMillis = now;
+      pending = snapshot;
+      pendingFinal |= isFinal;
+      if (!writing) {
+        writing = true;
+        writeExecutor.execute(this::write);
+      }
+    }
+
+    synchronized void discard() {
+      discarded = true;
+      pending = null;
+    }
+
+    private void write() {
+      boolean drained = false;
+      try {
+        // a snapshot offered during a write is written right after it, here
+        for (TimetableSnapshot snapshot = takePending();
+            snapshot != null;
+            snapshot = takePending()) {
+          write(snapshot);
+        }
+        drained = true;
+      } finally {
+        if (!drained) {
+          synchronized (this) {
+            writing = false;
+            jobIdToPersistedJob.remove(jobId, this);
+          }
+        }
+      }
+    }
+
+    /** The snapshot to write next, or null once there is none and the write ends. */
+    private synchronized TimetableSnapshot takePending() {
+      TimetableSnapshot snapshot = pending;
+      pending = null;
+      if (snapshot == null) {
+        writing = false;
+        if (pendingFinal || discarded) {
+          jobIdToPersistedJob.remove(jobId, this);
+        }
+      }
+      return snapshot;
+    }
+
+    private void write(TimetableSnapshot snapshot) {
+      try {
+        List<LessonAssignment> changes =
+            persisted == null ? null : snapshot.changesSince(persisted);
+        if (changes == null) {
+          changes = snapshot.assignments();
+        }
+        if (!changes.isEmpty()) {
+          TimetablePersistenceService.this.write(jobId, changes);
+        }
+        persisted = snapshot;
+      } catch (RuntimeException e) {
+        // the next write of the job writes all lessons again
+        persisted = null;
+        log.error("Failed persisting the solution of jobId ({}).", jobId, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.api.solver.SolverStatus;
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.StudentGroup;
+import com.patrick.timetableappbackend.model.Teacher;
+import com.patrick.timetableappbackend.model.TeacherAvailability;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.repository.LessonRepo;
+import com.patrick.timetableappbackend.solver.change.AddLessonChange;
+import com.patrick.timetableappbackend.solver.change.CloseRoomChange;
+import com.patrick.timetableappbackend.solver.change.RemoveTeacherTimeslotChange;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+/** Changes the problem of a job of TimetableService while it solves, see ProblemChange. */
+@Service
+@RequiredArgsConstructor
+public class TimetableProblemChangeService {
+
+  private final TimetableService timetableService;
+  private final PortfolioSolveService portfolioSolveService;
+  private final LessonRepo lessonRepo;
+
+  @Value("${timetable.teacher-availability:TIMESLOTS}")
+  private TeacherAvailability.Mode teacherAvailabilityMode;
+
+  @Value("${timetable.filtered-value-ranges:true}")
+  private boolean filteredValueRanges;
+
+  /**
+   * Adds a lesson to a job while it solves, see AddLessonChange. A lesson without an id is saved
+   * first, one with an id must have been.
+   */
+  public Lesson addLesson(String jobId, Lesson lesson) {
+    Timetable problem = getSolvingProblem(jobId);
+    if (lesson.getId() != null) {
+      TimetableService.validateId(jobId, "lesson", lesson.getId());
+      if (problem.getLessons().stream().anyMatch(other -> lesson.getId().equals(other.getId()))) {
+        throw new TimetableSolverException(
+            jobId, HttpStatus.CONFLICT, "Lesson " + lesson.getId() + " is already in the job.");
+      }
+      if (!lessonRepo.existsById(lesson.getId())) {
+        throw new TimetableSolverException(
+            jobId, HttpStatus.NOT_FOUND, "No lesson found with id: " + lesson.getId());
+      }
+    }
+    // a teacher or student group new to the job would need the problem to be indexed again
+    if (lesson.getTeacher() == null
+        || problem.getLessons().stream()
+            .noneMatch(other -> sameId(other.getTeacher(), lesson.getTeacher()))) {
+      throw new TimetableSolverException(
+          jobId, HttpStatus.BAD_REQUEST, "The teacher of the lesson has no lessons in the job.");
+    }
+    if (lesson.getStudentGroup() != null
+        && problem.getLessons().stream()
+            .noneMatch(other -> sameId(other.getStudentGroup(), lesson.getStudentGroup()))) {
+      throw new TimetableSolverException(
+          jobId,
+          HttpStatus.BAD_REQUEST,
+          "The student group of the lesson has no lessons in the job.");
+    }
+    if (lesson.getId() != null) {
+      addProblemChange(jobId, new AddLessonChange(lesson, filteredValueRanges));
+      return lesson;
+    }
+    Lesson added = lessonRepo.save(lesson);
+    CompletableFuture<Void> applied;
+    try {
+      applied = addProblemChange(jobId, new AddLessonChange(added, filteredValueRanges));
+    } catch (TimetableSolverException e) {
+      lessonRepo.delete(added);
+      throw e;
+    }
+    // cancelled when the job ends before the change is in a best solution
+    applied.whenComplete(
+        (ignored, exception) -> {
+          if (exception != null) {
+            lessonRepo.delete(added);
+          }
+        });
+    return added;
+  }
+
+  /** Makes a teacher unavailable in a timeslot of a job while it solves. */
+  public void removeTeacherTimeslot(String jobId, long teacherId, long timeslotId) {
+    Timetable problem = getSolvingProblem(jobId);
+    Teacher teacher =
+        problem.getLessons().stream()
+            .map(Lesson::getTeacher)
+            .filter(candidate -> candidate != null && Objects.equals(candidate.getId(), teacherId))
+            .findFirst()
+            .orElseThrow(
+                () ->
+                    new TimetableSolverException(
+                        jobId,
+                        HttpStatus.NOT_FOUND,
+                        "Teacher " + teacherId + " has no lessons in the job."));
+    if (problem.getTimeslots().stream()
+        .noneMatch(timeslot -> Objects.equals(timeslot.getId(), timeslotId))) {
+      throw new TimetableSolverException(
+          jobId, HttpStatus.NOT_FOUND, "Timeslot " + timeslotId + " is not in the job.");
+    }
+    if (RemoveTeacherTimeslotChange.remainingTimeslots(teacher, problem.getTimeslots(), timeslotId)
+        .isEmpty()) {
+      throw new TimetableSolverException(
+          jobId, HttpStatus.CONFLICT, "Teacher " + teacherId + " would have no timeslot left.");
+    }
+    addProblemChange(
+        jobId, new RemoveTeacherTimeslotChange(teacherId, timeslotId, teacherAvailabilityMode));
+  }
+
+  /** Takes a room out of a job while it solves, see CloseRoomChange. */
+  public void closeRoom(String jobId, long roomId) {
+    Timetable problem = getSolvingProblem(jobId);
+    if (problem.getRooms().stream().noneMatch(room -> Objects.equals(room.getId(), roomId))) {
+      throw new TimetableSolverException(
+          jobId, HttpStatus.NOT_FOUND, "Room " + roomId + " is not in the job.");
+    }
+    if (problem.getRooms().size() == 1) {
+      throw new TimetableSolverException(
+          jobId, HttpStatus.CONFLICT, "Room " + roomId + " is the last room of the job.");
+    }
+    addProblemChange(jobId, new CloseRoomChange(roomId));
+  }
+
+  private Timetable getSolvingProblem(String jobId) {
+    TimetableJobStore.Job job = timetableService.getJobAndCheckForExceptions(jobId);
+    Timetable problem = job.getProblem();
+    if (job.isQueued()) {
+      throw new TimetableSolverException(jobId, HttpStatus.CONFLICT, "The job is queued.");
+    }
+    if (problem == null || timetableService.getSolverStatus(job) == SolverStatus.NOT_SOLVING) {
+      throw new TimetableSolverException(jobId, HttpStatus.CONFLICT, "The job is not solving.");
+    }
+    return problem;
+  }
+
+  private CompletableFuture<Void> addProblemChange(
+      String jobId, ProblemChange<Timetable> problemChange) {
+    // the racers solve the problem as it was
+    portfolioSolveService.abortRace(jobId);
+    try {
+      // applied once the solver is between two steps, the solver keeps its best solution and
+      // restarts its phases from it
+      return timetableService.getSolverManager(jobId).addProblemChange(jobId, problemChange);
+    } catch (IllegalStateException e) {
+      // finished since getSolvingProblem
+      throw new TimetableSolverException(jobId, HttpStatus.CONFLICT, "The job is not solving.");
+    }
+  }
+
+  private static boolean sameId(Teacher teacher, Teacher other) {
+    return teacher != null && Objects.equals(teacher.getId(), other.getId());
+  }
+
+  private static boolean sameId(StudentGroup studentGroup, StudentGroup other) {
+    return studentGroup != null && Objects.equals(studentGroup.getId(), other.getId());
+  }
+}
@@ -3,47 +3,101 @@ package com.patrick.timetableappbackend.service;
 import ai.timefold.solver.core.api.score.analysis.ScoreAnalysis;
 import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
 import ai.timefold.solver.core.api.solver.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.patrick.timetableappbackend.config.MoveThreadCountPolicy;
+import com.patrick.timetableappbackend.config.ScoreEngineSolverManagers;
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import com.patrick.timetableappbackend.dto.SolveRequest;
 import com.patrick.timetableappbackend.exception.TimetableSolverException;
 import com.patrick.timetableappbackend.model.*;
 import com.patrick.timetableappbackend.repository.ConstraintRepo;
 import com.patrick.timetableappbackend.repository.LessonRepo;
 import com.patrick.timetableappbackend.repository.RoomRepo;
 import com.patrick.timetableappbackend.repository.TimeslotRepo;
+import com.patrick.timetableappbackend.solver.ConstraintTracer;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
 import com.patrick.timetableappbackend.solver.TimetableConstraintConfiguration;
+import com.patrick.timetableappbackend.solver.change.AdoptAssignmentChange;
+import com.patrick.timetableappbackend.utils.LessonPinning;
+import com.patrick.timetableappbackend.utils.PlanningIndexer;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class TimetableService {
+public class TimetableService implements DisposableBean {
   private static final Logger LOGGER = LoggerFactory.getLogger(TimetableService.class);
 
   private final RoomRepo roomRepo;
   private final TimeslotRepo timeslotRepo;
   private final LessonRepo lessonRepo;
   private final ConstraintRepo constraintRepo;
-  private final SolverManager<Timetable, String> solverManager;
+  private final ScoreEngineSolverManagers solverManagers;
+  private final MoveThreadCountPolicy moveThreadCountPolicy;
+  private final PartitionedSolveService partitionedSolveService;
+  private final PortfolioSolveService portfolioSolveService;
+  private final TimetableJobStore jobStore;
+  private final TimetableJobScheduler scheduler;
+  private final TimetableJobLifecycle lifecycle;
+  private final TimetableEventService eventService;
+  private final TimetableCheckpointService checkpointService;
+  private final TimetableJobRegistry jobRegistry;
+  private final TimetableWorkerPool workerPool;
+  private final ObjectMapper objectMapper;
   private final SolutionManager<Timetable, HardSoftScore> solutionManager;
+  private final TimetableTerminationService terminationService;
+  private final TimetableConstraintTraceService constraintTraceService;
 
   @Value("${timefold.solver.termination.spent-limit}")
   private String duration;
 
-  // TODO: Without any "time to live", the map may eventually grow out of memory.
-  private final ConcurrentMap<String, Job> jobIdToJob = new ConcurrentHashMap<>();
+  @Value("${timetable.score-engine:CONSTRAINT_STREAMS}")
+  private ScoreEngine defaultScoreEngine;
+
+  @Value("${timetable.partitioned.partition-by:NONE}")
+  private PartitionKey defaultPartitionKey;
+
+  @Value("${timetable.warm-start.pin-unrelated:true}")
+  private boolean warmStartPinUnrelated;
+
+  @Value("${timetable.teacher-availability:TIMESLOTS}")
+  private TeacherAvailability.Mode teacherAvailabilityMode;
+
+  @Value("${timetable.filtered-value-ranges:true}")
+  private boolean filteredValueRanges;
+
+  @Value("${timetable.termination-timeout:30s}")
+  private Duration terminationTimeout;
 
   public Collection<String> getJobIds() {
-    return jobIdToJob.keySet();
+    if (!jobRegistry.isEnabled()) {
+      return jobStore.getJobIds();
+    }
+    Set<String> jobIds = new LinkedHashSet<>(jobStore.getJobIds());
+    jobIds.addAll(jobRegistry.getJobIds());
+    return jobIds;
   }
 
   public Timetable getTimetableData() {
@@ -57,84 +111,610 @@ public class TimetableService {
         new TimetableConstraintConfiguration(constraintModels);
     final List<Lesson> lessons = lessonRepo.findAll();
 
+    // not indexed: these are the managed entities, and the client posts the problem back to solve
     return new Timetable(
         timeslots, rooms, lessons, timetableConstraintConfiguration, problemDuration);
   }
 
-  // How to integrate with Spring JPA to persist the Timetable solution
-  // How to get the best solution
-  public String solve(Timetable problem) {
-    final ConcurrentMap<String, Timetable> timetableSolution = new ConcurrentHashMap<>();
+  public String solve(Timetable problem, SolveRequest request) {
     String jobId = UUID.randomUUID().toString();
-    jobIdToJob.put(jobId, Job.ofTimetable(problem));
+    terminationService.validate(jobId, request.getTermination());
+    validateIds(jobId, problem);
+    if (request.getMoveThreadCount() != null) {
+      try {
+        moveThreadCountPolicy.checkRequested(request.getMoveThreadCount());
+      } catch (IllegalArgumentException e) {
+        throw new TimetableSolverException(jobId, HttpStatus.BAD_REQUEST, e.getMessage());
+      }
+    }
+    // the problem is deserialized from the request, a copy of its own to index
+    PlanningIndexer.index(problem, teacherAvailabilityMode, filteredValueRanges);
+    if (request.isWarmStart()) {
+      int movable =
+          LessonPinning.warmStart(
+              problem,
+              lessonRepo.findAllById(problem.getLessons().stream().map(Lesson::getId).toList()),
+              warmStartPinUnrelated);
+      LOGGER.info(
+          "Warm starting jobId ({}) with {} of {} lessons movable.",
+          jobId,
+          movable,
+          problem.getLessons().size());
+    }
+    JobSettings settings =
+        new JobSettings(
+            request.getScoreEngine() != null ? request.getScoreEngine() : defaultScoreEngine,
+            request.getLocalSearch() != null
+                ? request.getLocalSearch()
+                : portfolioSolveService.getDefaultLocalSearch(problem.getLessons().size()),
+            request.isPortfolio(),
+            request.getMoveThreadCount(),
+            request.getPartitionKey() != null ? request.getPartitionKey() : defaultPartitionKey,
+            request.isWarmStart(),
+            problem.getDuration(),
+            request.getTermination(),
+            request.getPriority() != null ? request.getPriority() : JobPriority.NORMAL,
+            request.getUser());
+    if (workerPool.isEnabled()) {
+      // solved by whichever worker claims it first, see TimetableWorker
+      workerPool.enqueue(
+          jobId, settings, TimetableSnapshot.of(problem), writeProblem(jobId, problem));
+      LOGGER.info("Queued jobId ({}) in the worker pool.", jobId);
+      return jobId;
+    }
+    submit(jobId, problem, settings, settings.partitionKey(), Duration.ZERO, false);
+    return jobId;
+  }
+
+  /** Solves a job this node claimed from the worker pool, see TimetableWorker. */
+  public void solveClaimed(TimetableWorkerPool.ClaimedJob claimed) {
+    String jobId = claimed.checkpoint().jobId();
+    try {
+      resume(claimed.checkpoint(), readProblem(jobId, claimed.problem()), true);
+      LOGGER.info("Claimed jobId ({}) from the worker pool.", jobId);
+    } catch (RuntimeException e) {
+      lifecycle.failedResuming(jobId, true, e);
+      LOGGER.error("Failed starting claimed jobId ({}).", jobId, e);
+    }
+  }
+
+  /** Terminates a job of this node another node asked to, without waiting for it. */
+  public void terminateClaimed(String jobId) {
+    jobStore.get(jobId).ifPresent(this::terminateEarly);
+  }
+
+  /**
+   * Resumes the jobs checkpointed by the previous run of the node, see TimetableCheckpointService.
+   * Under their old job ids, so clients keep polling them.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void resumeCheckpointedJobs() {
+    for (TimetableCheckpoint checkpoint : checkpointService.readCheckpoints()) {
+      try {
+        resume(checkpoint, null, false);
+        LOGGER.info(
+            "Resumed jobId ({}) after {} of solving.", checkpoint.jobId(), checkpoint.spent());
+      } catch (RuntimeException e) {
+        lifecycle.failedResuming(checkpoint.jobId(), false, e);
+        LOGGER.error("Failed resuming jobId ({}).", checkpoint.jobId(), e);
+      }
+    }
+  }
+
+  /**
+   * The lessons of the checkpoint, seeded with its assignment: the construction heuristic only
+   * places the lessons it left unassigned and the local search goes on from there. The problem
+   * changes made while solving are lost, other than the lessons added.
+   *
+   * @param posted the problem as posted, null for the lessons, timeslots and rooms as they are now
+   * @param claimed from the worker pool rather than checkpointed on this node
+   */
+  private void resume(TimetableCheckpoint checkpoint, Timetable posted, boolean claimed) {
+    TimetableSnapshot snapshot = checkpoint.snapshot();
+    JobSettings settings = checkpoint.settings();
+    Timetable problem = posted != null ? rehydrate(snapshot, posted) : rehydrateFromRepos(snapshot);
+    if (problem.getLessons().isEmpty()) {
+      throw new IllegalStateException("The lessons of the job were deleted.");
+    }
+    problem.setScore(null);
+    PlanningIndexer.index(problem, teacherAvailabilityMode, filteredValueRanges);
+    if (settings.warmStart()) {
+      LessonPinning.warmStart(
+          problem,
+          lessonRepo.findAllById(problem.getLessons().stream().map(Lesson::getId).toList()),
+          warmStartPinUnrelated);
+    }
+    // a partitioned job has a best solution, with a score, once its partitions were merged
+    PartitionKey partitionKey =
+        snapshot.score() != null ? PartitionKey.NONE : settings.partitionKey();
+    submit(checkpoint.jobId(), problem, settings, partitionKey, checkpoint.spent(), claimed);
+  }
+
+  /**
+   * @param partitionKey to solve the partitions by first, see PartitionedSolveService
+   * @param spent solving before the job was resumed
+   * @param claimed from the worker pool, its best solutions are written back there rather than
+   *     checkpointed to disk
+   */
+  private void submit(
+      String jobId,
+      Timetable problem,
+      JobSettings settings,
+      PartitionKey partitionKey,
+      Duration spent,
+      boolean claimed) {
+    TimetableJobStore.Job job = lifecycle.submitted(jobId, problem, settings, spent, claimed);
+    constraintTraceService.register(jobId);
+    try {
+      scheduler.submit(
+          jobId,
+          settings.priority(),
+          settings.user(),
+          () -> startSolving(job, settings, partitionKey, spent));
+    } catch (TimetableSolverException e) {
+      lifecycle.rejected(job, e);
+      throw e;
+    }
+  }
+
+  /** Starts solving a job once the scheduler lets it, see TimetableJobScheduler. */
+  private void startSolving(
+      TimetableJobStore.Job job, JobSettings settings, PartitionKey partitionKey, Duration spent) {
+    String jobId = job.getJobId();
+    // reserved now rather than when queued
+    int jobMoveThreadCount = lifecycle.started(job, settings.moveThreadCount());
+    LOGGER.info("Solving jobId ({}) with {} move threads.", jobId, jobMoveThreadCount);
+    if (partitionKey == PartitionKey.NONE) {
+      startSolver(
+          job,
+          jobMoveThreadCount,
+          settings.portfolio(),
+          terminationService.getConfigOverride(settings, spent));
+      return;
+    }
+    // the spent limit of the job covers its partitions and its repair solve
+    Duration maxSpentLimit = terminationService.getRemainingSpentLimit(settings, spent);
+    long partitionsStartedMillis = System.currentTimeMillis();
+    // not on the thread that started it, the repair solve is submitted once they are merged
+    partitionedSolveService
+        .solvePartitions(jobId, job.getProblem(), partitionKey, job.getScoreEngine(), maxSpentLimit)
+        .whenComplete(
+            (merged, exception) -> {
+              if (exception != null) {
+                failStarting(job, jobMoveThreadCount, exception.getCause());
+              } else {
+                Duration repairSpent =
+                    maxSpentLimit == null
+                        ? spent
+                        : spent.plusMillis(System.currentTimeMillis() - partitionsStartedMillis);
+                startSolver(
+                    job,
+                    jobMoveThreadCount,
+                    settings.portfolio(),
+                    terminationService.getConfigOverride(settings, repairSpent));
+              }
+              // known to the SolverManager by now, which terminates it from here on
+              partitionedSolveService.remove(jobId);
+            });
+  }
+
+  private void startSolver(
+      TimetableJobStore.Job job,
+      int jobMoveThreadCount,
+      boolean portfolio,
+      SolverConfigOverride<Timetable> configOverride) {
+    SolverManager<Timetable, String> solverManager;
+    try {
+      solverManager =
+          solverManagers.acquire(job.getScoreEngine(), job.getLocalSearch(), jobMoveThreadCount);
+    } catch (RuntimeException e) {
+      failStarting(job, jobMoveThreadCount, e);
+      return;
+    }
+    try {
+      runSolver(job, solverManager, jobMoveThreadCount, portfolio, configOverride);
+    } catch (RuntimeException e) {
+      failStarting(job, jobMoveThreadCount, e);
+      solverManagers.release(job.getScoreEngine(), job.getLocalSearch(), jobMoveThreadCount);
+    }
+  }
+
+  private void failStarting(TimetableJobStore.Job job, int jobMoveThreadCount, Throwable e) {
+    lifecycle.failed(job, e, jobMoveThreadCount);
+    LOGGER.error("Failed starting jobId ({}).", job.getJobId(), e);
+  }
+
+  private void runSolver(
+      TimetableJobStore.Job job,
+      SolverManager<Timetable, String> solverManager,
+      int jobMoveThreadCount,
+      boolean portfolio,
+      SolverConfigOverride<Timetable> configOverride) {
+    String jobId = job.getJobId();
+    ScoreEngine scoreEngine = job.getScoreEngine();
     solverManager
         .solveBuilder()
         .withProblemId(jobId)
-        // todo: to see how to implement this termination Config properly on a new version of
-        // Timefold
-        // no need to add duration because we take it from application.properties
-        //                .withConfigOverride(new SolverConfigOverride<Timetable>()
-        //                        .withTerminationConfig(new
-        // TerminationConfig().withMinutesSpentLimit(problem.getDuration())))
-        .withProblemFinder(jobId_ -> jobIdToJob.get(jobId).timetable)
-        .withBestSolutionConsumer(solution -> jobIdToJob.put(jobId, Job.ofTimetable(solution)))
-        // .withFinalBestSolutionConsumer(solution -> jobIdToJob/timetableSolution.put(jobId,
-        // solution))
+        .withConfigOverride(configOverride)
+        .withProblemFinder(
+            jobId_ -> {
+              // the problem finder runs on the solver thread
+              ConstraintTracer.bindCurrentThread(jobId);
+              return job.getProblem();
+            })
+        .withFirstInitializedSolutionConsumer(
+            solution -> {
+              if (lifecycle.takeTerminatedWhilePartitioned(jobId)) {
+                getSolverManager(jobId).terminateEarly(jobId);
+              } else if (portfolio) {
+                portfolioSolveService.startRace(
+                    jobId,
+                    solution,
+                    scoreEngine,
+                    job.getLocalSearch(),
+                    configOverride,
+                    () ->
+                        Optional.ofNullable(job.getSnapshot())
+                            .map(TimetableSnapshot::score)
+                            .orElse(null),
+                    assignments -> adopt(jobId, assignments));
+              }
+            })
+        .withBestSolutionConsumer(solution -> lifecycle.bestSolutionChanged(job, solution))
+        .withFinalBestSolutionConsumer(
+            solution -> {
+              portfolioSolveService.endRace(jobId);
+              lifecycle.finished(job, solution, jobMoveThreadCount);
+              // last, the SolverManager may be closed once it runs no job
+              solverManagers.release(scoreEngine, job.getLocalSearch(), jobMoveThreadCount);
+            })
         .withExceptionHandler(
             (jobId_, exception) -> {
-              jobIdToJob.put(jobId, Job.ofException(exception));
+              portfolioSolveService.abortRace(jobId);
+              lifecycle.failed(job, exception, jobMoveThreadCount);
+              // last, the SolverManager may be closed once it runs no job
+              solverManagers.release(scoreEngine, job.getLocalSearch(), jobMoveThreadCount);
               LOGGER.error("Failed solving jobId ({}).", jobId, exception);
             })
         .run();
-    return jobId;
+  }
+
+  /** Moves a job to the better solution of a racer, see PortfolioSolveService. */
+  private void adopt(String jobId, List<LessonAssignment> assignments) {
+    try {
+      getSolverManager(jobId).addProblemChange(jobId, new AdoptAssignmentChange(assignments));
+    } catch (IllegalStateException e) {
+      // finished since the round started, the race ends with it
+      LOGGER.debug("JobId ({}) ended before adopting a solution of its race.", jobId);
+    }
+  }
+
+  // the jobs are kept as a TimetableSnapshot, which holds the ids as ints
+  private static void validateIds(String jobId, Timetable problem) {
+    Objects.requireNonNullElse(problem.getTimeslots(), List.<Timeslot>of())
+        .forEach(timeslot -> validateId(jobId, "timeslot", timeslot.getId()));
+    Objects.requireNonNullElse(problem.getRooms(), List.<Room>of())
+        .forEach(room -> validateId(jobId, "room", room.getId()));
+    for (Lesson lesson : problem.getLessons()) {
+      validateId(jobId, "lesson", lesson.getId());
+      if (lesson.getTimeslot() != null) {
+        validateId(jobId, "timeslot", lesson.getTimeslot().getId());
+      }
+      if (lesson.getRoom() != null) {
+        validateId(jobId, "room", lesson.getRoom().getId());
+      }
+    }
+  }
+
+  static void validateId(String jobId, String fact, Long id) {
+    if (!TimetableSnapshot.isValidId(id)) {
+      throw new TimetableSolverException(
+          jobId,
+          HttpStatus.BAD_REQUEST,
+          "A " + fact + " id must be between 0 and " + Integer.MAX_VALUE + ", not " + id + ".");
+    }
   }
 
   public ScoreAnalysis<HardSoftScore> analyze(
       Timetable problem, ScoreAnalysisFetchPolicy fetchPolicy) {
+    PlanningIndexer.index(problem, teacherAvailabilityMode, filteredValueRanges);
     return fetchPolicy == null
         ? solutionManager.analyze(problem)
         : solutionManager.analyze(problem, fetchPolicy);
   }
 
   public Timetable getTimetable(String jobId) {
-    Timetable timetable = getTimetableAndCheckForExceptions(jobId);
-    SolverStatus solverStatus = solverManager.getSolverStatus(jobId);
-    timetable.setSolverStatus(solverStatus);
+    Optional<TimetableJobRegistry.RegisteredJob> registeredJob = getRegisteredJob(jobId);
+    if (registeredJob.isPresent()) {
+      return rehydrate(registeredJob.get());
+    }
+    TimetableJobStore.Job job = getJobAndCheckForExceptions(jobId);
+    Timetable timetable = rehydrate(job);
+    timetable.setSolverStatus(getSolverStatus(job));
+    timetable.setMoveThreadCount(job.getMoveThreadCount());
     return timetable;
   }
 
+  /**
+   * The timetable of {@link #getTimetable}, serialized once per best solution and solver status
+   * however many clients poll it.
+   */
+  public SerializedTimetable getSerializedTimetable(String jobId) {
+    Optional<TimetableJobRegistry.RegisteredJob> registeredJob = getRegisteredJob(jobId);
+    if (registeredJob.isPresent()) {
+      return getSerializedTimetable(registeredJob.get());
+    }
+    TimetableJobStore.Job job = getJobAndCheckForExceptions(jobId);
+    SolverStatus solverStatus = getSolverStatus(job);
+    // read before the snapshot is, a newer snapshot under an older ETag is re-serialized next time
+    String eTag = "W/\"" + job.getVersion() + "-" + solverStatus + "\"";
+    SerializedTimetable serializedTimetable = job.getSerializedTimetable();
+    if (serializedTimetable != null && serializedTimetable.eTag().equals(eTag)) {
+      return serializedTimetable;
+    }
+    synchronized (job) {
+      serializedTimetable = job.getSerializedTimetable();
+      if (serializedTimetable != null && serializedTimetable.eTag().equals(eTag)) {
+        return serializedTimetable;
+      }
+      Timetable timetable = rehydrate(job);
+      timetable.setSolverStatus(solverStatus);
+      timetable.setMoveThreadCount(job.getMoveThreadCount());
+      serializedTimetable = serialize(jobId, eTag, timetable);
+      jobStore.cacheSerializedTimetable(job, serializedTimetable);
+      return serializedTimetable;
+    }
+  }
+
+  /** Cached in the near-cache of the job registry, by the version another node wrote. */
+  private SerializedTimetable getSerializedTimetable(
+      TimetableJobRegistry.RegisteredJob registeredJob) {
+    String jobId = registeredJob.jobId();
+    checkForException(registeredJob);
+    String eTag =
+        "W/\"registry-" + registeredJob.version() + "-" + getSolverStatus(registeredJob) + "\"";
+    SerializedTimetable serializedTimetable = jobRegistry.getSerializedTimetable(jobId);
+    if (serializedTimetable != null && serializedTimetable.eTag().equals(eTag)) {
+      return serializedTimetable;
+    }
+    serializedTimetable = serialize(jobId, eTag, rehydrate(registeredJob));
+    jobRegistry.cacheSerializedTimetable(jobId, serializedTimetable);
+    return serializedTimetable;
+  }
+
+  private SerializedTimetable serialize(String jobId, String eTag, Timetable timetable) {
+    try {
+      return SerializedTimetable.of(eTag, objectMapper.writeValueAsBytes(timetable));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed serializing the timetable of " + jobId + ".", e);
+    }
+  }
+
   public Timetable getStatus(String jobId) {
-    Timetable timetable = getTimetableAndCheckForExceptions(jobId);
-    SolverStatus solverStatus = solverManager.getSolverStatus(jobId);
-    return new Timetable(timetable.getScore(), solverStatus);
+    Optional<TimetableJobRegistry.RegisteredJob> registeredJob = getRegisteredJob(jobId);
+    if (registeredJob.isPresent()) {
+      checkForException(registeredJob.get());
+      return new Timetable(
+          registeredJob.get().checkpoint().snapshot().score(),
+          getSolverStatus(registeredJob.get()));
+    }
+    TimetableJobStore.Job job = getJobAndCheckForExceptions(jobId);
+    TimetableSnapshot snapshot = job.getSnapshot();
+    Timetable status =
+        new Timetable(snapshot == null ? null : snapshot.score(), getSolverStatus(job));
+    status.setMoveThreadCount(job.getMoveThreadCount());
+    status.setQueuePosition(scheduler.getQueuePosition(jobId));
+    return status;
   }
 
+  private Timetable rehydrate(TimetableJobStore.Job job) {
+    // read the problem first, it is dropped once the job finishes, after its last snapshot
+    Timetable problem = job.getProblem();
+    TimetableSnapshot snapshot = job.getSnapshot();
+    if (snapshot == null) {
+      if (problem == null) {
+        // failed since getJobAndCheckForExceptions
+        throw new TimetableSolverException(job.getJobId(), job.getException());
+      }
+      snapshot = TimetableSnapshot.of(problem);
+    }
+    if (problem != null) {
+      return rehydrate(snapshot, problem);
+    }
+    return rehydrateFromRepos(snapshot);
+  }
+
+  private static Timetable rehydrate(TimetableSnapshot snapshot, Timetable problem) {
+    return snapshot.rehydrate(
+        problem.getLessons(),
+        problem.getTimeslots(),
+        problem.getRooms(),
+        problem.getTimetableConstraintConfiguration());
+  }
+
+  /** A snapshot against the current data, without the lessons deleted since. */
+  private Timetable rehydrateFromRepos(TimetableSnapshot snapshot) {
+    List<Lesson> lessons =
+        lessonRepo.findAllById(
+            Arrays.stream(snapshot.lessonIds()).mapToObj(Long::valueOf).toList());
+    List<ConstraintModel> constraintModels = constraintRepo.findAll();
+    return snapshot.rehydrate(
+        lessons,
+        timeslotRepo.findAll(),
+        roomRepo.findAll(),
+        new TimetableConstraintConfiguration(constraintModels));
+  }
+
+  /**
+   * A job of another node, or one that ended on this node since it restarted, see
+   * TimetableJobRegistry. The problem changes, events and constraint traces of such a job are only
+   * served by the node solving it.
+   */
+  private Optional<TimetableJobRegistry.RegisteredJob> getRegisteredJob(String jobId) {
+    if (!jobRegistry.isEnabled() || jobStore.get(jobId).isPresent()) {
+      return Optional.empty();
+    }
+    return jobRegistry.get(jobId);
+  }
+
+  private Timetable rehydrate(TimetableJobRegistry.RegisteredJob registeredJob) {
+    checkForException(registeredJob);
+    TimetableSnapshot snapshot = registeredJob.checkpoint().snapshot();
+    // the problem of a job of the worker pool as posted, whichever node solves it
+    Timetable posted =
+        readProblem(registeredJob.jobId(), jobRegistry.getProblem(registeredJob.jobId()));
+    Timetable timetable =
+        posted != null ? rehydrate(snapshot, posted) : rehydrateFromRepos(snapshot);
+    timetable.setSolverStatus(getSolverStatus(registeredJob));
+    return timetable;
+  }
+
+  private byte[] writeProblem(String jobId, Timetable problem) {
+    try {
+      return objectMapper.writeValueAsBytes(problem);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed serializing the problem of " + jobId + ".", e);
+    }
+  }
+
+  // null for a job not queued in the worker pool
+  private Timetable readProblem(String jobId, byte[] problem) {
+    if (problem == null) {
+      return null;
+    }
+    try {
+      return objectMapper.readValue(problem, Timetable.class);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed reading the problem of " + jobId + ".", e);
+    }
+  }
+
+  private static void checkForException(TimetableJobRegistry.RegisteredJob registeredJob) {
+    if (registeredJob.status() == SolveJobStatus.FAILED) {
+      throw new TimetableSolverException(
+          registeredJob.jobId(), HttpStatus.INTERNAL_SERVER_ERROR, registeredJob.error());
+    }
+  }
+
+  private static SolverStatus getSolverStatus(TimetableJobRegistry.RegisteredJob registeredJob) {
+    return switch (registeredJob.status()) {
+      case QUEUED -> SolverStatus.SOLVING_SCHEDULED;
+      case RUNNING -> SolverStatus.SOLVING_ACTIVE;
+      case FINISHED, FAILED -> SolverStatus.NOT_SOLVING;
+    };
+  }
+
+  SolverStatus getSolverStatus(TimetableJobStore.Job job) {
+    if (job.isQueued()) {
+      // in the queue of the scheduler rather than of the SolverManager
+      return SolverStatus.SOLVING_SCHEDULED;
+    }
+    if (partitionedSolveService.isSolvingPartitions(job.getJobId())) {
+      return SolverStatus.SOLVING_ACTIVE;
+    }
+    return solverManagers
+        .get(job.getScoreEngine(), job.getLocalSearch(), job.getMoveThreadCount())
+        .getSolverStatus(job.getJobId());
+  }
+
+  /**
+   * Terminates a job and waits, at most timetable.termination-timeout, for its final best
+   * solution: terminateEarlyAndWait, which the SolverManager does not have yet (see
+   * https://github.com/TimefoldAI/timefold-solver/issues/77).
+   */
   public Timetable terminateSolving(String jobId) {
-    // TODO: Replace with .terminateEarlyAndWait(... [, timeout]); see
-    // https://github.com/TimefoldAI/timefold-solver/issues/77
-    solverManager.terminateEarly(jobId);
+    Optional<TimetableJobRegistry.RegisteredJob> registeredJob = getRegisteredJob(jobId);
+    if (registeredJob.isPresent()) {
+      return terminateRegistered(jobId);
+    }
+    TimetableJobStore.Job job = getJobOrThrow(jobId);
+    terminateEarly(job);
+    try {
+      if (!job.awaitFinished(terminationTimeout)) {
+        LOGGER.warn("JobId ({}) did not terminate within {}.", jobId, terminationTimeout);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TimetableSolverException(jobId, e);
+    }
     return getTimetable(jobId);
   }
 
-  private Timetable getTimetableAndCheckForExceptions(String jobId) {
-    Job job = jobIdToJob.get(jobId);
-    if (job == null) {
-      throw new TimetableSolverException(jobId, HttpStatus.NOT_FOUND, "No timetable found.");
-    }
-    if (job.exception != null) {
-      throw new TimetableSolverException(jobId, job.exception);
+  /** Asks the node solving a job to terminate it, see TimetableWorker#heartbeat. */
+  private Timetable terminateRegistered(String jobId) {
+    try {
+      if (!jobRegistry.requestTermination(jobId)
+          && !jobRegistry.awaitEnded(jobId, terminationTimeout)) {
+        LOGGER.warn("JobId ({}) did not terminate within {}.", jobId, terminationTimeout);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TimetableSolverException(jobId, e);
     }
-    return job.timetable;
+    return getTimetable(jobId);
   }
 
-  private record Job(Timetable timetable, Throwable exception) {
+  private void terminateEarly(TimetableJobStore.Job job) {
+    String jobId = job.getJobId();
+    if (scheduler.cancel(jobId)) {
+      lifecycle.cancelled(job);
+      return;
+    }
+    if (partitionedSolveService.terminateEarly(jobId)) {
+      lifecycle.terminatedWhilePartitioned(jobId);
+    }
+    portfolioSolveService.endRace(jobId);
+    solverManagers
+        .get(job.getScoreEngine(), job.getLocalSearch(), job.getMoveThreadCount())
+        .terminateEarly(jobId);
+  }
 
-    static Job ofTimetable(Timetable timetable) {
-      return new Job(timetable, null);
+  /**
+   * Terminates the jobs on shutdown and waits, at most timetable.termination-timeout, for their
+   * final best solutions, which are checkpointed to resume the jobs from on the next start.
+   */
+  @Override
+  public void destroy() throws InterruptedException {
+    lifecycle.shutdown();
+    List<TimetableJobStore.Job> jobs =
+        jobStore.getJobIds().stream()
+            .map(jobStore::get)
+            .flatMap(Optional::stream)
+            .filter(job -> !job.isFinished())
+            // the queued ones first, or the running ones would start them as they end
+            .sorted((job, other) -> Boolean.compare(other.isQueued(), job.isQueued()))
+            .toList();
+    jobs.forEach(this::terminateEarly);
+    long deadline = System.currentTimeMillis() + terminationTimeout.toMillis();
+    for (TimetableJobStore.Job job : jobs) {
+      Duration timeout = Duration.ofMillis(Math.max(deadline - System.currentTimeMillis(), 0));
+      if (!job.awaitFinished(timeout)) {
+        LOGGER.warn("Shut down before jobId ({}) terminated.", job.getJobId());
+      }
     }
+  }
+
+  public SseEmitter subscribe(String jobId) {
+    return eventService.subscribe(getJobOrThrow(jobId));
+  }
+
+  SolverManager<Timetable, String> getSolverManager(String jobId) {
+    TimetableJobStore.Job job = getJobOrThrow(jobId);
+    return solverManagers.get(job.getScoreEngine(), job.getLocalSearch(), job.getMoveThreadCount());
+  }
+
+  private TimetableJobStore.Job getJobOrThrow(String jobId) {
+    return jobStore
+        .get(jobId)
+        .orElseThrow(
+            () -> new TimetableSolverException(jobId, HttpStatus.NOT_FOUND, "No timetable found."));
+  }
 
-    static Job ofException(Throwable error) {
-      return new Job(null, error);
+  TimetableJobStore.Job getJobAndCheckForExceptions(String jobId) {
+    TimetableJobStore.Job job = getJobOrThrow(jobId);
+    if (job.getException() != null) {
+      throw new TimetableSolverException(jobId, job.getException());
     }
+    return job;
   }
 }
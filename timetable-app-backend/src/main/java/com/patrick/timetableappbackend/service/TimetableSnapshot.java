@@ -0,0 +1,124 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.TimetableConstraintConfiguration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The assignment of a timetable solution by ids: lessonIds[i] is in the timeslot of timeslotIds[i]
+ * and the room of roomIds[i], or {@link #UNASSIGNED}. A few bytes per lesson where the solution
+ * itself is an object graph, rehydrated against the lessons, timeslots and rooms on demand.
+ */
+record TimetableSnapshot(
+    int[] lessonIds, int[] timeslotIds, int[] roomIds, HardMediumSoftScore score, Long duration) {
+
+  static final int UNASSIGNED = -1;
+
+  /** Whether a snapshot can hold the id of a lesson, timeslot or room. */
+  static boolean isValidId(Long id) {
+    return id != null && id >= 0 && id <= Integer.MAX_VALUE;
+  }
+
+  static TimetableSnapshot of(Timetable solution) {
+    List<Lesson> lessons = solution.getLessons();
+    int[] lessonIds = new int[lessons.size()];
+    int[] timeslotIds = new int[lessons.size()];
+    int[] roomIds = new int[lessons.size()];
+    for (int i = 0; i < lessons.size(); i++) {
+      Lesson lesson = lessons.get(i);
+      lessonIds[i] = Math.toIntExact(lesson.getId());
+      timeslotIds[i] =
+          lesson.getTimeslot() == null ? UNASSIGNED : Math.toIntExact(lesson.getTimeslot().getId());
+      roomIds[i] =
+          lesson.getRoom() == null ? UNASSIGNED : Math.toIntExact(lesson.getRoom().getId());
+    }
+    return new TimetableSnapshot(
+        lessonIds, timeslotIds, roomIds, solution.getScore(), solution.getDuration());
+  }
+
+  /** Roughly, for the byte budget of the job store. */
+  long sizeInBytes() {
+    return 3L * (16 + 4L * lessonIds.length) + 64;
+  }
+
+  /** The assignment of every lesson. */
+  List<LessonAssignment> assignments() {
+    List<LessonAssignment> assignments = new ArrayList<>(lessonIds.length);
+    for (int i = 0; i < lessonIds.length; i++) {
+      assignments.add(assignment(i));
+    }
+    return assignments;
+  }
+
+  /**
+   * The assignments that changed since a previous snapshot of the same problem.
+   *
+   * @return null if the previous snapshot has other lessons
+   */
+  List<LessonAssignment> changesSince(TimetableSnapshot previous) {
+    if (!Arrays.equals(lessonIds, previous.lessonIds)) {
+      return null;
+    }
+    List<LessonAssignment> changes = new ArrayList<>();
+    for (int i = 0; i < lessonIds.length; i++) {
+      if (timeslotIds[i] != previous.timeslotIds[i] || roomIds[i] != previous.roomIds[i]) {
+        changes.add(assignment(i));
+      }
+    }
+    return changes;
+  }
+
+  private LessonAssignment assignment(int i) {
+    return new LessonAssignment(
+        (long) lessonIds[i],
+        timeslotIds[i] == UNASSIGNED ? null : (long) timeslotIds[i],
+        roomIds[i] == UNASSIGNED ? null : (long) roomIds[i]);
+  }
+
+  /**
+   * A timetable of copies of the given lessons with the assignment of this snapshot. Lessons the
+   * snapshot does not know are left out.
+   */
+  Timetable rehydrate(
+      List<Lesson> lessons,
+      List<Timeslot> timeslots,
+      List<Room> rooms,
+      TimetableConstraintConfiguration timetableConstraintConfiguration) {
+    Map<Long, Lesson> lessonsById = byId(lessons, Lesson::getId);
+    Map<Long, Timeslot> timeslotsById = byId(timeslots, Timeslot::getId);
+    Map<Long, Room> roomsById = byId(rooms, Room::getId);
+    List<Lesson> assignedLessons = new ArrayList<>(lessonIds.length);
+    for (int i = 0; i < lessonIds.length; i++) {
+      Lesson lesson = lessonsById.get((long) lessonIds[i]);
+      if (lesson != null) {
+        assignedLessons.add(
+            lesson.toBuilder()
+                .timeslot(
+                    timeslotIds[i] == UNASSIGNED ? null : timeslotsById.get((long) timeslotIds[i]))
+                .room(roomIds[i] == UNASSIGNED ? null : roomsById.get((long) roomIds[i]))
+                .build());
+      }
+    }
+    Timetable timetable =
+        new Timetable(
+            timeslots, rooms, assignedLessons, timetableConstraintConfiguration, duration);
+    timetable.setScore(score);
+    return timetable;
+  }
+
+  private static <T> Map<Long, T> byId(List<T> values, Function<T, Long> idFunction) {
+    Map<Long, T> valuesById = new HashMap<>(values.size() * 2);
+    values.forEach(value -> valuesById.put(idFunction.apply(value), value));
+    return valuesById;
+  }
+}
@@ -0,0 +1,145 @@
+package com.patrick.timetableappbackend.service;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import com.patrick.timetableappbackend.dto.JobTermination;
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import java.time.Duration;
+import java.util.Arrays;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+/** When the jobs of TimetableService end, by the solver config and the limits of each job. */
+@Service
+public class TimetableTerminationService {
+
+  private final PartitionedSolveService partitionedSolveService;
+  private final SolverConfig solverConfig;
+  private final Duration warmStartSpentLimit;
+  private final Duration warmStartUnimprovedSpentLimit;
+
+  public TimetableTerminationService(
+      PartitionedSolveService partitionedSolveService,
+      SolverConfig solverConfig,
+      @Value("${timetable.warm-start.spent-limit:30m}") Duration warmStartSpentLimit,
+      @Value("${timetable.warm-start.unimproved-spent-limit:5m}")
+          Duration warmStartUnimprovedSpentLimit) {
+    this.partitionedSolveService = partitionedSolveService;
+    this.solverConfig = solverConfig;
+    this.warmStartSpentLimit = warmStartSpentLimit;
+    this.warmStartUnimprovedSpentLimit = warmStartUnimprovedSpentLimit;
+  }
+
+  /**
+   * The termination of timefold.solver.termination, with the duration (in minutes) of the problem
+   * as its spent limit, of a warm start or of the repair solve of a partitioned job, with the
+   * limits of the job on top. A resumed job gets what is left of its spent limit.
+   *
+   * @param spent solving before the job was resumed, and for the repair solve of a job with a spent
+   *     limit of its own, solving its partitions
+   */
+  SolverConfigOverride<Timetable> getConfigOverride(JobSettings settings, Duration spent) {
+    JobTermination termination = settings.termination();
+    TerminationConfig terminationConfig;
+    if (settings.partitionKey() != PartitionKey.NONE) {
+      terminationConfig = partitionedSolveService.getRepairTerminationConfig();
+    } else if (settings.warmStart()) {
+      terminationConfig =
+          new TerminationConfig()
+              .withSpentLimit(warmStartSpentLimit)
+              .withUnimprovedSpentLimit(warmStartUnimprovedSpentLimit);
+    } else {
+      // an override replaces the termination of the solver config rather than adding to it
+      terminationConfig =
+          solverConfig.getTerminationConfig() == null
+              ? new TerminationConfig()
+              : solverConfig.getTerminationConfig().copyConfig();
+      if (settings.duration() != null && settings.duration() > 0) {
+        setSpentLimit(terminationConfig, Duration.ofMinutes(settings.duration()));
+      }
+    }
+    if (termination != null) {
+      if (termination.getSpentLimit() != null) {
+        setSpentLimit(terminationConfig, termination.getSpentLimit());
+      }
+      if (termination.getUnimprovedSpentLimit() != null) {
+        terminationConfig.setUnimprovedSpentLimit(termination.getUnimprovedSpentLimit());
+        terminationConfig.setUnimprovedMillisecondsSpentLimit(null);
+        terminationConfig.setUnimprovedSecondsSpentLimit(null);
+        terminationConfig.setUnimprovedMinutesSpentLimit(null);
+        terminationConfig.setUnimprovedHoursSpentLimit(null);
+        terminationConfig.setUnimprovedDaysSpentLimit(null);
+      }
+      if (termination.getBestScoreLimit() != null) {
+        terminationConfig.setBestScoreLimit(termination.getBestScoreLimit());
+      }
+      if (termination.getScoreCalculationCountLimit() != null) {
+        terminationConfig.setScoreCalculationCountLimit(
+            termination.getScoreCalculationCountLimit());
+      }
+    }
+    Long spentLimitMillis = terminationConfig.calculateTimeMillisSpentLimit();
+    if (!spent.isZero() && spentLimitMillis != null) {
+      setSpentLimit(
+          terminationConfig,
+          Duration.ofMillis(Math.max(spentLimitMillis - spent.toMillis(), 1000)));
+    }
+    return new SolverConfigOverride<Timetable>().withTerminationConfig(terminationConfig);
+  }
+
+  /**
+   * What is left of the spent limit a job was asked for after {@code spent}, null for a job without
+   * one. The partitions of a partitioned job solve within it, see PartitionedSolveService.
+   */
+  Duration getRemainingSpentLimit(JobSettings settings, Duration spent) {
+    JobTermination termination = settings.termination();
+    if (termination == null || termination.getSpentLimit() == null) {
+      return null;
+    }
+    return Duration.ofMillis(Math.max(termination.getSpentLimit().minus(spent).toMillis(), 1000));
+  }
+
+  private static void setSpentLimit(TerminationConfig terminationConfig, Duration spentLimit) {
+    // the spent limit cannot be combined with the ones per unit of the solver config
+    terminationConfig.setSpentLimit(spentLimit);
+    terminationConfig.setMillisecondsSpentLimit(null);
+    terminationConfig.setSecondsSpentLimit(null);
+    terminationConfig.setMinutesSpentLimit(null);
+    terminationConfig.setHoursSpentLimit(null);
+    terminationConfig.setDaysSpentLimit(null);
+  }
+
+  void validate(String jobId, JobTermination termination) {
+    if (termination == null) {
+      return;
+    }
+    for (Duration limit :
+        Arrays.asList(termination.getSpentLimit(), termination.getUnimprovedSpentLimit())) {
+      if (limit != null && (limit.isNegative() || limit.isZero())) {
+        throw new TimetableSolverException(
+            jobId, HttpStatus.BAD_REQUEST, "A spent limit must be positive, not " + limit + ".");
+      }
+    }
+    if (termination.getScoreCalculationCountLimit() != null
+        && termination.getScoreCalculationCountLimit() <= 0) {
+      throw new TimetableSolverException(
+          jobId, HttpStatus.BAD_REQUEST, "The score calculation count limit must be positive.");
+    }
+    if (termination.getBestScoreLimit() != null) {
+      try {
+        // a level of * is reached by any score
+        HardMediumSoftScore.parseScore(termination.getBestScoreLimit().replace("*", "0"));
+      } catch (IllegalArgumentException e) {
+        throw new TimetableSolverException(
+            jobId,
+            HttpStatus.BAD_REQUEST,
+            "Invalid best score limit (" + termination.getBestScoreLimit() + ").");
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.patrick.timetableappbackend.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the jobs of this node in the {@link TimetableJobRegistry}: every
+ * timetable.job-registry.heartbeat-interval it renews their heartbeats and terminates the ones
+ * another node asked to. With timetable.worker-pool.enabled and timetable.worker-pool.worker it
+ * also solves the jobs of the {@link TimetableWorkerPool}: every
+ * timetable.worker-pool.poll-interval it claims queued jobs for as long as the {@link
+ * TimetableJobScheduler} would start them right away.
+ */
+@Component
+@Slf4j
+public class TimetableWorker implements DisposableBean {
+
+  private final TimetableService timetableService;
+  private final TimetableJobRegistry jobRegistry;
+  private final TimetableWorkerPool workerPool;
+  private final TimetableJobScheduler scheduler;
+  private final boolean worker;
+  private final Duration pollInterval;
+  private final Duration heartbeatInterval;
+
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+  public TimetableWorker(
+      TimetableService timetableService,
+      TimetableJobRegistry jobRegistry,
+      TimetableWorkerPool workerPool,
+      TimetableJobScheduler scheduler,
+      @Value("${timetable.worker-pool.worker:true}") boolean worker,
+      @Value("${timetable.worker-pool.poll-interval:2s}") Duration pollInterval,
+      @Value("${timetable.job-registry.heartbeat-interval:5s}") Duration heartbeatInterval) {
+    this.timetableService = timetableService;
+    this.jobRegistry = jobRegistry;
+    this.workerPool = workerPool;
+    this.scheduler = scheduler;
+    this.worker = workerPool.isEnabled() && worker;
+    this.pollInterval = pollInterval;
+    this.heartbeatInterval = heartbeatInterval;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!jobRegistry.isEnabled()) {
+      return;
+    }
+    executor.scheduleWithFixedDelay(
+        this::heartbeat,
+        heartbeatInterval.toMillis(),
+        heartbeatInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+    if (worker) {
+      executor.scheduleWithFixedDelay(
+          this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+      log.info("Solving the jobs of the worker pool.");
+    }
+  }
+
+  private void poll() {
+    // an exception would cancel the next polls
+    try {
+      while (scheduler.hasCapacity()) {
+        Optional<TimetableWorkerPool.ClaimedJob> claimed = workerPool.claim();
+        if (claimed.isEmpty()) {
+          return;
+        }
+        timetableService.solveClaimed(claimed.get());
+      }
+    } catch (RuntimeException e) {
+      log.error("Failed claiming a job of the worker pool.", e);
+    }
+  }
+
+  private void heartbeat() {
+    try {
+      jobRegistry.heartbeat().forEach(timetableService::terminateClaimed);
+      if (workerPool.isEnabled()) {
+        workerPool.requeueAbandoned();
+      }
+      jobRegistry.deleteExpired();
+    } catch (RuntimeException e) {
+      log.error("Failed renewing the heartbeats of the job registry.", e);
+    }
+  }
+
+  @Override
+  public void destroy() throws InterruptedException {
+    // claims no more jobs, TimetableService then terminates the claimed ones
+    executor.shutdownNow();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,151 @@
+package com.patrick.timetableappbackend.service;
+
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Queues the jobs in the solve_job table of the {@link TimetableJobRegistry} for the nodes to
+ * share, with timetable.worker-pool.enabled. A node that receives a job queues it rather than
+ * solving it, and the nodes running a {@link TimetableWorker} claim the queued jobs with SELECT ...
+ * FOR UPDATE SKIP LOCKED: each job is claimed by one worker however many poll at once, without
+ * waiting on each other's locks.
+ *
+ * <p>A job is queued as the {@link TimetableCheckpoint} of its problem, beside the problem as
+ * posted, its worker writes its best solutions back through the registry. A worker that has not
+ * renewed the heartbeat of its jobs for timetable.worker-pool.lease-timeout is taken to be gone,
+ * and its jobs are queued again to be resumed from their last best solution by another worker, or
+ * finished if they were asked to terminate.
+ */
+@Service
+@Slf4j
+public class TimetableWorkerPool {
+
+  // serializes the enqueues of all nodes, so no two of them both take the last free place
+  private static final long ENQUEUE_LOCK_KEY = 0x736f6c76655f6a6fL;
+  private static final String INSERT_SQL =
+      "insert into solve_job (job_id, status, priority, user_name, created_at,"
+          + " terminate_requested, checkpoint, problem, version)"
+          + " select ?, 'QUEUED', ?, ?, ?, false, ?, ?, 0"
+          + " where (select count(*) from solve_job where status = 'QUEUED') < ?";
+  // the oldest job of the highest priority no other worker is claiming right now
+  private static final String CLAIM_SQL =
+      "update solve_job set status = 'RUNNING', worker_id = ?, heartbeat_at = ?,"
+          + " terminate_requested = false where job_id = (select job_id from solve_job"
+          + " where status = 'QUEUED' order by priority, created_at limit 1"
+          + " for update skip locked) returning checkpoint, problem";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final TimetableJobRegistry jobRegistry;
+  private final boolean enabled;
+  private final int maxQueued;
+  private final Duration leaseTimeout;
+
+  /** A job claimed from the pool, the problem as posted and the checkpoint of its assignment. */
+  record ClaimedJob(TimetableCheckpoint checkpoint, byte[] problem) {}
+
+  public TimetableWorkerPool(
+      JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager,
+      TimetableJobRegistry jobRegistry,
+      @Value("${timetable.worker-pool.enabled:false}") boolean enabled,
+      @Value("${timetable.scheduler.max-queued:100}") int maxQueued,
+      @Value("${timetable.worker-pool.lease-timeout:1m}") Duration leaseTimeout) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.jobRegistry = jobRegistry;
+    this.enabled = enabled;
+    this.maxQueued = maxQueued;
+    this.leaseTimeout = leaseTimeout;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues a job for the workers.
+   *
+   * @param snapshot of the assignment of the problem
+   * @param problem the problem as posted, serialized
+   * @throws TimetableSolverException with a 429 if timetable.scheduler.max-queued jobs are queued
+   *     on all nodes together
+   */
+  public void enqueue(
+      String jobId, JobSettings settings, TimetableSnapshot snapshot, byte[] problem) {
+    byte[] checkpoint = new TimetableCheckpoint(jobId, settings, Duration.ZERO, snapshot).toBytes();
+    Integer inserted =
+        transactionTemplate.execute(
+            status -> {
+              // held until the commit, the insert counts the jobs the enqueues before it committed
+              jdbcTemplate.query(
+                  "select pg_advisory_xact_lock(?)", resultSet -> null, ENQUEUE_LOCK_KEY);
+              return jdbcTemplate.update(
+                  INSERT_SQL,
+                  jobId,
+                  settings.priority().ordinal(),
+                  settings.user(),
+                  Timestamp.from(Instant.now()),
+                  checkpoint,
+                  problem,
+                  maxQueued);
+            });
+    if (inserted == null || inserted == 0) {
+      throw new TimetableSolverException(
+          jobId,
+          HttpStatus.TOO_MANY_REQUESTS,
+          "Too many jobs, " + maxQueued + " are waiting already.");
+    }
+  }
+
+  /** Claims the next queued job for this node, see TimetableService#solveClaimed. */
+  Optional<ClaimedJob> claim() {
+    return jdbcTemplate
+        .query(
+            CLAIM_SQL,
+            (resultSet, rowNum) ->
+                new ClaimedJob(
+                    TimetableCheckpoint.fromBytes(resultSet.getBytes("checkpoint")),
+                    resultSet.getBytes("problem")),
+            jobRegistry.getWorkerId(),
+            Timestamp.from(Instant.now()))
+        .stream()
+        .findFirst();
+  }
+
+  /**
+   * Queues the jobs of the workers that are gone again, other than the ones another node asked to
+   * terminate, which are finished with their last best solution.
+   */
+  void requeueAbandoned() {
+    Timestamp now = Timestamp.from(Instant.now());
+    Timestamp expired = Timestamp.from(now.toInstant().minus(leaseTimeout));
+    int finished =
+        jdbcTemplate.update(
+            "update solve_job set status = 'FINISHED', finished_at = ?, worker_id = null"
+                + " where status = 'RUNNING' and heartbeat_at < ? and terminate_requested",
+            now,
+            expired);
+    int requeued =
+        jdbcTemplate.update(
+            "update solve_job set status = 'QUEUED', worker_id = null where status = 'RUNNING'"
+                + " and heartbeat_at < ?",
+            expired);
+    if (finished + requeued > 0) {
+      log.warn(
+          "Queued {} and finished {} jobs of workers that missed their heartbeats.",
+          requeued,
+          finished);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.patrick.timetableappbackend.solver;
+
+import ai.timefold.solver.core.api.score.stream.uni.UniConstraintCollector;
+import com.patrick.timetableappbackend.model.Lesson;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Counts the pairs of consecutive lessons in a group, usually all the lessons of a teacher or a
+ * student group in one day.
+ *
+ * <p>The lessons are kept on a timeline sorted by start and by end minute, so adding or removing a
+ * lesson only visits the lessons that start at most {@value #MAX_GAP_MINUTES} minutes after it ends
+ * or end at most that long before it starts, instead of every lesson of the group. The pair filter
+ * is applied to a value mapped from each lesson when it is added, because the lesson may already
+ * have been changed by the time it is removed.
+ */
+public final class ConsecutiveLessonsCollector<T>
+    implements UniConstraintCollector<Lesson, ConsecutiveLessonsCollector.Timeline<T>, Integer> {
+
+  // two lessons are consecutive if the second starts at most 30 minutes after the first one ends
+  static final int MAX_GAP_MINUTES = 30;
+
+  private final Function<Lesson, T> mapping;
+  private final BiPredicate<T, T> pairFilter;
+
+  private ConsecutiveLessonsCollector(Function<Lesson, T> mapping, BiPredicate<T, T> pairFilter) {
+    this.mapping = mapping;
+    this.pairFilter = pairFilter;
+  }
+
+  public static ConsecutiveLessonsCollector<Lesson> consecutiveLessonPairs() {
+    return new ConsecutiveLessonsCollector<>(lesson -> lesson, (lesson1, lesson2) -> true);
+  }
+
+  /**
+   * @param mapping extracts what the pair filter looks at, e.g. the building of the room
+   * @param pairFilter tested with the earlier lesson first
+   */
+  public static <T> ConsecutiveLessonsCollector<T> consecutiveLessonPairs(
+      Function<Lesson, T> mapping, BiPredicate<T, T> pairFilter) {
+    return new ConsecutiveLessonsCollector<>(mapping, pairFilter);
+  }
+
+  @Override
+  public Supplier<Timeline<T>> supplier() {
+    return () -> new Timeline<>(pairFilter);
+  }
+
+  @Override
+  public BiFunction<Timeline<T>, Lesson, Runnable> accumulator() {
+    return (timeline, lesson) -> {
+      Entry<T> entry =
+          new Entry<>(
+              lesson.getTimeslot().getStartMinuteOfWeek(),
+              lesson.getTimeslot().getEndMinuteOfWeek(),
+              mapping.apply(lesson));
+      timeline.add(entry);
+      return () -> timeline.remove(entry);
+    };
+  }
+
+  @Override
+  public Function<Timeline<T>, Integer> finisher() {
+    return Timeline::getPairCount;
+  }
+
+  private record Entry<T>(int start, int end, T value) {}
+
+  public static final class Timeline<T> {
+
+    private final BiPredicate<T, T> pairFilter;
+    private final NavigableMap<Integer, List<Entry<T>>> byStart = new TreeMap<>();
+    private final NavigableMap<Integer, List<Entry<T>>> byEnd = new TreeMap<>();
+    private int pairCount;
+
+    private Timeline(BiPredicate<T, T> pairFilter) {
+      this.pairFilter = pairFilter;
+    }
+
+    public int getPairCount() {
+      return pairCount;
+    }
+
+    private void add(Entry<T> entry) {
+      pairCount += countPairs(entry);
+      byStart.computeIfAbsent(entry.start(), start -> new ArrayList<>(2)).add(entry);
+      byEnd.computeIfAbsent(entry.end(), end -> new ArrayList<>(2)).add(entry);
+    }
+
+    private void remove(Entry<T> entry) {
+      removeFrom(byStart, entry.start(), entry);
+      removeFrom(byEnd, entry.end(), entry);
+      pairCount -= countPairs(entry);
+    }
+
+    private int countPairs(Entry<T> entry) {
+      int count = 0;
+      for (List<Entry<T>> nextEntries :
+          byStart.subMap(entry.end(), true, entry.end() + MAX_GAP_MINUTES, true).values()) {
+        for (Entry<T> next : nextEntries) {
+          if (pairFilter.test(entry.value(), next.value())) {
+            count++;
+          }
+        }
+      }
+      for (List<Entry<T>> previousEntries :
+          byEnd.subMap(entry.start() - MAX_GAP_MINUTES, true, entry.start(), true).values()) {
+        for (Entry<T> previous : previousEntries) {
+          if (pairFilter.test(previous.value(), entry.value())) {
+            count++;
+          }
+        }
+      }
+      return count;
+    }
+
+    private static <T> void removeFrom(
+        Map<Integer, List<Entry<T>>> timeline, int minute, Entry<T> entry) {
+      List<Entry<T>> entries = timeline.get(minute);
+      // by identity, two lessons in the same timeslot may map to equal entries
+      for (int i = 0; i < entries.size(); i++) {
+        if (entries.get(i) == entry) {
+          entries.remove(i);
+          break;
+        }
+      }
+      if (entries.isEmpty()) {
+        timeline.remove(minute);
+      }
+    }
+  }
+}
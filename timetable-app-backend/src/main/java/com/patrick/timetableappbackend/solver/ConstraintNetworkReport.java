@@ -0,0 +1,37 @@
+package com.patrick.timetableappbackend.solver;
+
+import ai.timefold.solver.core.api.score.stream.Constraint;
+import ai.timefold.solver.core.api.score.stream.ConstraintProvider;
+import ai.timefold.solver.core.config.solver.EnvironmentMode;
+import ai.timefold.solver.core.impl.domain.solution.descriptor.SolutionDescriptor;
+import ai.timefold.solver.core.impl.score.stream.bavet.BavetConstraint;
+import ai.timefold.solver.core.impl.score.stream.bavet.BavetConstraintFactory;
+import ai.timefold.solver.core.impl.score.stream.bavet.common.BavetAbstractConstraintStream;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Size of the constraint stream network built for a {@link ConstraintProvider}, a diagnostic for
+ * the node sharing of TimetableConstraintProvider. Every stream becomes a node of the Bavet network
+ * and streams built from the same lambdas and joiners are shared between constraints, so {@code
+ * nodeCount} is what the solver builds.
+ *
+ * <p>Timefold has no public API for this, the network is built with its Bavet internals, which may
+ * change with any upgrade. Only ConstraintNetworkEndpoint uses it, with
+ * timetable.constraint-network.enabled.
+ */
+public record ConstraintNetworkReport(int constraintCount, int nodeCount) {
+
+  public static <Solution_> ConstraintNetworkReport of(
+      SolutionDescriptor<Solution_> solutionDescriptor, ConstraintProvider constraintProvider) {
+    BavetConstraintFactory<Solution_> constraintFactory =
+        new BavetConstraintFactory<>(solutionDescriptor, EnvironmentMode.REPRODUCIBLE);
+    Constraint[] constraints = constraintProvider.defineConstraints(constraintFactory);
+
+    Set<BavetAbstractConstraintStream<Solution_>> streams = new HashSet<>();
+    for (Constraint constraint : constraints) {
+      ((BavetConstraint<Solution_>) constraint).collectActiveConstraintStreams(streams);
+    }
+    return new ConstraintNetworkReport(constraints.length, streams.size());
+  }
+}
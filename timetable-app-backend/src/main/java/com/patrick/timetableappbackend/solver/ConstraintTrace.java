@@ -0,0 +1,84 @@
+package com.patrick.timetableappbackend.solver;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Sampled constraint trace of a single solver job, kept in a bounded ring buffer so that a
+ * long-running solve never holds more than {@code capacity} entries.
+ */
+public class ConstraintTrace {
+
+  private final String jobId;
+
+  private volatile boolean enabled;
+  private volatile int sampleRate;
+  private String[] entries;
+  private long entryCount;
+
+  // only the solver thread of the job samples, so this doesn't need to be atomic
+  private long sampleCounter;
+
+  ConstraintTrace(String jobId, int sampleRate, int capacity) {
+    this.jobId = jobId;
+    this.sampleRate = Math.max(1, sampleRate);
+    this.entries = new String[Math.max(1, capacity)];
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  public synchronized int getCapacity() {
+    return entries.length;
+  }
+
+  public synchronized long getEntryCount() {
+    return entryCount;
+  }
+
+  synchronized void configure(boolean enabled, int sampleRate, int capacity) {
+    this.enabled = enabled;
+    this.sampleRate = Math.max(1, sampleRate);
+    if (capacity > 0 && capacity != entries.length) {
+      List<String> retained = getEntries();
+      entries = new String[capacity];
+      entryCount = 0;
+      retained
+          .subList(Math.max(0, retained.size() - capacity), retained.size())
+          .forEach(this::append);
+    }
+  }
+
+  void record(String constraintName, String message, Object... arguments) {
+    if (!enabled || sampleCounter++ % sampleRate != 0) {
+      return;
+    }
+    String formattedMessage = MessageFormatter.arrayFormat(message, arguments).getMessage();
+    append(Instant.now() + " " + constraintName + " - " + formattedMessage);
+  }
+
+  /** Returns the retained entries, oldest first. */
+  public synchronized List<String> getEntries() {
+    int size = (int) Math.min(entryCount, entries.length);
+    List<String> retained = new ArrayList<>(size);
+    for (long i = entryCount - size; i < entryCount; i++) {
+      retained.add(entries[(int) (i % entries.length)]);
+    }
+    return retained;
+  }
+
+  private synchronized void append(String entry) {
+    entries[(int) (entryCount++ % entries.length)] = entry;
+  }
+}
@@ -0,0 +1,100 @@
+package com.patrick.timetableappbackend.solver;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Entry point of the constraint trace, called from the constraint stream lambdas.
+ *
+ * <p>The constraint provider is instantiated by Timefold and has no notion of jobs, so the trace
+ * of a job is bound to its solver thread when the solver fetches the problem. While no job has
+ * tracing enabled, every {@code trace} call returns after a single volatile read. Calls with
+ * arguments are guarded by {@link #enabled()}, so the arguments are not boxed or built either.
+ * Move threads are not bound, so multithreaded solving only traces the evaluations on the solver
+ * thread.
+ */
+public final class ConstraintTracer {
+
+  private static final ConcurrentMap<String, ConstraintTrace> TRACES = new ConcurrentHashMap<>();
+  private static final ThreadLocal<ConstraintTrace> CURRENT_TRACE = new ThreadLocal<>();
+
+  private static volatile boolean anyTraceEnabled;
+
+  private ConstraintTracer() {}
+
+  public static ConstraintTrace register(String jobId, int sampleRate, int capacity) {
+    return TRACES.computeIfAbsent(jobId, id -> new ConstraintTrace(id, sampleRate, capacity));
+  }
+
+  public static Optional<ConstraintTrace> getTrace(String jobId) {
+    return Optional.ofNullable(TRACES.get(jobId));
+  }
+
+  public static Optional<ConstraintTrace> configure(
+      String jobId, boolean enabled, int sampleRate, int capacity) {
+    ConstraintTrace trace = TRACES.get(jobId);
+    if (trace != null) {
+      trace.configure(enabled, sampleRate, capacity);
+      refreshAnyTraceEnabled();
+    }
+    return Optional.ofNullable(trace);
+  }
+
+  public static void remove(String jobId) {
+    ConstraintTrace trace = TRACES.remove(jobId);
+    if (trace != null) {
+      // a pooled solver thread may still hold it until its next job binds another trace
+      trace.configure(false, trace.getSampleRate(), 0);
+      refreshAnyTraceEnabled();
+    }
+  }
+
+  /** Binds the trace of the job to the calling thread, which must be the job's solver thread. */
+  public static void bindCurrentThread(String jobId) {
+    CURRENT_TRACE.set(TRACES.get(jobId));
+  }
+
+  /** Whether any job has tracing enabled, checked before building the arguments of a trace. */
+  public static boolean enabled() {
+    return anyTraceEnabled;
+  }
+
+  public static void trace(String constraintName, String message) {
+    if (anyTraceEnabled) {
+      record(constraintName, message);
+    }
+  }
+
+  public static void trace(String constraintName, String message, Object argument) {
+    if (anyTraceEnabled) {
+      record(constraintName, message, argument);
+    }
+  }
+
+  public static void trace(
+      String constraintName, String message, Object argument1, Object argument2) {
+    if (anyTraceEnabled) {
+      record(constraintName, message, argument1, argument2);
+    }
+  }
+
+  public static void trace(
+      String constraintName, String message, Object argument1, Object argument2, Object argument3) {
+    if (anyTraceEnabled) {
+      record(constraintName, message, argument1, argument2, argument3);
+    }
+  }
+
+  // the arguments are only boxed into an array once a trace is enabled
+  private static void record(String constraintName, String message, Object... arguments) {
+    ConstraintTrace trace = CURRENT_TRACE.get();
+    if (trace != null) {
+      trace.record(constraintName, message, arguments);
+    }
+  }
+
+  private static void refreshAnyTraceEnabled() {
+    anyTraceEnabled = TRACES.values().stream().anyMatch(ConstraintTrace::isEnabled);
+  }
+}
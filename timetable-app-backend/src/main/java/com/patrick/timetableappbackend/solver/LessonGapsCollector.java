@@ -0,0 +1,124 @@
+package com.patrick.timetableappbackend.solver;
+
+import ai.timefold.solver.core.api.score.stream.uni.UniConstraintCollector;
+import com.patrick.timetableappbackend.model.Lesson;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Counts the gaps longer than a given number of minutes between the lessons of a group, usually
+ * all the lessons of a student group in one day.
+ *
+ * <p>A gap is counted for every lesson starting at one start time and every lesson starting at the
+ * next start time of the group, when the second starts more than the given minutes after the first
+ * one ends. The lessons are kept on a timeline sorted by start minute, so adding or removing a
+ * lesson only recounts the gaps around its start time.
+ */
+public final class LessonGapsCollector
+    implements UniConstraintCollector<Lesson, LessonGapsCollector.Timeline, Integer> {
+
+  private final int maxGapMinutes;
+
+  private LessonGapsCollector(int maxGapMinutes) {
+    this.maxGapMinutes = maxGapMinutes;
+  }
+
+  public static LessonGapsCollector lessonGapsLongerThan(int maxGapMinutes) {
+    return new LessonGapsCollector(maxGapMinutes);
+  }
+
+  @Override
+  public Supplier<Timeline> supplier() {
+    return () -> new Timeline(maxGapMinutes);
+  }
+
+  @Override
+  public BiFunction<Timeline, Lesson, Runnable> accumulator() {
+    return (timeline, lesson) -> {
+      // the timeslot may already have changed when the lesson is removed
+      Entry entry =
+          new Entry(
+              lesson.getTimeslot().getStartMinuteOfWeek(),
+              lesson.getTimeslot().getEndMinuteOfWeek());
+      timeline.add(entry);
+      return () -> timeline.remove(entry);
+    };
+  }
+
+  @Override
+  public Function<Timeline, Integer> finisher() {
+    return Timeline::getGapCount;
+  }
+
+  private record Entry(int start, int end) {}
+
+  public static final class Timeline {
+
+    private final int maxGapMinutes;
+    private final NavigableMap<Integer, List<Entry>> byStart = new TreeMap<>();
+    private int gapCount;
+
+    private Timeline(int maxGapMinutes) {
+      this.maxGapMinutes = maxGapMinutes;
+    }
+
+    public int getGapCount() {
+      return gapCount;
+    }
+
+    private void add(Entry entry) {
+      gapCount -= countGapsAround(entry.start());
+      byStart.computeIfAbsent(entry.start(), start -> new ArrayList<>(2)).add(entry);
+      gapCount += countGapsAround(entry.start());
+    }
+
+    private void remove(Entry entry) {
+      gapCount -= countGapsAround(entry.start());
+      List<Entry> entries = byStart.get(entry.start());
+      // by identity, two lessons in the same timeslot have equal entries
+      for (int i = 0; i < entries.size(); i++) {
+        if (entries.get(i) == entry) {
+          entries.remove(i);
+          break;
+        }
+      }
+      if (entries.isEmpty()) {
+        byStart.remove(entry.start());
+      }
+      gapCount += countGapsAround(entry.start());
+    }
+
+    // the only gaps that change when a lesson starting at this minute is added or removed
+    private int countGapsAround(int start) {
+      Map.Entry<Integer, List<Entry>> previous = byStart.lowerEntry(start);
+      Map.Entry<Integer, List<Entry>> next = byStart.higherEntry(start);
+      List<Entry> current = byStart.get(start);
+      if (current == null) {
+        return countGaps(previous, next);
+      }
+      return countGaps(previous, Map.entry(start, current))
+          + countGaps(Map.entry(start, current), next);
+    }
+
+    private int countGaps(
+        Map.Entry<Integer, List<Entry>> previous, Map.Entry<Integer, List<Entry>> next) {
+      if (previous == null || next == null) {
+        return 0;
+      }
+      int nextStart = next.getKey();
+      int count = 0;
+      for (Entry entry : previous.getValue()) {
+        if (nextStart - entry.end() > maxGapMinutes) {
+          count++;
+        }
+      }
+      return count * next.getValue().size();
+    }
+  }
+}
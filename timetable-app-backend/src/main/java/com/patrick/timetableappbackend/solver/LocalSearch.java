@@ -0,0 +1,65 @@
+package com.patrick.timetableappbackend.solver;
+
+import ai.timefold.solver.core.config.heuristic.selector.move.MoveSelectorConfig;
+import ai.timefold.solver.core.config.localsearch.LocalSearchPhaseConfig;
+import ai.timefold.solver.core.config.localsearch.decider.acceptor.LocalSearchAcceptorConfig;
+import ai.timefold.solver.core.config.localsearch.decider.forager.LocalSearchForagerConfig;
+import ai.timefold.solver.core.config.phase.PhaseConfig;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The local search of a job, chosen per job, with timetable.local-search or by the portfolio races
+ * of PortfolioSolveService. Other than CONFIGURED, a single local search phase with the moves of
+ * the first local search phase of the solver config, until the job ends.
+ */
+public enum LocalSearch {
+  /** The local search phases of the solver config, as they are. */
+  CONFIGURED(null, 0),
+  // the acceptors and foragers of the phases of timetableSolverConfig.xml
+  LATE_ACCEPTANCE(new LocalSearchAcceptorConfig().withLateAcceptanceSize(800), 5),
+  TABU_SEARCH(new LocalSearchAcceptorConfig().withEntityTabuSize(7), 1000),
+  // the constraint weights are single units, a worsening of a few soft is accepted early on
+  SIMULATED_ANNEALING(
+      new LocalSearchAcceptorConfig()
+          .withSimulatedAnnealingStartingTemperature("0hard/1medium/20soft"),
+      4);
+
+  private final LocalSearchAcceptorConfig acceptorConfig;
+  private final int acceptedCountLimit;
+
+  LocalSearch(LocalSearchAcceptorConfig acceptorConfig, int acceptedCountLimit) {
+    this.acceptorConfig = acceptorConfig;
+    this.acceptedCountLimit = acceptedCountLimit;
+  }
+
+  /**
+   * @param solverConfig with at least one local search phase, it is not changed
+   */
+  public SolverConfig configure(SolverConfig solverConfig) {
+    if (this == CONFIGURED) {
+      return solverConfig;
+    }
+    List<PhaseConfig> phaseConfigs = new ArrayList<>();
+    LocalSearchPhaseConfig configured = null;
+    for (PhaseConfig<?> phaseConfig : solverConfig.getPhaseConfigList()) {
+      if (phaseConfig instanceof LocalSearchPhaseConfig localSearchPhaseConfig) {
+        configured = configured == null ? localSearchPhaseConfig : configured;
+      } else {
+        phaseConfigs.add(phaseConfig.copyConfig());
+      }
+    }
+    if (configured == null) {
+      throw new IllegalStateException("The solver config has no local search phase.");
+    }
+    phaseConfigs.add(
+        new LocalSearchPhaseConfig()
+            .withMoveSelectorConfig(
+                (MoveSelectorConfig<?>) configured.getMoveSelectorConfig().copyConfig())
+            .withAcceptorConfig(acceptorConfig.copyConfig())
+            .withForagerConfig(
+                new LocalSearchForagerConfig().withAcceptedCountLimit(acceptedCountLimit)));
+    return new SolverConfig(solverConfig).withPhaseList(phaseConfigs);
+  }
+}
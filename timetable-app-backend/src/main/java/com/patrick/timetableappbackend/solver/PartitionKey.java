@@ -0,0 +1,27 @@
+package com.patrick.timetableappbackend.solver;
+
+import com.patrick.timetableappbackend.model.Lesson;
+import java.util.function.Function;
+
+/**
+ * What a timetable is split by to solve its partitions in parallel, chosen per job or with
+ * timetable.partitioned.partition-by. The student group constraints only relate lessons within a
+ * partition, the teachers and rooms are shared between them.
+ */
+public enum PartitionKey {
+  /** Solves the timetable as a whole. */
+  NONE(lesson -> null),
+  YEAR(lesson -> lesson.getStudentGroup().getYear()),
+  SERIES(lesson -> lesson.getStudentGroup().getSeriesKey());
+
+  private final Function<Lesson, Object> partitionOf;
+
+  PartitionKey(Function<Lesson, Object> partitionOf) {
+    this.partitionOf = partitionOf;
+  }
+
+  /** The partition of a lesson, null for a lesson without a student group. */
+  public Object partitionOf(Lesson lesson) {
+    return lesson.getStudentGroup() == null ? null : partitionOf.apply(lesson);
+  }
+}
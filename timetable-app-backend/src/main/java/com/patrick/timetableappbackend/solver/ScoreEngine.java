@@ -0,0 +1,37 @@
+package com.patrick.timetableappbackend.solver;
+
+import ai.timefold.solver.core.config.score.director.ScoreDirectorFactoryConfig;
+import ai.timefold.solver.core.config.solver.EnvironmentMode;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+
+/** How the solver calculates the score, chosen per job or with timetable.score-engine. */
+public enum ScoreEngine {
+  /** {@link TimetableConstraintProvider}, also used by the score analysis. */
+  CONSTRAINT_STREAMS,
+  /** {@link TimetableIncrementalScoreCalculator}, faster on large timetables. */
+  INCREMENTAL;
+
+  /**
+   * @param solverConfig configured with the constraint streams, it is not changed
+   * @param crossCheck whether to recalculate every score with the other engine and fail on the
+   *     first difference, in FULL_ASSERT, which is far too slow for anything but testing
+   */
+  public SolverConfig configure(SolverConfig solverConfig, boolean crossCheck) {
+    ScoreDirectorFactoryConfig constraintStreams = solverConfig.getScoreDirectorFactoryConfig();
+    ScoreDirectorFactoryConfig incremental =
+        new ScoreDirectorFactoryConfig()
+            .withIncrementalScoreCalculatorClass(TimetableIncrementalScoreCalculator.class)
+            .withInitializingScoreTrend(constraintStreams.getInitializingScoreTrend());
+
+    ScoreDirectorFactoryConfig scoreDirectorFactoryConfig =
+        (this == CONSTRAINT_STREAMS ? constraintStreams : incremental).copyConfig();
+    SolverConfig engineSolverConfig =
+        new SolverConfig(solverConfig).withScoreDirectorFactory(scoreDirectorFactoryConfig);
+    if (crossCheck) {
+      scoreDirectorFactoryConfig.setAssertionScoreDirectorFactory(
+          this == CONSTRAINT_STREAMS ? incremental : constraintStreams.copyConfig());
+      engineSolverConfig.setEnvironmentMode(EnvironmentMode.FULL_ASSERT);
+    }
+    return engineSolverConfig;
+  }
+}
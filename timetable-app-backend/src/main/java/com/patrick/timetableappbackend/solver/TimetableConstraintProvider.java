@@ -2,21 +2,77 @@ package com.patrick.timetableappbackend.solver;
 
 import static ai.timefold.solver.core.api.score.stream.ConstraintCollectors.countDistinct;
 import static ai.timefold.solver.core.api.score.stream.ConstraintCollectors.sum;
+import static com.patrick.timetableappbackend.solver.ConsecutiveLessonsCollector.consecutiveLessonPairs;
+import static com.patrick.timetableappbackend.solver.LessonGapsCollector.lessonGapsLongerThan;
 
 import ai.timefold.solver.core.api.score.stream.Constraint;
 import ai.timefold.solver.core.api.score.stream.ConstraintFactory;
 import ai.timefold.solver.core.api.score.stream.ConstraintProvider;
 import ai.timefold.solver.core.api.score.stream.Joiners;
+import ai.timefold.solver.core.api.score.stream.bi.BiJoiner;
+import ai.timefold.solver.core.api.score.stream.uni.UniConstraintCollector;
 import com.patrick.timetableappbackend.model.*;
 import com.patrick.timetableappbackend.solver.justifications.*;
 import java.time.DayOfWeek;
-import java.time.Duration;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class TimetableConstraintProvider implements ConstraintProvider {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(TimetableConstraintProvider.class);
+  // gapsLongerThan4Hours penalizes a free window of more than 3 hours between two lessons
+  static final int MAX_GAP_MINUTES = 3 * 60;
+
+  // maximmumCoursesTeached and maximumCoursesForStudents, in hours of distinct timeslots per day
+  static final int MAX_TEACHER_HOURS_PER_DAY = 12;
+  static final int MAX_STUDENT_HOURS_PER_DAY = 10;
+
+  // Bavet shares a node between constraints only if it is built from the same lambda instances, so
+  // the lambdas and joiners that several constraints use are created once.
+  // The facts hash by class (see Timeslot.hashCode()), so the joiners and groupBys key them on
+  // their planning index, or on the fact itself in a problem PlanningIndexer didn't index
+  private static final Function<Lesson, Object> TIMESLOT_INDEX =
+      lesson -> key(lesson.getTimeslot().getPlanningIndex(), lesson.getTimeslot());
+  private static final Function<Lesson, Object> ROOM_INDEX =
+      lesson -> key(lesson.getRoom().getPlanningIndex(), lesson.getRoom());
+  private static final Function<Lesson, Object> TEACHER_INDEX =
+      lesson -> key(lesson.getTeacher().getPlanningIndex(), lesson.getTeacher());
+  private static final Function<Lesson, Object> STUDENT_GROUP_INDEX =
+      lesson -> key(lesson.getStudentGroup().getPlanningIndex(), lesson.getStudentGroup());
+  // the key records hash on the planning indexes as well
+  private static final Function<Lesson, TimeslotRoom> TIMESLOT_ROOM =
+      lesson -> TimeslotRoom.ofTR(lesson.getTimeslot(), lesson.getRoom());
+  private static final Function<Lesson, TeacherDayOfWeek> TEACHER_DAY_OF_WEEK =
+      lesson -> TeacherDayOfWeek.ofTD(lesson.getTeacher(), lesson.getTimeslot().getDayOfWeek());
+  private static final Function<Lesson, StudentDayOfWeek> STUDENT_DAY_OF_WEEK =
+      lesson ->
+          StudentDayOfWeek.ofSD(lesson.getStudentGroup(), lesson.getTimeslot().getDayOfWeek());
+  private static final Function<Lesson, Integer> TIMESLOT_HOURS =
+      lesson -> calculateTimeslotDuration(lesson.getTimeslot());
+  private static final Function<Lesson, String> SUBJECT = Lesson::getSubject;
+  private static final Function<Lesson, DayOfWeek> DAY_OF_WEEK =
+      lesson -> lesson.getTimeslot().getDayOfWeek();
+  private static final Function<Lesson, StudentGroupKey> SERIES =
+      lesson -> lesson.getStudentGroup().getSeriesKey();
+  private static final Function<Lesson, StudentGroupKey> GROUP =
+      lesson -> lesson.getStudentGroup().getGroupKey();
+
+  private static final Predicate<Lesson> IS_COURSE =
+      lesson -> lesson.getLessonType() == LessonType.COURSE;
+  private static final Predicate<Lesson> IS_SEMINAR =
+      lesson -> lesson.getLessonType() == LessonType.SEMINAR;
+  private static final Predicate<Lesson> IS_LABORATORY =
+      lesson -> lesson.getLessonType() == LessonType.LABORATORY;
+
+  private static final BiJoiner<Lesson, Lesson> SAME_TIMESLOT = Joiners.equal(TIMESLOT_INDEX);
+  private static final BiJoiner<Lesson, Lesson> SAME_ROOM = Joiners.equal(ROOM_INDEX);
+  private static final BiJoiner<Lesson, Lesson> SAME_TEACHER = Joiners.equal(TEACHER_INDEX);
+  private static final BiJoiner<Lesson, Lesson> SAME_STUDENT_GROUP =
+      Joiners.equal(STUDENT_GROUP_INDEX);
+
+  private static final UniConstraintCollector<Lesson, ?, Integer> STUDENT_COUNT =
+      sum(lesson -> Math.toIntExact(lesson.getStudentGroup().getNumberOfStudents()));
+  private static final UniConstraintCollector<Lesson, ?, Integer> TIMESLOT_ROOM_COUNT =
+      countDistinct(TIMESLOT_ROOM);
 
   @Override
   public Constraint[] defineConstraints(ConstraintFactory constraintFactory) {
@@ -58,13 +114,8 @@ public class TimetableConstraintProvider implements ConstraintProvider {
   Constraint roomConflict(ConstraintFactory constraintFactory) {
     // A room can accommodate at most one lesson at the same time.
     return constraintFactory
-        // Select each pair of 2 different lessons ...
-        .forEachUniquePair(
-            Lesson.class,
-            // ... in the same timeslot ...
-            Joiners.equal(Lesson::getTimeslot),
-            // ... in the same room ...
-            Joiners.equal(Lesson::getRoom))
+        // Select each pair of 2 different lessons in the same timeslot and room
+        .forEachUniquePair(Lesson.class, SAME_TIMESLOT, SAME_ROOM)
         // .penalize(HardSoftScore.ONE_HARD)
         .penalizeConfigurable()
         .justifyWith(
@@ -76,39 +127,43 @@ public class TimetableConstraintProvider implements ConstraintProvider {
   Constraint roomConflictUniversity(ConstraintFactory constraintFactory) {
     // A room can accommodate at most one lesson at the same time.
     return constraintFactory
-        // Select each pair of 2 different lessons ...
-        .forEachUniquePair(
-            Lesson.class,
-            // ... in the same timeslot ...
-            Joiners.equal(Lesson::getTimeslot),
-            // ... in the same room ...
-            Joiners.equal(Lesson::getRoom))
+        // Select each pair of 2 different lessons in the same timeslot and room
+        .forEachUniquePair(Lesson.class, SAME_TIMESLOT, SAME_ROOM)
         // university filtering of lessons
         .filter(
             ((lesson, lesson2) -> {
-              LOGGER.info("roomConflictUniversity - lesson: {}", lesson);
-              LOGGER.info("roomConflictUniversity - lesson2: {}", lesson2);
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "roomConflictUniversity", "lessons: {} and {}", lesson, lesson2);
+              }
               boolean sameSubject = lesson.getSubject().equals(lesson2.getSubject());
               boolean sameLessonType = lesson.getLessonType().equals(lesson2.getLessonType());
               boolean sameSeries =
-                  lesson.getStudentGroup().getName().equals(lesson2.getStudentGroup().getName());
+                  lesson
+                      .getStudentGroup()
+                      .getSeriesKey()
+                      .equals(lesson2.getStudentGroup().getSeriesKey());
               boolean sameSeminarType =
                   lesson.getLessonType().equals(LessonType.SEMINAR)
                       && lesson2.getLessonType().equals(LessonType.SEMINAR);
               boolean sameStudentGroup =
                   lesson
                       .getStudentGroup()
-                      .getStudentGroup()
-                      .equals(lesson2.getStudentGroup().getStudentGroup());
-              boolean sameYear = lesson.getStudentGroup().getYear().equals(lesson2.getYear());
-              LOGGER.info("roomConflictUniversity - sameSeries or sameYear {}", sameSeries);
+                      .getGroupKey()
+                      .equals(lesson2.getStudentGroup().getGroupKey());
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace("roomConflictUniversity", "sameSeries: {}", sameSeries);
+              }
               if (sameSeries) {
                 if (sameSeminarType) {
                   return !sameStudentGroup || !sameSubject;
                 }
-                LOGGER.info(
-                    "roomConflictUniversity - !sameCourseType || !sameSubject: {}",
-                    !sameLessonType || !sameSubject);
+                if (ConstraintTracer.enabled()) {
+                  ConstraintTracer.trace(
+                      "roomConflictUniversity",
+                      "!sameCourseType || !sameSubject: {}",
+                      !sameLessonType || !sameSubject);
+                }
                 return !sameLessonType || !sameSubject;
               }
               return true;
@@ -124,13 +179,8 @@ public class TimetableConstraintProvider implements ConstraintProvider {
   Constraint teacherConflict(ConstraintFactory constraintFactory) {
     // A teacher can teach at most one lesson at the same time.
     return constraintFactory
-        // select each pair of 2 different lessons
-        .forEachUniquePair(
-            Lesson.class,
-            // in the same timeslot
-            Joiners.equal(Lesson::getTimeslot),
-            // with the same teacher
-            Joiners.equal(Lesson::getTeacher))
+        // select each pair of 2 different lessons in the same timeslot with the same teacher
+        .forEachUniquePair(Lesson.class, SAME_TIMESLOT, SAME_TEACHER)
         .penalizeConfigurable()
         .justifyWith(
             (lesson1, lesson2, score) ->
@@ -144,13 +194,8 @@ public class TimetableConstraintProvider implements ConstraintProvider {
     // teaches a Seminar for
     // an entire series
     return constraintFactory
-        // select each pair of 2 different lessons
-        .forEachUniquePair(
-            Lesson.class,
-            // in the same timeslot
-            Joiners.equal(Lesson::getTimeslot),
-            // with the same teacher
-            Joiners.equal(Lesson::getTeacher))
+        // select each pair of 2 different lessons in the same timeslot with the same teacher
+        .forEachUniquePair(Lesson.class, SAME_TIMESLOT, SAME_TEACHER)
         .filter(
             ((lesson, lesson2) -> {
               boolean theSameCourse = lesson.getSubject().equals(lesson2.getSubject());
@@ -161,7 +206,10 @@ public class TimetableConstraintProvider implements ConstraintProvider {
                   lesson.getLessonType().equals(LessonType.COURSE)
                       && lesson2.getLessonType().equals(LessonType.COURSE);
               boolean theSameSeries =
-                  lesson.getStudentGroup().getName().equals(lesson2.getStudentGroup().getName());
+                  lesson
+                      .getStudentGroup()
+                      .getSeriesKey()
+                      .equals(lesson2.getStudentGroup().getSeriesKey());
               boolean sameSeminarType =
                   lesson.getLessonType().equals(LessonType.SEMINAR)
                       && lesson2.getLessonType().equals(LessonType.SEMINAR);
@@ -177,53 +225,59 @@ public class TimetableConstraintProvider implements ConstraintProvider {
               boolean theSameGroup =
                   lesson
                       .getStudentGroup()
-                      .getStudentGroup()
-                      .equals(lesson2.getStudentGroup().getStudentGroup());
-              LOGGER.info("teacherConflictUniversity - theSameSeries: {}", theSameSeries);
+                      .getGroupKey()
+                      .equals(lesson2.getStudentGroup().getGroupKey());
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "teacherConflictUniversity", "theSameSeries: {}", theSameSeries);
+              }
               if (theSameSeries) {
 
                 if (!sameType) {
-                  LOGGER.info("teacherConflictUniversity - !sameType");
+                  ConstraintTracer.trace("teacherConflictUniversity", "!sameType");
                   return true;
                 }
                 if (!sameSubject) {
-                  LOGGER.info("teacherConflictUniversity - !sameSubject");
+                  ConstraintTracer.trace("teacherConflictUniversity", "!sameSubject");
                   return true;
                 }
 
                 if (!sameRoom) {
-                  LOGGER.info("teacherConflictUniversity - different rooms");
+                  ConstraintTracer.trace("teacherConflictUniversity", "different rooms");
                   return true;
                 }
 
                 if (theSameGroup) {
-                  LOGGER.info(
-                      "teacherConflictUniversity - same group with same Lesson type and subject in"
-                          + " the same Room is ok");
+                  ConstraintTracer.trace(
+                      "teacherConflictUniversity",
+                      "same group with same Lesson type and subject in the same Room is ok");
                   return false;
                 } else {
                   if (theSameCourseType) {
-                    LOGGER.info(
-                        "teacherConflictUniversity - different group with same Course type Lesson"
-                            + " is ok");
+                    ConstraintTracer.trace(
+                        "teacherConflictUniversity",
+                        "different group with same Course type Lesson is ok");
                     return false;
                   }
                   if (sameSeminarType) {
-                    LOGGER.info(
-                        "teacherConflictUniversity - different group with same Seminar type Lesson"
-                            + " is not ok");
+                    ConstraintTracer.trace(
+                        "teacherConflictUniversity",
+                        "different group with same Seminar type Lesson is not ok");
                     return true;
                   }
                   if (sameLabType) {
-                    LOGGER.info("teacherConflictUniversity - different group with same Lab");
+                    ConstraintTracer.trace(
+                        "teacherConflictUniversity", "different group with same Lab");
                     return true;
                   }
-                  LOGGER.info("teacherConflictUniversity - other edge case for different group");
+                  ConstraintTracer.trace(
+                      "teacherConflictUniversity", "other edge case for different group");
                 }
-                LOGGER.info("teacherConflictUniversity - other edge within same series");
+                ConstraintTracer.trace(
+                    "teacherConflictUniversity", "other edge within same series");
                 return true; // maybe we can find another edge cases
               }
-              LOGGER.info("teacherConflictUniversity - not same series - not ok");
+              ConstraintTracer.trace("teacherConflictUniversity", "not same series - not ok");
               return true;
               //                    return !(theSameCourse && theSameYearOfCourse && theSameSeries);
             }))
@@ -243,9 +297,9 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         .forEachUniquePair(
             Lesson.class,
             // with the same student Group
-            Joiners.equal(Lesson::getStudentGroup),
+            SAME_STUDENT_GROUP,
             // in the same timeslot
-            Joiners.equal(Lesson::getTimeslot))
+            SAME_TIMESLOT)
 
         // .penalize(HardSoftScore.ONE_HARD)
         .penalizeConfigurable()
@@ -262,9 +316,9 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         .forEachUniquePair(
             Lesson.class,
             // with the same student group
-            Joiners.equal(Lesson::getStudentGroup),
+            SAME_STUDENT_GROUP,
             // in the same day
-            Joiners.equal((lesson) -> lesson.getTimeslot().getDayOfWeek()),
+            Joiners.equal(DAY_OF_WEEK),
             // with overlapping timeslots
             Joiners.overlapping(
                 lesson -> lesson.getTimeslot().getStartTime(),
@@ -280,13 +334,7 @@ public class TimetableConstraintProvider implements ConstraintProvider {
     // in future, create a built-in constraint
     return constraintFactory
         .forEach(Lesson.class)
-        .filter(
-            (lesson -> {
-              Duration between =
-                  Duration.between(
-                      lesson.getTimeslot().getStartTime(), lesson.getTimeslot().getEndTime());
-              return lesson.getDuration() != between.toHours();
-            }))
+        .filter((lesson -> lesson.getDuration() != lesson.getTimeslot().getDurationMinutes() / 60))
         .penalizeConfigurable()
         // .justifyWith()
         .asConstraint("lessonDurationConflict");
@@ -316,19 +364,18 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         .forEach(Lesson.class)
         .filter(
             lesson -> {
-              LOGGER.info(
-                  "lesson's teacher get preferred Timeslot: {}",
-                  lesson.getTeacher().getTimeslots());
-              LOGGER.info("lesson's Timeslot: {}", lesson.getTimeslot());
-              LOGGER.info("-------------------------------------------------");
-              return (lesson.getTeacher().getTimeslots() != null
-                      && !lesson.getTeacher().getTimeslots().isEmpty())
-                  && !lesson.getTeacher().getTimeslots().contains(lesson.getTimeslot());
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "maximizePreferredTimeslotAssignments",
+                    "lesson's Timeslot: {}, teacher's preferred Timeslots: {}",
+                    lesson.getTimeslot(),
+                    lesson.getTeacher().getTimeslots());
+              }
+              return !lesson.getTeacher().isAvailable(lesson.getTimeslot());
             })
         //                .penalize(HardSoftScore.ONE_HARD)
         .penalizeConfigurable(
             (lesson) -> {
-              //                    LOGGER.info("maximizePrefferedTimeslotsAssignments penalty");
               return 1;
             })
         // .justifyWith
@@ -337,29 +384,26 @@ public class TimetableConstraintProvider implements ConstraintProvider {
 
   Constraint coursesInTheSameBuilding(ConstraintFactory constraintFactory) {
     return constraintFactory
-        // select each 2 pair of different lessons
-        .forEachUniquePair(
-            Lesson.class,
-            // with the sameStudentGroup
-            Joiners.equal(Lesson::getStudentGroup),
-            // in the same day
-            Joiners.equal((lesson) -> lesson.getTimeslot().getDayOfWeek()))
-        .filter(
-            ((lesson, lesson2) -> {
-              // consecutive courses - check if they are in the same building
-              Duration between =
-                  Duration.between(
-                      lesson.getTimeslot().getEndTime(), lesson2.getTimeslot().getStartTime());
-              boolean consecutiveCourses =
-                  !between.isNegative() && between.compareTo(Duration.ofMinutes(30)) <= 0;
-              boolean sameBuilding =
-                  lesson.getRoom().getBuilding().equals(lesson2.getRoom().getBuilding());
-              LOGGER.info("coursesInTheSameBuilding - consecutiveCourses: {}", consecutiveCourses);
-              LOGGER.info("coursesInTheSameBuilding - sameBuilding: {}", sameBuilding);
-              return sameBuilding && consecutiveCourses;
-            }))
+        .forEach(Lesson.class)
+        // consecutive courses of the same student group in the same day - check if they are in
+        // the same building
+        .groupBy(
+            STUDENT_DAY_OF_WEEK,
+            consecutiveLessonPairs(
+                (lesson) -> lesson.getRoom().getBuilding(),
+                (building1, building2) -> {
+                  if (ConstraintTracer.enabled()) {
+                    ConstraintTracer.trace(
+                        "coursesInTheSameBuilding",
+                        "consecutive courses in {} and {}",
+                        building1,
+                        building2);
+                  }
+                  return building1.equals(building2);
+                }))
+        .filter((studentDayOfWeek, count) -> count > 0)
         //                .reward(HardSoftScore.ONE_SOFT)
-        .rewardConfigurable()
+        .rewardConfigurable((studentDayOfWeek, count) -> count)
         // .justifyWith()
         .asConstraint("coursesInTheSameBuilding");
   }
@@ -368,31 +412,19 @@ public class TimetableConstraintProvider implements ConstraintProvider {
   Constraint labAfterSeminar(ConstraintFactory constraintFactory) {
     // consecutive lab-seminar or seminar-lab
     return constraintFactory
-        // select each 2 pair of different lessons
-        .forEachUniquePair(
-            Lesson.class,
-            // for the same student group
-            Joiners.equal(Lesson::getStudentGroup),
-            // in the same day
-            Joiners.equal((lesson) -> lesson.getTimeslot().getDayOfWeek()))
-        .filter(
-            ((lesson, lesson2) -> {
-              // Consecutive courses
-              Duration between =
-                  Duration.between(
-                      lesson.getTimeslot().getEndTime(), lesson2.getTimeslot().getStartTime());
-
-              if ((lesson.getLessonType().equals(LessonType.SEMINAR)
-                      && lesson2.getLessonType().equals(LessonType.LABORATORY))
-                  && (!between.isNegative() && between.compareTo(Duration.ofMinutes(30)) <= 0)) {
-                return true;
-              } else
-                return (lesson2.getLessonType().equals(LessonType.SEMINAR)
-                        && lesson.getLessonType().equals(LessonType.LABORATORY))
-                    && (!between.isNegative() && between.compareTo(Duration.ofMinutes(30)) <= 0);
-            }))
+        .forEach(Lesson.class)
+        // for the same student group in the same day
+        .groupBy(
+            STUDENT_DAY_OF_WEEK,
+            consecutiveLessonPairs(
+                Lesson::getLessonType,
+                (lessonType, lessonType2) ->
+                    (lessonType == LessonType.SEMINAR && lessonType2 == LessonType.LABORATORY)
+                        || (lessonType2 == LessonType.SEMINAR
+                            && lessonType == LessonType.LABORATORY)))
+        .filter((studentDayOfWeek, count) -> count > 0)
         //                .reward(HardSoftScore.ONE_SOFT)
-        .rewardConfigurable()
+        .rewardConfigurable((studentDayOfWeek, count) -> count)
         // .justifyWith(((lesson, lesson2, hardSoftScore) -> new Justification(ceva)))
         .asConstraint("labAfterSeminar");
   }
@@ -400,28 +432,36 @@ public class TimetableConstraintProvider implements ConstraintProvider {
   Constraint maximmumCoursesTeached(ConstraintFactory constraintFactory) {
     // optimize this method to count the total hours spent in lessons
     // maximmum courses per day for teacher
-    int maxHoursPerDay = 12;
-
     return constraintFactory
         .forEach(Lesson.class)
-        .groupBy(Lesson::getTimeslot, Lesson::getTeacher)
+        .groupBy(TEACHER_DAY_OF_WEEK, TIMESLOT_INDEX, TIMESLOT_HOURS)
         .groupBy(
-            (timeslot, teacher) -> TeacherDayOfWeek.ofTD(teacher, timeslot.getDayOfWeek()),
-            sum((timeslot1, teacher1) -> (int) calculateTimeslotDuration(timeslot1)))
+            (teacherDayOfWeek, timeslot, hours) -> teacherDayOfWeek,
+            sum((teacherDayOfWeek, timeslot, hours) -> hours))
         .filter(
             (teacherDayOfWeek, count) -> {
-              LOGGER.info(
-                  "MaximmumCoursesTeached - This is teacher - day of week: {}", teacherDayOfWeek);
-              LOGGER.info("MaximmumCoursesTeached - This is count: {}", count);
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "maximmumCoursesTeached",
+                    "teacher - day of week: {}, hours: {}",
+                    teacherDayOfWeek,
+                    count);
+              }
 
-              return count > maxHoursPerDay;
+              return count > MAX_TEACHER_HOURS_PER_DAY;
             })
         //                .penalize(HardSoftScore.ONE_HARD, ((teacher, integer) -> integer -
         // maxCoursesPerDay))
         .penalizeConfigurable(
             (teacherDayOfWeek, integer) -> {
-              LOGGER.info("Penalize for teacher with {}", integer - maxHoursPerDay);
-              return integer - maxHoursPerDay;
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "maximmumCoursesTeached",
+                    "Penalize {} for {} hours",
+                    teacherDayOfWeek,
+                    integer);
+              }
+              return integer - MAX_TEACHER_HOURS_PER_DAY;
             })
         .asConstraint("maximmumCoursesTeached");
   }
@@ -429,28 +469,33 @@ public class TimetableConstraintProvider implements ConstraintProvider {
   Constraint maximumCoursesForStudents(ConstraintFactory constraintFactory) {
     // optimize this method to count the total hours spent in lessons
     // maximmum courses per day for student group
-    int maxHoursPerDay = 10;
-
     return constraintFactory
         .forEach(Lesson.class)
-        .groupBy(Lesson::getStudentGroup, Lesson::getTimeslot)
+        .groupBy(STUDENT_DAY_OF_WEEK, TIMESLOT_INDEX, TIMESLOT_HOURS)
         // try to sum the duration between slots
         .groupBy(
-            (studentGroup, timeslot) ->
-                StudentDayOfWeek.ofSD(studentGroup, timeslot.getDayOfWeek()),
-            sum((studentGroup, timeslot) -> (int) calculateTimeslotDuration(timeslot)))
+            (studentDayOfWeek, timeslot, hours) -> studentDayOfWeek,
+            sum((studentDayOfWeek, timeslot, hours) -> hours))
         .filter(
             (s, count) -> {
-              LOGGER.info("MaximmumCoursesForStudents - This is the student - DayOfWeek = {}", s);
-              LOGGER.info("MaximumCoursesForStudents - This is the count = {}", count);
-              return count > maxHoursPerDay;
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "maximumCoursesForStudents", "student - DayOfWeek: {}, hours: {}", s, count);
+              }
+              return count > MAX_STUDENT_HOURS_PER_DAY;
             })
         //                .penalize(HardSoftScore.ONE_HARD, ((studentDayOfWeek, integer) -> integer
         // - maxCoursesPerDay))
         .penalizeConfigurable(
             ((studentDayOfWeek, integer) -> {
-              LOGGER.info("Penalize for student with {}", integer - maxHoursPerDay);
-              return integer - maxHoursPerDay;
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "maximumCoursesForStudents",
+                    "Penalize {} for {} hours",
+                    studentDayOfWeek,
+                    integer);
+              }
+              return integer - MAX_STUDENT_HOURS_PER_DAY;
             }))
         // .justifyWith()
         .asConstraint("maximumCoursesForStudents");
@@ -462,29 +507,29 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         // select every Lesson
         .forEach(Lesson.class)
         // that is Course type
-        .filter(lesson -> lesson.getLessonType().equals(LessonType.COURSE))
+        .filter(IS_COURSE)
         // group the lessons that are in the same timeslot, room
         // and check the number of all the students in the groups (for those in the same series)
         // that are taking this course
-        .groupBy(
-            Lesson::getTimeslot,
-            Lesson::getRoom,
-            (lesson) -> lesson.getStudentGroup().getName(),
-            sum((lesson) -> Math.toIntExact(lesson.getStudentGroup().getNumberOfStudents())))
+        .groupBy(TIMESLOT_ROOM, SERIES, STUDENT_COUNT)
         // check if the total number of students exceeds the room capacity
         .filter(
-            (timeslot, room, series, studentTotal) -> {
-              LOGGER.info("coursesGroupedInTheSameTimeslot - timeslot: {}", timeslot);
-              LOGGER.info("courseStudentsGroupedInTheSameRoom - room: {}", room);
-              LOGGER.info("courseStudentsGroupedInTheSameRoom - series: {}", series);
-              LOGGER.info("courseStudentsGroupedInTheSameRoom - studentTotal: {}", studentTotal);
-              LOGGER.info("-------------------------------");
-              return studentTotal > room.getCapacity();
+            (timeslotRoom, series, studentTotal) -> {
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "courseStudentsGroupedInTheSameRoom",
+                    "{}, series: {}, studentTotal: {}",
+                    timeslotRoom,
+                    series,
+                    studentTotal);
+              }
+              return studentTotal > timeslotRoom.room().getCapacity();
             })
         //                .penalize(HardSoftScore.ONE_HARD, ((timeslot, room, series, studentTotal)
         // -> studentTotal - room.getCapacity()))
         .penalizeConfigurable(
-            (timeslot, room, series, studentTotal) -> (int) (studentTotal - room.getCapacity()))
+            (timeslotRoom, series, studentTotal) ->
+                (int) (studentTotal - timeslotRoom.room().getCapacity()))
         // .justifyWith()
         .asConstraint("courseStudentsGroupedInTheSameRoom");
   }
@@ -495,29 +540,29 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         // select every Lesson
         .forEach(Lesson.class)
         // that is Seminar type
-        .filter(lesson -> lesson.getLessonType().equals(LessonType.SEMINAR))
+        .filter(IS_SEMINAR)
         // group the lessons that are in the same timeslot, room
         // and check the number of all the students in the groups (for those in the same series)
         // that are taking this course
-        .groupBy(
-            Lesson::getTimeslot,
-            Lesson::getRoom,
-            (lesson) -> lesson.getStudentGroup().getStudentGroup(),
-            sum((lesson) -> Math.toIntExact(lesson.getStudentGroup().getNumberOfStudents())))
+        .groupBy(TIMESLOT_ROOM, GROUP, STUDENT_COUNT)
         // check if the total number of students exceeds the room capacity
         .filter(
-            (timeslot, room, group, studentTotal) -> {
-              LOGGER.info("seminarStudentsGroupedInTheSameRoom - timeslot: {}", timeslot);
-              LOGGER.info("seminarStudentsGroupedInTheSameRoom - room: {}", room);
-              LOGGER.info("seminarStudentsGroupedInTheSameRoom - series: {}", group);
-              LOGGER.info("seminarStudentsGroupedInTheSameRoom - studentTotal: {}", studentTotal);
-              LOGGER.info("-------------------------------");
-              return studentTotal > room.getCapacity();
+            (timeslotRoom, group, studentTotal) -> {
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "seminarStudentsGroupedInTheSameRoom",
+                    "{}, group: {}, studentTotal: {}",
+                    timeslotRoom,
+                    group,
+                    studentTotal);
+              }
+              return studentTotal > timeslotRoom.room().getCapacity();
             })
         //                .penalize(HardSoftScore.ONE_HARD, ((timeslot, room, series, studentTotal)
         // -> studentTotal - room.getCapacity()))
         .penalizeConfigurable(
-            (timeslot, room, series, studentTotal) -> (int) (studentTotal - room.getCapacity()))
+            (timeslotRoom, series, studentTotal) ->
+                (int) (studentTotal - timeslotRoom.room().getCapacity()))
         // .justifyWith()
         .asConstraint("seminarStudentsGroupedInTheSameRoom");
   }
@@ -528,29 +573,29 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         // select every Lesson
         .forEach(Lesson.class)
         // that is Laboratory type
-        .filter(lesson -> lesson.getLessonType().equals(LessonType.LABORATORY))
+        .filter(IS_LABORATORY)
         // group the lessons that are in the same timeslot, room
         // and check the number of all the students in the groups (for those in the same series)
         // that are taking this course
-        .groupBy(
-            Lesson::getTimeslot,
-            Lesson::getRoom,
-            (lesson) -> lesson.getStudentGroup().getStudentGroup(),
-            sum((lesson) -> Math.toIntExact(lesson.getStudentGroup().getNumberOfStudents())))
+        .groupBy(TIMESLOT_ROOM, GROUP, STUDENT_COUNT)
         // check if the total number of students exceeds the room capacity
         .filter(
-            (timeslot, room, group, studentTotal) -> {
-              LOGGER.info("labsStudentsGroupedInTheSameRoom - timeslot: {}", timeslot);
-              LOGGER.info("labsStudentsGroupedInTheSameRoom - room: {}", room);
-              LOGGER.info("labsStudentsGroupedInTheSameRoom - series: {}", group);
-              LOGGER.info("labsStudentsGroupedInTheSameRoom - studentTotal: {}", studentTotal);
-              LOGGER.info("-------------------------------");
-              return studentTotal > room.getCapacity();
+            (timeslotRoom, group, studentTotal) -> {
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "labsStudentsGroupedInTheSameRoom",
+                    "{}, group: {}, studentTotal: {}",
+                    timeslotRoom,
+                    group,
+                    studentTotal);
+              }
+              return studentTotal > timeslotRoom.room().getCapacity();
             })
         //                .penalize(HardSoftScore.ONE_HARD, ((timeslot, room, group, studentTotal)
         // -> studentTotal - room.getCapacity()))
         .penalizeConfigurable(
-            (timeslot, room, group, studentTotal) -> (int) (studentTotal - room.getCapacity()))
+            (timeslotRoom, group, studentTotal) ->
+                (int) (studentTotal - timeslotRoom.room().getCapacity()))
         // .justifyWith()
         .asConstraint("labsStudentsGroupedInTheSameRoom");
   }
@@ -561,12 +606,9 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         // select every Lesson
         .forEach(Lesson.class)
         // That is Course type
-        .filter(lesson -> lesson.getLessonType().equals(LessonType.COURSE))
+        .filter(IS_COURSE)
         // check if a lesson breaks "courses by student series" constraint
-        .groupBy(
-            (lesson) -> lesson.getStudentGroup().getName(),
-            Lesson::getSubject,
-            countDistinct(lesson -> TimeslotRoom.ofTR(lesson.getTimeslot(), lesson.getRoom())))
+        .groupBy(SERIES, SUBJECT, TIMESLOT_ROOM_COUNT)
         .filter((group, subject, timeslotAndRoomCount) -> timeslotAndRoomCount > 1)
         .penalizeConfigurable((group, subject, timeslotAndRoomCount) -> timeslotAndRoomCount - 1)
         // .justifyWith()
@@ -579,12 +621,9 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         // select every Lesson
         .forEach(Lesson.class)
         // That is Seminar type
-        .filter(lesson -> lesson.getLessonType().equals(LessonType.SEMINAR))
+        .filter(IS_SEMINAR)
         // check if a lesson breaks "seminars by student groups" constraint
-        .groupBy(
-            (lesson) -> lesson.getStudentGroup().getStudentGroup(),
-            Lesson::getSubject,
-            countDistinct(lesson -> TimeslotRoom.ofTR(lesson.getTimeslot(), lesson.getRoom())))
+        .groupBy(GROUP, SUBJECT, TIMESLOT_ROOM_COUNT)
         .filter((group, subject, timeslotAndRoomCount) -> timeslotAndRoomCount > 1)
         .penalizeConfigurable((group, subject, timeslotAndRoomCount) -> timeslotAndRoomCount - 1)
         // .justifyWith()
@@ -597,12 +636,9 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         // select every Lesson
         .forEach(Lesson.class)
         // That is Laboratory type
-        .filter(lesson -> lesson.getLessonType().equals(LessonType.LABORATORY))
+        .filter(IS_LABORATORY)
         // check if a lesson breaks "laboratories by student groups where it is possible" constraint
-        .groupBy(
-            (lesson) -> lesson.getStudentGroup().getStudentGroup(),
-            Lesson::getSubject,
-            countDistinct(lesson -> TimeslotRoom.ofTR(lesson.getTimeslot(), lesson.getRoom())))
+        .groupBy(GROUP, SUBJECT, TIMESLOT_ROOM_COUNT)
         .filter((group, subject, timeslotAndRoomCount) -> timeslotAndRoomCount > 1)
         .penalizeConfigurable((group, subject, timeslotAndRoomCount) -> timeslotAndRoomCount - 1)
         // .justifyWith()
@@ -612,49 +648,22 @@ public class TimetableConstraintProvider implements ConstraintProvider {
   Constraint gapsLongerThan4Hours(ConstraintFactory constraintFactory) {
     // 4 hours gaps between lessons for students in the same day
     return constraintFactory
-        // select each 2 pair of different lessons
         .forEach(Lesson.class)
-        .join(
-            Lesson.class,
-            // with the same student group
-            Joiners.equal(Lesson::getStudentGroup),
-            // in the same day
-            Joiners.equal((lesson) -> lesson.getTimeslot().getDayOfWeek()),
-            //                        Joiners.filtering((lesson1, lesson2) ->
-            // !lesson1.getTimeslot().equals(lesson2.getTimeslot())),
-            //// First starts before second
-            Joiners.lessThan((lesson -> lesson.getTimeslot().getId())))
-        .ifNotExists(
-            Lesson.class,
-            // with the same student group
-            Joiners.equal((a, b) -> a.getStudentGroup(), Lesson::getStudentGroup),
-            // in the same day
-            Joiners.equal(
-                (a, b) -> a.getTimeslot().getDayOfWeek(),
-                (lesson) -> lesson.getTimeslot().getDayOfWeek()),
-            // is between the two timeslots
-            Joiners.lessThan(
-                (a, b) -> a.getTimeslot().getStartTime(),
-                (lesson) -> lesson.getTimeslot().getStartTime()),
-            Joiners.greaterThan(
-                (a, b) -> b.getTimeslot().getStartTime(),
-                (lesson) -> lesson.getTimeslot().getStartTime()))
+        // with the same student group, in the same day
+        .groupBy(
+            STUDENT_DAY_OF_WEEK,
+            // between lessons at one start time and the lessons at the next start time
+            lessonGapsLongerThan(MAX_GAP_MINUTES))
         .filter(
-            (lesson1, lesson2) -> {
-              //                    LOGGER.info("The lesson1's: {}", lesson1);
-              LOGGER.info(
-                  "gapsLongerThan4Hours - The lesson1's timeslot: {}", lesson1.getTimeslot());
-              //                    LOGGER.info("The lesson2: {}", lesson2);
-              LOGGER.info(
-                  "gapsLongerThan4Hours - The lesson2's timeslot: {}", lesson2.getTimeslot());
-              LOGGER.info("----------------------------------");
-              Duration between =
-                  Duration.between(
-                      lesson1.getTimeslot().getEndTime(), lesson2.getTimeslot().getStartTime());
-              return !between.isNegative() && between.compareTo(Duration.ofHours(3)) > 0;
+            (studentDayOfWeek, count) -> {
+              if (ConstraintTracer.enabled()) {
+                ConstraintTracer.trace(
+                    "gapsLongerThan4Hours", "{} has {} gaps", studentDayOfWeek, count);
+              }
+              return count > 0;
             })
         //                .penalize(HardSoftScore.ONE_SOFT)
-        .penalizeConfigurable()
+        .penalizeConfigurable((studentDayOfWeek, count) -> count)
         // .justifyWith()
         .asConstraint("gapsLongerThan4Hours");
   }
@@ -666,18 +675,12 @@ public class TimetableConstraintProvider implements ConstraintProvider {
         .forEachUniquePair(
             Lesson.class,
             // with the same teacher
-            Joiners.equal(Lesson::getTeacher))
+            SAME_TEACHER)
         .filter(
-            (lesson1, lesson2) -> {
-              Duration between =
-                  Duration.between(
-                      lesson1.getTimeslot().getEndTime(), lesson2.getTimeslot().getStartTime());
-              boolean consecutiveLessons =
-                  !between.isNegative() && between.compareTo(Duration.ofMinutes(30)) <= 0;
-              return consecutiveLessons
-                  && lesson1.getRoom().equals(lesson2.getRoom())
-                  && lesson1.getTimeslot().equals(lesson2.getTimeslot());
-            })
+            (lesson1, lesson2) ->
+                areConsecutive(lesson1, lesson2)
+                    && lesson1.getRoom().equals(lesson2.getRoom())
+                    && lesson1.getTimeslot().equals(lesson2.getTimeslot()))
         .rewardConfigurable()
         .justifyWith(
             (lesson1, lesson2, score) ->
@@ -688,25 +691,16 @@ public class TimetableConstraintProvider implements ConstraintProvider {
   Constraint teacherTimeEfficiency(ConstraintFactory constraintFactory) {
     // A teacher prefers to teach sequential lessons and dislikes gaps between lessons.
     return constraintFactory
-        // select each 2 pair of different lessons
-        .forEachUniquePair(
-            Lesson.class,
-            // with the same teacher
-            Joiners.equal(Lesson::getTeacher),
-            // in the same day
-            Joiners.equal((lesson) -> lesson.getTimeslot().getDayOfWeek()))
-        .filter(
-            (lesson1, lesson2) -> {
-              Duration between =
-                  Duration.between(
-                      lesson1.getTimeslot().getEndTime(), lesson2.getTimeslot().getStartTime());
-              return !between.isNegative() && between.compareTo(Duration.ofMinutes(30)) <= 0;
-            })
+        .forEach(Lesson.class)
+        // consecutive lessons of the same teacher in the same day
+        .groupBy(TEACHER_DAY_OF_WEEK, consecutiveLessonPairs())
+        .filter((teacherDayOfWeek, count) -> count > 0)
         //                .reward(HardSoftScore.ONE_SOFT)
-        .rewardConfigurable()
+        .rewardConfigurable((teacherDayOfWeek, count) -> count)
         .justifyWith(
-            (lesson1, lesson2, score) ->
-                new TeacherTimeEfficiencyJustification(lesson1.getTeacher(), lesson1, lesson2))
+            (teacherDayOfWeek, count, score) ->
+                new TeacherTimeEfficiencyJustification(
+                    teacherDayOfWeek.teacher(), teacherDayOfWeek.dayOfWeek(), count))
         .asConstraint("teacherTimeEfficiency");
   }
 
@@ -714,56 +708,38 @@ public class TimetableConstraintProvider implements ConstraintProvider {
     // A student group dislikes sequential lessons on the same subject.
     return constraintFactory
         .forEach(Lesson.class)
-        // for every lesson
-        .join(
-            Lesson.class,
-            // for the same student group
-            Joiners.equal(Lesson::getStudentGroup),
+        // consecutive lessons of the same student group in the same day
+        .groupBy(
+            STUDENT_DAY_OF_WEEK,
             // with the same subject
-            Joiners.equal(Lesson::getSubject),
-            // in the same day
-            Joiners.equal((lesson) -> lesson.getTimeslot().getDayOfWeek()))
-        .filter(
-            (lesson1, lesson2) -> {
-              // check if the lessons are consecutive
-              Duration between =
-                  Duration.between(
-                      lesson1.getTimeslot().getEndTime(), lesson2.getTimeslot().getStartTime());
-              return !between.isNegative() && between.compareTo(Duration.ofMinutes(30)) <= 0;
-            })
-        .penalizeConfigurable()
+            consecutiveLessonPairs(SUBJECT, String::equals))
+        .filter((studentDayOfWeek, count) -> count > 0)
+        .penalizeConfigurable((studentDayOfWeek, count) -> count)
         //                .penalize(HardSoftScore.ONE_SOFT)
         .justifyWith(
-            (lesson1, lesson2, score) ->
+            (studentDayOfWeek, count, score) ->
                 new StudentGroupSubjectVarietyJustification(
-                    lesson1.getStudentGroup(), lesson1, lesson2))
+                    studentDayOfWeek.studentGroup(), studentDayOfWeek.dayOfWeek(), count))
         .asConstraint("studentGroupVariety");
   }
 
-  public record TeacherDayOfWeek(Teacher teacher, DayOfWeek dayOfWeek) {
-
-    static TeacherDayOfWeek ofTD(Teacher teacher, DayOfWeek dayOfWeek) {
-      return new TeacherDayOfWeek(teacher, dayOfWeek);
-    }
-  }
-
-  public record StudentDayOfWeek(StudentGroup studentGroup, DayOfWeek dayOfWeek) {
-
-    static StudentDayOfWeek ofSD(StudentGroup studentGroup, DayOfWeek dayOfWeek) {
-      return new StudentDayOfWeek(studentGroup, dayOfWeek);
+  private static int calculateTimeslotDuration(Timeslot timeslot) {
+    int hours = Math.abs(timeslot.getDurationMinutes()) / 60;
+    if (ConstraintTracer.enabled()) {
+      ConstraintTracer.trace(
+          "timeslotDuration", "the duration of timeslot {} is: {}", timeslot, hours);
     }
+    return hours;
   }
 
-  public record TimeslotRoom(Timeslot timeslot, Room room) {
-
-    static TimeslotRoom ofTR(Timeslot timeslot, Room room) {
-      return new TimeslotRoom(timeslot, room);
-    }
+  private static Object key(Integer planningIndex, Object fact) {
+    return planningIndex != null ? planningIndex : fact;
   }
 
-  private long calculateTimeslotDuration(Timeslot timeslot) {
-    Duration duration = Duration.between(timeslot.getStartTime(), timeslot.getEndTime());
-    LOGGER.info("the duration of timeslot {} is: {}", timeslot, duration.abs().toHours());
-    return duration.abs().toHours();
+  private static boolean areConsecutive(Lesson lesson1, Lesson lesson2) {
+    // same definition as ConsecutiveLessonsCollector, for streams that already have the pair
+    int gap =
+        lesson2.getTimeslot().getStartMinuteOfWeek() - lesson1.getTimeslot().getEndMinuteOfWeek();
+    return gap >= 0 && gap <= ConsecutiveLessonsCollector.MAX_GAP_MINUTES;
   }
 }
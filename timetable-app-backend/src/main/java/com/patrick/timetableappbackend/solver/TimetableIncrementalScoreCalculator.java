@@ -0,0 +1,739 @@
+package com.patrick.timetableappbackend.solver;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import ai.timefold.solver.core.api.score.calculator.IncrementalScoreCalculator;
+import com.patrick.timetableappbackend.model.*;
+import java.time.DayOfWeek;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Calculates the same score as {@link TimetableConstraintProvider}, with the same weights, from
+ * primitive arrays indexed by the planning indexes of the timeslots, rooms, teachers and student
+ * groups (see PlanningIndexer).
+ *
+ * <p>A lesson is added to the buckets of its timeslot and room, timeslot and teacher, student group
+ * and day, and teacher and day. Moving it only visits the other lessons of those buckets, so there
+ * are no tuples or hash lookups per move. It does not justify its matches, the score analysis keeps
+ * using the constraint streams.
+ */
+public class TimetableIncrementalScoreCalculator
+    implements IncrementalScoreCalculator<Timetable, HardMediumSoftScore> {
+
+  private static final int DAY_COUNT = DayOfWeek.values().length;
+  private static final int COURSE = LessonType.COURSE.ordinal();
+  private static final int SEMINAR = LessonType.SEMINAR.ordinal();
+  private static final int LABORATORY = LessonType.LABORATORY.ordinal();
+
+  private enum TimetableConstraint {
+    ROOM_CONFLICT(TimetableConstraintConfiguration::getRoomConflict),
+    TEACHER_CONFLICT(TimetableConstraintConfiguration::getTeacherConflict),
+    STUDENT_GROUP_CONFLICT(TimetableConstraintConfiguration::getStudentGroupConflict),
+    CAPACITY_ROOM_CONFLICT(TimetableConstraintConfiguration::getCapacityRoomConflict),
+    COURSE_STUDENTS_GROUPED_IN_THE_SAME_ROOM(
+        TimetableConstraintConfiguration::getCourseStudentsGroupedInTheSameRoom),
+    SEMINAR_STUDENTS_GROUPED_IN_THE_SAME_ROOM(
+        TimetableConstraintConfiguration::getSeminarStudentsGroupedInTheSameRoom),
+    LABS_STUDENTS_GROUPED_IN_THE_SAME_ROOM(
+        TimetableConstraintConfiguration::getLabsStudentsGroupedInTheSameRoom),
+    ROOM_CONFLICT_UNIVERSITY(TimetableConstraintConfiguration::getRoomConflictUniversity),
+    TEACHER_CONFLICT_UNIVERSITY(TimetableConstraintConfiguration::getTeacherConflictUniversity),
+    OVERLAPPING_TIMESLOT(TimetableConstraintConfiguration::getOverlappingTimeslot),
+    LESSON_DURATION_CONFLICT(TimetableConstraintConfiguration::getLessonDurationConflict),
+    MAXIMUM_COURSES_FOR_STUDENTS(TimetableConstraintConfiguration::getMaximumCoursesForStudents),
+    MAXIMIZE_PREFERRED_TIMESLOT_ASSIGNMENTS(
+        TimetableConstraintConfiguration::getMaximizePreferredTimeslotAssignments),
+    COURSES_GROUPED_IN_THE_SAME_TIMESLOT(
+        TimetableConstraintConfiguration::getCoursesGroupedInTheSameTimeslot),
+    SEMINARS_GROUPED_IN_THE_SAME_TIMESLOT(
+        TimetableConstraintConfiguration::getSeminarsGroupedInTheSameTimeslot),
+    MAXIMMUM_COURSES_TEACHED(TimetableConstraintConfiguration::getMaximmumCoursesTeached),
+    TEACHER_ROOM_STABILITY(TimetableConstraintConfiguration::getTeacherRoomStability, true),
+    TEACHER_TIME_EFFICIENCY(TimetableConstraintConfiguration::getTeacherTimeEfficiency, true),
+    STUDENT_GROUP_VARIETY(TimetableConstraintConfiguration::getStudentGroupVariety),
+    COURSES_IN_THE_SAME_BUILDING(
+        TimetableConstraintConfiguration::getCoursesInTheSameBuilding, true),
+    GAPS_LONGER_THAN_4_HOURS(TimetableConstraintConfiguration::getGapsLongerThan4Hours),
+    LABS_GROUPED_IN_THE_SAME_TIMESLOT(
+        TimetableConstraintConfiguration::getLabsGroupedInTheSameTimeslot),
+    LAB_AFTER_SEMINAR(TimetableConstraintConfiguration::getLabAfterSeminar, true);
+
+    private final Function<TimetableConstraintConfiguration, HardMediumSoftScore> weight;
+    private final boolean reward;
+
+    TimetableConstraint(Function<TimetableConstraintConfiguration, HardMediumSoftScore> weight) {
+      this(weight, false);
+    }
+
+    TimetableConstraint(
+        Function<TimetableConstraintConfiguration, HardMediumSoftScore> weight, boolean reward) {
+      this.weight = weight;
+      this.reward = reward;
+    }
+  }
+
+  private static final TimetableConstraint[] CONSTRAINTS = TimetableConstraint.values();
+
+  private Timetable workingSolution;
+  private final int[] hardWeights = new int[CONSTRAINTS.length];
+  private final int[] mediumWeights = new int[CONSTRAINTS.length];
+  private final int[] softWeights = new int[CONSTRAINTS.length];
+  private final int[] matches = new int[CONSTRAINTS.length];
+
+  private Map<Lesson, Integer> lessonIndexes;
+  private int roomCount;
+  private int teacherCount;
+  private int studentGroupCount;
+
+  // by lesson index, facts that do not change while solving
+  private int[] teacherOf;
+  private int[] studentGroupOf;
+  private int[] lessonTypeOf;
+  private int[] subjectOf;
+  private int[] seriesOf;
+  private int[] groupOf;
+  private int[] studentCountOf;
+  private int[] durationOf;
+  // series for courses, group for seminars and labs
+  private int[] roomGroupOf;
+  // lessons of a series or group with the same subject and type, -1 for other types
+  private int[] subjectGroupOf;
+  private int[][] subjectGroupLessons;
+  private TimetableConstraint[] subjectGroupConstraints;
+
+  // by lesson index, the planning variables as they were added, -1 if unassigned
+  private int[] timeslotOf;
+  private int[] roomOf;
+
+  // by timeslot index
+  private int[] startOf;
+  private int[] endOf;
+  private int[] dayOf;
+  private int[] hoursOf;
+  private int[] durationHoursOf;
+  private boolean[] roomStabilityOf;
+
+  // by room index
+  private long[] capacityOf;
+  private int[] buildingOf;
+
+  // by teacher index * timeslot count + timeslot index
+  private boolean[] teacherAvailable;
+  private int timeslotCount;
+
+  private LessonBuckets timeslotRoomLessons;
+  private LessonBuckets timeslotTeacherLessons;
+  private LessonBuckets studentGroupDayLessons;
+  private LessonBuckets teacherDayLessons;
+  private int[] timeslotStudentGroupCounts;
+  // hours in distinct timeslots
+  private int[] studentGroupDayHours;
+  private int[] teacherDayHours;
+
+  @Override
+  public void resetWorkingSolution(Timetable workingSolution) {
+    this.workingSolution = workingSolution;
+    TimetableConstraintConfiguration configuration =
+        workingSolution.getTimetableConstraintConfiguration();
+    if (configuration == null) {
+      throw new IllegalStateException("The timetable has no constraint configuration.");
+    }
+    for (TimetableConstraint constraint : CONSTRAINTS) {
+      HardMediumSoftScore weight = constraint.weight.apply(configuration);
+      int sign = constraint.reward ? 1 : -1;
+      hardWeights[constraint.ordinal()] = sign * weight.hardScore();
+      mediumWeights[constraint.ordinal()] = sign * weight.mediumScore();
+      softWeights[constraint.ordinal()] = sign * weight.softScore();
+    }
+    Arrays.fill(matches, 0);
+
+    List<Lesson> lessons =
+        workingSolution.getLessons() == null ? List.of() : workingSolution.getLessons();
+    indexTimeslots(workingSolution.getTimeslots(), lessons);
+    indexRooms(workingSolution.getRooms(), lessons);
+    indexLessons(lessons);
+
+    timeslotRoomLessons = new LessonBuckets(timeslotCount * roomCount);
+    timeslotTeacherLessons = new LessonBuckets(timeslotCount * teacherCount);
+    studentGroupDayLessons = new LessonBuckets(studentGroupCount * DAY_COUNT);
+    teacherDayLessons = new LessonBuckets(teacherCount * DAY_COUNT);
+    timeslotStudentGroupCounts = new int[timeslotCount * studentGroupCount];
+    studentGroupDayHours = new int[studentGroupCount * DAY_COUNT];
+    teacherDayHours = new int[teacherCount * DAY_COUNT];
+    for (int i = 0; i < lessons.size(); i++) {
+      insert(i, lessons.get(i).getTimeslot(), lessons.get(i).getRoom());
+    }
+  }
+
+  private void indexTimeslots(List<Timeslot> timeslots, List<Lesson> lessons) {
+    Map<Integer, Timeslot> timeslotsByIndex = new HashMap<>();
+    if (timeslots != null) {
+      timeslots.forEach(timeslot -> timeslotsByIndex.put(planningIndex(timeslot), timeslot));
+    }
+    for (Lesson lesson : lessons) {
+      if (lesson.getTimeslot() != null) {
+        timeslotsByIndex.putIfAbsent(planningIndex(lesson.getTimeslot()), lesson.getTimeslot());
+      }
+    }
+    timeslotCount = timeslotsByIndex.keySet().stream().mapToInt(i -> i + 1).max().orElse(0);
+    startOf = new int[timeslotCount];
+    endOf = new int[timeslotCount];
+    dayOf = new int[timeslotCount];
+    hoursOf = new int[timeslotCount];
+    durationHoursOf = new int[timeslotCount];
+    roomStabilityOf = new boolean[timeslotCount];
+    timeslotsByIndex.forEach(
+        (index, timeslot) -> {
+          startOf[index] = timeslot.getStartMinuteOfWeek();
+          endOf[index] = timeslot.getEndMinuteOfWeek();
+          dayOf[index] = timeslot.getDayIndex();
+          hoursOf[index] = Math.abs(timeslot.getDurationMinutes()) / 60;
+          durationHoursOf[index] = timeslot.getDurationMinutes() / 60;
+          // teacherRoomStability needs two lessons in the same timeslot to be consecutive
+          roomStabilityOf[index] = isConsecutive(endOf[index], startOf[index]);
+        });
+
+    // the copies of a teacher share an index and their preferred timeslots
+    Map<Integer, Teacher> teachers = new HashMap<>();
+    for (Lesson lesson : lessons) {
+      teachers.putIfAbsent(planningIndex(lesson.getTeacher()), lesson.getTeacher());
+    }
+    teacherCount = teachers.keySet().stream().mapToInt(i -> i + 1).max().orElse(0);
+    teacherAvailable = new boolean[teacherCount * timeslotCount];
+    teachers.forEach(
+        (teacherIndex, teacher) ->
+            timeslotsByIndex.forEach(
+                (timeslotIndex, timeslot) ->
+                    teacherAvailable[teacherIndex * timeslotCount + timeslotIndex] =
+                        teacher.isAvailable(timeslot)));
+  }
+
+  private void indexRooms(List<Room> rooms, List<Lesson> lessons) {
+    Map<Integer, Room> roomsByIndex = new HashMap<>();
+    if (rooms != null) {
+      rooms.forEach(room -> roomsByIndex.put(planningIndex(room), room));
+    }
+    for (Lesson lesson : lessons) {
+      if (lesson.getRoom() != null) {
+        roomsByIndex.putIfAbsent(planningIndex(lesson.getRoom()), lesson.getRoom());
+      }
+    }
+    roomCount = roomsByIndex.keySet().stream().mapToInt(i -> i + 1).max().orElse(0);
+    capacityOf = new long[roomCount];
+    buildingOf = new int[roomCount];
+    Map<String, Integer> buildings = new HashMap<>();
+    roomsByIndex.forEach(
+        (index, room) -> {
+          capacityOf[index] = room.getCapacity();
+          buildingOf[index] = buildings.computeIfAbsent(room.getBuilding(), b -> buildings.size());
+        });
+  }
+
+  private void indexLessons(List<Lesson> lessons) {
+    int lessonCount = lessons.size();
+    lessonIndexes = new IdentityHashMap<>(lessonCount);
+    teacherOf = new int[lessonCount];
+    studentGroupOf = new int[lessonCount];
+    lessonTypeOf = new int[lessonCount];
+    subjectOf = new int[lessonCount];
+    seriesOf = new int[lessonCount];
+    groupOf = new int[lessonCount];
+    studentCountOf = new int[lessonCount];
+    durationOf = new int[lessonCount];
+    roomGroupOf = new int[lessonCount];
+    subjectGroupOf = new int[lessonCount];
+    timeslotOf = new int[lessonCount];
+    roomOf = new int[lessonCount];
+    Arrays.fill(timeslotOf, -1);
+    Arrays.fill(roomOf, -1);
+
+    Map<String, Integer> subjects = new HashMap<>();
+    // the keys compare like in the constraint streams, interned keys by identity
+    Map<StudentGroupKey, Integer> series = new HashMap<>();
+    Map<StudentGroupKey, Integer> groups = new HashMap<>();
+    Map<List<Integer>, Integer> subjectGroups = new HashMap<>();
+    studentGroupCount = 0;
+    for (int i = 0; i < lessonCount; i++) {
+      Lesson lesson = lessons.get(i);
+      StudentGroup studentGroup = lesson.getStudentGroup();
+      lessonIndexes.put(lesson, i);
+      teacherOf[i] = planningIndex(lesson.getTeacher());
+      studentGroupOf[i] = planningIndex(studentGroup);
+      studentGroupCount = Math.max(studentGroupCount, studentGroupOf[i] + 1);
+      lessonTypeOf[i] = lesson.getLessonType() == null ? -1 : lesson.getLessonType().ordinal();
+      subjectOf[i] = subjects.computeIfAbsent(lesson.getSubject(), s -> subjects.size());
+      seriesOf[i] = series.computeIfAbsent(studentGroup.getSeriesKey(), s -> series.size());
+      groupOf[i] = groups.computeIfAbsent(studentGroup.getGroupKey(), g -> groups.size());
+      studentCountOf[i] = Math.toIntExact(studentGroup.getNumberOfStudents());
+      durationOf[i] = lesson.getDuration();
+      roomGroupOf[i] = lessonTypeOf[i] == COURSE ? seriesOf[i] : groupOf[i];
+      subjectGroupOf[i] =
+          subjectGroupConstraint(lessonTypeOf[i]) == null
+              ? -1
+              : subjectGroups.computeIfAbsent(
+                  List.of(lessonTypeOf[i], roomGroupOf[i], subjectOf[i]),
+                  key -> subjectGroups.size());
+    }
+
+    int[] subjectGroupSizes = new int[subjectGroups.size()];
+    subjectGroupLessons = new int[subjectGroups.size()][];
+    subjectGroupConstraints = new TimetableConstraint[subjectGroups.size()];
+    for (int i = 0; i < lessonCount; i++) {
+      if (subjectGroupOf[i] >= 0) {
+        subjectGroupSizes[subjectGroupOf[i]]++;
+      }
+    }
+    for (int group = 0; group < subjectGroupLessons.length; group++) {
+      subjectGroupLessons[group] = new int[subjectGroupSizes[group]];
+      subjectGroupSizes[group] = 0;
+    }
+    for (int i = 0; i < lessonCount; i++) {
+      int group = subjectGroupOf[i];
+      if (group >= 0) {
+        subjectGroupLessons[group][subjectGroupSizes[group]++] = i;
+        subjectGroupConstraints[group] = subjectGroupConstraint(lessonTypeOf[i]);
+      }
+    }
+  }
+
+  private static int planningIndex(Timeslot timeslot) {
+    return checkIndexed(timeslot.getPlanningIndex(), timeslot);
+  }
+
+  private static int planningIndex(Room room) {
+    return checkIndexed(room.getPlanningIndex(), room);
+  }
+
+  private static int planningIndex(Teacher teacher) {
+    return checkIndexed(teacher.getPlanningIndex(), teacher);
+  }
+
+  private static int planningIndex(StudentGroup studentGroup) {
+    return checkIndexed(studentGroup.getPlanningIndex(), studentGroup);
+  }
+
+  private static int checkIndexed(Integer planningIndex, Object fact) {
+    if (planningIndex == null) {
+      throw new IllegalStateException(
+          "The fact ("
+              + fact
+              + ") has no planning index.\n"
+              + "Maybe the timetable was not indexed by PlanningIndexer before solving it.");
+    }
+    return planningIndex;
+  }
+
+  @Override
+  public void beforeEntityAdded(Object entity) {
+    // do nothing
+  }
+
+  @Override
+  public void afterEntityAdded(Object entity) {
+    // lessons are only added by problem changes, rare enough to start over
+    resetWorkingSolution(workingSolution);
+  }
+
+  @Override
+  public void beforeVariableChanged(Object entity, String variableName) {
+    retract(lessonIndexes.get((Lesson) entity));
+  }
+
+  @Override
+  public void afterVariableChanged(Object entity, String variableName) {
+    Lesson lesson = (Lesson) entity;
+    insert(lessonIndexes.get(lesson), lesson.getTimeslot(), lesson.getRoom());
+  }
+
+  @Override
+  public void beforeEntityRemoved(Object entity) {
+    // do nothing
+  }
+
+  @Override
+  public void afterEntityRemoved(Object entity) {
+    resetWorkingSolution(workingSolution);
+  }
+
+  @Override
+  public HardMediumSoftScore calculateScore() {
+    int hardScore = 0;
+    int mediumScore = 0;
+    int softScore = 0;
+    for (int i = 0; i < matches.length; i++) {
+      hardScore += hardWeights[i] * matches[i];
+      mediumScore += mediumWeights[i] * matches[i];
+      softScore += softWeights[i] * matches[i];
+    }
+    return HardMediumSoftScore.of(hardScore, mediumScore, softScore);
+  }
+
+  private void insert(int lesson, Timeslot timeslot, Room room) {
+    // like forEach(Lesson.class), a lesson without a timeslot or room is not matched
+    if (timeslot == null || room == null) {
+      return;
+    }
+    int timeslotIndex = timeslot.getPlanningIndex();
+    int roomIndex = room.getPlanningIndex();
+    addGroupMatches(lesson, timeslotIndex, roomIndex, -1);
+    addLessonMatches(lesson, timeslotIndex, roomIndex, 1);
+    link(lesson, timeslotIndex, roomIndex);
+    addGroupMatches(lesson, timeslotIndex, roomIndex, 1);
+  }
+
+  private void retract(int lesson) {
+    int timeslotIndex = timeslotOf[lesson];
+    int roomIndex = roomOf[lesson];
+    if (timeslotIndex < 0) {
+      return;
+    }
+    addGroupMatches(lesson, timeslotIndex, roomIndex, -1);
+    unlink(lesson, timeslotIndex, roomIndex);
+    addLessonMatches(lesson, timeslotIndex, roomIndex, -1);
+    addGroupMatches(lesson, timeslotIndex, roomIndex, 1);
+  }
+
+  private void link(int lesson, int timeslot, int room) {
+    int teacher = teacherOf[lesson];
+    int studentGroup = studentGroupOf[lesson];
+    int day = dayOf[timeslot];
+    timeslotOf[lesson] = timeslot;
+    roomOf[lesson] = room;
+    timeslotRoomLessons.add(timeslot * roomCount + room, lesson);
+    int timeslotTeacher = timeslot * teacherCount + teacher;
+    timeslotTeacherLessons.add(timeslotTeacher, lesson);
+    if (timeslotTeacherLessons.size(timeslotTeacher) == 1) {
+      teacherDayHours[teacher * DAY_COUNT + day] += hoursOf[timeslot];
+    }
+    if (timeslotStudentGroupCounts[timeslot * studentGroupCount + studentGroup]++ == 0) {
+      studentGroupDayHours[studentGroup * DAY_COUNT + day] += hoursOf[timeslot];
+    }
+    studentGroupDayLessons.add(studentGroup * DAY_COUNT + day, lesson);
+    teacherDayLessons.add(teacher * DAY_COUNT + day, lesson);
+  }
+
+  private void unlink(int lesson, int timeslot, int room) {
+    int teacher = teacherOf[lesson];
+    int studentGroup = studentGroupOf[lesson];
+    int day = dayOf[timeslot];
+    timeslotOf[lesson] = -1;
+    roomOf[lesson] = -1;
+    timeslotRoomLessons.remove(timeslot * roomCount + room, lesson);
+    int timeslotTeacher = timeslot * teacherCount + teacher;
+    timeslotTeacherLessons.remove(timeslotTeacher, lesson);
+    if (timeslotTeacherLessons.size(timeslotTeacher) == 0) {
+      teacherDayHours[teacher * DAY_COUNT + day] -= hoursOf[timeslot];
+    }
+    if (--timeslotStudentGroupCounts[timeslot * studentGroupCount + studentGroup] == 0) {
+      studentGroupDayHours[studentGroup * DAY_COUNT + day] -= hoursOf[timeslot];
+    }
+    studentGroupDayLessons.remove(studentGroup * DAY_COUNT + day, lesson);
+    teacherDayLessons.remove(teacher * DAY_COUNT + day, lesson);
+  }
+
+  /**
+   * Matches of the lesson on its own and in pairs with the other lessons of its buckets, which do
+   * not contain the lesson itself.
+   */
+  private void addLessonMatches(int lesson, int timeslot, int room, int sign) {
+    int teacher = teacherOf[lesson];
+    int studentGroup = studentGroupOf[lesson];
+    int day = dayOf[timeslot];
+    int start = startOf[timeslot];
+    int end = endOf[timeslot];
+
+    if (capacityOf[room] < studentCountOf[lesson]) {
+      matches[TimetableConstraint.CAPACITY_ROOM_CONFLICT.ordinal()] += sign;
+    }
+    if (durationOf[lesson] != durationHoursOf[timeslot]) {
+      matches[TimetableConstraint.LESSON_DURATION_CONFLICT.ordinal()] += sign;
+    }
+    if (!teacherAvailable[teacher * timeslotCount + timeslot]) {
+      matches[TimetableConstraint.MAXIMIZE_PREFERRED_TIMESLOT_ASSIGNMENTS.ordinal()] += sign;
+    }
+
+    int timeslotRoom = timeslot * roomCount + room;
+    int[] others = timeslotRoomLessons.lessons(timeslotRoom);
+    int size = timeslotRoomLessons.size(timeslotRoom);
+    int roomConflicts = 0;
+    for (int i = 0; i < size; i++) {
+      if (isRoomConflictUniversity(lesson, others[i])) {
+        roomConflicts++;
+      }
+    }
+    matches[TimetableConstraint.ROOM_CONFLICT.ordinal()] += sign * size;
+    matches[TimetableConstraint.ROOM_CONFLICT_UNIVERSITY.ordinal()] += sign * roomConflicts;
+
+    int timeslotTeacher = timeslot * teacherCount + teacher;
+    others = timeslotTeacherLessons.lessons(timeslotTeacher);
+    size = timeslotTeacherLessons.size(timeslotTeacher);
+    int teacherConflicts = 0;
+    int sameRooms = 0;
+    for (int i = 0; i < size; i++) {
+      if (isTeacherConflictUniversity(lesson, room, others[i])) {
+        teacherConflicts++;
+      }
+      if (roomOf[others[i]] == room) {
+        sameRooms++;
+      }
+    }
+    matches[TimetableConstraint.TEACHER_CONFLICT.ordinal()] += sign * size;
+    matches[TimetableConstraint.TEACHER_CONFLICT_UNIVERSITY.ordinal()] += sign * teacherConflicts;
+    if (roomStabilityOf[timeslot]) {
+      matches[TimetableConstraint.TEACHER_ROOM_STABILITY.ordinal()] += sign * sameRooms;
+    }
+
+    matches[TimetableConstraint.STUDENT_GROUP_CONFLICT.ordinal()] +=
+        sign * timeslotStudentGroupCounts[timeslot * studentGroupCount + studentGroup];
+
+    int studentGroupDay = studentGroup * DAY_COUNT + day;
+    others = studentGroupDayLessons.lessons(studentGroupDay);
+    size = studentGroupDayLessons.size(studentGroupDay);
+    int overlaps = 0;
+    int sameSubjects = 0;
+    int sameBuildings = 0;
+    int labsAfterSeminars = 0;
+    for (int i = 0; i < size; i++) {
+      int other = others[i];
+      int otherStart = startOf[timeslotOf[other]];
+      int otherEnd = endOf[timeslotOf[other]];
+      if (start < otherEnd && otherStart < end) {
+        overlaps++;
+      }
+      // counted once per order, like ConsecutiveLessonsCollector
+      int pairs =
+          (isConsecutive(end, otherStart) ? 1 : 0) + (isConsecutive(otherEnd, start) ? 1 : 0);
+      if (pairs == 0) {
+        continue;
+      }
+      if (subjectOf[other] == subjectOf[lesson]) {
+        sameSubjects += pairs;
+      }
+      if (buildingOf[roomOf[other]] == buildingOf[room]) {
+        sameBuildings += pairs;
+      }
+      if (isLabAndSeminar(lessonTypeOf[lesson], lessonTypeOf[other])) {
+        labsAfterSeminars += pairs;
+      }
+    }
+    matches[TimetableConstraint.OVERLAPPING_TIMESLOT.ordinal()] += sign * overlaps;
+    matches[TimetableConstraint.STUDENT_GROUP_VARIETY.ordinal()] += sign * sameSubjects;
+    matches[TimetableConstraint.COURSES_IN_THE_SAME_BUILDING.ordinal()] += sign * sameBuildings;
+    matches[TimetableConstraint.LAB_AFTER_SEMINAR.ordinal()] += sign * labsAfterSeminars;
+
+    int teacherDay = teacher * DAY_COUNT + day;
+    others = teacherDayLessons.lessons(teacherDay);
+    size = teacherDayLessons.size(teacherDay);
+    int consecutiveLessons = 0;
+    for (int i = 0; i < size; i++) {
+      int otherTimeslot = timeslotOf[others[i]];
+      if (isConsecutive(end, startOf[otherTimeslot])) {
+        consecutiveLessons++;
+      }
+      if (isConsecutive(endOf[otherTimeslot], start)) {
+        consecutiveLessons++;
+      }
+    }
+    matches[TimetableConstraint.TEACHER_TIME_EFFICIENCY.ordinal()] += sign * consecutiveLessons;
+  }
+
+  /**
+   * Matches of the groups the lesson belongs to, calculated from the lessons currently in them:
+   * call it with -1 before and with 1 after the lesson is linked or unlinked.
+   */
+  private void addGroupMatches(int lesson, int timeslot, int room, int sign) {
+    int day = dayOf[timeslot];
+    int lessonType = lessonTypeOf[lesson];
+
+    TimetableConstraint roomConstraint = roomGroupConstraint(lessonType);
+    if (roomConstraint != null) {
+      int timeslotRoom = timeslot * roomCount + room;
+      int[] lessons = timeslotRoomLessons.lessons(timeslotRoom);
+      int size = timeslotRoomLessons.size(timeslotRoom);
+      int studentTotal = 0;
+      for (int i = 0; i < size; i++) {
+        int other = lessons[i];
+        if (lessonTypeOf[other] == lessonType && roomGroupOf[other] == roomGroupOf[lesson]) {
+          studentTotal += studentCountOf[other];
+        }
+      }
+      if (studentTotal > capacityOf[room]) {
+        matches[roomConstraint.ordinal()] += sign * (int) (studentTotal - capacityOf[room]);
+      }
+    }
+
+    int subjectGroup = subjectGroupOf[lesson];
+    if (subjectGroup >= 0) {
+      int timeslotRoomCount = countDistinctTimeslotRooms(subjectGroupLessons[subjectGroup]);
+      if (timeslotRoomCount > 1) {
+        matches[subjectGroupConstraints[subjectGroup].ordinal()] += sign * (timeslotRoomCount - 1);
+      }
+    }
+
+    int studentGroupDay = studentGroupOf[lesson] * DAY_COUNT + day;
+    matches[TimetableConstraint.MAXIMUM_COURSES_FOR_STUDENTS.ordinal()] +=
+        sign
+            * excessHours(
+                studentGroupDayHours[studentGroupDay],
+                TimetableConstraintProvider.MAX_STUDENT_HOURS_PER_DAY);
+    matches[TimetableConstraint.MAXIMMUM_COURSES_TEACHED.ordinal()] +=
+        sign
+            * excessHours(
+                teacherDayHours[teacherOf[lesson] * DAY_COUNT + day],
+                TimetableConstraintProvider.MAX_TEACHER_HOURS_PER_DAY);
+    matches[TimetableConstraint.GAPS_LONGER_THAN_4_HOURS.ordinal()] +=
+        sign * countGaps(studentGroupDay);
+  }
+
+  private int countDistinctTimeslotRooms(int[] lessons) {
+    int count = 0;
+    for (int i = 0; i < lessons.length; i++) {
+      int timeslot = timeslotOf[lessons[i]];
+      if (timeslot < 0) {
+        continue;
+      }
+      boolean seen = false;
+      for (int j = 0; j < i && !seen; j++) {
+        seen = timeslotOf[lessons[j]] == timeslot && roomOf[lessons[j]] == roomOf[lessons[i]];
+      }
+      if (!seen) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // same definition as LessonGapsCollector
+  private int countGaps(int studentGroupDay) {
+    int[] lessons = studentGroupDayLessons.lessons(studentGroupDay);
+    int size = studentGroupDayLessons.size(studentGroupDay);
+    int gaps = 0;
+    for (int i = 0; i < size; i++) {
+      int start = startOf[timeslotOf[lessons[i]]];
+      int nextStart = Integer.MAX_VALUE;
+      int nextStartCount = 0;
+      for (int j = 0; j < size; j++) {
+        int otherStart = startOf[timeslotOf[lessons[j]]];
+        if (otherStart > start && otherStart < nextStart) {
+          nextStart = otherStart;
+          nextStartCount = 1;
+        } else if (otherStart == nextStart) {
+          nextStartCount++;
+        }
+      }
+      if (nextStartCount > 0
+          && nextStart - endOf[timeslotOf[lessons[i]]]
+              > TimetableConstraintProvider.MAX_GAP_MINUTES) {
+        gaps += nextStartCount;
+      }
+    }
+    return gaps;
+  }
+
+  private boolean isRoomConflictUniversity(int lesson, int other) {
+    if (seriesOf[lesson] != seriesOf[other]) {
+      return true;
+    }
+    boolean sameSubject = subjectOf[lesson] == subjectOf[other];
+    if (lessonTypeOf[lesson] == SEMINAR && lessonTypeOf[other] == SEMINAR) {
+      return groupOf[lesson] != groupOf[other] || !sameSubject;
+    }
+    return lessonTypeOf[lesson] != lessonTypeOf[other] || !sameSubject;
+  }
+
+  private boolean isTeacherConflictUniversity(int lesson, int room, int other) {
+    // only a series taught the same lesson in the same room at once is no conflict, one group at a
+    // time or the whole series for a course
+    boolean sameLesson =
+        seriesOf[lesson] == seriesOf[other]
+            && lessonTypeOf[lesson] == lessonTypeOf[other]
+            && subjectOf[lesson] == subjectOf[other]
+            && room == roomOf[other];
+    return !sameLesson || (groupOf[lesson] != groupOf[other] && lessonTypeOf[lesson] != COURSE);
+  }
+
+  private static boolean isLabAndSeminar(int lessonType, int otherLessonType) {
+    return (lessonType == SEMINAR && otherLessonType == LABORATORY)
+        || (lessonType == LABORATORY && otherLessonType == SEMINAR);
+  }
+
+  private static boolean isConsecutive(int end, int nextStart) {
+    int gap = nextStart - end;
+    return gap >= 0 && gap <= ConsecutiveLessonsCollector.MAX_GAP_MINUTES;
+  }
+
+  private static int excessHours(int hours, int maxHoursPerDay) {
+    return hours > maxHoursPerDay ? hours - maxHoursPerDay : 0;
+  }
+
+  private static TimetableConstraint roomGroupConstraint(int lessonType) {
+    if (lessonType == COURSE) {
+      return TimetableConstraint.COURSE_STUDENTS_GROUPED_IN_THE_SAME_ROOM;
+    } else if (lessonType == SEMINAR) {
+      return TimetableConstraint.SEMINAR_STUDENTS_GROUPED_IN_THE_SAME_ROOM;
+    } else if (lessonType == LABORATORY) {
+      return TimetableConstraint.LABS_STUDENTS_GROUPED_IN_THE_SAME_ROOM;
+    }
+    return null;
+  }
+
+  private static TimetableConstraint subjectGroupConstraint(int lessonType) {
+    if (lessonType == COURSE) {
+      return TimetableConstraint.COURSES_GROUPED_IN_THE_SAME_TIMESLOT;
+    } else if (lessonType == SEMINAR) {
+      return TimetableConstraint.SEMINARS_GROUPED_IN_THE_SAME_TIMESLOT;
+    } else if (lessonType == LABORATORY) {
+      return TimetableConstraint.LABS_GROUPED_IN_THE_SAME_TIMESLOT;
+    }
+    return null;
+  }
+
+  /** Unordered lesson indexes per bucket, growing as needed. */
+  private static final class LessonBuckets {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int[][] lessons;
+    private final int[] sizes;
+
+    private LessonBuckets(int bucketCount) {
+      lessons = new int[bucketCount][];
+      sizes = new int[bucketCount];
+    }
+
+    private int[] lessons(int bucket) {
+      return lessons[bucket] == null ? EMPTY : lessons[bucket];
+    }
+
+    private int size(int bucket) {
+      return sizes[bucket];
+    }
+
+    private void add(int bucket, int lesson) {
+      int[] bucketLessons = lessons[bucket];
+      int size = sizes[bucket];
+      if (bucketLessons == null) {
+        bucketLessons = lessons[bucket] = new int[4];
+      } else if (size == bucketLessons.length) {
+        bucketLessons = lessons[bucket] = Arrays.copyOf(bucketLessons, size * 2);
+      }
+      bucketLessons[size] = lesson;
+      sizes[bucket] = size + 1;
+    }
+
+    private void remove(int bucket, int lesson) {
+      int[] bucketLessons = lessons[bucket];
+      int last = --sizes[bucket];
+      for (int i = 0; i <= last; i++) {
+        if (bucketLessons[i] == lesson) {
+          bucketLessons[i] = bucketLessons[last];
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.patrick.timetableappbackend.solver.change;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.utils.LessonValueRanges;
+import java.util.Objects;
+
+/**
+ * Adds a lesson to a timetable that is being solved, unassigned, for the construction heuristic to
+ * place once the solver restarts its phases.
+ *
+ * <p>The teacher and student group of the lesson must already be in the problem: the lesson gets
+ * their working instances, indexed by PlanningIndexer, instead of the ones it was given.
+ */
+public class AddLessonChange implements ProblemChange<Timetable> {
+
+  private final Lesson lesson;
+  private final boolean filteredValueRanges;
+
+  public AddLessonChange(Lesson lesson, boolean filteredValueRanges) {
+    this.lesson = lesson;
+    this.filteredValueRanges = filteredValueRanges;
+  }
+
+  @Override
+  public void doChange(Timetable workingSolution, ProblemChangeDirector problemChangeDirector) {
+    Lesson added = lesson.toBuilder().timeslot(null).room(null).pinnedForSolving(false).build();
+    for (Lesson other : workingSolution.getLessons()) {
+      if (Objects.equals(other.getId(), added.getId())) {
+        // added twice
+        return;
+      }
+      if (added.getTeacher() != null
+          && other.getTeacher() != null
+          && Objects.equals(other.getTeacher().getId(), added.getTeacher().getId())) {
+        added.setTeacher(other.getTeacher());
+      }
+      if (added.getStudentGroup() != null
+          && other.getStudentGroup() != null
+          && Objects.equals(other.getStudentGroup().getId(), added.getStudentGroup().getId())) {
+        added.setStudentGroup(other.getStudentGroup());
+      }
+    }
+    LessonValueRanges.apply(
+        added, workingSolution.getTimeslots(), workingSolution.getRooms(), filteredValueRanges);
+    problemChangeDirector.addEntity(added, lesson -> workingSolution.getLessons().add(lesson));
+  }
+}
@@ -0,0 +1,58 @@
+package com.patrick.timetableappbackend.solver.change;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Moves the lessons of a timetable that is being solved to the timeslots and rooms of a better
+ * solution found by another solver of the same problem, see PortfolioSolveService. The solver goes
+ * on from there once it restarts its phases. Lessons, timeslots and rooms the timetable does not
+ * have are skipped.
+ */
+public class AdoptAssignmentChange implements ProblemChange<Timetable> {
+
+  private final List<LessonAssignment> assignments;
+
+  public AdoptAssignmentChange(List<LessonAssignment> assignments) {
+    this.assignments = assignments;
+  }
+
+  @Override
+  public void doChange(Timetable workingSolution, ProblemChangeDirector problemChangeDirector) {
+    Map<Long, Lesson> lessonsById = new HashMap<>();
+    workingSolution.getLessons().forEach(lesson -> lessonsById.put(lesson.getId(), lesson));
+    Map<Long, Timeslot> timeslotsById = new HashMap<>();
+    workingSolution
+        .getTimeslots()
+        .forEach(timeslot -> timeslotsById.put(timeslot.getId(), timeslot));
+    Map<Long, Room> roomsById = new HashMap<>();
+    workingSolution.getRooms().forEach(room -> roomsById.put(room.getId(), room));
+    for (LessonAssignment assignment : assignments) {
+      Lesson lesson = lessonsById.get(assignment.getLessonId());
+      Timeslot timeslot =
+          assignment.getTimeslotId() == null ? null : timeslotsById.get(assignment.getTimeslotId());
+      Room room = assignment.getRoomId() == null ? null : roomsById.get(assignment.getRoomId());
+      if (lesson == null
+          || (timeslot == null) != (assignment.getTimeslotId() == null)
+          || (room == null) != (assignment.getRoomId() == null)) {
+        continue;
+      }
+      if (!Objects.equals(lesson.getTimeslot(), timeslot)) {
+        problemChangeDirector.changeVariable(
+            lesson, "timeslot", changed -> changed.setTimeslot(timeslot));
+      }
+      if (!Objects.equals(lesson.getRoom(), room)) {
+        problemChangeDirector.changeVariable(lesson, "room", changed -> changed.setRoom(room));
+      }
+    }
+  }
+}
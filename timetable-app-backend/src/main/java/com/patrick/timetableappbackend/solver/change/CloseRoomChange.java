@@ -0,0 +1,68 @@
+package com.patrick.timetableappbackend.solver.change;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Removes a room from a timetable that is being solved. The lessons in it are unassigned, and
+ * unpinned, for the construction heuristic to place again once the solver restarts its phases,
+ * and it is taken out of the room range of every lesson.
+ */
+public class CloseRoomChange implements ProblemChange<Timetable> {
+
+  private final long roomId;
+
+  public CloseRoomChange(long roomId) {
+    this.roomId = roomId;
+  }
+
+  @Override
+  public void doChange(Timetable workingSolution, ProblemChangeDirector problemChangeDirector) {
+    Room room =
+        workingSolution.getRooms().stream()
+            .filter(candidate -> Objects.equals(candidate.getId(), roomId))
+            .findFirst()
+            .orElse(null);
+    if (room == null) {
+      // closed twice
+      return;
+    }
+    List<Room> rooms = without(workingSolution.getRooms(), room);
+    // the lessons share their ranges, see LessonValueRanges
+    Map<List<Room>, List<Room>> roomRanges = new IdentityHashMap<>();
+    for (Lesson lesson : workingSolution.getLessons()) {
+      boolean inRoom = room.equals(lesson.getRoom());
+      if (inRoom) {
+        problemChangeDirector.changeProblemProperty(
+            lesson, changed -> changed.setPinnedForSolving(false));
+        problemChangeDirector.changeVariable(
+            lesson, "timeslot", changed -> changed.setTimeslot(null));
+        problemChangeDirector.changeVariable(lesson, "room", changed -> changed.setRoom(null));
+      }
+      if (inRoom || lesson.getRoomRange().contains(room)) {
+        List<Room> roomRange =
+            roomRanges.computeIfAbsent(
+                lesson.getRoomRange(),
+                range -> {
+                  List<Room> remaining = without(range, room);
+                  // like LessonValueRanges, rather break capacityRoomConflict than stay unassigned
+                  return remaining.isEmpty() ? rooms : remaining;
+                });
+        problemChangeDirector.changeProblemProperty(
+            lesson, changed -> changed.setRoomRange(roomRange));
+      }
+    }
+    problemChangeDirector.removeProblemFact(room, removed -> workingSolution.setRooms(rooms));
+  }
+
+  private static List<Room> without(List<Room> rooms, Room room) {
+    return rooms.stream().filter(candidate -> !candidate.equals(room)).toList();
+  }
+}
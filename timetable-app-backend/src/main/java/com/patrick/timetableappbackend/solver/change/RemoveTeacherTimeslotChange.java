@@ -0,0 +1,88 @@
+package com.patrick.timetableappbackend.solver.change;
+
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.api.solver.change.ProblemChangeDirector;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Teacher;
+import com.patrick.timetableappbackend.model.TeacherAvailability;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Makes a teacher unavailable in a timeslot of a timetable that is being solved. A teacher without
+ * preferred timeslots is available in all of them, so it gets all the others.
+ *
+ * <p>Every lesson holds a copy of its teacher, see PlanningIndexer: the teacher is changed
+ * through the solver (see Timetable.getTeachers), all the copies get the new preferred timeslots
+ * and the row of the teacher in the shared {@link TeacherAvailability} is refilled. The lessons of
+ * the teacher are then re-evaluated, the ones now in an unavailable timeslot stay where they are
+ * for the local search to move them.
+ */
+public class RemoveTeacherTimeslotChange implements ProblemChange<Timetable> {
+
+  private final long teacherId;
+  private final long timeslotId;
+  private final TeacherAvailability.Mode availabilityMode;
+
+  public RemoveTeacherTimeslotChange(
+      long teacherId, long timeslotId, TeacherAvailability.Mode availabilityMode) {
+    this.teacherId = teacherId;
+    this.timeslotId = timeslotId;
+    this.availabilityMode = availabilityMode;
+  }
+
+  /** The preferred timeslots of the teacher without the one removed, empty if none is left. */
+  public static Set<Timeslot> remainingTimeslots(
+      Teacher teacher, List<Timeslot> timeslots, long timeslotId) {
+    Set<Timeslot> remaining =
+        new HashSet<>(
+            teacher.getTimeslots() == null || teacher.getTimeslots().isEmpty()
+                ? timeslots
+                : teacher.getTimeslots());
+    remaining.removeIf(timeslot -> Objects.equals(timeslot.getId(), timeslotId));
+    return remaining;
+  }
+
+  @Override
+  public void doChange(Timetable workingSolution, ProblemChangeDirector problemChangeDirector) {
+    List<Lesson> lessons = new ArrayList<>();
+    Set<Teacher> teachers = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Lesson lesson : workingSolution.getLessons()) {
+      if (lesson.getTeacher() != null && Objects.equals(lesson.getTeacher().getId(), teacherId)) {
+        lessons.add(lesson);
+        teachers.add(lesson.getTeacher());
+      }
+    }
+    if (lessons.isEmpty()) {
+      return;
+    }
+    Teacher teacher = lessons.get(0).getTeacher();
+    Set<Timeslot> remaining =
+        remainingTimeslots(teacher, workingSolution.getTimeslots(), timeslotId);
+    if (remaining.isEmpty()) {
+      // rejected before it was submitted, an empty set would make the teacher available everywhere
+      return;
+    }
+    problemChangeDirector.changeProblemProperty(
+        teacher,
+        changed -> {
+          teachers.forEach(copy -> copy.setTimeslots(new HashSet<>(remaining)));
+          if (changed.getAvailability() != null) {
+            changed
+                .getAvailability()
+                .update(changed, workingSolution.getTimeslots(), availabilityMode);
+          }
+        });
+    // the constraints read the teacher through its lessons, those are re-evaluated
+    for (Lesson lesson : lessons) {
+      problemChangeDirector.changeProblemProperty(lesson, changed -> {});
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.patrick.timetableappbackend.solver.move;
+
+import static ai.timefold.solver.core.impl.heuristic.move.AbstractMove.rebaseList;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.AbstractSimplifiedMove;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Swaps a Kempe chain between two timeslots: every lesson of the chain in the one timeslot moves to
+ * the other and the other way around. The rooms stay as they are.
+ */
+public class KempeChainMove extends AbstractSimplifiedMove<Timetable> {
+
+  private final List<Lesson> chain;
+  private final Timeslot left;
+  private final Timeslot right;
+
+  public KempeChainMove(List<Lesson> chain, Timeslot left, Timeslot right) {
+    this.chain = chain;
+    this.left = left;
+    this.right = right;
+  }
+
+  @Override
+  public boolean isMoveDoable(ScoreDirector<Timetable> scoreDirector) {
+    if (Objects.equals(left, right)) {
+      return false;
+    }
+    for (Lesson lesson : chain) {
+      if (lesson.isPinnedForSolving()
+          || !lesson.getTimeslotRange().contains(otherTimeslot(lesson))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected void doMoveOnGenuineVariables(ScoreDirector<Timetable> scoreDirector) {
+    for (Lesson lesson : chain) {
+      Timeslot timeslot = otherTimeslot(lesson);
+      scoreDirector.beforeVariableChanged(lesson, "timeslot");
+      lesson.setTimeslot(timeslot);
+      scoreDirector.afterVariableChanged(lesson, "timeslot");
+    }
+  }
+
+  private Timeslot otherTimeslot(Lesson lesson) {
+    return Objects.equals(lesson.getTimeslot(), left) ? right : left;
+  }
+
+  @Override
+  public KempeChainMove rebase(ScoreDirector<Timetable> destinationScoreDirector) {
+    return new KempeChainMove(
+        rebaseList(chain, destinationScoreDirector),
+        destinationScoreDirector.lookUpWorkingObject(left),
+        destinationScoreDirector.lookUpWorkingObject(right));
+  }
+
+  @Override
+  public String getSimpleMoveTypeDescription() {
+    return "KempeChainMove(Lesson.timeslot)";
+  }
+
+  @Override
+  public Collection<Lesson> getPlanningEntities() {
+    return chain;
+  }
+
+  @Override
+  public Collection<Timeslot> getPlanningValues() {
+    // left is null for a chain of an unassigned lesson, which the move assigns right
+    return left == null ? List.of(right) : List.of(left, right);
+  }
+
+  @Override
+  public String toString() {
+    return chain + " {" + left + " <-> " + right + "}";
+  }
+}
@@ -0,0 +1,161 @@
+package com.patrick.timetableappbackend.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Kempe chain moves over the timeslot of a {@link Lesson}.
+ *
+ * <p>A random lesson and a timeslot from its value range start the chain. Every lesson of the other
+ * timeslot that shares a teacher, student group or room with a lesson of the chain joins it, and in
+ * turn pulls in the lessons it clashes with in the first timeslot. Lessons taught together (same
+ * teacher, room and subject) stay together. Swapping the whole chain does not create a clash
+ * between the two timeslots, where a single change move would, so the local search gets off the
+ * plateaus of an almost feasible timetable.
+ *
+ * <p>Random selection only. A chain stops growing at {@code maxChainSize} lessons (a custom
+ * property in the solver config); the swap may then leave a clash, which the score weighs like for
+ * any move. A chain starts from a lesson that is not pinned and is not doable when it pulls in one
+ * that is.
+ */
+public class KempeChainMoveIteratorFactory
+    implements MoveIteratorFactory<Timetable, KempeChainMove> {
+
+  private int maxChainSize = 20;
+  // the lessons a chain can start from, those not pinned
+  private List<Lesson> movableLessons = List.of();
+
+  public void setMaxChainSize(int maxChainSize) {
+    this.maxChainSize = maxChainSize;
+  }
+
+  @Override
+  public void phaseStarted(ScoreDirector<Timetable> scoreDirector) {
+    movableLessons =
+        scoreDirector.getWorkingSolution().getLessons().stream()
+            .filter(lesson -> !lesson.isPinnedForSolving())
+            .toList();
+  }
+
+  @Override
+  public void phaseEnded(ScoreDirector<Timetable> scoreDirector) {
+    movableLessons = List.of();
+  }
+
+  @Override
+  public long getSize(ScoreDirector<Timetable> scoreDirector) {
+    return (long) movableLessons.size() * scoreDirector.getWorkingSolution().getTimeslots().size();
+  }
+
+  @Override
+  public Iterator<KempeChainMove> createOriginalMoveIterator(
+      ScoreDirector<Timetable> scoreDirector) {
+    throw new UnsupportedOperationException(
+        "KempeChainMoveIteratorFactory only supports random selection.");
+  }
+
+  @Override
+  public Iterator<KempeChainMove> createRandomMoveIterator(
+      ScoreDirector<Timetable> scoreDirector, Random workingRandom) {
+    return new KempeChainMoveIterator(
+        scoreDirector.getWorkingSolution().getLessons(), movableLessons, workingRandom);
+  }
+
+  private class KempeChainMoveIterator implements Iterator<KempeChainMove> {
+
+    private final List<Lesson> lessons;
+    private final List<Lesson> movableLessons;
+    private final Random workingRandom;
+    // the iterator lives for one step, in which every move is undone again, so this is built once
+    // keyed on the planning index of the timeslot, see timeslotKey
+    private Map<Object, List<Lesson>> lessonsByTimeslot;
+
+    private KempeChainMoveIterator(
+        List<Lesson> lessons, List<Lesson> movableLessons, Random workingRandom) {
+      this.lessons = lessons;
+      this.movableLessons = movableLessons;
+      this.workingRandom = workingRandom;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !movableLessons.isEmpty();
+    }
+
+    @Override
+    public KempeChainMove next() {
+      if (lessonsByTimeslot == null) {
+        lessonsByTimeslot = new HashMap<>();
+        for (Lesson lesson : lessons) {
+          if (lesson.getTimeslot() != null) {
+            lessonsByTimeslot
+                .computeIfAbsent(timeslotKey(lesson.getTimeslot()), key -> new ArrayList<>())
+                .add(lesson);
+          }
+        }
+      }
+      Lesson lesson = movableLessons.get(workingRandom.nextInt(movableLessons.size()));
+      List<Timeslot> timeslotRange = lesson.getTimeslotRange();
+      Timeslot left = lesson.getTimeslot();
+      Timeslot right = timeslotRange.get(workingRandom.nextInt(timeslotRange.size()));
+      if (left == null || left.equals(right)) {
+        return new KempeChainMove(List.of(lesson), left, right);
+      }
+      return new KempeChainMove(chain(lesson, left, right), left, right);
+    }
+
+    private List<Lesson> chain(Lesson start, Timeslot left, Timeslot right) {
+      List<Lesson> chain = new ArrayList<>();
+      Set<Lesson> inChain = Collections.newSetFromMap(new IdentityHashMap<>());
+      chain.add(start);
+      inChain.add(start);
+      for (int i = 0; i < chain.size(); i++) {
+        Lesson lesson = chain.get(i);
+        boolean onLeft = Objects.equals(lesson.getTimeslot(), left);
+        for (Lesson other :
+            lessonsByTimeslot.getOrDefault(timeslotKey(onLeft ? right : left), List.of())) {
+          if (chain.size() < maxChainSize && clash(lesson, other) && inChain.add(other)) {
+            chain.add(other);
+          }
+        }
+        for (Lesson other :
+            lessonsByTimeslot.getOrDefault(timeslotKey(onLeft ? left : right), List.of())) {
+          if (chain.size() < maxChainSize && taughtTogether(lesson, other) && inChain.add(other)) {
+            chain.add(other);
+          }
+        }
+      }
+      return chain;
+    }
+  }
+
+  private static boolean clash(Lesson lesson, Lesson other) {
+    return Objects.equals(lesson.getTeacher(), other.getTeacher())
+        || Objects.equals(lesson.getStudentGroup(), other.getStudentGroup())
+        || Objects.equals(lesson.getRoom(), other.getRoom());
+  }
+
+  private static boolean taughtTogether(Lesson lesson, Lesson other) {
+    return Objects.equals(lesson.getTeacher(), other.getTeacher())
+        && Objects.equals(lesson.getRoom(), other.getRoom())
+        && Objects.equals(lesson.getSubject(), other.getSubject());
+  }
+
+  // timeslots hash by class, so they are keyed on their planning index, if PlanningIndexer set one
+  private static Object timeslotKey(Timeslot timeslot) {
+    return timeslot.getPlanningIndex() != null ? timeslot.getPlanningIndex() : timeslot;
+  }
+}
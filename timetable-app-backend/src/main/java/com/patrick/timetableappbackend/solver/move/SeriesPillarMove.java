@@ -0,0 +1,87 @@
+package com.patrick.timetableappbackend.solver.move;
+
+import static ai.timefold.solver.core.impl.heuristic.move.AbstractMove.rebaseList;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.move.AbstractSimplifiedMove;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/** Moves every lesson of a pillar to the same timeslot and room. */
+public class SeriesPillarMove extends AbstractSimplifiedMove<Timetable> {
+
+  private final List<Lesson> pillar;
+  private final Timeslot timeslot;
+  private final Room room;
+
+  public SeriesPillarMove(List<Lesson> pillar, Timeslot timeslot, Room room) {
+    this.pillar = pillar;
+    this.timeslot = timeslot;
+    this.room = room;
+  }
+
+  @Override
+  public boolean isMoveDoable(ScoreDirector<Timetable> scoreDirector) {
+    boolean changes = false;
+    for (Lesson lesson : pillar) {
+      if (!lesson.getTimeslotRange().contains(timeslot) || !lesson.getRoomRange().contains(room)) {
+        return false;
+      }
+      changes |= !isOnTarget(lesson);
+    }
+    return changes;
+  }
+
+  @Override
+  protected void doMoveOnGenuineVariables(ScoreDirector<Timetable> scoreDirector) {
+    for (Lesson lesson : pillar) {
+      if (!Objects.equals(lesson.getTimeslot(), timeslot)) {
+        scoreDirector.beforeVariableChanged(lesson, "timeslot");
+        lesson.setTimeslot(timeslot);
+        scoreDirector.afterVariableChanged(lesson, "timeslot");
+      }
+      if (!Objects.equals(lesson.getRoom(), room)) {
+        scoreDirector.beforeVariableChanged(lesson, "room");
+        lesson.setRoom(room);
+        scoreDirector.afterVariableChanged(lesson, "room");
+      }
+    }
+  }
+
+  private boolean isOnTarget(Lesson lesson) {
+    return Objects.equals(lesson.getTimeslot(), timeslot) && Objects.equals(lesson.getRoom(), room);
+  }
+
+  @Override
+  public SeriesPillarMove rebase(ScoreDirector<Timetable> destinationScoreDirector) {
+    return new SeriesPillarMove(
+        rebaseList(pillar, destinationScoreDirector),
+        destinationScoreDirector.lookUpWorkingObject(timeslot),
+        destinationScoreDirector.lookUpWorkingObject(room));
+  }
+
+  @Override
+  public String getSimpleMoveTypeDescription() {
+    return "SeriesPillarMove(Lesson.timeslot+Lesson.room)";
+  }
+
+  @Override
+  public Collection<Lesson> getPlanningEntities() {
+    return pillar;
+  }
+
+  @Override
+  public Collection<Object> getPlanningValues() {
+    return List.of(timeslot, room);
+  }
+
+  @Override
+  public String toString() {
+    return pillar + " {-> " + timeslot + ", " + room + "}";
+  }
+}
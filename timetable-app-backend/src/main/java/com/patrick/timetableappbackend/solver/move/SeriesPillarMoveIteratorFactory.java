@@ -0,0 +1,108 @@
+package com.patrick.timetableappbackend.solver.move;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import ai.timefold.solver.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.LessonType;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.StudentGroupKey;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Pillar moves over the course lessons of a series, the lessons coursesGroupedInTheSameTimeslot
+ * wants in one timeslot and room: the course of a subject for every group of the series.
+ *
+ * <p>A move either gathers the pillar on the timeslot and room of one of its lessons, or shifts it
+ * to another timeslot from that lesson's value range. A change or swap move takes a lesson away
+ * from the others of its course, so it costs a medium penalty before it can pay off.
+ *
+ * <p>Random selection only.
+ */
+public class SeriesPillarMoveIteratorFactory
+    implements MoveIteratorFactory<Timetable, SeriesPillarMove> {
+
+  private List<List<Lesson>> pillars = List.of();
+
+  private record SeriesCourse(StudentGroupKey series, String subject) {}
+
+  @Override
+  public void phaseStarted(ScoreDirector<Timetable> scoreDirector) {
+    // the lessons of a pillar do not change, only their timeslot and room
+    pillars = pillars(scoreDirector.getWorkingSolution());
+  }
+
+  @Override
+  public void phaseEnded(ScoreDirector<Timetable> scoreDirector) {
+    pillars = List.of();
+  }
+
+  private static List<List<Lesson>> pillars(Timetable timetable) {
+    Map<SeriesCourse, List<Lesson>> lessonsBySeriesCourse =
+        timetable.getLessons().stream()
+            .filter(
+                lesson ->
+                    lesson.getLessonType() == LessonType.COURSE && lesson.getStudentGroup() != null)
+            .collect(
+                Collectors.groupingBy(
+                    lesson ->
+                        new SeriesCourse(
+                            lesson.getStudentGroup().getSeriesKey(), lesson.getSubject()),
+                    LinkedHashMap::new,
+                    Collectors.toList()));
+    // a pillar with a pinned lesson can not move as a whole
+    return lessonsBySeriesCourse.values().stream()
+        .filter(
+            pillar -> pillar.size() > 1 && pillar.stream().noneMatch(Lesson::isPinnedForSolving))
+        .toList();
+  }
+
+  @Override
+  public long getSize(ScoreDirector<Timetable> scoreDirector) {
+    return (long) pillars.size() * scoreDirector.getWorkingSolution().getTimeslots().size();
+  }
+
+  @Override
+  public Iterator<SeriesPillarMove> createOriginalMoveIterator(
+      ScoreDirector<Timetable> scoreDirector) {
+    throw new UnsupportedOperationException(
+        "SeriesPillarMoveIteratorFactory only supports random selection.");
+  }
+
+  @Override
+  public Iterator<SeriesPillarMove> createRandomMoveIterator(
+      ScoreDirector<Timetable> scoreDirector, Random workingRandom) {
+    List<List<Lesson>> pillars = this.pillars;
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return !pillars.isEmpty();
+      }
+
+      @Override
+      public SeriesPillarMove next() {
+        List<Lesson> pillar = pillars.get(workingRandom.nextInt(pillars.size()));
+        Lesson anchor = pillar.get(workingRandom.nextInt(pillar.size()));
+        if (anchor.getTimeslot() != null
+            && anchor.getRoom() != null
+            && workingRandom.nextBoolean()) {
+          return new SeriesPillarMove(pillar, anchor.getTimeslot(), anchor.getRoom());
+        }
+        List<Timeslot> timeslotRange = anchor.getTimeslotRange();
+        Timeslot timeslot = timeslotRange.get(workingRandom.nextInt(timeslotRange.size()));
+        Room room = anchor.getRoom();
+        if (room == null) {
+          List<Room> roomRange = anchor.getRoomRange();
+          room = roomRange.get(workingRandom.nextInt(roomRange.size()));
+        }
+        return new SeriesPillarMove(pillar, timeslot, room);
+      }
+    };
+  }
+}
@@ -0,0 +1,105 @@
+package com.patrick.timetableappbackend.utils;
+
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.StudentGroupKey;
+import com.patrick.timetableappbackend.model.Teacher;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Decides which lessons the solver keeps where they are ({@link Lesson#isPinnedForSolving()}).
+ *
+ * <p>A lesson the user pinned is, if it has a timeslot and room. A warm start seeds the lessons
+ * without an assignment with the one last persisted and, with {@code pinUnrelated}, also pins the
+ * lessons that share neither a teacher nor a series with a changed lesson: one without an
+ * assignment, or with another one than persisted. The solver then only constructs the lessons left
+ * unassigned and searches around the changes.
+ */
+public final class LessonPinning {
+
+  private LessonPinning() {}
+
+  public static void apply(Timetable timetable) {
+    if (timetable.getLessons() == null) {
+      return;
+    }
+    for (Lesson lesson : timetable.getLessons()) {
+      lesson.setPinnedForSolving(lesson.isPinned() && isAssigned(lesson));
+    }
+  }
+
+  /**
+   * Seeds and pins a problem that has been {@link PlanningIndexer indexed}.
+   *
+   * @param persisted the lessons as last persisted, by the same ids as those of the problem
+   * @return the number of lessons the solver can move
+   */
+  public static int warmStart(Timetable problem, List<Lesson> persisted, boolean pinUnrelated) {
+    Map<Long, Lesson> persistedById = byId(persisted, Lesson::getId);
+    Map<Long, Timeslot> timeslotsById = byId(problem.getTimeslots(), Timeslot::getId);
+    Map<Long, Room> roomsById = byId(problem.getRooms(), Room::getId);
+    Set<Teacher> changedTeachers = new HashSet<>();
+    Set<StudentGroupKey> changedSeries = new HashSet<>();
+    for (Lesson lesson : problem.getLessons()) {
+      Lesson persistedLesson = persistedById.get(lesson.getId());
+      if (!isAssigned(lesson) && persistedLesson != null && isAssigned(persistedLesson)) {
+        lesson.setTimeslot(timeslotsById.get(persistedLesson.getTimeslot().getId()));
+        lesson.setRoom(roomsById.get(persistedLesson.getRoom().getId()));
+      }
+      // a lesson changed since its assignment, or a value no longer in the problem
+      if ((lesson.getTimeslot() != null
+              && !lesson.getTimeslotRange().contains(lesson.getTimeslot()))
+          || (lesson.getRoom() != null && !lesson.getRoomRange().contains(lesson.getRoom()))) {
+        lesson.setTimeslot(null);
+        lesson.setRoom(null);
+      }
+      if (!isAssigned(lesson)
+          || persistedLesson == null
+          || !sameAssignment(lesson, persistedLesson)) {
+        changedTeachers.add(lesson.getTeacher());
+        if (lesson.getStudentGroup() != null) {
+          changedSeries.add(lesson.getStudentGroup().getSeriesKey());
+        }
+      }
+    }
+    apply(problem);
+    int movable = 0;
+    for (Lesson lesson : problem.getLessons()) {
+      if (pinUnrelated
+          && isAssigned(lesson)
+          && !changedTeachers.contains(lesson.getTeacher())
+          && (lesson.getStudentGroup() == null
+              || !changedSeries.contains(lesson.getStudentGroup().getSeriesKey()))) {
+        lesson.setPinnedForSolving(true);
+      }
+      if (!lesson.isPinnedForSolving()) {
+        movable++;
+      }
+    }
+    return movable;
+  }
+
+  private static boolean isAssigned(Lesson lesson) {
+    return lesson.getTimeslot() != null && lesson.getRoom() != null;
+  }
+
+  private static boolean sameAssignment(Lesson lesson, Lesson persistedLesson) {
+    return isAssigned(persistedLesson)
+        && Objects.equals(lesson.getTimeslot().getId(), persistedLesson.getTimeslot().getId())
+        && Objects.equals(lesson.getRoom().getId(), persistedLesson.getRoom().getId());
+  }
+
+  private static <T> Map<Long, T> byId(List<T> values, Function<T, Long> idFunction) {
+    Map<Long, T> valuesById = new HashMap<>();
+    values.forEach(value -> valuesById.put(idFunction.apply(value), value));
+    return valuesById;
+  }
+}
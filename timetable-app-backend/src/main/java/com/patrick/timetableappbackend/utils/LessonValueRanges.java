@@ -0,0 +1,85 @@
+package com.patrick.timetableappbackend.utils;
+
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sets the timeslots and rooms a {@link Lesson} can be assigned to.
+ *
+ * <p>Filtered, a lesson only gets the timeslots as long as its duration (lessonDurationConflict)
+ * and the rooms that hold its student group (capacityRoomConflict), so the solver does not spend
+ * its moves on values that break those constraints anyway. Lessons with the same duration or group
+ * size share their list. A lesson with {@code unrestrictedValueRange}, or without any matching
+ * value, gets all of them.
+ */
+public final class LessonValueRanges {
+
+  private LessonValueRanges() {}
+
+  public static void apply(Timetable timetable, boolean filtered) {
+    List<Timeslot> timeslots =
+        timetable.getTimeslots() == null ? List.of() : timetable.getTimeslots();
+    List<Room> rooms = timetable.getRooms() == null ? List.of() : timetable.getRooms();
+    if (timetable.getLessons() == null) {
+      return;
+    }
+    Map<Integer, List<Timeslot>> timeslotsByDuration = new HashMap<>();
+    Map<Long, List<Room>> roomsByStudentCount = new HashMap<>();
+    for (Lesson lesson : timetable.getLessons()) {
+      if (!filtered || lesson.isUnrestrictedValueRange() || lesson.getStudentGroup() == null) {
+        lesson.setTimeslotRange(timeslots);
+        lesson.setRoomRange(rooms);
+        continue;
+      }
+      lesson.setTimeslotRange(
+          timeslotsByDuration.computeIfAbsent(
+              lesson.getDuration(), duration -> timeslotsOfDuration(timeslots, duration)));
+      lesson.setRoomRange(
+          roomsByStudentCount.computeIfAbsent(
+              lesson.getStudentGroup().getNumberOfStudents(),
+              studentCount -> roomsHolding(rooms, studentCount)));
+    }
+  }
+
+  /** Sets the ranges of a lesson added to a problem that is being solved, see AddLessonChange. */
+  public static void apply(
+      Lesson lesson, List<Timeslot> timeslots, List<Room> rooms, boolean filtered) {
+    if (!filtered || lesson.isUnrestrictedValueRange() || lesson.getStudentGroup() == null) {
+      lesson.setTimeslotRange(timeslots);
+      lesson.setRoomRange(rooms);
+      return;
+    }
+    lesson.setTimeslotRange(timeslotsOfDuration(timeslots, lesson.getDuration()));
+    lesson.setRoomRange(roomsHolding(rooms, lesson.getStudentGroup().getNumberOfStudents()));
+  }
+
+  private static List<Timeslot> timeslotsOfDuration(List<Timeslot> timeslots, int duration) {
+    // same rounding as lessonDurationConflict
+    return orAll(
+        timeslots.stream()
+            .filter(timeslot -> timeslot.getDurationMinutes() / 60 == duration)
+            .toList(),
+        timeslots);
+  }
+
+  private static List<Room> roomsHolding(List<Room> rooms, Long studentCount) {
+    if (studentCount == null) {
+      return rooms;
+    }
+    return orAll(
+        rooms.stream()
+            .filter(room -> room.getCapacity() != null && room.getCapacity() >= studentCount)
+            .toList(),
+        rooms);
+  }
+
+  private static <T> List<T> orAll(List<T> values, List<T> all) {
+    // an empty range would leave the lesson unassigned, rather break the constraint
+    return values.isEmpty() ? all : values;
+  }
+}
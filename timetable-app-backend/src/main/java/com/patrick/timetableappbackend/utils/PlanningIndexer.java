@@ -0,0 +1,147 @@
+package com.patrick.timetableappbackend.utils;
+
+import com.patrick.timetableappbackend.model.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Assigns a dense, 0-based planning index to the problem facts of a {@link Timetable}.
+ *
+ * <p>The index keys the arrays of {@link TeacherAvailability} and the incremental score
+ * calculator, and the joiners and groupBys of the constraint streams: {@code hashCode()} of the
+ * facts is the class hash, as JPA entities need. Instances sharing an id (Jackson creates one
+ * Teacher and StudentGroup per Lesson) get the same index.
+ *
+ * <p>It also interns the series and group {@link StudentGroupKey}s of the student groups, builds
+ * the {@link TeacherAvailability} of the teachers and sets the value ranges of the lessons (see
+ * {@link LessonValueRanges}) and which are pinned ({@link LessonPinning}).
+ */
+public final class PlanningIndexer {
+
+  private PlanningIndexer() {}
+
+  public static void index(Timetable timetable) {
+    index(timetable, TeacherAvailability.Mode.TIMESLOTS);
+  }
+
+  public static void index(Timetable timetable, TeacherAvailability.Mode availabilityMode) {
+    index(timetable, availabilityMode, true);
+  }
+
+  /**
+   * @param filterValueRanges false to give every lesson all the timeslots and rooms
+   */
+  public static void index(
+      Timetable timetable, TeacherAvailability.Mode availabilityMode, boolean filterValueRanges) {
+    Map<Object, Integer> timeslotIndexes =
+        index(timetable.getTimeslots(), Timeslot::getId, Timeslot::setPlanningIndex);
+    index(timetable.getRooms(), Room::getId, Room::setPlanningIndex);
+    List<Lesson> lessons = timetable.getLessons() == null ? List.of() : timetable.getLessons();
+    index(
+        lessons.stream().map(Lesson::getTeacher).toList(),
+        Teacher::getId,
+        Teacher::setPlanningIndex);
+    index(
+        lessons.stream().map(Lesson::getStudentGroup).toList(),
+        StudentGroup::getId,
+        StudentGroup::setPlanningIndex);
+    internStudentGroupKeys(lessons);
+
+    // the preferred timeslots may be copies of their own, Jackson creates them per teacher
+    Set<Teacher> indexedTeachers = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Lesson lesson : lessons) {
+      Teacher teacher = lesson.getTeacher();
+      if (teacher == null || teacher.getTimeslots() == null || !indexedTeachers.add(teacher)) {
+        continue;
+      }
+      for (Timeslot timeslot : teacher.getTimeslots()) {
+        Integer planningIndex = timeslotIndexes.get(key(timeslot.getId(), timeslot));
+        if (planningIndex == null) {
+          planningIndex = timeslotIndexes.size();
+          timeslotIndexes.put(key(timeslot.getId(), timeslot), planningIndex);
+        }
+        timeslot.setPlanningIndex(planningIndex);
+      }
+    }
+    buildTeacherAvailability(
+        lessons,
+        timetable.getTimeslots() == null ? List.of() : timetable.getTimeslots(),
+        availabilityMode);
+    LessonValueRanges.apply(timetable, filterValueRanges);
+    LessonPinning.apply(timetable);
+  }
+
+  private static void buildTeacherAvailability(
+      List<Lesson> lessons, List<Timeslot> timeslots, TeacherAvailability.Mode availabilityMode) {
+    // the copies of a teacher share an index, one of them is enough to fill its row
+    Map<Integer, Teacher> teachers = new HashMap<>();
+    for (Lesson lesson : lessons) {
+      if (lesson.getTeacher() != null) {
+        teachers.putIfAbsent(lesson.getTeacher().getPlanningIndex(), lesson.getTeacher());
+      }
+    }
+    TeacherAvailability availability =
+        TeacherAvailability.of(teachers.values(), timeslots, availabilityMode);
+    for (Lesson lesson : lessons) {
+      if (lesson.getTeacher() != null) {
+        lesson.getTeacher().setAvailability(availability);
+      }
+    }
+  }
+
+  private static void internStudentGroupKeys(List<Lesson> lessons) {
+    Map<String, StudentGroupKey> seriesKeys = new HashMap<>();
+    Map<String, StudentGroupKey> groupKeys = new HashMap<>();
+    for (Lesson lesson : lessons) {
+      StudentGroup studentGroup = lesson.getStudentGroup();
+      if (studentGroup != null) {
+        studentGroup.setSeriesKey(
+            seriesKeys.computeIfAbsent(studentGroup.getName(), StudentGroupKey::new));
+        studentGroup.setGroupKey(
+            groupKeys.computeIfAbsent(studentGroup.getStudentGroup(), StudentGroupKey::new));
+      }
+    }
+  }
+
+  private static <T> Map<Object, Integer> index(
+      Collection<T> facts, Function<T, Long> idFunction, BiConsumer<T, Integer> indexSetter) {
+    Map<Object, Integer> indexes = new HashMap<>();
+    if (facts == null) {
+      return indexes;
+    }
+    for (T fact : facts) {
+      if (fact == null) {
+        continue;
+      }
+      Integer planningIndex =
+          indexes.computeIfAbsent(key(idFunction.apply(fact), fact), key -> indexes.size());
+      indexSetter.accept(fact, planningIndex);
+    }
+    return indexes;
+  }
+
+  private static Object key(Long id, Object fact) {
+    // facts without an id only equal themselves, so they get an index of their own
+    return id != null ? id : new IdentityKey(fact);
+  }
+
+  private record IdentityKey(Object fact) {
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof IdentityKey other && other.fact == fact;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(fact);
+    }
+  }
+}
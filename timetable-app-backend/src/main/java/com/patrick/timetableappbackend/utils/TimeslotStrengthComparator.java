@@ -1,7 +1,6 @@
 package com.patrick.timetableappbackend.utils;
 
 import com.patrick.timetableappbackend.model.Timeslot;
-import java.time.Duration;
 import java.util.Comparator;
 import org.apache.commons.lang3.builder.CompareToBuilder;
 
@@ -15,7 +14,6 @@ public class TimeslotStrengthComparator implements Comparator<Timeslot> {
   }
 
   private int calculateTimeslotDuration(Timeslot timeslot) {
-    Duration duration = Duration.between(timeslot.getStartTime(), timeslot.getEndTime());
-    return (int) duration.abs().toHours();
+    return Math.abs(timeslot.getDurationMinutes()) / 60;
   }
 }
@@ -0,0 +1,111 @@
+package com.patrick.timetableappbackend.utils;
+
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a {@link Timetable} into partitions by a {@link PartitionKey} and merges their solutions
+ * back into it.
+ *
+ * <p>A partition has copies of the lessons of one partition key value, the timeslots and constraint
+ * configuration of the timetable and a share of its rooms, in proportion to its lessons and mixed
+ * in capacity, so that the partitions do not clash on rooms once merged. They still can on the
+ * teachers they share. The timetable must be indexed (PlanningIndexer) before it is split.
+ */
+public final class TimetablePartitioner {
+
+  private TimetablePartitioner() {}
+
+  public static List<Timetable> split(Timetable timetable, PartitionKey partitionKey) {
+    Map<Object, List<Lesson>> lessonsByPartition = new LinkedHashMap<>();
+    for (Lesson lesson : timetable.getLessons()) {
+      lessonsByPartition
+          .computeIfAbsent(partitionKey.partitionOf(lesson), partition -> new ArrayList<>())
+          .add(lesson);
+    }
+    List<List<Lesson>> partitionLessons = new ArrayList<>(lessonsByPartition.values());
+    List<List<Room>> partitionRooms = shareRooms(timetable.getRooms(), partitionLessons);
+
+    List<Timetable> partitions = new ArrayList<>();
+    for (int i = 0; i < partitionLessons.size(); i++) {
+      List<Room> rooms = partitionRooms.get(i);
+      Map<List<Room>, List<Room>> roomRanges = new IdentityHashMap<>();
+      List<Lesson> lessons =
+          partitionLessons.get(i).stream()
+              .map(
+                  lesson ->
+                      lesson.toBuilder()
+                          .roomRange(
+                              roomRanges.computeIfAbsent(
+                                  lesson.getRoomRange(), roomRange -> restrict(roomRange, rooms)))
+                          .build())
+              .toList();
+      partitions.add(
+          new Timetable(
+              timetable.getTimeslots(),
+              rooms,
+              lessons,
+              timetable.getTimetableConstraintConfiguration()));
+    }
+    return partitions;
+  }
+
+  /**
+   * Assigns the lessons of the timetable the timeslots and rooms of the lessons of the same id in
+   * the solutions of its partitions.
+   */
+  public static void merge(Timetable timetable, List<Timetable> partitionSolutions) {
+    Map<Long, Lesson> lessonsById = new HashMap<>();
+    timetable.getLessons().forEach(lesson -> lessonsById.put(lesson.getId(), lesson));
+    for (Timetable solution : partitionSolutions) {
+      for (Lesson solvedLesson : solution.getLessons()) {
+        Lesson lesson = lessonsById.get(solvedLesson.getId());
+        lesson.setTimeslot(solvedLesson.getTimeslot());
+        lesson.setRoom(solvedLesson.getRoom());
+      }
+    }
+  }
+
+  private static List<List<Room>> shareRooms(List<Room> rooms, List<List<Lesson>> partitions) {
+    List<List<Room>> partitionRooms = new ArrayList<>();
+    partitions.forEach(partition -> partitionRooms.add(new ArrayList<>()));
+    int lessonCount = partitions.stream().mapToInt(List::size).sum();
+    List<Room> roomsByCapacity =
+        rooms.stream()
+            .sorted(
+                Comparator.comparing(
+                        Room::getCapacity, Comparator.nullsLast(Comparator.<Long>naturalOrder()))
+                    .reversed())
+            .toList();
+    for (Room room : roomsByCapacity) {
+      // to the partition furthest below its share of the rooms
+      int partition = 0;
+      double lowestShare = Double.MAX_VALUE;
+      for (int i = 0; i < partitions.size(); i++) {
+        double share =
+            partitionRooms.get(i).size() / (partitions.get(i).size() / (double) lessonCount);
+        if (share < lowestShare) {
+          partition = i;
+          lowestShare = share;
+        }
+      }
+      partitionRooms.get(partition).add(room);
+    }
+    return partitionRooms;
+  }
+
+  private static List<Room> restrict(List<Room> roomRange, List<Room> rooms) {
+    List<Room> restricted = roomRange.stream().filter(rooms::contains).toList();
+    // a partition without a room that fits keeps the full range, the repair sorts it out
+    return restricted.isEmpty() ? roomRange : restricted;
+  }
+}
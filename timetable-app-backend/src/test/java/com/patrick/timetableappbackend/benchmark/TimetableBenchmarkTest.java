@@ -0,0 +1,125 @@
+package com.patrick.timetableappbackend.benchmark;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import ai.timefold.solver.benchmark.api.PlannerBenchmarkFactory;
+import com.patrick.timetableappbackend.config.MoveThreadCountPolicy;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.utils.PlanningIndexer;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Solver benchmarks, too slow for the regular build. Run them with {@code mvn test
+ * -Dtest=TimetableBenchmarkTest -Dtimetable.benchmark=true}; the reports are written to {@code
+ * target/benchmarks}.
+ */
+@EnabledIfSystemProperty(named = "timetable.benchmark", matches = "true")
+public class TimetableBenchmarkTest {
+
+  private static final int LESSON_COUNT = 1000;
+
+  @Test
+  void planningIndexHashing() {
+    // same problem twice: Problem_0 is the class hash baseline, Problem_1 is indexed
+    Timetable classHashed = TimetableProblemGenerator.generate(LESSON_COUNT, 0L);
+    Timetable indexed = TimetableProblemGenerator.generate(LESSON_COUNT, 0L);
+    PlanningIndexer.index(classHashed);
+    clearPlanningIndexes(classHashed);
+    PlanningIndexer.index(indexed);
+
+    PlannerBenchmarkFactory.createFromXmlResource("benchmark/planningIndexBenchmarkConfig.xml")
+        .buildPlannerBenchmark(classHashed, indexed)
+        .benchmark();
+  }
+
+  @Test
+  void lessonCountScaling() {
+    // shows how the score calculation speed holds up as the series grow, e.g. for the gaps
+    Timetable[] problems =
+        IntStream.of(200, 500, 1000, 2000, 5000)
+            .mapToObj(
+                lessonCount -> {
+                  Timetable problem = TimetableProblemGenerator.generate(lessonCount, 0L);
+                  PlanningIndexer.index(problem);
+                  return problem;
+                })
+            .toArray(Timetable[]::new);
+
+    PlannerBenchmarkFactory.createFromXmlResource("benchmark/scalingBenchmarkConfig.xml")
+        .buildPlannerBenchmark(problems)
+        .benchmark();
+  }
+
+  @Test
+  void scoreEngines() {
+    // constraint streams against TimetableIncrementalScoreCalculator on the same problems
+    Timetable[] problems =
+        IntStream.of(1000, 2000, 5000)
+            .mapToObj(
+                lessonCount -> {
+                  Timetable problem = TimetableProblemGenerator.generate(lessonCount, 0L);
+                  PlanningIndexer.index(problem);
+                  return problem;
+                })
+            .toArray(Timetable[]::new);
+
+    PlannerBenchmarkFactory.createFromXmlResource("benchmark/scoreEngineBenchmarkConfig.xml")
+        .buildPlannerBenchmark(problems)
+        .benchmark();
+  }
+
+  @Test
+  void moveSelectors() {
+    // the Kempe chain and series pillar moves pay off when a series takes its courses together
+    Timetable[] problems = {
+      TimetableProblemGenerator.generate(1000, 0L, true),
+      TimetableProblemGenerator.generate(5000, 0L, true),
+      TimetableProblemGenerator.generate(LESSON_COUNT, 0L)
+    };
+    for (Timetable problem : problems) {
+      PlanningIndexer.index(problem);
+    }
+
+    PlannerBenchmarkFactory.createFromXmlResource("benchmark/moveSelectorBenchmarkConfig.xml")
+        .buildPlannerBenchmark(problems)
+        .benchmark();
+  }
+
+  @Test
+  void moveThreadCounts() {
+    // the score calculation speed per move thread count, which timetable.move-threads is tuned by
+    assumeTrue(
+        new MoveThreadCountPolicy(1000, 8).isAvailable(),
+        "move threads need Timefold Solver Enterprise, run with -Penterprise");
+    Timetable[] problems =
+        IntStream.of(500, 1000, 5000)
+            .mapToObj(
+                lessonCount -> {
+                  Timetable problem = TimetableProblemGenerator.generate(lessonCount, 0L);
+                  PlanningIndexer.index(problem);
+                  return problem;
+                })
+            .toArray(Timetable[]::new);
+
+    PlannerBenchmarkFactory.createFromXmlResource("benchmark/moveThreadCountBenchmarkConfig.xml")
+        .buildPlannerBenchmark(problems)
+        .benchmark();
+  }
+
+  // keeps the value ranges, pinning and interned keys of PlanningIndexer, but the joiners and
+  // groupBys key on the facts again, whose hash is the class hash, and the teachers look up their
+  // preferred timeslots
+  private static void clearPlanningIndexes(Timetable problem) {
+    problem.getTimeslots().forEach(timeslot -> timeslot.setPlanningIndex(null));
+    problem.getRooms().forEach(room -> room.setPlanningIndex(null));
+    for (Lesson lesson : problem.getLessons()) {
+      lesson.getTeacher().setPlanningIndex(null);
+      lesson.getTeacher().setAvailability(null);
+      lesson.getTeacher().getTimeslots().forEach(timeslot -> timeslot.setPlanningIndex(null));
+      lesson.getStudentGroup().setPlanningIndex(null);
+    }
+  }
+}
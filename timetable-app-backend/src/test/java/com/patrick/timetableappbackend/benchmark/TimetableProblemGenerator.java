@@ -0,0 +1,158 @@
+package com.patrick.timetableappbackend.benchmark;
+
+import com.patrick.timetableappbackend.model.*;
+import com.patrick.timetableappbackend.solver.TimetableConstraintConfiguration;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/** Generates reproducible, faculty-like timetabling problems of a given size for benchmarking. */
+public class TimetableProblemGenerator {
+
+  private static final String[] CONSTRAINT_WEIGHTS = {
+    "roomConflict:HARD",
+    "teacherConflict:HARD",
+    "studentGroupConflict:HARD",
+    "capacityRoomConflict:HARD",
+    "courseStudentsGroupedInTheSameRoom:HARD",
+    "seminarStudentsGroupedInTheSameRoom:HARD",
+    "labsStudentsGroupedInTheSameRoom:HARD",
+    "roomConflictUniversity:HARD",
+    "teacherConflictUniversity:HARD",
+    "overlappingTimeslot:HARD",
+    "lessonDurationConflict:HARD",
+    "maximumCoursesForStudents:MEDIUM",
+    "maximizePreferredTimeslotAssignments:MEDIUM",
+    "coursesGroupedInTheSameTimeslot:MEDIUM",
+    "seminarsGroupedInTheSameTimeslot:MEDIUM",
+    "maximmumCoursesTeached:MEDIUM",
+    "teacherRoomStability:SOFT",
+    "teacherTimeEfficiency:SOFT",
+    "studentGroupVariety:SOFT",
+    "gapsLongerThan4Hours:SOFT",
+    "labsGroupedInTheSameTimeslot:SOFT",
+    "coursesInTheSameBuilding:SOFT",
+    "labAfterSeminar:SOFT"
+  };
+
+  private static final Set<String> PLAIN_CONFLICTS = Set.of("roomConflict", "teacherConflict");
+
+  private static final DayOfWeek[] DAYS = {
+    DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY
+  };
+
+  private static final LessonType[] LESSON_TYPES = {
+    LessonType.COURSE, LessonType.SEMINAR, LessonType.SEMINAR, LessonType.LABORATORY
+  };
+
+  private TimetableProblemGenerator() {}
+
+  public static Timetable generate(int lessonCount, long seed) {
+    return generate(lessonCount, seed, false);
+  }
+
+  /**
+   * With {@code seriesCourses} a course is taught by one teacher to every group of its series
+   * together, like at a faculty, and the plain room and teacher conflicts are left to their
+   * university variants, which allow that.
+   */
+  public static Timetable generate(int lessonCount, long seed, boolean seriesCourses) {
+    Random random = new Random(seed);
+
+    List<Timeslot> timeslots = new ArrayList<>();
+    long timeslotId = 1;
+    for (DayOfWeek day : DAYS) {
+      for (int hour = 8; hour < 20; hour += 2) {
+        timeslots.add(
+            new Timeslot(timeslotId++, day, LocalTime.of(hour, 0), LocalTime.of(hour + 2, 0)));
+      }
+      // a few one and three hour slots, so lessonDurationConflict has something to do
+      timeslots.add(new Timeslot(timeslotId++, day, LocalTime.of(8, 0), LocalTime.of(9, 0)));
+      timeslots.add(new Timeslot(timeslotId++, day, LocalTime.of(17, 0), LocalTime.of(20, 0)));
+    }
+
+    int roomCount = Math.max(4, lessonCount / 25);
+    List<Room> rooms = new ArrayList<>();
+    for (int i = 0; i < roomCount; i++) {
+      rooms.add(
+          new Room((long) i + 1, "Room" + i, 20L + random.nextInt(9) * 20L, "Building" + i % 4));
+    }
+
+    int teacherCount = Math.max(3, lessonCount / 12);
+    List<Teacher> teachers = new ArrayList<>();
+    for (int i = 0; i < teacherCount; i++) {
+      Set<Timeslot> preferredTimeslots = new HashSet<>();
+      if (random.nextInt(3) == 0) {
+        for (int j = 0; j < timeslots.size() / 2; j++) {
+          preferredTimeslots.add(timeslots.get(random.nextInt(timeslots.size())));
+        }
+      }
+      teachers.add(new Teacher((long) i + 1, "Teacher" + i, preferredTimeslots));
+    }
+
+    // every series has a handful of groups, every group has two semi groups
+    int groupCount = Math.max(2, lessonCount / 20);
+    List<StudentGroup> studentGroups = new ArrayList<>();
+    for (int i = 0; i < groupCount; i++) {
+      Year year = Year.values()[(i / 8) % Year.values().length];
+      String series = "Series" + i / 4;
+      for (SemiGroup semiGroup : new SemiGroup[] {SemiGroup.SEMI_GROUP1, SemiGroup.SEMI_GROUP2}) {
+        studentGroups.add(
+            new StudentGroup(
+                (long) studentGroups.size() + 1,
+                year,
+                series,
+                series + "-Group" + i,
+                semiGroup,
+                10L + random.nextInt(20)));
+      }
+    }
+
+    Map<String, List<StudentGroup>> studentGroupsBySeries =
+        studentGroups.stream().collect(Collectors.groupingBy(StudentGroup::getName));
+    List<Lesson> lessons = new ArrayList<>();
+    while (lessons.size() < lessonCount) {
+      StudentGroup studentGroup = studentGroups.get(random.nextInt(studentGroups.size()));
+      LessonType lessonType = LESSON_TYPES[random.nextInt(LESSON_TYPES.length)];
+      String subject = "Subject" + random.nextInt(Math.max(5, lessonCount / 10));
+      Teacher teacher = teachers.get(random.nextInt(teachers.size()));
+      int duration = random.nextInt(10) == 0 ? 1 : 2;
+      List<StudentGroup> attendingGroups =
+          seriesCourses && lessonType == LessonType.COURSE
+              ? studentGroupsBySeries.get(studentGroup.getName())
+              : List.of(studentGroup);
+      for (StudentGroup attendingGroup : attendingGroups) {
+        if (lessons.size() < lessonCount) {
+          lessons.add(
+              new Lesson(
+                  lessons.size() + 1,
+                  subject,
+                  teacher,
+                  attendingGroup,
+                  lessonType,
+                  attendingGroup.getYear(),
+                  duration));
+        }
+      }
+    }
+
+    List<ConstraintModel> constraintModels = new ArrayList<>();
+    for (int i = 0; i < CONSTRAINT_WEIGHTS.length; i++) {
+      String[] constraintWeight = CONSTRAINT_WEIGHTS[i].split(":");
+      if (seriesCourses && PLAIN_CONFLICTS.contains(constraintWeight[0])) {
+        constraintWeight[1] = "NONE";
+      }
+      constraintModels.add(
+          new ConstraintModel((long) i + 1, constraintWeight[0], constraintWeight[1]));
+    }
+
+    return new Timetable(
+        timeslots, rooms, lessons, new TimetableConstraintConfiguration(constraintModels));
+  }
+}
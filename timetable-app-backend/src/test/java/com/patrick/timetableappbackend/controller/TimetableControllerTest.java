@@ -0,0 +1,95 @@
+package com.patrick.timetableappbackend.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import ai.timefold.solver.core.api.solver.SolverStatus;
+import com.patrick.timetableappbackend.dto.SolveRequest;
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import com.patrick.timetableappbackend.exception.TimetableSolverExceptionHandler;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.service.JobPriority;
+import com.patrick.timetableappbackend.service.TimetableConstraintTraceService;
+import com.patrick.timetableappbackend.service.TimetableProblemChangeService;
+import com.patrick.timetableappbackend.service.TimetableService;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class TimetableControllerTest {
+
+  private final TimetableService timetableService = mock(TimetableService.class);
+  private final MockMvc mockMvc =
+      MockMvcBuilders.standaloneSetup(
+              new TimetableController(
+                  timetableService,
+                  mock(TimetableProblemChangeService.class),
+                  mock(TimetableConstraintTraceService.class)))
+          .setControllerAdvice(new TimetableSolverExceptionHandler())
+          .build();
+
+  @Test
+  void solvesWithTheRequestOfTheQueryParameters() throws Exception {
+    when(timetableService.solve(any(), any())).thenReturn("job-1");
+
+    mockMvc
+        .perform(
+            post("/api/v1/timetables")
+                .param("localSearch", "TABU_SEARCH")
+                .param("moveThreadCount", "2")
+                .param("partitionBy", "YEAR")
+                .param("spentLimit", "PT1H")
+                .param("priority", "HIGH")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"lessons\": []}"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.jobId").value("job-1"));
+
+    ArgumentCaptor<SolveRequest> request = ArgumentCaptor.forClass(SolveRequest.class);
+    verify(timetableService).solve(any(), request.capture());
+    assertThat(request.getValue().getScoreEngine()).isNull();
+    assertThat(request.getValue().getLocalSearch()).isEqualTo(LocalSearch.TABU_SEARCH);
+    assertThat(request.getValue().getMoveThreadCount()).isEqualTo(2);
+    assertThat(request.getValue().getPartitionKey()).isEqualTo(PartitionKey.YEAR);
+    assertThat(request.getValue().getTermination().getSpentLimit()).isEqualTo(Duration.ofHours(1));
+    assertThat(request.getValue().getPriority()).isEqualTo(JobPriority.HIGH);
+    assertThat(request.getValue().getUser()).isEqualTo("anonymous");
+  }
+
+  @Test
+  void terminatesTheJobOfThePath() throws Exception {
+    when(timetableService.terminateSolving("job-1"))
+        .thenReturn(new Timetable(null, SolverStatus.NOT_SOLVING));
+
+    mockMvc
+        .perform(delete("/api/v1/timetables/job-1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.solverStatus").value("NOT_SOLVING"));
+
+    verify(timetableService).terminateSolving("job-1");
+  }
+
+  @Test
+  void terminatingAnUnknownJobIsNotFound() throws Exception {
+    when(timetableService.terminateSolving("unknown"))
+        .thenThrow(new TimetableSolverException("unknown", HttpStatus.NOT_FOUND, "No such job."));
+
+    mockMvc
+        .perform(delete("/api/v1/timetables/unknown"))
+        .andExpect(status().isNotFound())
+        .andExpect(jsonPath("$.jobId").value("unknown"));
+  }
+}
@@ -0,0 +1,232 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import ai.timefold.solver.core.api.solver.SolverConfigOverride;
+import ai.timefold.solver.core.config.constructionheuristic.ConstructionHeuristicPhaseConfig;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.config.MoveThreadCountPolicy;
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.PortfolioRace;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.repository.PortfolioRaceRepo;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import com.patrick.timetableappbackend.utils.PlanningIndexer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class PortfolioSolveServiceTest {
+
+  private static final SolverConfig SOLVER_CONFIG =
+      SolverConfig.createFromXmlResource("timetableSolverConfig.xml")
+          .withSolutionClass(Timetable.class)
+          .withEntityClasses(Lesson.class);
+
+  private static final SolverConfigOverride<Timetable> CONFIG_OVERRIDE =
+      new SolverConfigOverride<Timetable>()
+          .withTerminationConfig(new TerminationConfig().withSecondsSpentLimit(30L));
+
+  private final PortfolioRaceRepo raceRepo = mock(PortfolioRaceRepo.class);
+  private final CountingMoveThreadCountPolicy moveThreadCountPolicy =
+      new CountingMoveThreadCountPolicy();
+  private final List<List<LessonAssignment>> adopted = new CopyOnWriteArrayList<>();
+  private PortfolioSolveService portfolioSolveService;
+
+  @AfterEach
+  void destroy() {
+    if (portfolioSolveService != null) {
+      portfolioSolveService.destroy();
+    }
+  }
+
+  @Test
+  void jobThatStaysAheadWinsWithoutAdopting() {
+    portfolioSolveService = portfolioSolveService(SOLVER_CONFIG, Duration.ofMillis(300));
+
+    startRace(HardMediumSoftScore.ZERO);
+
+    // three racers and the job, two are out after the first round and one after the second
+    PortfolioRace race = recordedRace();
+    assertThat(race.getWinner()).isEqualTo(LocalSearch.LATE_ACCEPTANCE);
+    assertThat(race.getContestants())
+        .isEqualTo("LATE_ACCEPTANCE,CONFIGURED,TABU_SEARCH,SIMULATED_ANNEALING");
+    assertThat(race.getScore()).isEqualTo(HardMediumSoftScore.ZERO.toString());
+    assertThat(race.getLessonCount()).isEqualTo(40);
+    assertThat(adopted).isEmpty();
+    await().untilAsserted(() -> assertThat(moveThreadCountPolicy.reserved).hasValue(0));
+    assertThat(moveThreadCountPolicy.maxReserved).hasValue(3);
+  }
+
+  @Test
+  void jobAdoptsTheRacerThatBeatsIt() {
+    portfolioSolveService = portfolioSolveService(SOLVER_CONFIG, Duration.ofMillis(300));
+
+    startRace(HardMediumSoftScore.ofHard(-1_000_000));
+
+    PortfolioRace race = recordedRace();
+    assertThat(race.getWinner()).isNotEqualTo(LocalSearch.LATE_ACCEPTANCE);
+    await().until(() -> !adopted.isEmpty());
+    assertThat(adopted.get(0)).hasSize(40);
+    // the winner races on until the job ends
+    assertThat(moveThreadCountPolicy.reserved).hasValue(1);
+    portfolioSolveService.endRace("job");
+    assertThat(moveThreadCountPolicy.reserved).hasValue(0);
+    verify(raceRepo, after(500).times(1)).save(any());
+  }
+
+  @Test
+  void raceEndedBeforeTheFirstRoundIsNotRecorded() {
+    portfolioSolveService = portfolioSolveService(SOLVER_CONFIG, Duration.ofMinutes(1));
+
+    startRace(HardMediumSoftScore.ZERO);
+    assertThat(moveThreadCountPolicy.reserved).hasValue(3);
+    portfolioSolveService.endRace("job");
+
+    assertThat(moveThreadCountPolicy.reserved).hasValue(0);
+    verify(raceRepo, after(500).never()).save(any());
+  }
+
+  @Test
+  void abortedRaceIsNotRecorded() {
+    portfolioSolveService = portfolioSolveService(SOLVER_CONFIG, Duration.ofMinutes(1));
+
+    startRace(HardMediumSoftScore.ZERO);
+    portfolioSolveService.abortRace("job");
+    // already ended
+    portfolioSolveService.endRace("job");
+
+    assertThat(moveThreadCountPolicy.reserved).hasValue(0);
+    verify(raceRepo, after(500).never()).save(any());
+  }
+
+  @Test
+  void releasesTheCoresWhenARacerCannotBeBuilt() {
+    // no local search phase to replace
+    SolverConfig solverConfig =
+        new SolverConfig(SOLVER_CONFIG)
+            .withPhaseList(List.of(new ConstructionHeuristicPhaseConfig()));
+    portfolioSolveService = portfolioSolveService(solverConfig, Duration.ofMillis(300));
+
+    assertThatThrownBy(() -> startRace(HardMediumSoftScore.ZERO))
+        .isInstanceOf(IllegalStateException.class);
+
+    assertThat(moveThreadCountPolicy.reserved).hasValue(0);
+    portfolioSolveService.endRace("job");
+    verify(raceRepo, never()).save(any());
+  }
+
+  @Test
+  void defaultsToTheWinnerOfTheRacesOfASimilarSize() {
+    portfolioSolveService =
+        new PortfolioSolveService(
+            SOLVER_CONFIG,
+            raceRepo,
+            moveThreadCountPolicy,
+            LocalSearch.CONFIGURED,
+            List.of(LocalSearch.values()),
+            Duration.ofMinutes(1),
+            true,
+            10);
+    when(raceRepo.findAllByLessonCountBetweenOrderByFinishedAtDesc(eq(50), eq(200), any()))
+        .thenReturn(
+            List.of(
+                race(LocalSearch.SIMULATED_ANNEALING),
+                race(LocalSearch.TABU_SEARCH),
+                race(LocalSearch.TABU_SEARCH)));
+
+    assertThat(portfolioSolveService.getDefaultLocalSearch(100)).isEqualTo(LocalSearch.TABU_SEARCH);
+    assertThat(portfolioSolveService.getDefaultLocalSearch(1000)).isEqualTo(LocalSearch.CONFIGURED);
+  }
+
+  private PortfolioSolveService portfolioSolveService(
+      SolverConfig solverConfig, Duration roundInterval) {
+    return new PortfolioSolveService(
+        solverConfig,
+        raceRepo,
+        moveThreadCountPolicy,
+        LocalSearch.CONFIGURED,
+        List.of(LocalSearch.values()),
+        roundInterval,
+        false,
+        10);
+  }
+
+  private void startRace(HardMediumSoftScore jobScore) {
+    portfolioSolveService.startRace(
+        "job",
+        initialized(),
+        ScoreEngine.INCREMENTAL,
+        LocalSearch.LATE_ACCEPTANCE,
+        CONFIG_OVERRIDE,
+        () -> jobScore,
+        adopted::add);
+  }
+
+  private PortfolioRace recordedRace() {
+    ArgumentCaptor<PortfolioRace> captor = ArgumentCaptor.forClass(PortfolioRace.class);
+    verify(raceRepo, timeout(10_000)).save(captor.capture());
+    return captor.getValue();
+  }
+
+  private static Timetable initialized() {
+    Timetable problem = TimetableProblemGenerator.generate(40, 0L);
+    for (int i = 0; i < problem.getLessons().size(); i++) {
+      Lesson lesson = problem.getLessons().get(i);
+      lesson.setTimeslot(problem.getTimeslots().get(i % problem.getTimeslots().size()));
+      lesson.setRoom(problem.getRooms().get(i % problem.getRooms().size()));
+    }
+    problem.setScore(HardMediumSoftScore.of(-2, 0, -40));
+    PlanningIndexer.index(problem);
+    return problem;
+  }
+
+  private static PortfolioRace race(LocalSearch winner) {
+    PortfolioRace race = new PortfolioRace();
+    race.setWinner(winner);
+    race.setFinishedAt(Instant.now());
+    return race;
+  }
+
+  // reserves as many cores as asked, whatever this node has
+  private static final class CountingMoveThreadCountPolicy extends MoveThreadCountPolicy {
+
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger maxReserved = new AtomicInteger();
+
+    private CountingMoveThreadCountPolicy() {
+      super(1000, 8);
+    }
+
+    @Override
+    public int reserveCores(int max) {
+      maxReserved.accumulateAndGet(reserved.addAndGet(max), Math::max);
+      return max;
+    }
+
+    @Override
+    public void release(int moveThreadCount) {
+      reserved.addAndGet(-moveThreadCount);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+public class SerializedTimetableTest {
+
+  @Test
+  void cachesThePlainAndTheGzippedJson() throws IOException {
+    byte[] json = "{\"lessons\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    SerializedTimetable serializedTimetable =
+        SerializedTimetable.of("W/\"1-SOLVING_ACTIVE\"", json);
+
+    assertThat(serializedTimetable.json()).isSameAs(json);
+    try (InputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(serializedTimetable.gzipped()))) {
+      assertThat(in.readAllBytes()).isEqualTo(json);
+    }
+  }
+
+  @Test
+  void acceptsGzipByQualityValue() {
+    assertThat(SerializedTimetable.acceptsGzip("gzip, deflate, br")).isTrue();
+    assertThat(SerializedTimetable.acceptsGzip("deflate, GZIP;q=0.5")).isTrue();
+    assertThat(SerializedTimetable.acceptsGzip("*")).isTrue();
+    assertThat(SerializedTimetable.acceptsGzip(null)).isFalse();
+    assertThat(SerializedTimetable.acceptsGzip("identity")).isFalse();
+    assertThat(SerializedTimetable.acceptsGzip("gzip;q=0")).isFalse();
+    assertThat(SerializedTimetable.acceptsGzip("gzip; q=0.0, deflate")).isFalse();
+    assertThat(SerializedTimetable.acceptsGzip("*;q=1, gzip;q=0")).isFalse();
+    assertThat(SerializedTimetable.acceptsGzip("*;q=0")).isFalse();
+  }
+}
@@ -0,0 +1,70 @@
+package com.patrick.timetableappbackend.service;
+
+import com.patrick.timetableappbackend.dto.JobTermination;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * The tests of {@link TimetableJobRegistry} and {@link TimetableWorkerPool}: an empty solve_job
+ * table in a Postgres container for every test. Skipped where there is no Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+abstract class SolveJobTableSupport {
+
+  static final JobSettings SETTINGS =
+      new JobSettings(
+          ScoreEngine.INCREMENTAL,
+          LocalSearch.CONFIGURED,
+          false,
+          null,
+          PartitionKey.NONE,
+          false,
+          null,
+          JobTermination.builder().build(),
+          JobPriority.NORMAL,
+          "alice");
+
+  @Container
+  private static final PostgreSQLContainer<?> POSTGRES =
+      new PostgreSQLContainer<>("postgres:16-alpine");
+
+  DataSource dataSource;
+  JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  void createSolveJobTable() {
+    dataSource =
+        new DriverManagerDataSource(
+            POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("drop table if exists solve_job");
+    new ResourceDatabasePopulator(new ClassPathResource("solve_job.sql")).execute(dataSource);
+  }
+
+  /** As if the node solving the job had not renewed its heartbeat for an hour. */
+  void missHeartbeats(String jobId) {
+    jdbcTemplate.update(
+        "update solve_job set heartbeat_at = heartbeat_at - interval '1 hour' where job_id = ?",
+        jobId);
+  }
+
+  String status(String jobId) {
+    return jdbcTemplate.queryForObject(
+        "select status from solve_job where job_id = ?", String.class, jobId);
+  }
+
+  String workerId(String jobId) {
+    return jdbcTemplate.queryForObject(
+        "select worker_id from solve_job where job_id = ?", String.class, jobId);
+  }
+}
@@ -0,0 +1,112 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.dto.JobTermination;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+public class TimetableCheckpointServiceTest {
+
+  private static final JobSettings SETTINGS =
+      new JobSettings(
+          ScoreEngine.INCREMENTAL,
+          LocalSearch.TABU_SEARCH,
+          true,
+          null,
+          PartitionKey.YEAR,
+          false,
+          600L,
+          JobTermination.builder()
+              .spentLimit(Duration.ofMinutes(20))
+              .bestScoreLimit("0hard/0medium/*soft")
+              .build(),
+          JobPriority.HIGH,
+          "alice");
+
+  @TempDir Path directory;
+
+  private final TimetableJobStore jobStore =
+      new TimetableJobStore(Duration.ofHours(1), 100, DataSize.ofMegabytes(1));
+
+  @Test
+  void checkpointsTheFinalBestSolutionOnShutdown() throws InterruptedException {
+    TimetableCheckpointService checkpointService =
+        new TimetableCheckpointService(true, directory, Duration.ofMinutes(1));
+    Timetable problem = TimetableProblemGenerator.generate(50, 0L);
+    TimetableJobStore.Job job =
+        jobStore.start("job", problem, ScoreEngine.INCREMENTAL, LocalSearch.CONFIGURED);
+    checkpointService.register(job, SETTINGS, Duration.ofMinutes(5));
+    checkpointService.started("job");
+    Timetable solution = assign(problem);
+    jobStore.updateBestSolution(job, solution);
+
+    checkpointService.shutdown();
+    checkpointService.finish("job");
+    checkpointService.destroy();
+
+    List<TimetableCheckpoint> checkpoints =
+        new TimetableCheckpointService(true, directory, Duration.ofMinutes(1)).readCheckpoints();
+    assertThat(checkpoints).hasSize(1);
+    TimetableCheckpoint checkpoint = checkpoints.get(0);
+    assertThat(checkpoint.jobId()).isEqualTo("job");
+    assertThat(checkpoint.settings()).isEqualTo(SETTINGS);
+    assertThat(checkpoint.spent()).isGreaterThanOrEqualTo(Duration.ofMinutes(5));
+    TimetableSnapshot expected = TimetableSnapshot.of(solution);
+    assertThat(checkpoint.snapshot().lessonIds()).isEqualTo(expected.lessonIds());
+    assertThat(checkpoint.snapshot().timeslotIds()).isEqualTo(expected.timeslotIds());
+    assertThat(checkpoint.snapshot().roomIds()).isEqualTo(expected.roomIds());
+    assertThat(checkpoint.snapshot().score()).isEqualTo(solution.getScore());
+  }
+
+  @Test
+  void deletesTheCheckpointOfAJobThatEnds() throws InterruptedException {
+    TimetableCheckpointService checkpointService =
+        new TimetableCheckpointService(true, directory, Duration.ofMinutes(1));
+    TimetableJobStore.Job job =
+        jobStore.start(
+            "job",
+            TimetableProblemGenerator.generate(50, 0L),
+            ScoreEngine.INCREMENTAL,
+            LocalSearch.CONFIGURED);
+    checkpointService.register(job, SETTINGS, Duration.ZERO);
+
+    checkpointService.finish("job");
+    checkpointService.destroy();
+
+    assertThat(directory).isEmptyDirectory();
+  }
+
+  @Test
+  void movesAsideAnUnreadableCheckpoint() throws Exception {
+    Files.write(directory.resolve("job.checkpoint"), new byte[] {1, 2, 3});
+
+    assertThat(
+            new TimetableCheckpointService(true, directory, Duration.ofMinutes(1))
+                .readCheckpoints())
+        .isEmpty();
+    assertThat(directory.resolve("job.checkpoint.unreadable")).exists();
+  }
+
+  private static Timetable assign(Timetable problem) {
+    for (int i = 0; i < problem.getLessons().size(); i++) {
+      Lesson lesson = problem.getLessons().get(i);
+      lesson.setTimeslot(problem.getTimeslots().get(i % problem.getTimeslots().size()));
+      lesson.setRoom(problem.getRooms().get(i % problem.getRooms().size()));
+    }
+    problem.setScore(HardMediumSoftScore.of(-2, 0, -40));
+    return problem;
+  }
+}
@@ -0,0 +1,187 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import ai.timefold.solver.core.api.solver.SolverStatus;
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import com.patrick.timetableappbackend.dto.TimetableDelta;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class TimetableEventServiceTest {
+
+  private final TimetableJobStore jobStore =
+      new TimetableJobStore(Duration.ofHours(1), 100, DataSize.ofMegabytes(10));
+  private final RecordingEmitter emitter = new RecordingEmitter();
+  private final TimetableEventService eventService = new TimetableEventService(() -> emitter);
+  private final Timetable solution = solution();
+
+  @AfterEach
+  void destroy() {
+    emitter.open();
+    eventService.destroy();
+  }
+
+  @Test
+  void mergedDeltasKeepTheLatestAssignmentOfALesson() throws InterruptedException {
+    TimetableJobStore.Job job = solvingJob();
+    eventService.subscribe(job);
+    // stuck sending the snapshot meanwhile
+    emitter.awaitSending();
+    Lesson lesson = solution.getLessons().get(0);
+    Lesson other = solution.getLessons().get(1);
+    improve(job, lesson, timeslot(1));
+    improve(job, lesson, timeslot(2));
+    improve(job, other, timeslot(3));
+
+    emitter.open();
+
+    await().until(() -> emitter.events.size() == 2);
+    TimetableDelta delta = (TimetableDelta) emitter.events.get(1);
+    assertThat(delta.isFull()).isFalse();
+    assertThat(delta.getVersion()).isEqualTo(job.getVersion());
+    assertThat(delta.getChanges()).containsExactly(assignment(lesson), assignment(other));
+  }
+
+  @Test
+  void fullSnapshotResetsThePendingDelta() throws InterruptedException {
+    TimetableJobStore.Job job = solvingJob();
+    eventService.subscribe(job);
+    emitter.awaitSending();
+    Lesson lesson = solution.getLessons().get(0);
+    improve(job, lesson, timeslot(1));
+    // of other lessons, as after a problem change, so published in full
+    solution.getLessons().remove(lesson);
+    jobStore.updateBestSolution(job, solution);
+    eventService.publish(job, null, job.getSnapshot());
+
+    emitter.open();
+
+    await().until(() -> emitter.events.size() == 2);
+    TimetableDelta delta = (TimetableDelta) emitter.events.get(1);
+    assertThat(delta.isFull()).isTrue();
+    assertThat(delta.getChanges()).isEqualTo(job.getSnapshot().assignments());
+    assertThat(delta.getChanges()).doesNotContain(assignment(lesson));
+  }
+
+  @Test
+  void lastDeltaIsSentBeforeTheSolverStatus() throws InterruptedException {
+    TimetableJobStore.Job job = solvingJob();
+    eventService.subscribe(job);
+    emitter.awaitSending();
+    improve(job, solution.getLessons().get(0), timeslot(1));
+    eventService.complete(job.getJobId(), SolverStatus.NOT_SOLVING);
+
+    emitter.open();
+
+    await().until(() -> emitter.completed);
+    assertThat(emitter.events).hasSize(3);
+    assertThat(((TimetableDelta) emitter.events.get(0)).isFull()).isTrue();
+    assertThat(((TimetableDelta) emitter.events.get(1)).getChanges())
+        .containsExactly(assignment(solution.getLessons().get(0)));
+    assertThat(emitter.events.get(2)).isEqualTo(SolverStatus.NOT_SOLVING);
+  }
+
+  @Test
+  void lateSubscriberGetsTheSnapshotAndTheCompletion() {
+    TimetableJobStore.Job job = solvingJob();
+    jobStore.finish(job);
+    emitter.open();
+
+    eventService.subscribe(job);
+
+    await().until(() -> emitter.completed);
+    assertThat(emitter.events).hasSize(2);
+    TimetableDelta delta = (TimetableDelta) emitter.events.get(0);
+    assertThat(delta.isFull()).isTrue();
+    assertThat(delta.getChanges()).isEqualTo(job.getSnapshot().assignments());
+    assertThat(emitter.events.get(1)).isEqualTo(SolverStatus.NOT_SOLVING);
+  }
+
+  private TimetableJobStore.Job solvingJob() {
+    TimetableJobStore.Job job =
+        jobStore.start("job", solution, ScoreEngine.INCREMENTAL, LocalSearch.CONFIGURED);
+    jobStore.run(job, 0);
+    jobStore.updateBestSolution(job, solution);
+    return job;
+  }
+
+  // a new best solution with the lesson moved, published like TimetableJobLifecycle does
+  private void improve(TimetableJobStore.Job job, Lesson lesson, Timeslot timeslot) {
+    lesson.setTimeslot(timeslot);
+    TimetableSnapshot previous = job.getSnapshot();
+    jobStore.updateBestSolution(job, solution);
+    eventService.publish(job, previous, job.getSnapshot());
+  }
+
+  private Timeslot timeslot(int index) {
+    return solution.getTimeslots().get(index);
+  }
+
+  private static LessonAssignment assignment(Lesson lesson) {
+    return new LessonAssignment(
+        lesson.getId(), lesson.getTimeslot().getId(), lesson.getRoom().getId());
+  }
+
+  private static Timetable solution() {
+    Timetable solution = TimetableProblemGenerator.generate(20, 0L);
+    for (int i = 0; i < solution.getLessons().size(); i++) {
+      Lesson lesson = solution.getLessons().get(i);
+      lesson.setTimeslot(solution.getTimeslots().get(i % solution.getTimeslots().size()));
+      lesson.setRoom(solution.getRooms().get(i % solution.getRooms().size()));
+    }
+    return solution;
+  }
+
+  // records the data of the events, a TimetableDelta or a SolverStatus, and holds up the first
+  // send until opened
+  private static final class RecordingEmitter extends SseEmitter {
+
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final CountDownLatch opened = new CountDownLatch(1);
+    private volatile boolean completed;
+
+    @Override
+    public void send(SseEventBuilder builder) {
+      sending.countDown();
+      try {
+        opened.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      builder.build().stream()
+          .map(DataWithMediaType::getData)
+          .filter(data -> !(data instanceof String))
+          .forEach(events::add);
+    }
+
+    @Override
+    public synchronized void complete() {
+      completed = true;
+    }
+
+    void awaitSending() throws InterruptedException {
+      assertThat(sending.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    void open() {
+      opened.countDown();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.model.SolveJobStatus;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+public class TimetableJobRegistryTest extends SolveJobTableSupport {
+
+  private final TimetableJobStore jobStore =
+      new TimetableJobStore(Duration.ofHours(1), 100, DataSize.ofMegabytes(1));
+
+  @Test
+  void terminatesAJobOfAnotherNodeAtItsNextHeartbeat() throws InterruptedException {
+    TimetableJobRegistry owner = jobRegistry();
+    TimetableJobRegistry other = jobRegistry();
+    owner.register(start("job"), SETTINGS, Duration.ZERO, false);
+
+    assertThat(other.requestTermination("job")).isFalse();
+    assertThat(other.awaitEnded("job", Duration.ofMillis(300))).isFalse();
+    assertThat(owner.heartbeat()).containsExactly("job");
+    owner.finish("job");
+
+    assertThat(other.awaitEnded("job", Duration.ofSeconds(1))).isTrue();
+    assertThat(other.get("job"))
+        .map(TimetableJobRegistry.RegisteredJob::status)
+        .contains(SolveJobStatus.FINISHED);
+  }
+
+  @Test
+  void jobAskedToTerminateIsFinishedRatherThanQueuedOnShutdown() {
+    TimetableJobRegistry owner = jobRegistry();
+    owner.register(start("terminated"), SETTINGS, Duration.ZERO, false);
+    owner.register(start("running"), SETTINGS, Duration.ZERO, false);
+    assertThat(jobRegistry().requestTermination("terminated")).isFalse();
+
+    owner.shutdown();
+    owner.finish("terminated");
+    owner.finish("running");
+
+    assertThat(status("terminated")).isEqualTo("FINISHED");
+    assertThat(status("running")).isEqualTo("QUEUED");
+  }
+
+  @Test
+  void jobClaimedByAnotherNodeIsLostToItsPreviousOwner() {
+    TimetableJobRegistry previous = jobRegistry();
+    TimetableJobRegistry next = jobRegistry();
+    TimetableWorkerPool workerPool =
+        new TimetableWorkerPool(
+            jdbcTemplate,
+            new DataSourceTransactionManager(dataSource),
+            next,
+            true,
+            100,
+            Duration.ofMinutes(1));
+    previous.register(start("job"), SETTINGS, Duration.ZERO, false);
+    assertThat(previous.heartbeat()).isEmpty();
+
+    missHeartbeats("job");
+    workerPool.requeueAbandoned();
+    assertThat(workerPool.claim()).isPresent();
+
+    // a pid@host worker id would be the same on a restarted node or in another container
+    assertThat(next.getWorkerId()).isNotEqualTo(previous.getWorkerId());
+    assertThat(previous.heartbeat()).containsExactly("job");
+    assertThat(next.heartbeat()).isEmpty();
+  }
+
+  private TimetableJobStore.Job start(String jobId) {
+    return jobStore.start(
+        jobId,
+        TimetableProblemGenerator.generate(20, 0L),
+        ScoreEngine.INCREMENTAL,
+        LocalSearch.CONFIGURED);
+  }
+
+  private TimetableJobRegistry jobRegistry() {
+    return new TimetableJobRegistry(
+        jdbcTemplate,
+        true,
+        false,
+        Duration.ofSeconds(10),
+        Duration.ofSeconds(1),
+        1000,
+        Duration.ofHours(24));
+  }
+}
@@ -0,0 +1,93 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+public class TimetableJobSchedulerTest {
+
+  private final List<String> started = new ArrayList<>();
+
+  @Test
+  void startsTheHighestPriorityFirst() {
+    TimetableJobScheduler scheduler = new TimetableJobScheduler(1, 10);
+    submit(scheduler, "running", JobPriority.NORMAL, "alice");
+    submit(scheduler, "overnight", JobPriority.LOW, "alice");
+    submit(scheduler, "normal", JobPriority.NORMAL, "alice");
+    submit(scheduler, "replan", JobPriority.HIGH, "alice");
+
+    assertThat(started).containsExactly("running");
+    assertThat(scheduler.getQueuePosition("replan")).isEqualTo(1);
+    assertThat(scheduler.getQueuePosition("overnight")).isEqualTo(3);
+
+    scheduler.release("running");
+    scheduler.release("replan");
+    scheduler.release("normal");
+
+    assertThat(started).containsExactly("running", "replan", "normal", "overnight");
+  }
+
+  @Test
+  void startsTheJobOfTheUserWithTheFewestRunningJobsFirst() {
+    TimetableJobScheduler scheduler = new TimetableJobScheduler(2, 10);
+    submit(scheduler, "alice-1", JobPriority.NORMAL, "alice");
+    submit(scheduler, "alice-2", JobPriority.NORMAL, "alice");
+    submit(scheduler, "alice-3", JobPriority.NORMAL, "alice");
+    submit(scheduler, "bob-1", JobPriority.NORMAL, "bob");
+
+    scheduler.release("alice-1");
+
+    // alice still runs alice-2, bob runs nothing
+    assertThat(started).containsExactly("alice-1", "alice-2", "bob-1");
+    assertThat(scheduler.getQueuePosition("alice-3")).isEqualTo(1);
+  }
+
+  @Test
+  void rejectsJobsOverTheMaxQueued() {
+    TimetableJobScheduler scheduler = new TimetableJobScheduler(1, 1);
+    submit(scheduler, "running", JobPriority.NORMAL, "alice");
+    submit(scheduler, "queued", JobPriority.NORMAL, "alice");
+
+    assertThatThrownBy(() -> submit(scheduler, "rejected", JobPriority.HIGH, "bob"))
+        .isInstanceOfSatisfying(
+            TimetableSolverException.class,
+            e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+  }
+
+  @Test
+  void cancelledJobDoesNotStart() {
+    TimetableJobScheduler scheduler = new TimetableJobScheduler(1, 10);
+    submit(scheduler, "running", JobPriority.NORMAL, "alice");
+    submit(scheduler, "cancelled", JobPriority.NORMAL, "alice");
+
+    assertThat(scheduler.cancel("cancelled")).isTrue();
+    assertThat(scheduler.cancel("running")).isFalse();
+    scheduler.release("running");
+
+    assertThat(started).containsExactly("running");
+    assertThat(scheduler.getQueuePosition("cancelled")).isNull();
+  }
+
+  @Test
+  void hasCapacityUntilMaxRunningJobsRun() {
+    TimetableJobScheduler scheduler = new TimetableJobScheduler(2, 10);
+    submit(scheduler, "first", JobPriority.NORMAL, "alice");
+    assertThat(scheduler.hasCapacity()).isTrue();
+
+    submit(scheduler, "second", JobPriority.NORMAL, "bob");
+    assertThat(scheduler.hasCapacity()).isFalse();
+
+    scheduler.release("first");
+    assertThat(scheduler.hasCapacity()).isTrue();
+  }
+
+  private void submit(
+      TimetableJobScheduler scheduler, String jobId, JobPriority priority, String user) {
+    scheduler.submit(jobId, priority, user, () -> started.add(jobId));
+  }
+}
@@ -0,0 +1,145 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.dto.LessonAssignment;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+public class TimetableJobStoreTest {
+
+  private final MutableClock clock = new MutableClock();
+
+  @Test
+  void snapshotRehydratesTheAssignment() {
+    Timetable solution = solution();
+
+    Timetable rehydrated =
+        TimetableSnapshot.of(solution)
+            .rehydrate(
+                solution.getLessons(),
+                solution.getTimeslots(),
+                solution.getRooms(),
+                solution.getTimetableConstraintConfiguration());
+
+    assertThat(rehydrated.getLessons()).hasSameSizeAs(solution.getLessons());
+    for (int i = 0; i < solution.getLessons().size(); i++) {
+      Lesson lesson = solution.getLessons().get(i);
+      Lesson rehydratedLesson = rehydrated.getLessons().get(i);
+      assertThat(rehydratedLesson).isNotSameAs(lesson);
+      assertThat(rehydratedLesson.getId()).isEqualTo(lesson.getId());
+      assertThat(rehydratedLesson.getTimeslot()).isSameAs(lesson.getTimeslot());
+      assertThat(rehydratedLesson.getRoom()).isSameAs(lesson.getRoom());
+    }
+  }
+
+  @Test
+  void snapshotChangesAreTheReassignedLessons() {
+    Timetable solution = solution();
+    TimetableSnapshot previous = TimetableSnapshot.of(solution);
+    Lesson lesson = solution.getLessons().get(3);
+    lesson.setRoom(null);
+
+    assertThat(TimetableSnapshot.of(solution).changesSince(previous))
+        .containsExactly(new LessonAssignment(lesson.getId(), lesson.getTimeslot().getId(), null));
+  }
+
+  @Test
+  void evictsFinishedJobsAfterTheirTimeToLive() {
+    TimetableJobStore jobStore =
+        new TimetableJobStore(Duration.ofMinutes(10), 100, DataSize.ofMegabytes(1), clock);
+    TimetableJobStore.Job finished = finish(jobStore, "finished");
+    jobStore.start("solving", solution(), ScoreEngine.INCREMENTAL, LocalSearch.CONFIGURED);
+
+    clock.advance(Duration.ofMinutes(5));
+    assertThat(jobStore.get("finished")).contains(finished);
+    clock.advance(Duration.ofMinutes(11));
+
+    assertThat(jobStore.get("finished")).isEmpty();
+    assertThat(jobStore.getJobIds()).containsExactly("solving");
+  }
+
+  @Test
+  void evictsTheLeastRecentlyReadFinishedJobsOverTheMaxJobs() {
+    TimetableJobStore jobStore =
+        new TimetableJobStore(Duration.ofHours(1), 2, DataSize.ofMegabytes(1), clock);
+    finish(jobStore, "first");
+    clock.advance(Duration.ofSeconds(1));
+    finish(jobStore, "second");
+    clock.advance(Duration.ofSeconds(1));
+    jobStore.get("first");
+    clock.advance(Duration.ofSeconds(1));
+
+    finish(jobStore, "third");
+
+    assertThat(jobStore.getJobIds()).containsExactlyInAnyOrder("first", "third");
+  }
+
+  @Test
+  void evictsFinishedJobsOverTheMaxSize() {
+    Timetable solution = solution();
+    long snapshotBytes = TimetableSnapshot.of(solution).sizeInBytes();
+    TimetableJobStore jobStore =
+        new TimetableJobStore(Duration.ofHours(1), 100, DataSize.ofBytes(snapshotBytes * 2), clock);
+    for (String jobId : List.of("first", "second", "third")) {
+      finish(jobStore, jobId);
+      clock.advance(Duration.ofSeconds(1));
+    }
+
+    assertThat(jobStore.getJobIds()).containsExactlyInAnyOrder("second", "third");
+  }
+
+  private static TimetableJobStore.Job finish(TimetableJobStore jobStore, String jobId) {
+    Timetable solution = solution();
+    TimetableJobStore.Job job =
+        jobStore.start(jobId, solution, ScoreEngine.INCREMENTAL, LocalSearch.CONFIGURED);
+    jobStore.updateBestSolution(job, solution);
+    jobStore.finish(job);
+    return job;
+  }
+
+  private static Timetable solution() {
+    Timetable timetable = TimetableProblemGenerator.generate(50, 0L);
+    for (int i = 0; i < timetable.getLessons().size(); i++) {
+      Lesson lesson = timetable.getLessons().get(i);
+      lesson.setTimeslot(timetable.getTimeslots().get(i % timetable.getTimeslots().size()));
+      lesson.setRoom(timetable.getRooms().get(i % timetable.getRooms().size()));
+    }
+    return timetable;
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private Instant instant = Instant.EPOCH;
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.util.unit.DataSize;
+
+public class TimetablePersistenceServiceTest {
+
+  private final TimetableJobStore jobStore =
+      new TimetableJobStore(Duration.ofHours(1), 100, DataSize.ofMegabytes(1));
+
+  private EmbeddedDatabase database;
+  private BatchSizeRecordingJdbcTemplate jdbcTemplate;
+  private Timetable solution;
+
+  @BeforeEach
+  void createLessonTable() {
+    database =
+        new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    jdbcTemplate = new BatchSizeRecordingJdbcTemplate(database);
+    jdbcTemplate.execute(
+        "create table lesson (id bigint primary key, timeslot_id bigint, room_id bigint)");
+    solution = TimetableProblemGenerator.generate(50, 0L);
+    for (int i = 0; i < solution.getLessons().size(); i++) {
+      Lesson lesson = solution.getLessons().get(i);
+      jdbcTemplate.update("insert into lesson (id) values (?)", lesson.getId());
+      lesson.setTimeslot(solution.getTimeslots().get(i % solution.getTimeslots().size()));
+      lesson.setRoom(solution.getRooms().get(i % solution.getRooms().size()));
+    }
+  }
+
+  @AfterEach
+  void shutdownDatabase() {
+    database.shutdown();
+  }
+
+  @Test
+  void persistsTheFinalBestSolutionInBatches() throws InterruptedException {
+    TimetablePersistenceService persistenceService =
+        new TimetablePersistenceService(
+            jdbcTemplate, new DataSourceTransactionManager(database), true, Duration.ZERO, 7);
+    TimetableJobStore.Job job = start("final");
+
+    persistenceService.persist(job);
+    persistenceService.destroy();
+
+    assertThat(jdbcTemplate.batchSizes).containsExactly(50);
+    assertPersisted(solution);
+    assertThat(persistenceService.isPersisting("final")).isFalse();
+  }
+
+  @Test
+  void finalWriteAfterACheckpointUpdatesOnlyTheReassignedLessons() throws InterruptedException {
+    TimetablePersistenceService persistenceService =
+        new TimetablePersistenceService(
+            jdbcTemplate,
+            new DataSourceTransactionManager(database),
+            true,
+            Duration.ofMinutes(1),
+            7);
+    TimetableJobStore.Job job = start("checkpointed");
+
+    persistenceService.checkpoint(job);
+    await().until(() -> jdbcTemplate.batchSizes.size() == 1);
+    solution.getLessons().get(3).setRoom(solution.getRooms().get(0));
+    solution.getLessons().get(4).setTimeslot(null);
+    jobStore.updateBestSolution(job, solution);
+    // within the checkpoint interval
+    persistenceService.checkpoint(job);
+    persistenceService.persist(job);
+    persistenceService.destroy();
+
+    assertThat(jdbcTemplate.batchSizes).containsExactly(50, 2);
+    assertPersisted(solution);
+    assertThat(persistenceService.isPersisting("checkpointed")).isFalse();
+  }
+
+  @Test
+  void failedFinalWriteForgetsTheJob() throws InterruptedException {
+    TimetablePersistenceService persistenceService =
+        new TimetablePersistenceService(
+            jdbcTemplate,
+            new DataSourceTransactionManager(database) {
+              @Override
+              protected void doBegin(Object transaction, TransactionDefinition definition) {
+                throw new CannotCreateTransactionException("The database is down.");
+              }
+            },
+            true,
+            Duration.ZERO,
+            7);
+    TimetableJobStore.Job job = start("failed");
+
+    persistenceService.persist(job);
+    persistenceService.destroy();
+
+    assertThat(jdbcTemplate.batchSizes).isEmpty();
+    assertThat(persistenceService.isPersisting("failed")).isFalse();
+  }
+
+  private TimetableJobStore.Job start(String jobId) {
+    TimetableJobStore.Job job =
+        jobStore.start(jobId, solution, ScoreEngine.INCREMENTAL, LocalSearch.CONFIGURED);
+    jobStore.updateBestSolution(job, solution);
+    return job;
+  }
+
+  private void assertPersisted(Timetable solution) {
+    for (Lesson lesson : solution.getLessons()) {
+      Map<String, Object> row =
+          jdbcTemplate.queryForMap(
+              "select timeslot_id, room_id from lesson where id = ?", lesson.getId());
+      assertThat(row.get("TIMESLOT_ID"))
+          .isEqualTo(lesson.getTimeslot() == null ? null : lesson.getTimeslot().getId());
+      assertThat(row.get("ROOM_ID"))
+          .isEqualTo(lesson.getRoom() == null ? null : lesson.getRoom().getId());
+    }
+  }
+
+  private static final class BatchSizeRecordingJdbcTemplate extends JdbcTemplate {
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    private BatchSizeRecordingJdbcTemplate(DataSource dataSource) {
+      super(dataSource);
+    }
+
+    @Override
+    public <T> int[][] batchUpdate(
+        String sql,
+        Collection<T> batchArgs,
+        int batchSize,
+        ParameterizedPreparedStatementSetter<T> pss) {
+      int[][] updateCounts = super.batchUpdate(sql, batchArgs, batchSize, pss);
+      batchSizes.add(batchArgs.size());
+      return updateCounts;
+    }
+  }
+}
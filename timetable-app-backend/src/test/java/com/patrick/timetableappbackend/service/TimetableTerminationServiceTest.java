@@ -0,0 +1,148 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import com.patrick.timetableappbackend.dto.JobTermination;
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import com.patrick.timetableappbackend.solver.LocalSearch;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+public class TimetableTerminationServiceTest {
+
+  private final PartitionedSolveService partitionedSolveService =
+      mock(PartitionedSolveService.class);
+  private final TimetableTerminationService terminationService =
+      new TimetableTerminationService(
+          partitionedSolveService,
+          new SolverConfig()
+              .withTerminationConfig(
+                  new TerminationConfig()
+                      .withMinutesSpentLimit(600L)
+                      .withUnimprovedSecondsSpentLimit(60L)),
+          Duration.ofMinutes(30),
+          Duration.ofMinutes(5));
+
+  @Test
+  void limitsOfTheJobReplaceTheOnesPerUnitOfTheSolverConfig() {
+    TerminationConfig terminationConfig =
+        terminationConfig(
+            settings(
+                PartitionKey.NONE,
+                false,
+                JobTermination.builder()
+                    .unimprovedSpentLimit(Duration.ofMinutes(20))
+                    .bestScoreLimit("0hard/0medium/*soft")
+                    .scoreCalculationCountLimit(1000L)
+                    .build()),
+            Duration.ZERO);
+
+    // the duration of the problem, in minutes
+    assertThat(terminationConfig.getSpentLimit()).isEqualTo(Duration.ofMinutes(5));
+    assertThat(terminationConfig.getMinutesSpentLimit()).isNull();
+    assertThat(terminationConfig.getUnimprovedSpentLimit()).isEqualTo(Duration.ofMinutes(20));
+    assertThat(terminationConfig.getUnimprovedSecondsSpentLimit()).isNull();
+    assertThat(terminationConfig.getBestScoreLimit()).isEqualTo("0hard/0medium/*soft");
+    assertThat(terminationConfig.getScoreCalculationCountLimit()).isEqualTo(1000L);
+  }
+
+  @Test
+  void resumedJobGetsWhatIsLeftOfItsSpentLimit() {
+    JobSettings settings =
+        settings(
+            PartitionKey.NONE,
+            false,
+            JobTermination.builder().spentLimit(Duration.ofHours(1)).build());
+
+    assertThat(terminationConfig(settings, Duration.ofMinutes(20)).getSpentLimit())
+        .isEqualTo(Duration.ofMinutes(40));
+    assertThat(terminationConfig(settings, Duration.ofHours(2)).getSpentLimit())
+        .isEqualTo(Duration.ofSeconds(1));
+    assertThat(terminationService.getRemainingSpentLimit(settings, Duration.ofMinutes(20)))
+        .isEqualTo(Duration.ofMinutes(40));
+    assertThat(
+            terminationService.getRemainingSpentLimit(
+                settings(PartitionKey.NONE, false, null), Duration.ofMinutes(20)))
+        .isNull();
+  }
+
+  @Test
+  void warmStartEndsByItsOwnLimits() {
+    TerminationConfig terminationConfig =
+        terminationConfig(settings(PartitionKey.NONE, true, null), Duration.ZERO);
+
+    assertThat(terminationConfig.getSpentLimit()).isEqualTo(Duration.ofMinutes(30));
+    assertThat(terminationConfig.getUnimprovedSpentLimit()).isEqualTo(Duration.ofMinutes(5));
+  }
+
+  @Test
+  void partitionedJobRepairsWithinItsSpentLimit() {
+    when(partitionedSolveService.getRepairTerminationConfig())
+        .thenAnswer(invocation -> new TerminationConfig().withSpentLimit(Duration.ofMinutes(10)));
+
+    assertThat(
+            terminationConfig(settings(PartitionKey.YEAR, false, null), Duration.ZERO)
+                .getSpentLimit())
+        .isEqualTo(Duration.ofMinutes(10));
+    // 20 minutes of the hour went into the partitions
+    assertThat(
+            terminationConfig(
+                    settings(
+                        PartitionKey.YEAR,
+                        false,
+                        JobTermination.builder().spentLimit(Duration.ofHours(1)).build()),
+                    Duration.ofMinutes(20))
+                .getSpentLimit())
+        .isEqualTo(Duration.ofMinutes(40));
+  }
+
+  @Test
+  void rejectsInvalidLimits() {
+    assertBadRequest(JobTermination.builder().spentLimit(Duration.ZERO).build());
+    assertBadRequest(JobTermination.builder().unimprovedSpentLimit(Duration.ofSeconds(-1)).build());
+    assertBadRequest(JobTermination.builder().scoreCalculationCountLimit(0L).build());
+    assertBadRequest(JobTermination.builder().bestScoreLimit("0hard").build());
+
+    terminationService.validate("job", null);
+    terminationService.validate(
+        "job",
+        JobTermination.builder()
+            .spentLimit(Duration.ofMinutes(1))
+            .bestScoreLimit("*hard/0medium/-100soft")
+            .build());
+  }
+
+  private TerminationConfig terminationConfig(JobSettings settings, Duration spent) {
+    return terminationService.getConfigOverride(settings, spent).getTerminationConfig();
+  }
+
+  private void assertBadRequest(JobTermination termination) {
+    assertThatThrownBy(() -> terminationService.validate("job", termination))
+        .isInstanceOfSatisfying(
+            TimetableSolverException.class,
+            e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST));
+  }
+
+  private static JobSettings settings(
+      PartitionKey partitionKey, boolean warmStart, JobTermination termination) {
+    return new JobSettings(
+        ScoreEngine.INCREMENTAL,
+        LocalSearch.CONFIGURED,
+        false,
+        null,
+        partitionKey,
+        warmStart,
+        5L,
+        termination,
+        JobPriority.NORMAL,
+        "alice");
+  }
+}
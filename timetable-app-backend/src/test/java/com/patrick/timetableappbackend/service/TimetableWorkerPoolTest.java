@@ -0,0 +1,167 @@
+package com.patrick.timetableappbackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.exception.TimetableSolverException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+public class TimetableWorkerPoolTest extends SolveJobTableSupport {
+
+  static final TimetableSnapshot SNAPSHOT =
+      TimetableSnapshot.of(TimetableProblemGenerator.generate(20, 0L));
+  // the pool keeps the serialized problem as it is
+  static final byte[] PROBLEM = "{\"lessons\":[]}".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  void everyJobIsClaimedByOneWorker() throws Exception {
+    TimetableWorkerPool receiver = workerPool(100);
+    for (int i = 0; i < 40; i++) {
+      receiver.enqueue("job" + i, SETTINGS, SNAPSHOT, PROBLEM);
+    }
+    List<TimetableJobRegistry> registries = new ArrayList<>();
+    List<Callable<List<String>>> workers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      TimetableJobRegistry registry = jobRegistry();
+      TimetableWorkerPool workerPool = workerPool(registry, 100);
+      registries.add(registry);
+      workers.add(
+          () -> {
+            List<String> claimed = new ArrayList<>();
+            for (Optional<TimetableWorkerPool.ClaimedJob> job = workerPool.claim();
+                job.isPresent();
+                job = workerPool.claim()) {
+              claimed.add(job.get().checkpoint().jobId());
+            }
+            return claimed;
+          });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+    List<Future<List<String>>> claims = executor.invokeAll(workers);
+    executor.shutdown();
+
+    List<String> claimedJobIds = new ArrayList<>();
+    for (int i = 0; i < claims.size(); i++) {
+      for (String jobId : claims.get(i).get()) {
+        claimedJobIds.add(jobId);
+        assertThat(workerId(jobId)).isEqualTo(registries.get(i).getWorkerId());
+      }
+    }
+    assertThat(claimedJobIds)
+        .hasSize(40)
+        .doesNotHaveDuplicates()
+        .allSatisfy(jobId -> assertThat(status(jobId)).isEqualTo("RUNNING"));
+  }
+
+  @Test
+  void rejectsJobsOverTheMaxQueuedOfAllNodes() throws Exception {
+    List<TimetableWorkerPool> receivers = List.of(workerPool(5), workerPool(5));
+    AtomicInteger rejected = new AtomicInteger();
+    List<Callable<Void>> enqueues = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      String jobId = "job" + i;
+      TimetableWorkerPool receiver = receivers.get(i % receivers.size());
+      enqueues.add(
+          () -> {
+            try {
+              receiver.enqueue(jobId, SETTINGS, SNAPSHOT, PROBLEM);
+            } catch (TimetableSolverException e) {
+              rejected.incrementAndGet();
+            }
+            return null;
+          });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (Future<Void> enqueue : executor.invokeAll(enqueues)) {
+      enqueue.get();
+    }
+    executor.shutdown();
+
+    assertThat(rejected).hasValue(15);
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "select count(*) from solve_job where status = 'QUEUED'", Integer.class))
+        .isEqualTo(5);
+    assertThatThrownBy(() -> receivers.get(0).enqueue("job20", SETTINGS, SNAPSHOT, PROBLEM))
+        .isInstanceOf(TimetableSolverException.class);
+  }
+
+  @Test
+  void requeuesTheJobsOfAWorkerThatMissedItsHeartbeats() {
+    TimetableWorkerPool gone = workerPool(100);
+    TimetableJobRegistry otherRegistry = jobRegistry();
+    TimetableWorkerPool other = workerPool(otherRegistry, 100);
+    gone.enqueue("job", SETTINGS, SNAPSHOT, PROBLEM);
+    assertThat(gone.claim()).isPresent();
+
+    other.requeueAbandoned();
+    assertThat(status("job")).isEqualTo("RUNNING");
+    missHeartbeats("job");
+    other.requeueAbandoned();
+
+    assertThat(status("job")).isEqualTo("QUEUED");
+    assertThat(workerId("job")).isNull();
+    // resumed from the problem as posted
+    Optional<TimetableWorkerPool.ClaimedJob> claimed = other.claim();
+    assertThat(claimed).map(job -> job.checkpoint().jobId()).contains("job");
+    assertThat(claimed.get().problem()).isEqualTo(PROBLEM);
+    assertThat(otherRegistry.getProblem("job")).isEqualTo(PROBLEM);
+    assertThat(workerId("job")).isEqualTo(otherRegistry.getWorkerId());
+  }
+
+  @Test
+  void finishesAnAbandonedJobThatWasAskedToTerminate() throws InterruptedException {
+    TimetableWorkerPool gone = workerPool(100);
+    TimetableJobRegistry otherRegistry = jobRegistry();
+    TimetableWorkerPool other = workerPool(otherRegistry, 100);
+    gone.enqueue("job", SETTINGS, SNAPSHOT, PROBLEM);
+    assertThat(gone.claim()).isPresent();
+    assertThat(otherRegistry.requestTermination("job")).isFalse();
+
+    missHeartbeats("job");
+    other.requeueAbandoned();
+
+    assertThat(status("job")).isEqualTo("FINISHED");
+    assertThat(otherRegistry.awaitEnded("job", Duration.ofSeconds(1))).isTrue();
+    assertThat(other.claim()).isEmpty();
+  }
+
+  private TimetableWorkerPool workerPool(int maxQueued) {
+    return workerPool(jobRegistry(), maxQueued);
+  }
+
+  private TimetableWorkerPool workerPool(TimetableJobRegistry jobRegistry, int maxQueued) {
+    return new TimetableWorkerPool(
+        jdbcTemplate,
+        new DataSourceTransactionManager(dataSource),
+        jobRegistry,
+        true,
+        maxQueued,
+        Duration.ofMinutes(1));
+  }
+
+  private TimetableJobRegistry jobRegistry() {
+    return new TimetableJobRegistry(
+        jdbcTemplate,
+        false,
+        true,
+        Duration.ofSeconds(10),
+        Duration.ofSeconds(1),
+        1000,
+        Duration.ofHours(24));
+  }
+}
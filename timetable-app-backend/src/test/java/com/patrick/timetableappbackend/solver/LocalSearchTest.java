@@ -0,0 +1,54 @@
+package com.patrick.timetableappbackend.solver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.localsearch.LocalSearchPhaseConfig;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.utils.PlanningIndexer;
+import org.junit.jupiter.api.Test;
+
+public class LocalSearchTest {
+
+  private static final SolverConfig SOLVER_CONFIG =
+      SolverConfig.createFromXmlResource("timetableSolverConfig.xml")
+          .withSolutionClass(Timetable.class)
+          .withEntityClasses(Lesson.class);
+
+  @Test
+  void replacesTheLocalSearchPhasesWithOne() {
+    SolverConfig solverConfig = LocalSearch.TABU_SEARCH.configure(SOLVER_CONFIG);
+
+    assertThat(solverConfig.getPhaseConfigList())
+        .hasSize(2)
+        .last()
+        .isInstanceOfSatisfying(
+            LocalSearchPhaseConfig.class,
+            phaseConfig -> {
+              assertThat(phaseConfig.getAcceptorConfig().getEntityTabuSize()).isEqualTo(7);
+              assertThat(phaseConfig.getTerminationConfig()).isNull();
+            });
+    assertThat(SOLVER_CONFIG.getPhaseConfigList()).hasSize(3);
+  }
+
+  @Test
+  void everyLocalSearchSolves() {
+    for (LocalSearch localSearch : LocalSearch.values()) {
+      SolverConfig solverConfig =
+          ScoreEngine.INCREMENTAL
+              .configure(localSearch.configure(SOLVER_CONFIG), false)
+              .withTerminationConfig(new TerminationConfig().withSecondsSpentLimit(2L));
+      Timetable problem = TimetableProblemGenerator.generate(100, 0L);
+      PlanningIndexer.index(problem);
+
+      Timetable solution =
+          SolverFactory.<Timetable>create(solverConfig).buildSolver().solve(problem);
+
+      assertThat(solution.getScore().isSolutionInitialized()).as(localSearch.name()).isTrue();
+    }
+  }
+}
@@ -2,8 +2,10 @@ package com.patrick.timetableappbackend.solver;
 
 import ai.timefold.solver.test.api.score.stream.ConstraintVerifier;
 import com.patrick.timetableappbackend.model.*;
+import com.patrick.timetableappbackend.utils.PlanningIndexer;
 import java.time.DayOfWeek;
 import java.time.LocalTime;
+import java.util.List;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -256,6 +258,25 @@ public class TimetableConstraintProviderTest {
         .rewardsWith(1);
   }
 
+  @Test
+  void teacherTimeEfficiencyDoesNotDependOnLessonOrder() {
+
+    Teacher teacher = new Teacher(1L, "Teacher1", null);
+
+    // ids in the opposite order of the timeslots
+    Lesson lastTuesdayLesson =
+        new Lesson(1, "Subject1", teacher, new StudentGroup(1L, "Group1", 30L), TIMESLOT5, ROOM1);
+    Lesson secondTuesdayLesson =
+        new Lesson(2, "Subject2", teacher, new StudentGroup(2L, "Group2", 30L), TIMESLOT4, ROOM1);
+    Lesson firstTuesdayLesson =
+        new Lesson(3, "Subject3", teacher, new StudentGroup(3L, "Group3", 30L), TIMESLOT2, ROOM1);
+
+    constraintVerifier
+        .verifyThat(TimetableConstraintProvider::teacherTimeEfficiency)
+        .given(lastTuesdayLesson, secondTuesdayLesson, firstTuesdayLesson)
+        .rewardsWith(1);
+  }
+
   @Test
   void studentGroupSubjectVariety() {
 
@@ -1062,6 +1083,32 @@ public class TimetableConstraintProviderTest {
         .penalizesBy(1);
   }
 
+  @Test
+  void teacherPreferredPeriods() {
+
+    // with PERIODS availability, a preferred timeslot covers every timeslot within it
+    Timeslot tuesdayAfternoon =
+        new Timeslot(10L, DayOfWeek.TUESDAY, LocalTime.NOON, LocalTime.NOON.plusHours(5));
+    Teacher teacher = new Teacher(1L, "Teacher1", Set.of(tuesdayAfternoon));
+    StudentGroup studentGroup = new StudentGroup(1L, "Group1", 30L);
+
+    Lesson lessonWithinPeriod = new Lesson(1, "Subject1", teacher, studentGroup, TIMESLOT3, ROOM1);
+    Lesson lessonAfterPeriod = new Lesson(2, "Subject2", teacher, studentGroup, TIMESLOT5, ROOM1);
+
+    Timetable timetable =
+        new Timetable(
+            List.of(TIMESLOT3, TIMESLOT5, tuesdayAfternoon),
+            List.of(ROOM1),
+            List.of(lessonWithinPeriod, lessonAfterPeriod),
+            new TimetableConstraintConfiguration());
+    PlanningIndexer.index(timetable, TeacherAvailability.Mode.PERIODS);
+
+    constraintVerifier
+        .verifyThat(TimetableConstraintProvider::maximizePreferredTimeslotAssignments)
+        .givenSolution(timetable)
+        .penalizesBy(1);
+  }
+
   @Test
   void coursesInTheSameBuilding() {
 
@@ -0,0 +1,71 @@
+package com.patrick.timetableappbackend.solver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
+import ai.timefold.solver.core.api.solver.SolutionManager;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.utils.PlanningIndexer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Cross-checks TimetableIncrementalScoreCalculator against TimetableConstraintProvider. */
+public class TimetableIncrementalScoreCalculatorTest {
+
+  private static final SolverConfig SOLVER_CONFIG =
+      SolverConfig.createFromXmlResource("timetableSolverConfig.xml")
+          .withSolutionClass(Timetable.class)
+          .withEntityClasses(Lesson.class);
+
+  @Test
+  void sameScoreOnRandomSolutions() {
+    SolutionManager<Timetable, HardMediumSoftScore> constraintStreams =
+        SolutionManager.create(
+            SolverFactory.create(ScoreEngine.CONSTRAINT_STREAMS.configure(SOLVER_CONFIG, false)));
+    SolutionManager<Timetable, HardMediumSoftScore> incremental =
+        SolutionManager.create(
+            SolverFactory.create(ScoreEngine.INCREMENTAL.configure(SOLVER_CONFIG, false)));
+
+    for (long seed = 0; seed < 20; seed++) {
+      Timetable timetable = randomSolution(200, seed);
+      assertThat(incremental.update(timetable))
+          .as("seed %d", seed)
+          .isEqualTo(constraintStreams.update(timetable));
+    }
+  }
+
+  @Test
+  void sameScoreAfterEveryMove() {
+    // in cross-check mode the solver fails with a score corruption on the first difference
+    SolverConfig solverConfig =
+        ScoreEngine.INCREMENTAL
+            .configure(SOLVER_CONFIG, true)
+            .withTerminationConfig(new TerminationConfig().withSecondsSpentLimit(10L));
+    Timetable problem = TimetableProblemGenerator.generate(40, 0L);
+    PlanningIndexer.index(problem);
+
+    Timetable solution = SolverFactory.<Timetable>create(solverConfig).buildSolver().solve(problem);
+
+    assertThat(solution.getScore()).isNotNull();
+  }
+
+  private static Timetable randomSolution(int lessonCount, long seed) {
+    Timetable timetable = TimetableProblemGenerator.generate(lessonCount, seed);
+    Random random = new Random(seed);
+    for (Lesson lesson : timetable.getLessons()) {
+      // a few unassigned lessons, which the constraint streams skip
+      if (random.nextInt(20) > 0) {
+        lesson.setTimeslot(
+            timetable.getTimeslots().get(random.nextInt(timetable.getTimeslots().size())));
+        lesson.setRoom(timetable.getRooms().get(random.nextInt(timetable.getRooms().size())));
+      }
+    }
+    PlanningIndexer.index(timetable);
+    return timetable;
+  }
+}
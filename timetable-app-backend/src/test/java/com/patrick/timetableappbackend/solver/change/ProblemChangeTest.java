@@ -0,0 +1,112 @@
+package com.patrick.timetableappbackend.solver.change;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ai.timefold.solver.core.api.solver.Solver;
+import ai.timefold.solver.core.api.solver.SolverFactory;
+import ai.timefold.solver.core.api.solver.change.ProblemChange;
+import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.config.solver.termination.TerminationConfig;
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.Teacher;
+import com.patrick.timetableappbackend.model.TeacherAvailability;
+import com.patrick.timetableappbackend.model.Timeslot;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.ScoreEngine;
+import com.patrick.timetableappbackend.utils.PlanningIndexer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+// solved in FULL_ASSERT, cross-checked with the other score engine, which fails on a score that
+// a change left stale
+public class ProblemChangeTest {
+
+  private static final SolverConfig SOLVER_CONFIG =
+      ScoreEngine.INCREMENTAL
+          .configure(
+              SolverConfig.createFromXmlResource("timetableSolverConfig.xml")
+                  .withSolutionClass(Timetable.class)
+                  .withEntityClasses(Lesson.class),
+              true)
+          .withTerminationConfig(new TerminationConfig().withSecondsSpentLimit(5L));
+
+  @Test
+  void addedLessonIsPlaced() {
+    Timetable problem = problem();
+    Lesson template = problem.getLessons().get(0);
+    Lesson lesson = template.toBuilder().id(10_000L).timeslot(null).room(null).build();
+
+    Timetable solution = solve(problem, new AddLessonChange(lesson, true));
+
+    assertThat(solution.getLessons()).hasSize(problem.getLessons().size() + 1);
+    Lesson added =
+        solution.getLessons().stream()
+            .filter(candidate -> candidate.getId() == 10_000L)
+            .findFirst()
+            .orElseThrow();
+    assertThat(added.getTeacher().getPlanningIndex())
+        .isEqualTo(template.getTeacher().getPlanningIndex());
+    assertThat(added.getTimeslot()).isNotNull();
+    assertThat(added.getRoom()).isNotNull();
+  }
+
+  @Test
+  void teacherIsNoLongerAvailableInTheRemovedTimeslot() {
+    Timetable problem = problem();
+    Teacher teacher = problem.getLessons().get(0).getTeacher();
+    Timeslot timeslot = problem.getTimeslots().get(0);
+
+    Timetable solution =
+        solve(
+            problem,
+            new RemoveTeacherTimeslotChange(
+                teacher.getId(), timeslot.getId(), TeacherAvailability.Mode.TIMESLOTS));
+
+    for (Lesson lesson : solution.getLessons()) {
+      if (lesson.getTeacher().getId().equals(teacher.getId())) {
+        assertThat(lesson.getTeacher().isAvailable(timeslot)).isFalse();
+        assertThat(lesson.getTeacher().getTimeslots()).doesNotContain(timeslot);
+      }
+    }
+  }
+
+  @Test
+  void closedRoomIsEmptyAndOutOfTheRoomRanges() {
+    Timetable problem = problem();
+    Room room = problem.getRooms().get(0);
+
+    Timetable solution = solve(problem, new CloseRoomChange(room.getId()));
+
+    assertThat(solution.getRooms()).doesNotContain(room);
+    for (Lesson lesson : solution.getLessons()) {
+      assertThat(lesson.getRoom()).isNotNull().isNotEqualTo(room);
+      assertThat(lesson.getRoomRange()).doesNotContain(room);
+    }
+  }
+
+  private static Timetable problem() {
+    Timetable problem = TimetableProblemGenerator.generate(20, 0L);
+    PlanningIndexer.index(problem);
+    return problem;
+  }
+
+  /** Solves the problem with the change done once the first best solution is found. */
+  private static Timetable solve(Timetable problem, ProblemChange<Timetable> problemChange) {
+    Solver<Timetable> solver = SolverFactory.<Timetable>create(SOLVER_CONFIG).buildSolver();
+    AtomicBoolean changed = new AtomicBoolean();
+    solver.addEventListener(
+        event -> {
+          if (!changed.getAndSet(true)) {
+            solver.addProblemChange(problemChange);
+          }
+        });
+
+    Timetable solution = solver.solve(problem);
+
+    assertThat(changed).isTrue();
+    assertThat(solution.getScore().isSolutionInitialized()).isTrue();
+    return solution;
+  }
+}
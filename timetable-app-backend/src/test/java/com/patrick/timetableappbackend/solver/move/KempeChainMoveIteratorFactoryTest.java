@@ -0,0 +1,39 @@
+package com.patrick.timetableappbackend.solver.move;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.timefold.solver.core.api.score.director.ScoreDirector;
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.utils.PlanningIndexer;
+import java.util.Iterator;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class KempeChainMoveIteratorFactoryTest {
+
+  @SuppressWarnings("unchecked")
+  private final ScoreDirector<Timetable> scoreDirector = mock(ScoreDirector.class);
+
+  @Test
+  void unassignedLessonIsMovedIntoTheOtherTimeslot() {
+    Timetable problem = TimetableProblemGenerator.generate(20, 0L);
+    PlanningIndexer.index(problem);
+    when(scoreDirector.getWorkingSolution()).thenReturn(problem);
+    KempeChainMoveIteratorFactory factory = new KempeChainMoveIteratorFactory();
+    factory.phaseStarted(scoreDirector);
+
+    Iterator<KempeChainMove> moves = factory.createRandomMoveIterator(scoreDirector, new Random(0));
+    for (int i = 0; i < 10; i++) {
+      KempeChainMove move = moves.next();
+      Lesson lesson = move.getPlanningEntities().iterator().next();
+
+      assertThat(move.getPlanningEntities()).containsExactly(lesson);
+      assertThat(move.getPlanningValues()).singleElement().isIn(lesson.getTimeslotRange());
+      assertThat(move.isMoveDoable(scoreDirector)).isTrue();
+    }
+  }
+}
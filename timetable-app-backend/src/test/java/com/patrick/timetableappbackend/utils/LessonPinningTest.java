@@ -0,0 +1,66 @@
+package com.patrick.timetableappbackend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Timetable;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class LessonPinningTest {
+
+  @Test
+  void warmStartSeedsUnassignedLessonsAndPinsTheUnrelatedOnes() {
+    Timetable persisted = assigned(TimetableProblemGenerator.generate(200, 0L));
+    Timetable problem = TimetableProblemGenerator.generate(200, 0L);
+    PlanningIndexer.index(problem);
+    // edited since it was persisted, which cleared its assignment
+    Lesson changed = problem.getLessons().get(0);
+    List<Lesson> persistedLessons = persisted.getLessons().subList(1, 200);
+
+    int movable = LessonPinning.warmStart(problem, persistedLessons, true);
+
+    for (Lesson lesson : problem.getLessons()) {
+      boolean related =
+          lesson.getTeacher().equals(changed.getTeacher())
+              || lesson
+                  .getStudentGroup()
+                  .getSeriesKey()
+                  .equals(changed.getStudentGroup().getSeriesKey());
+      if (lesson == changed) {
+        assertThat(lesson.getTimeslot()).isNull();
+        assertThat(lesson.isPinnedForSolving()).isFalse();
+      } else {
+        assertThat(lesson.getTimeslot()).isNotNull();
+        assertThat(lesson.isPinnedForSolving()).isEqualTo(!related);
+      }
+    }
+    assertThat(movable)
+        .isEqualTo(problem.getLessons().stream().filter(l -> !l.isPinnedForSolving()).count());
+  }
+
+  @Test
+  void unassignedLessonIsNotPinned() {
+    Timetable problem = TimetableProblemGenerator.generate(10, 0L);
+    problem.getLessons().forEach(lesson -> lesson.setPinned(true));
+    problem.getLessons().get(0).setTimeslot(problem.getTimeslots().get(0));
+    problem.getLessons().get(0).setRoom(problem.getRooms().get(0));
+
+    PlanningIndexer.index(problem);
+
+    assertThat(problem.getLessons())
+        .extracting(Lesson::isPinnedForSolving)
+        .containsExactly(true, false, false, false, false, false, false, false, false, false);
+  }
+
+  private static Timetable assigned(Timetable timetable) {
+    PlanningIndexer.index(timetable);
+    for (int i = 0; i < timetable.getLessons().size(); i++) {
+      Lesson lesson = timetable.getLessons().get(i);
+      lesson.setTimeslot(lesson.getTimeslotRange().get(i % lesson.getTimeslotRange().size()));
+      lesson.setRoom(lesson.getRoomRange().get(i % lesson.getRoomRange().size()));
+    }
+    return timetable;
+  }
+}
@@ -0,0 +1,110 @@
+package com.patrick.timetableappbackend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.patrick.timetableappbackend.benchmark.TimetableProblemGenerator;
+import com.patrick.timetableappbackend.model.Lesson;
+import com.patrick.timetableappbackend.model.Room;
+import com.patrick.timetableappbackend.model.Timetable;
+import com.patrick.timetableappbackend.solver.PartitionKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class TimetablePartitionerTest {
+
+  private final Timetable problem = problem();
+
+  @Test
+  void partitionsGetDisjointSharesOfTheRoomsByTheirLessons() {
+    List<Timetable> partitions = TimetablePartitioner.split(problem, PartitionKey.YEAR);
+
+    assertThat(partitions).hasSizeGreaterThan(1);
+    assertThat(partitions.stream().mapToInt(partition -> partition.getLessons().size()).sum())
+        .isEqualTo(problem.getLessons().size());
+    List<Room> rooms = new ArrayList<>();
+    for (Timetable partition : partitions) {
+      assertThat(partition.getLessons())
+          .extracting(lesson -> lesson.getStudentGroup().getYear())
+          .containsOnly(partition.getLessons().get(0).getStudentGroup().getYear());
+      assertThat(partition.getTimeslots()).isSameAs(problem.getTimeslots());
+      double share =
+          problem.getRooms().size()
+              * partition.getLessons().size()
+              / (double) problem.getLessons().size();
+      assertThat((double) partition.getRooms().size()).isBetween(share - 1, share + 1);
+      rooms.addAll(partition.getRooms());
+    }
+    assertThat(rooms).containsExactlyInAnyOrderElementsOf(problem.getRooms());
+  }
+
+  @Test
+  void roomRangesAreRestrictedToTheRoomsOfThePartition() {
+    Map<Long, Lesson> lessonsById = byId(problem.getLessons());
+
+    for (Timetable partition : TimetablePartitioner.split(problem, PartitionKey.SERIES)) {
+      for (Lesson copy : partition.getLessons()) {
+        Lesson lesson = lessonsById.get(copy.getId());
+        assertThat(copy).isNotSameAs(lesson);
+        List<Room> fitting =
+            lesson.getRoomRange().stream().filter(partition.getRooms()::contains).toList();
+        // a partition without a room that fits keeps the full range
+        assertThat(copy.getRoomRange())
+            .isEqualTo(fitting.isEmpty() ? lesson.getRoomRange() : fitting);
+      }
+    }
+  }
+
+  @Test
+  void lessonsWithoutAStudentGroupShareAPartition() {
+    List<Lesson> withoutGroup = problem.getLessons().subList(0, 3);
+    withoutGroup.forEach(lesson -> lesson.setStudentGroup(null));
+
+    List<Timetable> partitions = TimetablePartitioner.split(problem, PartitionKey.SERIES);
+
+    assertThat(partitions)
+        .filteredOn(
+            partition -> partition.getLessons().stream().anyMatch(l -> l.getStudentGroup() == null))
+        .singleElement()
+        .satisfies(
+            partition ->
+                assertThat(partition.getLessons())
+                    .extracting(Lesson::getId)
+                    .containsExactlyElementsOf(withoutGroup.stream().map(Lesson::getId).toList()));
+  }
+
+  @Test
+  void mergeAssignsTheLessonsOfTheSameId() {
+    List<Timetable> partitions = TimetablePartitioner.split(problem, PartitionKey.YEAR);
+    int i = 0;
+    for (Timetable partition : partitions) {
+      for (Lesson copy : partition.getLessons()) {
+        copy.setTimeslot(problem.getTimeslots().get(i++ % problem.getTimeslots().size()));
+        copy.setRoom(partition.getRooms().get(i % partition.getRooms().size()));
+      }
+    }
+
+    TimetablePartitioner.merge(problem, partitions);
+
+    Map<Long, Lesson> copiesById =
+        byId(partitions.stream().flatMap(partition -> partition.getLessons().stream()).toList());
+    for (Lesson lesson : problem.getLessons()) {
+      Lesson copy = copiesById.get(lesson.getId());
+      assertThat(lesson.getTimeslot()).isNotNull().isSameAs(copy.getTimeslot());
+      assertThat(lesson.getRoom()).isNotNull().isSameAs(copy.getRoom());
+    }
+  }
+
+  private static Map<Long, Lesson> byId(List<Lesson> lessons) {
+    return lessons.stream().collect(Collectors.toMap(Lesson::getId, Function.identity()));
+  }
+
+  private static Timetable problem() {
+    Timetable problem = TimetableProblemGenerator.generate(200, 0L);
+    PlanningIndexer.index(problem);
+    return problem;
+  }
+}
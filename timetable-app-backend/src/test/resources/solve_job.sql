@@ -0,0 +1,18 @@
+-- the solve_job table as spring.jpa.hibernate.ddl-auto creates it from SolveJob
+create table solve_job (
+    job_id varchar(255) not null primary key,
+    status varchar(255) not null,
+    priority integer not null,
+    user_name varchar(255),
+    created_at timestamp(6) with time zone,
+    worker_id varchar(255),
+    heartbeat_at timestamp(6) with time zone,
+    finished_at timestamp(6) with time zone,
+    terminate_requested boolean not null,
+    checkpoint bytea,
+    problem bytea,
+    score varchar(255),
+    version bigint not null,
+    error varchar(2000)
+);
+create index solve_job_claim_idx on solve_job (status, priority, created_at);